@@ -0,0 +1,31 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "avatar.derivatives")
+@Data
+public class AvatarDerivativeConfig {
+
+    private boolean enabled = true;
+
+    // Square edge lengths to generate; sizes above the source's shorter edge are skipped
+    private List<Integer> sizes = List.of(512, 256, 128, 64);
+
+    // Output formats, by extension; a format without an ImageIO writer is skipped
+    private List<String> formats = List.of("webp", "jpg");
+
+    private float quality = 0.85f;
+
+    // Concurrent pipeline jobs, and jobs allowed to wait; beyond that uploads keep only the original
+    private int workers = 2;
+    private int queueCapacity = 100;
+
+    // Decompression-bomb guards, checked from the header before any pixel is decoded
+    private long maxPixels = 40_000_000;
+    private int maxDimension = 10_000;
+}
@@ -0,0 +1,31 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "avatar.gc")
+@Data
+public class AvatarGcConfig {
+
+    private boolean enabled = true;
+
+    // When the orphan collector runs
+    private String cron = "0 30 3 * * *";
+
+    // Objects written more recently than this are never collected (in-flight uploads)
+    private int graceHours = 24;
+
+    // Rows read per keyset page from the database
+    private int pageSize = 1000;
+
+    // Orphans re-checked and deleted together
+    private int deleteBatchSize = 500;
+
+    // Only count and log orphans, delete nothing
+    private boolean dryRun = false;
+
+    // Upper bound on a run; also how long the cross-replica lock is held at most
+    private int lockMinutes = 120;
+}
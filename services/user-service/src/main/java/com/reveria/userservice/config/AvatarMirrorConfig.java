@@ -0,0 +1,32 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "avatar.mirror")
+@Data
+public class AvatarMirrorConfig {
+
+    private boolean enabled = true;
+
+    // How often due provider pictures are looked for, and how many are claimed at once
+    private long pollIntervalMs = 30000;
+    private int batchSize = 50;
+
+    // Conditional recheck of a mirrored picture; a changed picture URL at login is fetched at once
+    private int recheckHours = 168;
+
+    // Delay before retrying a fetch that failed
+    private int retryMinutes = 60;
+
+    // How long a claimed row stays claimed if the replica dies mid-fetch
+    private int leaseMinutes = 5;
+
+    private int connectTimeoutMs = 3000;
+    private int readTimeoutMs = 5000;
+
+    // Larger responses are abandoned; avatar validation rejects them anyway
+    private int maxBytes = 5 * 1024 * 1024;
+}
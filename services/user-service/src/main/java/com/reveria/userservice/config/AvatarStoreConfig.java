@@ -0,0 +1,26 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "avatar.store")
+@Data
+public class AvatarStoreConfig {
+
+    // Sent with every content-addressed object; the URL changes whenever the bytes do
+    private String cacheControl = "public, max-age=31536000, immutable";
+
+    // How long an unreferenced object is kept, so a re-upload can revive it without a put
+    private int releaseGraceMinutes = 60;
+
+    // Delay between sweeps for unreferenced objects (in ms)
+    private long sweepIntervalMs = 60000;
+
+    // Objects deleted per sweep transaction
+    private int sweepBatchSize = 100;
+
+    // Lifetime of a presigned direct-upload URL (in seconds)
+    private int directUploadExpirySeconds = 300;
+}
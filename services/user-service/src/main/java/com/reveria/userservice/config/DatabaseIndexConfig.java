@@ -0,0 +1,74 @@
+package com.reveria.userservice.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Indexes that JPA's @Index cannot express (operator classes, partial indexes).
+ * Hibernate's ddl-auto creates the tables; these idempotent statements run right after it,
+ * while the context is still starting, so they are in place before the web server and the Kafka
+ * listeners take traffic. An index that cannot be created fails startup: the queries relying
+ * on it would otherwise fall back to sequential scans unnoticed.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class DatabaseIndexConfig implements SmartInitializingSingleton {
+
+    private record IndexDefinition(String name, String statement) {
+    }
+
+    private static final List<IndexDefinition> INDEXES = List.of(
+            // Prefix LIKE lookups on username (OAuth username generation)
+            new IndexDefinition("idx_users_username_pattern",
+                    "CREATE INDEX IF NOT EXISTS idx_users_username_pattern ON users (username text_pattern_ops)"),
+            // Users whose avatar derivatives are still being generated
+            new IndexDefinition("idx_users_avatar_url_pending",
+                    "CREATE INDEX IF NOT EXISTS idx_users_avatar_url_pending ON users (avatar_url) " +
+                            "WHERE avatar_url IS NOT NULL AND avatar_variants IS NULL"),
+            // Byte-ordered avatar URL scan (avatar orphan collector)
+            new IndexDefinition("idx_users_avatar_url_c",
+                    "CREATE INDEX IF NOT EXISTS idx_users_avatar_url_c ON users ((avatar_url COLLATE \"C\"))"),
+            // Per-user lookups of privacy settings and linked providers (profile ETag probes)
+            new IndexDefinition("idx_user_privacy_settings_user_id",
+                    "CREATE INDEX IF NOT EXISTS idx_user_privacy_settings_user_id ON user_privacy_settings (user_id)"),
+            new IndexDefinition("idx_auth_providers_user_id",
+                    "CREATE INDEX IF NOT EXISTS idx_auth_providers_user_id ON auth_providers (user_id)"),
+            // Provider pictures due for mirroring (OAuth avatar mirror)
+            new IndexDefinition("idx_auth_providers_picture_check",
+                    "CREATE INDEX IF NOT EXISTS idx_auth_providers_picture_check ON auth_providers (picture_check_at) " +
+                            "WHERE picture_url IS NOT NULL")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        createIndexes();
+    }
+
+    void createIndexes() {
+        for (IndexDefinition index : INDEXES) {
+            try {
+                jdbcTemplate.execute(index.statement());
+            } catch (DataAccessException e) {
+                // Another replica creating the same index at the same moment is not a failure
+                if (!exists(index.name())) {
+                    throw new IllegalStateException("Failed to create index " + index.name() + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        log.info("Verified {} database indexes", INDEXES.size());
+    }
+
+    private boolean exists(String indexName) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(CAST(? AS TEXT)) IS NOT NULL", Boolean.class, indexName));
+    }
+}
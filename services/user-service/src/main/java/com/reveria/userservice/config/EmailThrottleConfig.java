@@ -0,0 +1,30 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "mail.throttle")
+@Data
+public class EmailThrottleConfig {
+
+    private boolean enabled = true;
+
+    // A second request for the same address and template inside this window is dropped
+    private int dedupeWindowSeconds = 120;
+
+    // Sends of one template to one address per sliding window
+    private int maxPerTemplate = 3;
+    private int templateWindowMinutes = 60;
+
+    // Sends of any template to one address per sliding window
+    private int maxPerAddress = 5;
+    private int addressWindowMinutes = 60;
+
+    // Addresses tracked in memory; beyond this only Redis is consulted
+    private int localMaxEntries = 100000;
+
+    // After a Redis error, decide locally for this long before trying Redis again
+    private long redisBackoffMs = 5000;
+}
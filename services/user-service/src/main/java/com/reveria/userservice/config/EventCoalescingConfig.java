@@ -0,0 +1,37 @@
+package com.reveria.userservice.config;
+
+import com.reveria.userservice.model.enums.UserEventType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+@Configuration
+@ConfigurationProperties(prefix = "events.coalescing")
+@Data
+public class EventCoalescingConfig {
+
+    // Event types that know how to merge; anything else is always published immediately
+    public static final Set<UserEventType> COALESCIBLE_TYPES =
+            EnumSet.of(UserEventType.USER_LOGGED_IN, UserEventType.USER_PROFILE_UPDATED);
+
+    // Off by default: every event is written to the outbox as it happens
+    private boolean enabled = false;
+
+    // How long the first event for a (user, type) pair waits for followers before it is written
+    private long windowMs = 5000;
+
+    // How often expired windows are flushed to the outbox (in ms)
+    private long flushIntervalMs = 1000;
+
+    // Buffered (user, type) pairs above which everything is flushed early
+    private int maxPending = 50000;
+
+    private Set<UserEventType> eventTypes = EnumSet.copyOf(COALESCIBLE_TYPES);
+
+    public boolean isCoalesced(UserEventType eventType) {
+        return enabled && eventTypes.contains(eventType) && COALESCIBLE_TYPES.contains(eventType);
+    }
+}
@@ -2,10 +2,13 @@ package com.reveria.userservice.config;
 
 import lombok.Getter;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+
 @Configuration
 @Getter
 public class KafkaConfig {
@@ -13,8 +16,43 @@ public class KafkaConfig {
     @Value("${kafka.topic.user-events:user-events}")
     private String userEventsTopic;
 
+    // Partitions of user-events; cache invalidation assigns itself all of them
+    @Value("${kafka.topic.user-events-partitions:3}")
+    private int userEventsPartitions;
+
+    // Log-compacted, keyed by user uuid; holds the latest public projection of each user
+    @Value("${kafka.topic.user-snapshots:user-snapshots}")
+    private String userSnapshotsTopic;
+
+    // Compacted, keyed by user uuid; online/offline transitions from the presence service
+    @Value("${kafka.topic.user-presence:user-presence}")
+    private String userPresenceTopic;
+
+    // json | avro - wire format written to the user-events topic
+    @Value("${kafka.encoding.user-events:json}")
+    private String userEventsEncoding;
+
     @Bean
     public NewTopic userEventsTopic() {
-        return new NewTopic(userEventsTopic, 3, (short) 1);
+        return new NewTopic(userEventsTopic, userEventsPartitions, (short) 1);
+    }
+
+    /**
+     * Every user-events partition, as a {@code @TopicPartition} range.
+     */
+    public String userEventsPartitionRange() {
+        return "0-" + (userEventsPartitions - 1);
+    }
+
+    @Bean
+    public NewTopic userSnapshotsTopic() {
+        return new NewTopic(userSnapshotsTopic, 3, (short) 1)
+                .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
+
+    @Bean
+    public NewTopic userPresenceTopic() {
+        return new NewTopic(userPresenceTopic, 3, (short) 1)
+                .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
     }
 }
@@ -0,0 +1,20 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "storage.local")
+@Data
+public class LocalStorageConfig {
+
+    // Directory holding the object tree; created on startup
+    private String rootDir = "./data/storage";
+
+    // Public URL the /media endpoint is reachable under, without a trailing slash
+    private String publicBaseUrl = "http://localhost:8080/media";
+
+    // HMAC key for presigned upload URLs; a random one per start if unset (single node only)
+    private String signingKey;
+}
@@ -0,0 +1,33 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "mail.queue")
+@Data
+public class MailQueueConfig {
+
+    // Concurrent senders; each owns one SMTP connection while it works a batch
+    private int workers = 4;
+
+    // Jobs claimed and sent over one connection per round
+    private int batchSize = 50;
+
+    // Delay between queue polls (in ms)
+    private long pollIntervalMs = 1000;
+
+    // How long a claimed batch stays reserved for its worker
+    private long leaseMs = 300000;
+
+    // Attempts before a job is parked as FAILED
+    private int maxAttempts = 6;
+
+    // Retry delay doubles from initial-backoff-ms up to max-backoff-ms
+    private long initialBackoffMs = 30000;
+    private long maxBackoffMs = 3600000;
+
+    // Pooled SMTP connections unused for this long are closed
+    private long connectionIdleMs = 60000;
+}
@@ -1,21 +1,68 @@
 package com.reveria.userservice.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
+@ConditionalOnProperty(name = "storage.type", havingValue = "minio", matchIfMissing = true)
 @RequiredArgsConstructor
 public class MinioClientConfig {
 
     private final StorageConfig storageConfig;
+    private final MeterRegistry meterRegistry;
 
     @Bean
     public MinioClient minioClient() {
+        // The client runs every call through OkHttp's dispatcher, so its limits cap storage concurrency
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(storageConfig.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(storageConfig.getMaxRequests());
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(storageConfig.getMaxIdleConnections(),
+                        storageConfig.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .connectTimeout(storageConfig.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(storageConfig.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(storageConfig.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .addInterceptor(chain -> {
+                    long start = System.nanoTime();
+                    String status = "IO_ERROR";
+                    try {
+                        Response response = chain.proceed(chain.request());
+                        status = String.valueOf(response.code());
+                        return response;
+                    } finally {
+                        // Time to response headers; a download's body is read after this
+                        Timer.builder("storage.minio.requests")
+                                .tag("method", chain.request().method())
+                                .tag("status", status)
+                                .description("Requests to the object store")
+                                .publishPercentileHistogram()
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .build();
+
         return MinioClient.builder()
                 .endpoint(storageConfig.getEndpoint())
                 .credentials(storageConfig.getAccessKey(), storageConfig.getSecretKey())
+                .httpClient(httpClient)
                 .build();
     }
 }
@@ -0,0 +1,26 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "outbox")
+@Data
+public class OutboxConfig {
+
+    // Number of key partitions; a relay instance owns a partition for one batch at a time
+    private int partitions = 8;
+
+    // Rows sent per partition per transaction
+    private int batchSize = 200;
+
+    // Max time to wait for Kafka acks before the batch is released and retried
+    private long sendTimeoutMs = 10000;
+
+    // How long a claimed batch stays leased to its relay; must exceed send-timeout-ms
+    private long leaseMs = 30000;
+
+    // Delay between relay polls (in ms)
+    private long pollIntervalMs = 500;
+}
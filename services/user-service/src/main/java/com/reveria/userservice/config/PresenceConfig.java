@@ -0,0 +1,35 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "presence")
+@Data
+public class PresenceConfig {
+
+    // Accept heartbeats and answer presence queries
+    private boolean enabled = true;
+
+    // A user is online for this long after their last heartbeat; clients beat well inside it
+    private long ttlMs = 60000;
+
+    // Independent maps the local presence table is split into, by uuid hash
+    private int shards = 32;
+
+    // Heartbeats are coalesced per user and written to Redis on this interval
+    private long flushIntervalMs = 1000;
+
+    // How often expired users are removed and announced offline
+    private long sweepIntervalMs = 5000;
+
+    // Last-seen is kept this long after a user's last heartbeat
+    private int lastSeenRetentionDays = 30;
+
+    // Users per Redis script call, for both writes and sweeps
+    private int redisBatchSize = 1000;
+
+    // After a Redis failure, presence stays local for this long before trying again
+    private long redisBackoffMs = 5000;
+}
@@ -57,6 +57,10 @@ public class SecurityConfig {
                         ).permitAll()
                         .requestMatchers("/api/mod/**").hasRole("MODERATOR")
                         .requestMatchers("/actuator/**").permitAll()
+                        // Local storage backend: public reads, PUTs authorised by their signed URL
+                        .requestMatchers("/media/**").permitAll()
+                        // Service-to-service endpoints check the internal token themselves
+                        .requestMatchers("/internal/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .authenticationProvider(authenticationProvider())
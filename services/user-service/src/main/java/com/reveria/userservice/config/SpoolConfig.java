@@ -0,0 +1,26 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "spool")
+@Data
+public class SpoolConfig {
+
+    // Directory for spool segments; should live on the pod's persistent volume
+    private String directory = "./data/event-spool";
+
+    // Size of one memory-mapped segment file
+    private int segmentSizeBytes = 16 * 1024 * 1024;
+
+    // Segments kept at most; appends are rejected once the spool is full
+    private int maxSegments = 64;
+
+    // Delay between replay attempts (in ms)
+    private long replayIntervalMs = 2000;
+
+    // Events moved to the outbox per replay transaction
+    private int replayBatchSize = 500;
+}
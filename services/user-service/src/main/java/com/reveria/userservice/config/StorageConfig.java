@@ -13,4 +13,15 @@ public class StorageConfig {
     private String accessKey;
     private String secretKey;
     private String bucket;
+
+    // Concurrent requests to the endpoint; OkHttp's default of 5 per host throttles parallel uploads
+    private int maxRequests = 64;
+
+    // Idle keep-alive connections kept open to the endpoint, and for how long
+    private int maxIdleConnections = 32;
+    private long keepAliveSeconds = 300;
+
+    private long connectTimeoutMs = 5000;
+    private long readTimeoutMs = 30000;
+    private long writeTimeoutMs = 30000;
 }
@@ -0,0 +1,27 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "storage.deletion")
+@Data
+public class StorageDeletionConfig {
+
+    // Objects removed per bulk delete request (the S3 API allows up to 1000)
+    private int batchSize = 500;
+
+    // Delay between polls for due retries (in ms); fresh deletions wake the worker directly
+    private long pollIntervalMs = 5000;
+
+    // How long a claimed batch stays reserved for the worker
+    private long leaseMs = 60000;
+
+    // Attempts before a deletion is dropped and left to the orphan sweep
+    private int maxAttempts = 10;
+
+    // Retry delay doubles from initial-backoff-ms up to max-backoff-ms
+    private long initialBackoffMs = 10000;
+    private long maxBackoffMs = 3600000;
+}
@@ -0,0 +1,21 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "storage.io")
+@Data
+public class StorageIoConfig {
+
+    // Threads running asynchronous storage operations, and operations allowed to wait for one
+    private int threads = 16;
+    private int queueCapacity = 500;
+
+    // Upper bound on a single-object operation, queueing included
+    private long timeoutMs = 10000;
+
+    // Upper bound on a bulk delete
+    private long batchTimeoutMs = 60000;
+}
@@ -0,0 +1,20 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.lookup")
+@Data
+public class UserLookupConfig {
+
+    // How long a looked-up profile is served from memory; events evict it sooner
+    private long cacheTtlMs = 60000;
+
+    // Upper bound on cached profiles per replica
+    private int cacheMaxEntries = 200000;
+
+    // Shared secret other services send in X-Internal-Token; internal lookups are refused while blank
+    private String internalToken = "";
+}
@@ -0,0 +1,32 @@
+package com.reveria.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.search")
+@Data
+public class UserSearchConfig {
+
+    // Build and serve the in-memory username search index
+    private boolean enabled = true;
+
+    // Shortest query answered; shorter ones return nothing
+    private int minPrefixLength = 1;
+
+    // Most results per query; the index precomputes this many per block, so it bounds the limit
+    private int maxResults = 20;
+
+    // Users read per keyset page while building the index
+    private int buildPageSize = 5000;
+
+    // Full rebuild from the database, which also picks up new login times for ranking
+    private long rebuildIntervalMs = 3600000;
+
+    // How often changed users are re-read into the index
+    private long refreshIntervalMs = 1000;
+
+    // Changed users re-read per refresh query
+    private int refreshBatchSize = 1000;
+}
@@ -9,16 +9,20 @@ import com.reveria.userservice.model.enums.ProviderType;
 import com.reveria.userservice.security.JWTService;
 import com.reveria.userservice.security.UserPrincipal;
 import com.reveria.userservice.service.AuthService;
+import com.reveria.userservice.service.EmailSendGovernor;
+import com.reveria.userservice.service.EmailTemplateRenderer;
 import com.reveria.userservice.service.EmailVerificationService;
 import com.reveria.userservice.service.OAuthService;
 import com.reveria.userservice.service.PasswordResetService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -34,6 +38,7 @@ public class AuthController {
     private final JWTService jwtService;
     private final OAuthService oAuthService;
     private final EmailVerificationService emailVerificationService;
+    private final EmailSendGovernor emailSendGovernor;
 
     //  PUBLIC ENDPOINTS
 
@@ -114,8 +119,14 @@ public class AuthController {
 
     @GetMapping("/me")
     public ResponseEntity<ApiResponse<AuthResponse.UserInfo>> getCurrentUser(
-            @AuthenticationPrincipal UserPrincipal principal
+            @AuthenticationPrincipal UserPrincipal principal,
+            WebRequest webRequest
     ) {
+        // The principal is the cached copy of the user row, so this costs no query
+        String etag = "\"m" + principal.getUser().getId() + "-" + principal.getUser().getVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         AuthResponse.UserInfo userInfo = AuthResponse.UserInfo.builder()
                 .uuid(principal.getUser().getUuid())
                 .email(principal.getUser().getEmail())
@@ -124,7 +135,10 @@ public class AuthController {
                 .avatarUrl(principal.getUser().getAvatarUrl())
                 .build();
 
-        return ResponseEntity.ok(ApiResponse.success(userInfo));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(ApiResponse.success(userInfo));
     }
     // OAUTH ENDPOINTS
     @PostMapping("/oauth")
@@ -171,7 +185,9 @@ public class AuthController {
     public ResponseEntity<ApiResponse<Void>> forgotPassword(
             @Valid @RequestBody ForgotPasswordRequest request
     ) {
-        passwordResetService.requestPasswordReset(request.getEmail());
+        if (emailSendGovernor.tryAcquire(EmailTemplateRenderer.PASSWORD_RESET, request.getEmail())) {
+            passwordResetService.requestPasswordReset(request.getEmail());
+        }
         return ResponseEntity.ok(ApiResponse.success("If the email exists, a reset link has been sent"));
     }
 
@@ -221,7 +237,9 @@ public class AuthController {
     public ResponseEntity<ApiResponse<Void>> resendVerification(
             @Valid @RequestBody ResendVerificationRequest request
     ) {
-        emailVerificationService.resendVerificationEmail(request.getEmail());
+        if (emailSendGovernor.tryAcquire(EmailTemplateRenderer.EMAIL_VERIFICATION, request.getEmail())) {
+            emailVerificationService.resendVerificationEmail(request.getEmail());
+        }
         return ResponseEntity.ok(ApiResponse.success("If the email exists and is unverified, a verification link has been sent"));
     }
 
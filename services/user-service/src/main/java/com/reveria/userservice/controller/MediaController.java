@@ -0,0 +1,201 @@
+package com.reveria.userservice.controller;
+
+import com.reveria.userservice.service.LocalFileStorageService;
+import com.reveria.userservice.util.FileValidationUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves objects of the local storage backend, and accepts the PUTs its presigned URLs allow.
+ *
+ * Bodies are handed to Tomcat's sendfile when the connector supports it, so the bytes go from
+ * the page cache to the socket without entering the JVM; otherwise FileChannel.transferTo
+ * writes them to the response. Single byte ranges and If-None-Match are honoured.
+ *
+ * Everything here is served from the API's own origin, so nothing may render as a document:
+ * PUTs only accept avatar image types within the avatar size limit, staged uploads (not yet
+ * validated) are never served, anything that isn't an avatar image type is sent as an
+ * attachment, and every response carries a sandbox CSP and nosniff.
+ */
+@RestController
+@RequestMapping("/media")
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@RequiredArgsConstructor
+public class MediaController {
+
+    private static final String PREFIX = "/media/";
+    private static final String STAGING_PREFIX = "staging/";
+    private static final String OCTET_STREAM = "application/octet-stream";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalFileStorageService storageService;
+
+    @GetMapping("/**")
+    public void get(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setHeader("Content-Security-Policy", "sandbox");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        String key = keyOf(request);
+        LocalFileStorageService.LocalObject object = key.startsWith(STAGING_PREFIX) ? null : storageService.locate(key);
+        if (object == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + Long.toHexString(object.size()) + "-" + Long.toHexString(object.lastModified().toEpochMilli()) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, object.lastModified().toEpochMilli());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (object.cacheControl() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, object.cacheControl());
+        }
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long length = object.size();
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            // Multiple ranges are answered with the whole object, which RFC 9110 allows
+            if (matcher.matches()) {
+                long[] bounds = resolveRange(matcher.group(1), matcher.group(2), object.size());
+                if (bounds == null) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + object.size());
+                    return;
+                }
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + bounds[0] + "-" + bounds[1] + "/" + object.size());
+            }
+        }
+
+        if (FileValidationUtil.isAllowedAvatarType(object.contentType())) {
+            response.setContentType(object.contentType());
+        } else {
+            response.setContentType(OCTET_STREAM);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+        }
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat opens the file and sends it once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, object.file().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(object.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long sent = 0;
+            while (sent < length) {
+                long transferred = channel.transferTo(start + sent, length - sent, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                sent += transferred;
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted after locate; nothing has been written yet
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    @PutMapping("/**")
+    public ResponseEntity<Void> put(HttpServletRequest request,
+                                    @RequestParam long expires,
+                                    @RequestParam("max") long maxSize,
+                                    @RequestParam("type") String contentTypePrefix,
+                                    @RequestParam String signature) throws IOException {
+        String key = keyOf(request);
+        if (!storageService.verifyUpload(key, expires, maxSize, contentTypePrefix, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+        if (length == 0 || length > Math.min(maxSize, FileValidationUtil.MAX_AVATAR_SIZE)) {
+            return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).build();
+        }
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.startsWith(contentTypePrefix)
+                || !FileValidationUtil.isAllowedAvatarType(contentType)) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        storageService.upload(key, request.getInputStream(), length, contentType);
+        return ResponseEntity.ok().build();
+    }
+
+    private static String keyOf(HttpServletRequest request) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        return uri.startsWith(PREFIX) ? uri.substring(PREFIX.length()) : "";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+
+    /**
+     * First and last byte of a single range, or null if it can't be satisfied.
+     */
+    static long[] resolveRange(String first, String last, long size) {
+        if (first.isEmpty() && last.isEmpty()) {
+            return null;
+        }
+        try {
+            if (first.isEmpty()) {
+                // Suffix range: the final n bytes
+                long suffix = Long.parseLong(last);
+                return suffix == 0 || size == 0 ? null : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            if (start >= size) {
+                return null;
+            }
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            return end < start ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.reveria.userservice.dto.response.ApiResponse;
 import com.reveria.userservice.dto.response.ModeratorResponse;
 import com.reveria.userservice.security.ModeratorPrincipal;
 import com.reveria.userservice.service.ModeratorManagementService;
+import com.reveria.userservice.service.UserSnapshotBackfillService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -22,6 +23,7 @@ import java.util.List;
 public class ModeratorManagementController {
 
     private final ModeratorManagementService moderatorManagementService;
+    private final UserSnapshotBackfillService userSnapshotBackfillService;
 
     @PostMapping("/moderators")
     public ResponseEntity<ApiResponse<ModeratorResponse>> createModerator(
@@ -65,4 +67,12 @@ public class ModeratorManagementController {
         ModeratorResponse data = moderatorManagementService.activateModerator(uuid);
         return ResponseEntity.ok(ApiResponse.success(data, "Moderator activated"));
     }
+
+    @PostMapping("/snapshots/backfill")
+    public ResponseEntity<ApiResponse<Void>> backfillSnapshots() {
+        userSnapshotBackfillService.start();
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Snapshot backfill started"));
+    }
 }
@@ -0,0 +1,43 @@
+package com.reveria.userservice.controller;
+
+import com.reveria.userservice.dto.request.profile.BatchProfileRequest;
+import com.reveria.userservice.dto.response.ApiResponse;
+import com.reveria.userservice.dto.response.PresenceResponse;
+import com.reveria.userservice.security.UserPrincipal;
+import com.reveria.userservice.service.PresenceService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/presence")
+@RequiredArgsConstructor
+public class PresenceController {
+
+    private final PresenceService presenceService;
+
+    /**
+     * Marks the caller online; clients send it well within presence.ttl-ms while active.
+     */
+    @PostMapping("/heartbeat")
+    public ResponseEntity<Void> heartbeat(@AuthenticationPrincipal UserPrincipal principal) {
+        presenceService.heartbeat(principal.getUser().getUuid());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<List<PresenceResponse>>> presence(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody BatchProfileRequest request
+    ) {
+        List<PresenceResponse> presence = presenceService.presence(request.getUuids(), principal.getUser().getUuid());
+        return ResponseEntity.ok(ApiResponse.success(presence));
+    }
+}
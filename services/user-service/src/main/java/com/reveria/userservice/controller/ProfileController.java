@@ -1,23 +1,30 @@
 package com.reveria.userservice.controller;
 
+import com.reveria.userservice.dto.request.profile.CreateAvatarUploadRequest;
 import com.reveria.userservice.dto.request.profile.DeactivateAccountRequest;
 import com.reveria.userservice.dto.request.profile.UpdatePrivacyRequest;
 import com.reveria.userservice.dto.request.profile.UpdateProfileRequest;
 import com.reveria.userservice.dto.response.ApiResponse;
+import com.reveria.userservice.dto.response.AvatarUploadResponse;
 import com.reveria.userservice.dto.response.LinkedProviderResponse;
 import com.reveria.userservice.dto.response.PrivacySettingsResponse;
 import com.reveria.userservice.dto.response.UserProfileResponse;
+import com.reveria.userservice.exception.FileValidationException;
 import com.reveria.userservice.security.UserPrincipal;
 import com.reveria.userservice.service.ProfileService;
 import com.reveria.userservice.util.FileValidationUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -28,12 +35,21 @@ public class ProfileController {
     private final ProfileService profileService;
 
 
+    /**
+     * The GETs below answer If-None-Match from a version probe, so a 304 never loads or
+     * serializes the entity. The tag is read before the body, so it can only be older than it.
+     */
     @GetMapping("/me")
     public ResponseEntity<ApiResponse<UserProfileResponse>> getProfile(
-            @AuthenticationPrincipal UserPrincipal principal
+            @AuthenticationPrincipal UserPrincipal principal,
+            WebRequest webRequest
     ) {
+        String etag = profileService.profileETag(principal.getUser().getId());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         UserProfileResponse profile = profileService.getProfile(principal.getUser().getId());
-        return ResponseEntity.ok(ApiResponse.success(profile));
+        return revalidated(etag).body(ApiResponse.success(profile));
     }
 
     @PatchMapping("/me")
@@ -51,11 +67,54 @@ public class ProfileController {
             @AuthenticationPrincipal UserPrincipal principal,
             @RequestParam("file") MultipartFile file
     ) {
-        FileValidationUtil.validateAvatar(file);
+        FileValidationUtil.validateAvatarMetadata(file);
         UserProfileResponse profile = profileService.updateAvatar(principal.getUser().getId(), file);
         return ResponseEntity.ok(ApiResponse.success(profile, "Avatar updated successfully"));
     }
 
+    /**
+     * Raw image body instead of a multipart form: the request stream goes straight to storage
+     * without being spooled to a temp file first.
+     */
+    @PutMapping(value = "/me/avatar", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, "image/webp"})
+    public ResponseEntity<ApiResponse<UserProfileResponse>> uploadAvatar(
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest request
+    ) throws IOException {
+        long size = request.getContentLengthLong();
+        if (size <= 0) {
+            throw new FileValidationException("File is required", "file");
+        }
+        FileValidationUtil.validateAvatarMetadata(size, request.getContentType());
+        UserProfileResponse profile = profileService.updateAvatar(
+                principal.getUser().getId(), request.getInputStream(), size);
+        return ResponseEntity.ok(ApiResponse.success(profile, "Avatar updated successfully"));
+    }
+
+    /**
+     * Direct upload, step one: returns a short-lived presigned URL the client PUTs the image to.
+     */
+    @PostMapping("/me/avatar/uploads")
+    public ResponseEntity<ApiResponse<AvatarUploadResponse>> createAvatarUpload(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody CreateAvatarUploadRequest request
+    ) {
+        AvatarUploadResponse upload = profileService.createAvatarUpload(principal.getUser().getId(), request);
+        return ResponseEntity.ok(ApiResponse.success(upload));
+    }
+
+    /**
+     * Direct upload, step two: validates the uploaded object in place and makes it the avatar.
+     */
+    @PostMapping("/me/avatar/uploads/{uploadId}/complete")
+    public ResponseEntity<ApiResponse<UserProfileResponse>> completeAvatarUpload(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @PathVariable String uploadId
+    ) {
+        UserProfileResponse profile = profileService.completeAvatarUpload(principal.getUser().getId(), uploadId);
+        return ResponseEntity.ok(ApiResponse.success(profile, "Avatar updated successfully"));
+    }
+
     @DeleteMapping("/me/avatar")
     public ResponseEntity<ApiResponse<UserProfileResponse>> deleteAvatar(
             @AuthenticationPrincipal UserPrincipal principal
@@ -67,10 +126,15 @@ public class ProfileController {
 
     @GetMapping("/me/privacy")
     public ResponseEntity<ApiResponse<PrivacySettingsResponse>> getPrivacySettings(
-            @AuthenticationPrincipal UserPrincipal principal
+            @AuthenticationPrincipal UserPrincipal principal,
+            WebRequest webRequest
     ) {
+        String etag = profileService.privacyETag(principal.getUser().getId());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         PrivacySettingsResponse settings = profileService.getPrivacySettings(principal.getUser().getId());
-        return ResponseEntity.ok(ApiResponse.success(settings));
+        return revalidated(etag).body(ApiResponse.success(settings));
     }
 
     @PatchMapping("/me/privacy")
@@ -84,10 +148,15 @@ public class ProfileController {
 
     @GetMapping("/me/providers")
     public ResponseEntity<ApiResponse<List<LinkedProviderResponse>>> getLinkedProviders(
-            @AuthenticationPrincipal UserPrincipal principal
+            @AuthenticationPrincipal UserPrincipal principal,
+            WebRequest webRequest
     ) {
+        String etag = profileService.providersETag(principal.getUser().getId());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         List<LinkedProviderResponse> providers = profileService.getLinkedProviders(principal.getUser().getId());
-        return ResponseEntity.ok(ApiResponse.success(providers));
+        return revalidated(etag).body(ApiResponse.success(providers));
     }
 
     @PostMapping("/me/deactivate")
@@ -98,4 +167,10 @@ public class ProfileController {
         profileService.deactivateAccount(principal.getUser().getId(), request);
         return ResponseEntity.ok(ApiResponse.success("Account deactivated successfully"));
     }
+
+    // Private to the user, and to be revalidated on every use
+    private static ResponseEntity.BodyBuilder revalidated(String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache().cachePrivate());
+        return etag != null ? builder.eTag(etag) : builder;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.reveria.userservice.controller;
+
+import com.reveria.userservice.config.UserLookupConfig;
+import com.reveria.userservice.dto.request.profile.BatchProfileRequest;
+import com.reveria.userservice.dto.request.profile.InteractionCheckRequest;
+import com.reveria.userservice.dto.response.ApiResponse;
+import com.reveria.userservice.dto.response.PublicProfileResponse;
+import com.reveria.userservice.model.enums.InteractionVerdict;
+import com.reveria.userservice.security.UserPrincipal;
+import com.reveria.userservice.service.InteractionPolicyService;
+import com.reveria.userservice.service.PublicProfileService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Batch profile lookups and user search, so services rendering many users make one call instead
+ * of one per user.
+ */
+@RestController
+@RequiredArgsConstructor
+public class UserLookupController {
+
+    private static final String INTERNAL_TOKEN_HEADER = "X-Internal-Token";
+
+    private final PublicProfileService publicProfileService;
+    private final InteractionPolicyService interactionPolicyService;
+    private final UserLookupConfig config;
+
+    @PostMapping("/api/users/batch")
+    public ResponseEntity<ApiResponse<List<PublicProfileResponse>>> lookup(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @Valid @RequestBody BatchProfileRequest request
+    ) {
+        List<PublicProfileResponse> profiles = publicProfileService.lookup(
+                request.getUuids(), principal.getUser().getUuid());
+        return ResponseEntity.ok(ApiResponse.success(profiles));
+    }
+
+    /**
+     * Mention autocomplete: users whose username or display name has a word starting with q.
+     */
+    @GetMapping("/api/users/search")
+    public ResponseEntity<ApiResponse<List<PublicProfileResponse>>> search(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(ApiResponse.success(publicProfileService.search(query, limit)));
+    }
+
+    /**
+     * Service-to-service variant: full profiles plus visibility and status, authorised by the
+     * shared internal token rather than a user's JWT.
+     */
+    @PostMapping("/internal/users/batch")
+    public ResponseEntity<ApiResponse<List<PublicProfileResponse>>> lookupInternal(
+            @RequestHeader(value = INTERNAL_TOKEN_HEADER, required = false) String token,
+            @Valid @RequestBody BatchProfileRequest request
+    ) {
+        requireInternalToken(token);
+        List<PublicProfileResponse> profiles = publicProfileService.lookupInternal(request.getUuids());
+        return ResponseEntity.ok(ApiResponse.success(profiles));
+    }
+
+    /**
+     * Whether each from user may message the paired to user; verdicts come back in request order.
+     */
+    @PostMapping("/internal/users/can-message")
+    public ResponseEntity<ApiResponse<List<InteractionVerdict>>> canMessage(
+            @RequestHeader(value = INTERNAL_TOKEN_HEADER, required = false) String token,
+            @Valid @RequestBody InteractionCheckRequest request
+    ) {
+        requireInternalToken(token);
+        return ResponseEntity.ok(ApiResponse.success(interactionPolicyService.canMessage(request.getPairs())));
+    }
+
+    /**
+     * Whether each from user may send the paired to user a friend request.
+     */
+    @PostMapping("/internal/users/can-friend")
+    public ResponseEntity<ApiResponse<List<InteractionVerdict>>> canFriend(
+            @RequestHeader(value = INTERNAL_TOKEN_HEADER, required = false) String token,
+            @Valid @RequestBody InteractionCheckRequest request
+    ) {
+        requireInternalToken(token);
+        return ResponseEntity.ok(ApiResponse.success(interactionPolicyService.canFriend(request.getPairs())));
+    }
+
+    private void requireInternalToken(String token) {
+        String expected = config.getInternalToken();
+        if (expected == null || expected.isBlank() || token == null
+                || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            throw new AccessDeniedException("Invalid internal token");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.reveria.userservice.dto.event;
+
+import java.time.Instant;
+
+/**
+ * A user coming online or going offline, published to the user-presence topic keyed by uuid.
+ * Never written to the outbox: presence is transient and a lost transition is corrected by the
+ * next one.
+ */
+public record PresenceEvent(String userId, boolean online, Instant timestamp) {
+}
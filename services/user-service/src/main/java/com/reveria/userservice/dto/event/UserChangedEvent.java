@@ -0,0 +1,10 @@
+package com.reveria.userservice.dto.event;
+
+import com.reveria.userservice.model.enums.UserEventType;
+
+/**
+ * In-process notification raised next to every user event, so this replica can evict its own
+ * caches as soon as the change commits instead of waiting for the event to come back from Kafka.
+ */
+public record UserChangedEvent(UserEventType eventType, String userId) {
+}
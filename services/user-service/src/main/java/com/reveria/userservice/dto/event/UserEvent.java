@@ -6,7 +6,6 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.Instant;
-import java.util.Map;
 
 @Data
 @Builder
@@ -16,5 +15,5 @@ public class UserEvent {
     private UserEventType eventType;
     private String userId;
     private Instant timestamp;
-    private Map<String, Object> payload;
+    private UserEventPayload payload;
 }
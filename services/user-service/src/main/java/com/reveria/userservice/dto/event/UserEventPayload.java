@@ -0,0 +1,15 @@
+package com.reveria.userservice.dto.event;
+
+/**
+ * Typed payload carried by a {@link UserEvent}. One record per event shape; the JSON form
+ * keeps the field names of the old free-form map so existing consumers see no change.
+ */
+public sealed interface UserEventPayload permits
+        UserRegisteredPayload,
+        UserLoggedInPayload,
+        UserEmailVerifiedPayload,
+        UserProfileUpdatedPayload,
+        UserAvatarUpdatedPayload,
+        UserPrivacyUpdatedPayload,
+        UserOAuthProviderPayload {
+}
@@ -0,0 +1,21 @@
+package com.reveria.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * Login payload. The count fields are only set when several logins were coalesced into one event;
+ * {@code ipAddress} and {@code provider} then describe the most recent login.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserLoggedInPayload(String ipAddress,
+                                  String provider,
+                                  Integer loginCount,
+                                  Map<String, Integer> loginsByProvider,
+                                  Map<String, Integer> loginsByIp) implements UserEventPayload {
+
+    public UserLoggedInPayload(String ipAddress, String provider) {
+        this(ipAddress, provider, null, null, null);
+    }
+}
@@ -0,0 +1,16 @@
+package com.reveria.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Only the settings that changed are set; the rest stay null and are omitted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserPrivacyUpdatedPayload(
+        String profileVisibility,
+        Boolean showOnlineStatus,
+        Boolean allowDirectMessages,
+        Boolean allowFriendRequests,
+        String messagePrivacy
+) implements UserEventPayload {
+}
@@ -0,0 +1,9 @@
+package com.reveria.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserProfileUpdatedPayload(List<String> changedFields) implements UserEventPayload {
+}
@@ -0,0 +1,7 @@
+package com.reveria.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserRegisteredPayload(String email, String username, String provider) implements UserEventPayload {
+}
@@ -0,0 +1,26 @@
+package com.reveria.userservice.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * Value of the compacted user-snapshots topic: the latest public projection of one user,
+ * keyed by uuid. Never carries email, credentials or login metadata.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserSnapshot(
+        String uuid,
+        String username,
+        String displayName,
+        String avatarUrl,
+        String bio,
+        String status,
+        String profileVisibility,
+        Boolean showOnlineStatus,
+        Boolean allowDirectMessages,
+        Boolean allowFriendRequests,
+        String messagePrivacy,
+        Instant snapshotAt
+) {
+}
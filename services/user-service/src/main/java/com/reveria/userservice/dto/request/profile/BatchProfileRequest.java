@@ -0,0 +1,18 @@
+package com.reveria.userservice.dto.request.profile;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchProfileRequest {
+
+    public static final int MAX_UUIDS = 500;
+
+    @NotEmpty(message = "At least one uuid is required")
+    @Size(max = MAX_UUIDS, message = "At most " + MAX_UUIDS + " uuids per request")
+    private List<@NotBlank(message = "Uuid must not be blank") String> uuids;
+}
@@ -0,0 +1,31 @@
+package com.reveria.userservice.dto.request.profile;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class InteractionCheckRequest {
+
+    public static final int MAX_PAIRS = 5000;
+
+    @NotEmpty(message = "At least one pair is required")
+    @Size(max = MAX_PAIRS, message = "At most " + MAX_PAIRS + " pairs per request")
+    private List<@Valid Pair> pairs;
+
+    @Data
+    public static class Pair {
+
+        // The user reaching out
+        @NotBlank(message = "From uuid is required")
+        private String from;
+
+        // The user whose settings decide
+        @NotBlank(message = "To uuid is required")
+        private String to;
+    }
+}
@@ -0,0 +1,20 @@
+package com.reveria.userservice.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class AvatarUploadResponse {
+
+    private String uploadId;
+    private String uploadUrl;
+    private String method;
+    // PUT: headers to send with the body
+    private Map<String, String> headers;
+    // POST: form fields to send before the file field
+    private Map<String, String> fields;
+    private String expiresAt;
+}
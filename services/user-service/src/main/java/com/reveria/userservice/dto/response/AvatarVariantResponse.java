@@ -0,0 +1,13 @@
+package com.reveria.userservice.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AvatarVariantResponse {
+
+    private int size;
+    private String contentType;
+    private String url;
+}
@@ -0,0 +1,18 @@
+package com.reveria.userservice.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PresenceResponse {
+
+    private String uuid;
+    private boolean online;
+    // Absent for users who hide their online status
+    private Instant lastSeenAt;
+}
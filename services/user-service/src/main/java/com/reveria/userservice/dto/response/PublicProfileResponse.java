@@ -0,0 +1,24 @@
+package com.reveria.userservice.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserStatus;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PublicProfileResponse {
+
+    private String uuid;
+    private String username;
+    private String displayName;
+    private String avatarUrl;
+    // Smallest generated derivative, for lists and chat
+    private String thumbnailUrl;
+
+    // Internal lookups only: callers that know the social graph apply visibility themselves
+    private ProfileVisibility profileVisibility;
+    private UserStatus status;
+}
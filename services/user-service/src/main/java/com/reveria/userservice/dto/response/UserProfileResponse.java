@@ -16,6 +16,7 @@ public class UserProfileResponse {
     private String username;
     private String displayName;
     private String avatarUrl;
+    private List<AvatarVariantResponse> avatarVariants;
     private String bio;
     private boolean emailVerified;
     private String createdAt;
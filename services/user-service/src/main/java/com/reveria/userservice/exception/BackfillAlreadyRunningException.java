@@ -0,0 +1,16 @@
+package com.reveria.userservice.exception;
+
+import lombok.Getter;
+
+@Getter
+public class BackfillAlreadyRunningException extends RuntimeException {
+
+    private final long usersWritten;
+    private final long lastUserId;
+
+    public BackfillAlreadyRunningException(long usersWritten, long lastUserId) {
+        super("Snapshot backfill is already running");
+        this.usersWritten = usersWritten;
+        this.lastUserId = lastUserId;
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.DisabledException;
@@ -283,6 +284,37 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage(), error));
     }
 
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Void>> handleConcurrentUpdate(
+            ObjectOptimisticLockingFailureException ex,
+            HttpServletRequest request
+    ) {
+        ApiError error = ApiError.builder()
+                .code("CONCURRENT_UPDATE")
+                .path(request.getRequestURI())
+                .build();
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error("The resource was changed by another request, please retry", error));
+    }
+
+    @ExceptionHandler(BackfillAlreadyRunningException.class)
+    public ResponseEntity<ApiResponse<Void>> handleBackfillAlreadyRunning(
+            BackfillAlreadyRunningException ex,
+            HttpServletRequest request
+    ) {
+        ApiError error = ApiError.builder()
+                .code("BACKFILL_ALREADY_RUNNING")
+                .path(request.getRequestURI())
+                .details(List.of(ex.getUsersWritten() + " users written so far, up to user id " + ex.getLastUserId()))
+                .build();
+
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error(ex.getMessage(), error));
+    }
+
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<ApiResponse<Void>> handleIllegalState(
             IllegalStateException ex,
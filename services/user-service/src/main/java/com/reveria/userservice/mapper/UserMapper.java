@@ -13,6 +13,7 @@ public interface UserMapper {
     @Mapping(target = "uuid", ignore = true)
     @Mapping(target = "passwordHash", ignore = true)
     @Mapping(target = "avatarUrl", ignore = true)
+    @Mapping(target = "avatarVariants", ignore = true)
     @Mapping(target = "bio", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "emailVerified", ignore = true)
@@ -22,6 +23,7 @@ public interface UserMapper {
     @Mapping(target = "authProviders", ignore = true)
     @Mapping(target = "refreshTokens", ignore = true)
     @Mapping(target = "privacySettings", ignore = true)
+    @Mapping(target = "version", ignore = true)
     User toEntity(RegisterRequest request);
 
     AuthResponse.UserInfo toUserInfo(User user);
@@ -1,11 +1,13 @@
 package com.reveria.userservice.mapper;
 
+import com.reveria.userservice.dto.response.AvatarVariantResponse;
 import com.reveria.userservice.dto.response.LinkedProviderResponse;
 import com.reveria.userservice.dto.response.PrivacySettingsResponse;
 import com.reveria.userservice.dto.response.UserProfileResponse;
 import com.reveria.userservice.model.entity.AuthProvider;
 import com.reveria.userservice.model.entity.User;
 import com.reveria.userservice.model.entity.UserPrivacySettings;
+import com.reveria.userservice.util.AvatarVariants;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Named;
@@ -19,6 +21,7 @@ public interface UserProfileMapper {
 
     @Mapping(target = "createdAt", source = "createdAt", qualifiedByName = "formatDateTime")
     @Mapping(target = "linkedProviders", source = "authProviders", qualifiedByName = "mapProviders")
+    @Mapping(target = "avatarVariants", expression = "java(mapAvatarVariants(user.getAvatarUrl(), user.getAvatarVariants()))")
     UserProfileResponse toProfileResponse(User user);
 
     @Mapping(target = "showOnlineStatus", source = "showOnlineStatus")
@@ -40,6 +43,17 @@ public interface UserProfileMapper {
                 .toList();
     }
 
+    default List<AvatarVariantResponse> mapAvatarVariants(String avatarUrl, String spec) {
+        if (avatarUrl == null || spec == null) return null;
+        return AvatarVariants.parse(spec).stream()
+                .map(v -> AvatarVariantResponse.builder()
+                        .size(v.size())
+                        .contentType(v.contentType())
+                        .url(AvatarVariants.locate(avatarUrl, v))
+                        .build())
+                .toList();
+    }
+
     default LinkedProviderResponse toLinkedProviderResponse(AuthProvider provider, boolean canUnlink) {
         return LinkedProviderResponse.builder()
                 .provider(provider.getProvider())
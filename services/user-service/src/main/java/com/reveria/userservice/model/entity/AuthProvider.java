@@ -38,6 +38,20 @@ public class AuthProvider {
 
     private LocalDateTime linkedAt;
 
+    // Profile picture as last reported by the provider at login, and our mirrored copy of it
+    @Column(length = 2048)
+    private String pictureUrl;
+
+    private String pictureMirrorUrl;
+
+    // Validators from the last fetch, sent back on conditional rechecks
+    private String pictureEtag;
+
+    private String pictureLastModified;
+
+    // When the picture is next fetched or rechecked; null once there is nothing to mirror
+    private LocalDateTime pictureCheckAt;
+
     @PrePersist
     public void prePersist() {
         if (linkedAt == null) {
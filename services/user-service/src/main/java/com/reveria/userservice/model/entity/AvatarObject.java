@@ -0,0 +1,50 @@
+package com.reveria.userservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored avatar image, keyed by the SHA-256 of its bytes (or a random key of the same shape
+ * for direct uploads, whose bytes this service never sees), with the number of users that
+ * reference it. Objects at zero references are removed by AvatarStore's sweep after a grace
+ * period.
+ */
+@Entity
+@Table(name = "avatar_objects", indexes = {
+        @Index(name = "idx_avatar_objects_released", columnList = "refCount, releasedAt")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvatarObject {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(nullable = false)
+    private Integer refCount;
+
+    // Derivatives generated for this object, see AvatarVariants
+    private String variants;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    // When refCount last dropped to zero
+    private LocalDateTime releasedAt;
+}
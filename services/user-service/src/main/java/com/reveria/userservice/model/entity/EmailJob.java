@@ -0,0 +1,52 @@
+package com.reveria.userservice.model.entity;
+
+import com.reveria.userservice.model.enums.EmailJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "email_jobs", indexes = {
+        @Index(name = "idx_email_jobs_status_next_attempt", columnList = "status, nextAttemptAt")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailJob implements LeasedJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private EmailJobStatus status = EmailJobStatus.PENDING;
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Set while a worker owns the job; an expired lease makes it claimable again
+    private LocalDateTime lockedUntil;
+
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package com.reveria.userservice.model.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * A queue row worked off in the background under a lease; see LeasedJobQueue.
+ */
+public interface LeasedJob {
+
+    Integer getAttempts();
+
+    void setAttempts(Integer attempts);
+
+    void setNextAttemptAt(LocalDateTime nextAttemptAt);
+
+    void setLockedUntil(LocalDateTime lockedUntil);
+
+    void setLastError(String lastError);
+}
@@ -0,0 +1,54 @@
+package com.reveria.userservice.model.entity;
+
+import com.reveria.userservice.model.enums.UserEventType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_partition_id", columnList = "partitionNo, id")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String eventId;
+
+    @Column(nullable = false)
+    private String aggregateKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UserEventType eventType;
+
+    @Column(nullable = false)
+    private Integer partitionNo;
+
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    private String schemaId;
+
+    // Target topic; null means the user-events topic
+    private String topic;
+
+    // Set while a relay is sending the row; an expired lease makes it claimable again
+    private LocalDateTime lockedUntil;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
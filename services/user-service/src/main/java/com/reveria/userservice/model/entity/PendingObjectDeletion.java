@@ -0,0 +1,43 @@
+package com.reveria.userservice.model.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A storage object waiting to be removed by ObjectDeletionQueue.
+ */
+@Entity
+@Table(name = "pending_object_deletions", indexes = {
+        @Index(name = "idx_pending_object_deletions_next_attempt", columnList = "nextAttemptAt")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingObjectDeletion implements LeasedJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Set while a worker owns the row; an expired lease makes it claimable again
+    private LocalDateTime lockedUntil;
+
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
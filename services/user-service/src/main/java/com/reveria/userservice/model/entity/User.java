@@ -3,6 +3,7 @@ package com.reveria.userservice.model.entity;
 import com.reveria.userservice.model.enums.UserStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -39,6 +40,9 @@ public class User {
 
     private String avatarUrl;
 
+    // Resized derivatives of avatarUrl that exist in storage, see AvatarVariants
+    private String avatarVariants;
+
     private String bio;
 
     @Enumerated(EnumType.STRING)
@@ -56,6 +60,12 @@ public class User {
 
     private LocalDateTime lastLoginAt;
 
+    // Bumped on every change to the row; the profile ETags are derived from it
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private List<AuthProvider> authProviders = new ArrayList<>();
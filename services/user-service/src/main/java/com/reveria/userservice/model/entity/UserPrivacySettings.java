@@ -4,6 +4,7 @@ import com.reveria.userservice.model.enums.MessagePrivacy;
 import com.reveria.userservice.model.enums.ProfileVisibility;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -44,4 +45,10 @@ public class UserPrivacySettings {
 
     @UpdateTimestamp
     private LocalDateTime updatedAt;
+
+    // Bumped on every change to the row; the privacy ETag is derived from it
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 }
\ No newline at end of file
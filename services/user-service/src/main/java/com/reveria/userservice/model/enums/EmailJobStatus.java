@@ -0,0 +1,6 @@
+package com.reveria.userservice.model.enums;
+
+public enum EmailJobStatus {
+    PENDING,
+    FAILED
+}
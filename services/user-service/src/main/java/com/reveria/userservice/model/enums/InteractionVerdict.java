@@ -0,0 +1,8 @@
+package com.reveria.userservice.model.enums;
+
+public enum InteractionVerdict {
+    ALLOWED,
+    // Allowed only if the two users are friends, which the caller has to check
+    FRIENDS_ONLY,
+    DENIED
+}
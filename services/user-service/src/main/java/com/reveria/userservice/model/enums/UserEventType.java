@@ -12,5 +12,7 @@ public enum UserEventType {
     USER_PASSWORD_CHANGED,
     USER_OAUTH_LINKED,
     USER_OAUTH_UNLINKED,
-    USER_STATUS_CHANGED
+    USER_STATUS_CHANGED,
+    // Only used as the cause of backfilled user-snapshots records, never on user-events
+    USER_SNAPSHOT_BACKFILLED
 }
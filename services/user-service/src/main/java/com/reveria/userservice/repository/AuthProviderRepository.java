@@ -3,8 +3,12 @@ package com.reveria.userservice.repository;
 import com.reveria.userservice.model.entity.AuthProvider;
 import com.reveria.userservice.model.enums.ProviderType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +17,13 @@ public interface AuthProviderRepository extends JpaRepository<AuthProvider, Long
     Optional<AuthProvider> findByProviderAndProviderId(ProviderType provider, String providerId);
 
     boolean existsByUserIdAndProvider(Long userId, ProviderType provider);
+
+    /**
+     * Providers whose picture is due for mirroring, locked; rows another replica holds are skipped.
+     */
+    @Query(value = "SELECT * FROM auth_providers " +
+            "WHERE picture_url IS NOT NULL AND picture_check_at <= :now " +
+            "ORDER BY picture_check_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<AuthProvider> lockDuePictures(@Param("now") LocalDateTime now, @Param("limit") int limit);
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.reveria.userservice.repository;
+
+import com.reveria.userservice.model.entity.AvatarObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AvatarObjectRepository extends JpaRepository<AvatarObject, String> {
+
+    /**
+     * Takes a reference on an existing object; 0 if there is none.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE avatar_objects SET ref_count = ref_count + 1, released_at = NULL WHERE hash = :hash",
+            nativeQuery = true)
+    int acquire(@Param("hash") String hash);
+
+    /**
+     * Registers a freshly stored object with one reference. If a concurrent upload of the same
+     * bytes registered it first, takes a reference on that row instead. Returns true if this
+     * call created the row.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO avatar_objects (hash, path, content_type, size, ref_count, created_at) " +
+            "VALUES (:hash, :path, :contentType, :size, 1, now()) " +
+            "ON CONFLICT (hash) DO UPDATE SET ref_count = avatar_objects.ref_count + 1, released_at = NULL " +
+            "RETURNING (xmax = 0)",
+            nativeQuery = true)
+    boolean register(
+            @Param("hash") String hash,
+            @Param("path") String path,
+            @Param("contentType") String contentType,
+            @Param("size") long size
+    );
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE avatar_objects SET ref_count = ref_count - 1, " +
+            "released_at = CASE WHEN ref_count = 1 THEN now() ELSE released_at END " +
+            "WHERE hash = :hash AND ref_count > 0",
+            nativeQuery = true)
+    int release(@Param("hash") String hash);
+
+    @Modifying
+    @Query("UPDATE AvatarObject o SET o.variants = :variants WHERE o.hash = :hash")
+    int updateVariants(@Param("hash") String hash, @Param("variants") String variants);
+
+    /**
+     * Keyset page over every stored object, in hash order (served by the primary key).
+     */
+    @Query(value = "SELECT hash FROM avatar_objects WHERE hash > :after ORDER BY hash LIMIT :limit",
+            nativeQuery = true)
+    List<String> findHashesAfter(@Param("after") String after, @Param("limit") int limit);
+
+    /**
+     * Unreferenced objects past their grace period, locked so a concurrent acquire waits for
+     * the sweep to finish (and then uploads afresh) rather than reviving an object being deleted.
+     */
+    @Query(value = "SELECT * FROM avatar_objects " +
+            "WHERE ref_count = 0 AND released_at < :cutoff " +
+            "ORDER BY released_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<AvatarObject> lockReleased(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
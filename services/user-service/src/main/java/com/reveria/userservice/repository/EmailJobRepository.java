@@ -0,0 +1,30 @@
+package com.reveria.userservice.repository;
+
+import com.reveria.userservice.model.entity.EmailJob;
+import com.reveria.userservice.model.enums.EmailJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailJobRepository extends JpaRepository<EmailJob, Long> {
+
+    @Query(value = "SELECT * FROM email_jobs " +
+            "WHERE status = 'PENDING' " +
+            "AND next_attempt_at <= :now " +
+            "AND (locked_until IS NULL OR locked_until < :now) " +
+            "ORDER BY next_attempt_at, id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<EmailJob> lockDueBatch(
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit
+    );
+
+    long countByStatus(EmailJobStatus status);
+}
@@ -0,0 +1,63 @@
+package com.reveria.userservice.repository;
+
+import com.reveria.userservice.model.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query(value = "SELECT pg_try_advisory_xact_lock(CAST(:namespace AS INTEGER), CAST(:partition AS INTEGER))",
+            nativeQuery = true)
+    boolean tryLockPartition(
+            @Param("namespace") int namespace,
+            @Param("partition") int partition
+    );
+
+    /**
+     * Rows are matched on partition_no modulo the current partition count, so rows written while
+     * outbox.partitions had another value are still drained.
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM outbox_events " +
+            "WHERE partition_no % :partitions = :partition " +
+            "AND locked_until >= :now)",
+            nativeQuery = true)
+    boolean hasLeasedRows(
+            @Param("partition") int partition,
+            @Param("partitions") int partitions,
+            @Param("now") LocalDateTime now
+    );
+
+    @Query(value = "SELECT * FROM outbox_events " +
+            "WHERE partition_no % :partitions = :partition " +
+            "AND (locked_until IS NULL OR locked_until < :now) " +
+            "ORDER BY id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(
+            @Param("partition") int partition,
+            @Param("partitions") int partitions,
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit
+    );
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.lockedUntil = NULL WHERE e.id IN :ids")
+    int releaseLease(@Param("ids") List<Long> ids);
+
+    @Query(value = "SELECT COUNT(*) AS pending, MIN(created_at) AS oldestCreatedAt FROM outbox_events",
+            nativeQuery = true)
+    OutboxStats getStats();
+
+    interface OutboxStats {
+        Long getPending();
+        LocalDateTime getOldestCreatedAt();
+    }
+}
@@ -0,0 +1,26 @@
+package com.reveria.userservice.repository;
+
+import com.reveria.userservice.model.entity.PendingObjectDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PendingObjectDeletionRepository extends JpaRepository<PendingObjectDeletion, Long> {
+
+    @Query(value = "SELECT * FROM pending_object_deletions " +
+            "WHERE next_attempt_at <= :now " +
+            "AND (locked_until IS NULL OR locked_until < :now) " +
+            "ORDER BY next_attempt_at, id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<PendingObjectDeletion> lockDueBatch(
+            @Param("now") LocalDateTime now,
+            @Param("limit") int limit
+    );
+}
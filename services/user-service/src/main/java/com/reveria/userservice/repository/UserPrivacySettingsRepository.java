@@ -2,6 +2,8 @@ package com.reveria.userservice.repository;
 
 import com.reveria.userservice.model.entity.UserPrivacySettings;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +12,7 @@ import java.util.Optional;
 public interface UserPrivacySettingsRepository extends JpaRepository<UserPrivacySettings, Long> {
 
     Optional<UserPrivacySettings> findByUserId(Long userId);
+
+    @Query("SELECT s.version FROM UserPrivacySettings s WHERE s.user.id = :userId")
+    Optional<Long> findVersionByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -2,8 +2,14 @@ package com.reveria.userservice.repository;
 
 import com.reveria.userservice.model.entity.User;
 import com.reveria.userservice.model.enums.UserStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +17,33 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUuid(String uuid);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> lockById(@Param("id") Long id);
+
+    /**
+     * Records the derivatives generated for a stored avatar on every user still showing it
+     * (served by idx_users_avatar_url_pending).
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.avatarVariants = :variants, u.version = u.version + 1 " +
+            "WHERE u.avatarUrl = :avatarUrl AND u.avatarVariants IS NULL")
+    int updateAvatarVariants(
+            @Param("avatarUrl") String avatarUrl,
+            @Param("variants") String variants
+    );
+
+    /**
+     * Keyset page over avatar URLs in byte order, the order object stores list keys in (served by
+     * idx_users_avatar_url_c). A URL shared by several users repeats within a page.
+     */
+    @Query(value = "SELECT avatar_url FROM users " +
+            "WHERE avatar_url COLLATE \"C\" > :after " +
+            "ORDER BY avatar_url COLLATE \"C\" " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<String> findAvatarUrlsAfter(@Param("after") String after, @Param("limit") int limit);
+
     Optional<User> findByEmail(String email);
 
     Optional<User> findByUsername(String username);
@@ -18,4 +51,150 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
 
     boolean existsByUsername(String username);
+
+    /**
+     * Single prefix scan over {@code base%} (served by idx_users_username_pattern) that reports
+     * whether {@code base} itself is taken and the highest numeric suffix in use after it.
+     * The prefix must already be LIKE-escaped with backslash.
+     */
+    @Query(value = "SELECT BOOL_OR(u.username = :base) AS baseTaken, " +
+            "MAX(CAST(SUBSTRING(u.username FROM CHAR_LENGTH(:base) + 1) AS BIGINT)) " +
+            "FILTER (WHERE u.username <> :base) AS maxSuffix " +
+            "FROM users u " +
+            "WHERE u.username LIKE :prefix ESCAPE '\\' " +
+            "AND (u.username = :base OR SUBSTRING(u.username FROM CHAR_LENGTH(:base) + 1) ~ '^[0-9]{1,18}$')",
+            nativeQuery = true)
+    UsernameSuffixStats findUsernameSuffixStats(
+            @Param("base") String base,
+            @Param("prefix") String prefix
+    );
+
+    /**
+     * Public-profile fields of a batch of users in one round trip, served by the unique index on
+     * uuid. Unknown uuids are simply absent.
+     */
+    @Query(value = "SELECT u.uuid AS uuid, u.username AS username, u.display_name AS displayName, " +
+            "u.avatar_url AS avatarUrl, u.avatar_variants AS avatarVariants, u.status AS status, " +
+            "s.profile_visibility AS profileVisibility, s.show_online_status AS showOnlineStatus, " +
+            "s.allow_direct_messages AS allowDirectMessages, s.allow_friend_requests AS allowFriendRequests, " +
+            "s.message_privacy AS messagePrivacy " +
+            "FROM users u LEFT JOIN user_privacy_settings s ON s.user_id = u.id " +
+            "WHERE u.uuid = ANY(CAST(:uuids AS varchar[]))",
+            nativeQuery = true)
+    List<PublicProfileRow> findPublicProfiles(@Param("uuids") String[] uuids);
+
+    interface PublicProfileRow {
+        String getUuid();
+        String getUsername();
+        String getDisplayName();
+        String getAvatarUrl();
+        String getAvatarVariants();
+        String getStatus();
+        String getProfileVisibility();
+        Boolean getShowOnlineStatus();
+        Boolean getAllowDirectMessages();
+        Boolean getAllowFriendRequests();
+        String getMessagePrivacy();
+    }
+
+    /**
+     * What the own-profile responses are built from, without loading it: the row version plus
+     * the count and id sum of linked providers. Ids only grow, so any link or unlink changes the
+     * pair. Null if there is no such user.
+     */
+    @Query(value = "SELECT u.version AS version, COUNT(p.id) AS providerCount, " +
+            "COALESCE(SUM(p.id), 0) AS providerIdSum " +
+            "FROM users u LEFT JOIN auth_providers p ON p.user_id = u.id " +
+            "WHERE u.id = :id GROUP BY u.id, u.version",
+            nativeQuery = true)
+    ProfileVersion findProfileVersion(@Param("id") Long id);
+
+    interface ProfileVersion {
+        Long getVersion();
+        Long getProviderCount();
+        Long getProviderIdSum();
+    }
+
+    interface UsernameSuffixStats {
+        Boolean getBaseTaken();
+        Long getMaxSuffix();
+    }
+
+    /**
+     * Keyset page for the snapshot backfill. The user rows are held FOR SHARE until the page's
+     * outbox rows commit, so a concurrent write path (which locks the same row) orders its own
+     * snapshot after the backfilled one.
+     */
+    @Query(value = "SELECT u.id AS id, u.uuid AS uuid, u.username AS username, u.display_name AS displayName, " +
+            "u.avatar_url AS avatarUrl, u.bio AS bio, u.status AS status, " +
+            "p.profile_visibility AS profileVisibility, p.show_online_status AS showOnlineStatus, " +
+            "p.allow_direct_messages AS allowDirectMessages, p.allow_friend_requests AS allowFriendRequests, " +
+            "p.message_privacy AS messagePrivacy " +
+            "FROM users u " +
+            "LEFT JOIN user_privacy_settings p ON p.user_id = u.id " +
+            "WHERE u.id > :afterId " +
+            "ORDER BY u.id " +
+            "LIMIT :limit " +
+            "FOR SHARE OF u",
+            nativeQuery = true)
+    List<SnapshotRow> lockSnapshotPage(
+            @Param("afterId") long afterId,
+            @Param("limit") int limit
+    );
+
+    interface SnapshotRow {
+        Long getId();
+        String getUuid();
+        String getUsername();
+        String getDisplayName();
+        String getAvatarUrl();
+        String getBio();
+        String getStatus();
+        String getProfileVisibility();
+        Boolean getShowOnlineStatus();
+        Boolean getAllowDirectMessages();
+        Boolean getAllowFriendRequests();
+        String getMessagePrivacy();
+    }
+
+    /**
+     * Keyset page of users that username search may return: active, with a public profile.
+     * Rank is the last login (or registration) in epoch seconds.
+     */
+    @Query(value = "SELECT u.id AS id, u.uuid AS uuid, u.username AS username, u.display_name AS displayName, " +
+            "u.status AS status, s.profile_visibility AS profileVisibility, " +
+            "CAST(EXTRACT(EPOCH FROM COALESCE(u.last_login_at, u.created_at)) AS bigint) AS rank " +
+            "FROM users u " +
+            "LEFT JOIN user_privacy_settings s ON s.user_id = u.id " +
+            "WHERE u.id > :afterId AND u.status = 'ACTIVE' " +
+            "AND COALESCE(s.profile_visibility, 'PUBLIC') = 'PUBLIC' " +
+            "ORDER BY u.id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<SearchRow> findSearchPage(
+            @Param("afterId") long afterId,
+            @Param("limit") int limit
+    );
+
+    /**
+     * The same fields for specific users, whatever their status or visibility.
+     */
+    @Query(value = "SELECT u.id AS id, u.uuid AS uuid, u.username AS username, u.display_name AS displayName, " +
+            "u.status AS status, s.profile_visibility AS profileVisibility, " +
+            "CAST(EXTRACT(EPOCH FROM COALESCE(u.last_login_at, u.created_at)) AS bigint) AS rank " +
+            "FROM users u " +
+            "LEFT JOIN user_privacy_settings s ON s.user_id = u.id " +
+            "WHERE u.uuid = ANY(CAST(:uuids AS varchar[]))",
+            nativeQuery = true)
+    List<SearchRow> findSearchRows(@Param("uuids") String[] uuids);
+
+    interface SearchRow {
+        Long getId();
+        String getUuid();
+        String getUsername();
+        String getDisplayName();
+        String getStatus();
+        String getProfileVisibility();
+        Long getRank();
+    }
 }
@@ -16,6 +16,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
     private final ModeratorRepository moderatorRepository;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Override
     public UserDetails loadUserByUsername(String identifier) throws UsernameNotFoundException {
@@ -27,10 +28,16 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
     public UserDetails loadUserByUuid(String uuid) {
+        UserPrincipal cached = userPrincipalCache.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = userPrincipalCache.generation();
         User user = userRepository.findByUuid(uuid)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + uuid));
 
-        return new UserPrincipal(user);
+        return userPrincipalCache.put(user, generation);
     }
 
     public UserDetails loadModeratorByUuid(String uuid) {
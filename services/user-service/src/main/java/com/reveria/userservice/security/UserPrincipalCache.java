@@ -0,0 +1,125 @@
+package com.reveria.userservice.security;
+
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.service.LocalUserCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of user principals by uuid, so JWT authentication doesn't hit Postgres on
+ * every request. Entries are detached copies holding only scalar fields; they are evicted by
+ * the invalidation bus on any change that affects authentication or /api/auth/me, and expire
+ * after cache.principal.ttl-ms as a backstop.
+ */
+@Component
+public class UserPrincipalCache implements LocalUserCache {
+
+    private static final Set<UserEventType> INVALIDATED_BY = EnumSet.of(
+            UserEventType.USER_DEACTIVATED,
+            UserEventType.USER_EMAIL_VERIFIED,
+            UserEventType.USER_PASSWORD_CHANGED,
+            UserEventType.USER_PROFILE_UPDATED,
+            UserEventType.USER_AVATAR_UPDATED,
+            UserEventType.USER_AVATAR_DELETED
+    );
+
+    private record Entry(UserPrincipal principal, long expiresAtMillis) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Bumped on every eviction; a load that raced with one is served but not cached
+    private final AtomicLong evictions = new AtomicLong();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public UserPrincipalCache(@Value("${cache.principal.ttl-ms:30000}") long ttlMillis,
+                              @Value("${cache.principal.max-entries:100000}") int maxEntries,
+                              MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        Gauge.builder("user_cache.size", entries, Map::size)
+                .tag("cache", name())
+                .description("Entries in a local user cache")
+                .register(meterRegistry);
+    }
+
+    public UserPrincipal get(String uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() < System.currentTimeMillis()) {
+            entries.remove(uuid, entry);
+            return null;
+        }
+        return entry.principal();
+    }
+
+    /**
+     * Read before loading the user, then pass to {@link #put}.
+     */
+    public long generation() {
+        return evictions.get();
+    }
+
+    public UserPrincipal put(User user, long generation) {
+        UserPrincipal principal = new UserPrincipal(detachedCopy(user));
+        if (entries.size() >= maxEntries) {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.expiresAtMillis() < now);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+        Entry entry = new Entry(principal, System.currentTimeMillis() + ttlMillis);
+        entries.put(user.getUuid(), entry);
+        if (evictions.get() != generation) {
+            entries.remove(user.getUuid(), entry);
+        }
+        return principal;
+    }
+
+    @Override
+    public String name() {
+        return "principals";
+    }
+
+    @Override
+    public Set<UserEventType> invalidatedBy() {
+        return INVALIDATED_BY;
+    }
+
+    @Override
+    public void evict(String userUuid) {
+        evictions.incrementAndGet();
+        entries.remove(userUuid);
+    }
+
+    private static User detachedCopy(User user) {
+        return User.builder()
+                .id(user.getId())
+                .uuid(user.getUuid())
+                .email(user.getEmail())
+                .passwordHash(user.getPasswordHash())
+                .username(user.getUsername())
+                .displayName(user.getDisplayName())
+                .avatarUrl(user.getAvatarUrl())
+                .bio(user.getBio())
+                .status(user.getStatus())
+                .emailVerified(user.getEmailVerified())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .lastLoginAt(user.getLastLoginAt())
+                .version(user.getVersion())
+                .build();
+    }
+}
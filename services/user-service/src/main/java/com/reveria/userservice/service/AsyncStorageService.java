@@ -0,0 +1,200 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.StorageIoConfig;
+import com.reveria.userservice.exception.StorageException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking front to {@link StorageService}. Each operation runs on a dedicated I/O pool and
+ * returns a CompletableFuture, so callers can keep several object operations in flight, or
+ * overlap them with database and CPU work, without tying up request or worker threads.
+ *
+ * Every future completes within storage.io.timeout-ms, queueing included: on expiry it fails
+ * with a TimeoutException and the running call is interrupted, which the MinIO client honours
+ * while it waits for the response. A full queue fails the future at once with a
+ * StorageException instead of blocking the caller. Latency histograms are recorded per
+ * operation and outcome under storage.operation.latency.
+ */
+@Service
+@Slf4j
+public class AsyncStorageService {
+
+    private static final List<String> OPERATIONS = List.of("upload", "download", "stat", "delete", "delete_batch");
+    private static final List<String> OUTCOMES = List.of("success", "failure", "timeout");
+
+    /**
+     * One object of a batch upload.
+     */
+    public record Upload(String path, byte[] content, String contentType, String cacheControl) {
+    }
+
+    private final StorageService storageService;
+    private final StorageIoConfig config;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, Timer> timers = new HashMap<>();
+    private final Counter rejectedCounter;
+
+    public AsyncStorageService(StorageService storageService, StorageIoConfig config, MeterRegistry meterRegistry) {
+        this.storageService = storageService;
+        this.config = config;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "storage-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        for (String operation : OPERATIONS) {
+            for (String outcome : OUTCOMES) {
+                timers.put(operation + "/" + outcome, Timer.builder("storage.operation.latency")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .description("Asynchronous storage operations, from submission to completion")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+            }
+        }
+        this.rejectedCounter = Counter.builder("storage.operation.rejected")
+                .description("Storage operations refused because the I/O queue was full")
+                .register(meterRegistry);
+        Gauge.builder("storage.operation.queued", executor, pool -> pool.getQueue().size())
+                .description("Storage operations waiting for an I/O thread")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<String> upload(String path, byte[] content, String contentType, String cacheControl) {
+        return submit("upload", config.getTimeoutMs(), () -> cacheControl == null
+                ? storageService.upload(path, new ByteArrayInputStream(content), content.length, contentType)
+                : storageService.upload(path, new ByteArrayInputStream(content), content.length, contentType, cacheControl));
+    }
+
+    /**
+     * Starts every upload at once (the pool bounds how many run together) and completes when all
+     * have finished. Like {@link StorageService#deleteAll}, it returns the paths that failed,
+     * with the reason, rather than failing as a whole.
+     */
+    public CompletableFuture<Map<String, String>> uploadAll(List<Upload> uploads) {
+        Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+        for (Upload upload : uploads) {
+            pending.put(upload.path(), upload(upload.path(), upload.content(), upload.contentType(), upload.cacheControl()));
+        }
+        CompletableFuture<?>[] settled = pending.values().stream()
+                .map(future -> future.handle((url, error) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(settled).thenApply(ignored -> {
+            Map<String, String> failed = new LinkedHashMap<>();
+            pending.forEach((path, future) -> {
+                Throwable error = future.handle((url, e) -> e).join();
+                if (error != null) {
+                    failed.put(path, reason(error));
+                }
+            });
+            return failed;
+        });
+    }
+
+    public CompletableFuture<byte[]> download(String path) {
+        return submit("download", config.getTimeoutMs(), () -> {
+            try (InputStream in = storageService.download(path)) {
+                return in.readAllBytes();
+            }
+        });
+    }
+
+    public CompletableFuture<StorageService.ObjectInfo> stat(String path) {
+        return submit("stat", config.getTimeoutMs(), () -> storageService.stat(path));
+    }
+
+    public CompletableFuture<Void> delete(String path) {
+        return submit("delete", config.getTimeoutMs(), () -> {
+            storageService.delete(path);
+            return null;
+        });
+    }
+
+    /**
+     * {@link StorageService#deleteAll} off the caller's thread, bounded by storage.io.batch-timeout-ms.
+     */
+    public CompletableFuture<Map<String, String>> deleteAll(Collection<String> paths) {
+        List<String> copy = List.copyOf(paths);
+        return submit("delete_batch", config.getBatchTimeoutMs(), () -> storageService.deleteAll(copy));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private <T> CompletableFuture<T> submit(String operation, long timeoutMs, Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long submittedAt = System.nanoTime();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                if (result.isDone()) {
+                    // Timed out while queued
+                    return;
+                }
+                try {
+                    result.complete(work.call());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } catch (Exception e) {
+                    result.completeExceptionally(new StorageException("Storage " + operation + " failed", e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            result.completeExceptionally(new StorageException("Storage I/O queue is full"));
+            return result;
+        }
+        result.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            String outcome = cause == null ? "success" : cause instanceof TimeoutException ? "timeout" : "failure";
+            timers.get(operation + "/" + outcome).record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            if (cause instanceof TimeoutException) {
+                log.warn("Storage {} timed out after {} ms", operation, timeoutMs);
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static String reason(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+}
@@ -1,5 +1,7 @@
 package com.reveria.userservice.service;
 
+import com.reveria.userservice.dto.event.UserLoggedInPayload;
+import com.reveria.userservice.dto.event.UserRegisteredPayload;
 import com.reveria.userservice.dto.SessionInfo;
 import com.reveria.userservice.dto.request.auth.LoginRequest;
 import com.reveria.userservice.dto.request.auth.RegisterRequest;
@@ -27,10 +29,11 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -46,8 +49,11 @@ public class AuthService {
     private final AuthMapper authMapper;
     private final SessionMapper sessionMapper;
     private final EmailVerificationService emailVerificationService;
+    private final EmailSendGovernor emailSendGovernor;
     private final LoginAttemptService loginAttemptService;
     private final UserEventPublisher userEventPublisher;
+    private final UserSnapshotPublisher userSnapshotPublisher;
+    private final LastLoginService lastLoginService;
 
     //REGISTER
 
@@ -73,12 +79,31 @@ public class AuthService {
         user = userRepository.save(user);
         log.info("New user registered: {}", user.getUsername());
         userEventPublisher.publish(UserEventType.USER_REGISTERED, user.getUuid(),
-                Map.of("email", user.getEmail(), "username", user.getUsername()));
+                new UserRegisteredPayload(user.getEmail(), user.getUsername(), null));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_REGISTERED);
         emailVerificationService.sendVerificationEmail(user);
+        recordVerificationEmailAfterCommit(user.getEmail());
 
         return generateAuthResponse(user, sessionInfo, false);
     }
 
+    /**
+     * A rolled-back registration sent no email, so it must not use up the dedupe window; the
+     * Redis round trip also stays out of the transaction.
+     */
+    private void recordVerificationEmailAfterCommit(String email) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            emailSendGovernor.record(EmailTemplateRenderer.EMAIL_VERIFICATION, email);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                emailSendGovernor.record(EmailTemplateRenderer.EMAIL_VERIFICATION, email);
+            }
+        });
+    }
+
     //LOGIN
 
     @Transactional
@@ -104,12 +129,11 @@ public class AuthService {
                     AccountType.USER
             );
 
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
+            lastLoginService.recordUserLogin(user.getId(), LocalDateTime.now());
 
             log.info("User logged in: {}", user.getUsername());
             userEventPublisher.publish(UserEventType.USER_LOGGED_IN, user.getUuid(),
-                    Map.of("ipAddress", sessionInfo.ipAddress(), "provider", "LOCAL"));
+                    new UserLoggedInPayload(sessionInfo.ipAddress(), "LOCAL"));
 
             return generateAuthResponse(user, sessionInfo, request.isRememberMe());
         } catch (BadCredentialsException e) {
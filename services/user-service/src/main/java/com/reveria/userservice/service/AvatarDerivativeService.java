@@ -0,0 +1,443 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarDerivativeConfig;
+import com.reveria.userservice.exception.StorageException;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import com.reveria.userservice.repository.UserRepository;
+import com.reveria.userservice.util.AvatarVariants;
+import com.reveria.userservice.util.AvatarVariants.Variant;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates resized avatar derivatives after an upload commits.
+ *
+ * Each job downloads the original once, reads its dimensions from the header (rejecting
+ * anything over the pixel limits before decoding), decodes a centred square with source
+ * subsampling so the raster is never much larger than twice the biggest variant, then scales
+ * down through the configured sizes, largest first, each from the previous one. Every size is
+ * written in every format whose ImageIO writer works here; uploads are asynchronous and overlap
+ * with encoding the variants after them. WebP is written by native libwebp but read by the
+ * pure-Java reader, so untrusted uploads never reach native code. The result is recorded on the
+ * stored object and on the users showing it, unless the object was swept meanwhile, in which
+ * case the files are removed again. Since objects are shared by content hash, a job runs once
+ * per distinct image rather than once per upload.
+ *
+ * Jobs run on a fixed pool with a bounded queue. When it is full the upload keeps just the
+ * original, which clients fall back to.
+ */
+@Service
+@Slf4j
+public class AvatarDerivativeService {
+
+    enum Stage { DOWNLOAD, DECODE, RESIZE, ENCODE, UPLOAD }
+
+    private static final String NATIVE_WEBP_PACKAGE = "com.luciad.imageio.webp.";
+
+    private final StorageService storageService;
+    private final AsyncStorageService asyncStorageService;
+    private final UserRepository userRepository;
+    private final AvatarObjectRepository avatarObjectRepository;
+    private final AvatarDerivativeConfig config;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    private final List<String> formats;
+    private final List<Integer> sizes;
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter staleCounter;
+
+    public AvatarDerivativeService(StorageService storageService,
+                                   AsyncStorageService asyncStorageService,
+                                   UserRepository userRepository,
+                                   AvatarObjectRepository avatarObjectRepository,
+                                   AvatarDerivativeConfig config,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.storageService = storageService;
+        this.asyncStorageService = asyncStorageService;
+        this.userRepository = userRepository;
+        this.avatarObjectRepository = avatarObjectRepository;
+        this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.formats = config.getFormats().stream()
+                .filter(this::canEncode)
+                .toList();
+        this.sizes = config.getSizes().stream()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-derivatives-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("avatar.derivatives.stage")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .description("Time spent in one stage of the avatar derivative pipeline")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+        this.completedCounter = jobCounter(meterRegistry, "completed");
+        this.failedCounter = jobCounter(meterRegistry, "failed");
+        this.rejectedCounter = jobCounter(meterRegistry, "rejected");
+        this.staleCounter = jobCounter(meterRegistry, "stale");
+        Gauge.builder("avatar.derivatives.queued", workers, executor -> executor.getQueue().size())
+                .description("Avatar derivative jobs waiting for a worker")
+                .register(meterRegistry);
+    }
+
+    private static Counter jobCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("avatar.derivatives.jobs")
+                .tag("outcome", outcome)
+                .description("Avatar derivative jobs by outcome")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues derivative generation for a newly stored avatar object, once the surrounding
+     * transaction (if any) has committed.
+     */
+    public void schedule(String hash, String originalPath, String avatarUrl) {
+        if (!config.isEnabled() || formats.isEmpty()) {
+            return;
+        }
+        Runnable submit = () -> submit(hash, originalPath, avatarUrl);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit.run();
+                }
+            });
+        } else {
+            submit.run();
+        }
+    }
+
+    /**
+     * Storage paths of every derivative the spec says exists for this original.
+     */
+    public List<String> derivativePaths(String originalPath, String spec) {
+        return AvatarVariants.parse(spec).stream()
+                .map(variant -> AvatarVariants.locate(originalPath, variant))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void submit(String hash, String originalPath, String avatarUrl) {
+        try {
+            workers.execute(() -> process(hash, originalPath, avatarUrl));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Avatar derivative queue full, keeping only the original {}", originalPath);
+        }
+    }
+
+    void process(String hash, String originalPath, String avatarUrl) {
+        List<Variant> written = new ArrayList<>();
+        // Each upload runs while the next variant is encoded
+        Map<Variant, CompletableFuture<String>> uploads = new LinkedHashMap<>();
+        try {
+            byte[] original = time(Stage.DOWNLOAD, () -> {
+                try (InputStream in = storageService.download(originalPath)) {
+                    return in.readAllBytes();
+                }
+            });
+            BufferedImage square = time(Stage.DECODE, () -> decodeSquare(original));
+
+            BufferedImage current = square;
+            for (int size : sizes) {
+                if (size > square.getWidth()) {
+                    continue;
+                }
+                BufferedImage source = current;
+                current = time(Stage.RESIZE, () -> scale(source, size));
+                for (String format : formats) {
+                    Variant variant = new Variant(size, format);
+                    BufferedImage image = current;
+                    byte[] encoded = time(Stage.ENCODE, () -> encode(image, format));
+                    uploads.put(variant, asyncStorageService.upload(AvatarVariants.locate(originalPath, variant),
+                            encoded, variant.contentType(), null));
+                }
+            }
+            time(Stage.UPLOAD, () -> awaitUploads(uploads, written));
+
+            String spec = AvatarVariants.format(written);
+            Boolean recorded = transactionTemplate.execute(status -> {
+                if (avatarObjectRepository.updateVariants(hash, spec) == 0) {
+                    return false;
+                }
+                userRepository.updateAvatarVariants(avatarUrl, spec);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(recorded)) {
+                staleCounter.increment();
+                deleteQuietly(originalPath, written);
+                log.info("Avatar {} was removed while its derivatives were generated, discarded them", originalPath);
+                return;
+            }
+            completedCounter.increment();
+            log.info("Generated {} avatar derivatives for {}", written.size(), originalPath);
+        } catch (Exception e) {
+            failedCounter.increment();
+            // Uploads still in flight when a later stage failed have to be cleaned up as well
+            uploads.forEach((variant, upload) -> {
+                if (!written.contains(variant) && upload.handle((url, error) -> error == null).join()) {
+                    written.add(variant);
+                }
+            });
+            deleteQuietly(originalPath, written);
+            log.warn("Avatar derivatives failed for {}: {}", originalPath, e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the centred square of the image, subsampled towards twice the largest variant.
+     */
+    BufferedImage decodeSquare(byte[] original) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(original))) {
+            ImageReader reader = javaReader(ImageIO.getImageReaders(input));
+            if (reader == null) {
+                throw new IOException("No decoder for avatar image");
+            }
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0
+                        || width > config.getMaxDimension() || height > config.getMaxDimension()
+                        || (long) width * height > config.getMaxPixels()) {
+                    throw new IOException("Avatar dimensions " + width + "x" + height + " exceed the decode limits");
+                }
+
+                int side = Math.min(width, height);
+                int largest = sizes.isEmpty() ? side : sizes.get(0);
+                int subsampling = Math.max(1, side / (largest * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The first reader that isn't backed by native code (webp-imageio's libwebp reader), or null.
+     */
+    private static ImageReader javaReader(Iterator<ImageReader> readers) {
+        ImageReader chosen = null;
+        while (readers.hasNext()) {
+            ImageReader reader = readers.next();
+            if (chosen == null && !reader.getClass().getName().startsWith(NATIVE_WEBP_PACKAGE)) {
+                chosen = reader;
+            } else {
+                reader.dispose();
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Whether the format has a writer that actually works here: webp-imageio's only fails once
+     * its native library is loaded on a platform it doesn't ship one for.
+     */
+    private boolean canEncode(String format) {
+        if (!ImageIO.getImageWritersBySuffix(format).hasNext()) {
+            log.warn("No ImageIO writer for avatar format '{}', skipping it", format);
+            return false;
+        }
+        try {
+            encode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), format);
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            log.warn("ImageIO writer for avatar format '{}' doesn't work here, skipping it: {}", format, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Halves with bilinear filtering until within 2x of the target, then does the last step, which
+     * keeps quality close to a proper area filter at a fraction of the cost.
+     */
+    static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage current = source;
+        int side = Math.min(current.getWidth(), current.getHeight());
+        while (side / 2 >= size) {
+            side /= 2;
+            current = draw(current, side);
+        }
+        if (side != size || current.getWidth() != current.getHeight()) {
+            current = draw(current, size);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int side) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage target = new BufferedImage(side, side, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, side, side, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    byte[] encode(BufferedImage image, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersBySuffix(format).next();
+        BufferedImage output = image;
+        if (!"webp".equals(format) && !"png".equals(format) && image.getColorModel().hasAlpha()) {
+            output = flatten(image);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0) {
+                    param.setCompressionType(lossyType(types));
+                }
+                param.setCompressionQuality(config.getQuality());
+            }
+            writer.write(null, new IIOImage(output, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String lossyType(String[] types) {
+        for (String type : types) {
+            if (type.toLowerCase(Locale.ROOT).contains("lossy")) {
+                return type;
+            }
+        }
+        return types[0];
+    }
+
+    private static BufferedImage flatten(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Waits for every upload, collecting the variants that were stored, then fails if any wasn't.
+     */
+    private static Void awaitUploads(Map<Variant, CompletableFuture<String>> uploads, List<Variant> written) {
+        RuntimeException failure = null;
+        for (Map.Entry<Variant, CompletableFuture<String>> upload : uploads.entrySet()) {
+            try {
+                upload.getValue().join();
+                written.add(upload.getKey());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = new StorageException("Failed to upload avatar derivative", e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    private void deleteQuietly(String originalPath, List<Variant> variants) {
+        if (variants.isEmpty()) {
+            return;
+        }
+        List<String> paths = variants.stream()
+                .map(variant -> AvatarVariants.locate(originalPath, variant))
+                .toList();
+        storageService.deleteAll(paths).forEach((path, error) ->
+                log.warn("Failed to delete avatar derivative {}: {}", path, error));
+    }
+
+    @FunctionalInterface
+    private interface StageWork<T> {
+        T run() throws Exception;
+    }
+
+    private <T> T time(Stage stage, StageWork<T> work) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return work.run();
+        } finally {
+            stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
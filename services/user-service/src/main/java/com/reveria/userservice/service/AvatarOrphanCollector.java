@@ -0,0 +1,338 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarGcConfig;
+import com.reveria.userservice.model.entity.AvatarObject;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles the avatar bucket with the database and deletes objects nothing refers to.
+ *
+ * Every key under avatars/ is reduced to the stem of the original it belongs to (derivatives
+ * share their original's stem). The bucket listing arrives in key order, and two keyset scans
+ * produce the referenced stems in the same order: avatar_objects by hash, and users.avatar_url
+ * in byte order. A sorted merge of the three streams then finds unreferenced stems while holding
+ * only one page of each, however many objects there are. Both orders are checked as the merge
+ * goes; a mismatch aborts the run rather than risk deleting a referenced object.
+ *
+ * Staged uploads under staging/avatars/ are never referenced, so every one past the grace
+ * period is deleted. Objects younger than the grace period are skipped, so uploads that haven't
+ * been registered yet are safe. Content-addressed candidates are re-checked against the database and the store
+ * just before deletion, since the same key can be written again by an upload of the same bytes.
+ * Unrecognised keys are counted and left alone. One replica runs at a time, under a Redis lock.
+ */
+@Service
+@Slf4j
+public class AvatarOrphanCollector {
+
+    static final String PREFIX = "avatars/";
+    // Where uploads were staged before staging/ was split off the public prefix
+    private static final String LEGACY_STAGING_PREFIX = "avatars/staging/";
+    private static final String LOCK_KEY = "avatar-gc:lock";
+
+    // Group 1 is the stem: content-addressed avatars/{hash}, legacy avatars/{userUuid}/{uuid}
+    private static final Pattern CONTENT_KEY = Pattern.compile("(avatars/([0-9a-f]{64}))(?:_\\d+)?\\.[a-z]+");
+    private static final Pattern LEGACY_KEY = Pattern.compile("(avatars/[0-9a-f-]{36}/[0-9a-f-]{36})(?:_\\d+)?\\.[a-z]+");
+
+    record Result(long scanned, long orphans, long reclaimedBytes) {
+    }
+
+    private final StorageService storageService;
+    private final AvatarObjectRepository avatarObjectRepository;
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final AvatarGcConfig config;
+    private final MaintenanceExecutor maintenanceExecutor;
+
+    private final Timer runTimer;
+    private final Counter scannedCounter;
+    private final Counter orphanCounter;
+    private final Counter reclaimedCounter;
+    private final Counter unrecognisedCounter;
+
+    public AvatarOrphanCollector(StorageService storageService,
+                                 AvatarObjectRepository avatarObjectRepository,
+                                 UserRepository userRepository,
+                                 StringRedisTemplate redisTemplate,
+                                 AvatarGcConfig config,
+                                 MaintenanceExecutor maintenanceExecutor,
+                                 MeterRegistry meterRegistry) {
+        this.storageService = storageService;
+        this.avatarObjectRepository = avatarObjectRepository;
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.runTimer = Timer.builder("avatar.gc.duration")
+                .description("Time for one pass of the avatar orphan collector")
+                .register(meterRegistry);
+        this.scannedCounter = Counter.builder("avatar.gc.scanned")
+                .description("Objects listed by the avatar orphan collector")
+                .register(meterRegistry);
+        this.orphanCounter = Counter.builder("avatar.gc.orphans")
+                .description("Unreferenced avatar objects found")
+                .register(meterRegistry);
+        this.reclaimedCounter = Counter.builder("avatar.gc.reclaimed")
+                .baseUnit("bytes")
+                .description("Storage freed by deleting unreferenced avatar objects")
+                .register(meterRegistry);
+        this.unrecognisedCounter = Counter.builder("avatar.gc.unrecognised")
+                .description("Keys under avatars/ that match no known layout and were left alone")
+                .register(meterRegistry);
+    }
+
+    // A pass lists the whole bucket, so it runs on the maintenance threads, not the scheduler's
+    @Scheduled(cron = "${avatar.gc.cron:0 30 3 * * *}")
+    public void scheduleCollect() {
+        if (config.isEnabled()) {
+            maintenanceExecutor.submit("avatar-gc", this::collect);
+        }
+    }
+
+    public void collect() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, token, Duration.ofMinutes(config.getLockMinutes()));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("Avatar orphan collection already running on another replica");
+            return;
+        }
+        try {
+            Result result = runTimer.record(() -> run(Instant.now()));
+            log.info("Avatar orphan collection scanned {} objects, {} orphans, {} bytes reclaimed{}",
+                    result.scanned(), result.orphans(), result.reclaimedBytes(), config.isDryRun() ? " (dry run)" : "");
+        } catch (RuntimeException e) {
+            log.error("Avatar orphan collection aborted: {}", e.getMessage());
+        } finally {
+            if (token.equals(redisTemplate.opsForValue().get(LOCK_KEY))) {
+                redisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    Result run(Instant now) {
+        Instant cutoff = now.minus(config.getGraceHours(), ChronoUnit.HOURS);
+        String urlPrefix = storageService.urlFor("");
+        StemCursor storedObjects = new StemCursor(avatarObjectRepository::findHashesAfter, "",
+                hash -> false, hash -> PREFIX + hash);
+        // Stored URLs are contiguous in byte order, starting right after the bare prefix
+        StemCursor userAvatars = new StemCursor(userRepository::findAvatarUrlsAfter, urlPrefix,
+                url -> !url.startsWith(urlPrefix), url -> stemOf(url.substring(urlPrefix.length())));
+
+        long scanned = 0;
+        long orphans = 0;
+        long reclaimed = 0;
+        String previousStem = null;
+        List<StorageService.ListedObject> candidates = new ArrayList<>();
+
+        try (Stream<StorageService.ListedObject> listing = storageService.list(PREFIX)) {
+            Iterator<StorageService.ListedObject> objects = listing.iterator();
+            while (objects.hasNext()) {
+                StorageService.ListedObject object = objects.next();
+                scanned++;
+                if (!object.lastModified().isBefore(cutoff)) {
+                    continue;
+                }
+                if (object.path().startsWith(LEGACY_STAGING_PREFIX)) {
+                    // Abandoned direct or streamed uploads; staging keys are never referenced
+                    candidates.add(object);
+                } else {
+                    String stem = stemOf(object.path());
+                    if (stem == null) {
+                        unrecognisedCounter.increment();
+                        continue;
+                    }
+                    if (previousStem != null && stem.compareTo(previousStem) < 0) {
+                        throw new IllegalStateException("Bucket listing out of order at " + object.path());
+                    }
+                    previousStem = stem;
+                    if (storedObjects.contains(stem) || userAvatars.contains(stem)) {
+                        continue;
+                    }
+                    candidates.add(object);
+                }
+                if (candidates.size() >= config.getDeleteBatchSize()) {
+                    Result flushed = flush(candidates, cutoff);
+                    orphans += flushed.orphans();
+                    reclaimed += flushed.reclaimedBytes();
+                    candidates.clear();
+                }
+            }
+        }
+        try (Stream<StorageService.ListedObject> listing = storageService.list(AvatarStore.STAGING_PREFIX)) {
+            Iterator<StorageService.ListedObject> objects = listing.iterator();
+            while (objects.hasNext()) {
+                StorageService.ListedObject object = objects.next();
+                scanned++;
+                // Abandoned direct or streamed uploads
+                if (!object.lastModified().isBefore(cutoff)) {
+                    continue;
+                }
+                candidates.add(object);
+                if (candidates.size() >= config.getDeleteBatchSize()) {
+                    Result flushed = flush(candidates, cutoff);
+                    orphans += flushed.orphans();
+                    reclaimed += flushed.reclaimedBytes();
+                    candidates.clear();
+                }
+            }
+        }
+        if (!candidates.isEmpty()) {
+            Result flushed = flush(candidates, cutoff);
+            orphans += flushed.orphans();
+            reclaimed += flushed.reclaimedBytes();
+        }
+        scannedCounter.increment(scanned);
+        return new Result(scanned, orphans, reclaimed);
+    }
+
+    /**
+     * Re-checks content-addressed candidates, then deletes the batch in one request.
+     */
+    private Result flush(List<StorageService.ListedObject> candidates, Instant cutoff) {
+        Set<String> hashes = candidates.stream()
+                .map(object -> CONTENT_KEY.matcher(object.path()))
+                .filter(Matcher::matches)
+                .map(matcher -> matcher.group(2))
+                .collect(Collectors.toSet());
+        Set<String> registered = hashes.isEmpty() ? Set.of() : avatarObjectRepository.findAllById(hashes).stream()
+                .map(AvatarObject::getHash)
+                .collect(Collectors.toSet());
+
+        List<StorageService.ListedObject> orphans = new ArrayList<>();
+        for (StorageService.ListedObject object : candidates) {
+            Matcher matcher = CONTENT_KEY.matcher(object.path());
+            if (matcher.matches()) {
+                if (registered.contains(matcher.group(2))) {
+                    continue;
+                }
+                StorageService.ObjectInfo current = storageService.stat(object.path());
+                if (current == null || !current.lastModified().isBefore(cutoff)) {
+                    continue;
+                }
+            }
+            orphans.add(object);
+        }
+        if (orphans.isEmpty()) {
+            return new Result(0, 0, 0);
+        }
+
+        orphanCounter.increment(orphans.size());
+        if (config.isDryRun()) {
+            orphans.forEach(object -> log.info("Orphaned avatar object {} ({} bytes)", object.path(), object.size()));
+            return new Result(0, orphans.size(), 0);
+        }
+        Map<String, String> failures = storageService.deleteAll(
+                orphans.stream().map(StorageService.ListedObject::path).toList());
+        failures.forEach((path, error) -> log.warn("Failed to delete orphaned avatar {}: {}", path, error));
+        long reclaimed = orphans.stream()
+                .filter(object -> !failures.containsKey(object.path()))
+                .mapToLong(StorageService.ListedObject::size)
+                .sum();
+        reclaimedCounter.increment(reclaimed);
+        return new Result(0, orphans.size(), reclaimed);
+    }
+
+    /**
+     * The stem of the original a key belongs to, or null for keys of no known layout.
+     */
+    static String stemOf(String path) {
+        Matcher content = CONTENT_KEY.matcher(path);
+        if (content.matches()) {
+            return content.group(1);
+        }
+        Matcher legacy = LEGACY_KEY.matcher(path);
+        return legacy.matches() ? legacy.group(1) : null;
+    }
+
+    /**
+     * Walks a keyset-paged column as a sorted sequence of stems. Stems must be asked for in
+     * non-decreasing order.
+     */
+    private final class StemCursor {
+
+        private final BiFunction<String, Integer, List<String>> fetch;
+        private final Predicate<String> pastEnd;
+        private final Function<String, String> toStem;
+        private Iterator<String> page = Collections.emptyIterator();
+        private String lastKey;
+        private String current;
+        private boolean lastPage;
+        private boolean exhausted;
+
+        StemCursor(BiFunction<String, Integer, List<String>> fetch, String start,
+                   Predicate<String> pastEnd, Function<String, String> toStem) {
+            this.fetch = fetch;
+            this.lastKey = start;
+            this.pastEnd = pastEnd;
+            this.toStem = toStem;
+        }
+
+        boolean contains(String stem) {
+            while (current == null || current.compareTo(stem) < 0) {
+                if (!advance()) {
+                    return false;
+                }
+            }
+            return current.equals(stem);
+        }
+
+        private boolean advance() {
+            while (!exhausted) {
+                if (!page.hasNext()) {
+                    List<String> keys = lastPage ? List.of() : fetch.apply(lastKey, config.getPageSize());
+                    if (keys.isEmpty()) {
+                        exhausted = true;
+                        return false;
+                    }
+                    lastPage = keys.size() < config.getPageSize();
+                    page = keys.iterator();
+                }
+                String key = page.next();
+                lastKey = key;
+                if (pastEnd.test(key)) {
+                    exhausted = true;
+                    return false;
+                }
+                String stem = toStem.apply(key);
+                if (stem == null) {
+                    continue;
+                }
+                if (current != null && stem.compareTo(current) < 0) {
+                    throw new IllegalStateException("Database keyset out of order at " + key);
+                }
+                current = stem;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarStoreConfig;
+import com.reveria.userservice.exception.FileValidationException;
+import com.reveria.userservice.exception.StorageException;
+import com.reveria.userservice.model.entity.AvatarObject;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import com.reveria.userservice.util.FileValidationUtil;
+import com.reveria.userservice.util.ValidatingImageInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed avatar storage.
+ *
+ * Objects live at {@code avatars/{sha256}.{ext}}, so identical images are stored once and a URL
+ * never changes meaning, which is what lets them carry a year-long immutable Cache-Control.
+ * avatar_objects counts the users referencing each object. Storing bytes that are already known
+ * just takes another reference; for multipart and in-memory content the hash is computed before
+ * anything is sent, so a duplicate costs no putObject at all. A raw request stream can only be
+ * read once, so it goes to a staging key while being hashed and is then either dropped (known
+ * content) or copied server-side into place. Staging keys live under staging/, outside the
+ * publicly readable avatars/.
+ *
+ * Direct uploads go from the client to the store through a presigned upload and never pass
+ * through this service; the store enforces the size limit and an image Content-Type. Completing
+ * one checks the size and type recorded by the store and the magic bytes from a ranged read,
+ * then copies the object into place. Their bytes are never hashed, so they are keyed by a hash
+ * of the owner and upload id instead of the content and aren't deduplicated. The key is never
+ * reused, so the URL is just as immutable, and completing the same upload twice, concurrently
+ * or as a retry, lands on the same object.
+ *
+ * Releasing the last reference doesn't delete anything; {@link #sweep} removes objects that
+ * stayed unreferenced for the grace period, so a quick re-upload revives them for free.
+ */
+@Service
+@Slf4j
+public class AvatarStore {
+
+    public record StoredAvatar(String url, String variants) {
+    }
+
+    public record DirectUpload(String uploadId, String url, String method, Map<String, String> fields,
+                               Instant expiresAt) {
+    }
+
+    private record Hashed(String hash, String contentType, long size) {
+    }
+
+    private static final Pattern CONTENT_PATH = Pattern.compile("avatars/([0-9a-f]{64})\\.[a-z]+");
+    static final String STAGING_PREFIX = "staging/avatars/";
+    private static final String IMAGE_TYPE_PREFIX = "image/";
+
+    private final StorageService storageService;
+    private final AvatarObjectRepository avatarObjectRepository;
+    private final AvatarDerivativeService avatarDerivativeService;
+    private final ObjectDeletionQueue objectDeletionQueue;
+    private final AvatarStoreConfig config;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter dedupedCounter;
+    private final Counter storedCounter;
+    private final Counter sweptCounter;
+    private final Counter directCounter;
+
+    public AvatarStore(StorageService storageService,
+                       AvatarObjectRepository avatarObjectRepository,
+                       AvatarDerivativeService avatarDerivativeService,
+                       ObjectDeletionQueue objectDeletionQueue,
+                       AvatarStoreConfig config,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.storageService = storageService;
+        this.avatarObjectRepository = avatarObjectRepository;
+        this.avatarDerivativeService = avatarDerivativeService;
+        this.objectDeletionQueue = objectDeletionQueue;
+        this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dedupedCounter = Counter.builder("avatar.store.deduplicated")
+                .description("Avatar uploads that matched an already stored object")
+                .register(meterRegistry);
+        this.storedCounter = Counter.builder("avatar.store.stored")
+                .description("New avatar objects written to storage")
+                .register(meterRegistry);
+        this.sweptCounter = Counter.builder("avatar.store.swept")
+                .description("Unreferenced avatar objects removed from storage")
+                .register(meterRegistry);
+        this.directCounter = Counter.builder("avatar.store.direct")
+                .description("Avatars uploaded straight to storage through a presigned URL")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores a multipart upload. Tomcat has already spooled it to local disk, so it is hashed
+     * from there first and only sent to storage if the content is new.
+     */
+    public StoredAvatar store(MultipartFile file) {
+        try {
+            Hashed hashed;
+            try (InputStream content = file.getInputStream()) {
+                hashed = hash(content);
+            }
+            return storeHashed(hashed, file::getInputStream);
+        } catch (IOException e) {
+            throw new StorageException("Failed to read uploaded file", e);
+        }
+    }
+
+    /**
+     * Stores content already held in memory.
+     */
+    public StoredAvatar store(byte[] content) {
+        try {
+            Hashed hashed = hash(new ByteArrayInputStream(content));
+            return storeHashed(hashed, () -> new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            throw new StorageException("Failed to hash avatar content", e);
+        }
+    }
+
+    /**
+     * Stores a stream that can only be read once: validated and hashed on its way to a staging
+     * key, then promoted with a server-side copy if the content is new.
+     */
+    public StoredAvatar store(InputStream content, long size) {
+        MessageDigest digest = sha256();
+        ValidatingImageInputStream validated = FileValidationUtil.openAvatarStream(content);
+        String stagingPath = STAGING_PREFIX + UUID.randomUUID();
+        storageService.upload(stagingPath, new DigestInputStream(validated, digest), size,
+                "application/octet-stream");
+        try {
+            String hash = HexFormat.of().formatHex(digest.digest());
+            StoredAvatar existing = acquireExisting(hash);
+            if (existing != null) {
+                return existing;
+            }
+            String contentType = validated.detectedContentType();
+            String path = pathFor(hash, contentType);
+            String url = storageService.copy(stagingPath, path, contentType, config.getCacheControl());
+            return registerNew(new Hashed(hash, contentType, size), path, url);
+        } finally {
+            deleteStaged(stagingPath);
+        }
+    }
+
+    /**
+     * Presigns a direct upload, limited to the avatar size and an image Content-Type. The object
+     * lands under a staging key scoped to the owner, so only they can complete it; uncompleted
+     * uploads are left to the bucket sweep.
+     */
+    public DirectUpload prepareDirectUpload(String ownerKey) {
+        String uploadId = UUID.randomUUID().toString();
+        int expiry = config.getDirectUploadExpirySeconds();
+        StorageService.PresignedUpload upload = storageService.presignUpload(directStagingPath(ownerKey, uploadId),
+                expiry, FileValidationUtil.MAX_AVATAR_SIZE, IMAGE_TYPE_PREFIX);
+        return new DirectUpload(uploadId, upload.url(), upload.method(), upload.fields(),
+                Instant.now().plusSeconds(expiry));
+    }
+
+    /**
+     * Validates a finished direct upload without downloading it and stores it. Completing an
+     * upload that was already completed takes another reference on the same object.
+     */
+    public StoredAvatar completeDirectUpload(String ownerKey, String uploadId) {
+        String stagingPath = directStagingPath(ownerKey, uploadId);
+        String key = directKey(ownerKey, uploadId);
+        StorageService.ObjectInfo info = storageService.stat(stagingPath);
+        if (info == null) {
+            // The staged copy is removed once completed; a retry gets the object it became
+            StoredAvatar completed = acquireExisting(key);
+            if (completed != null) {
+                return completed;
+            }
+            throw new FileValidationException("Upload not found or expired", "uploadId");
+        }
+        try {
+            FileValidationUtil.validateAvatarMetadata(info.size(), info.contentType());
+            byte[] header = storageService.readRange(stagingPath, 0, FileValidationUtil.AVATAR_HEADER_LENGTH);
+            String contentType = FileValidationUtil.detectAvatarType(header);
+            String path = pathFor(key, contentType);
+            String url = storageService.copy(stagingPath, path, contentType, config.getCacheControl());
+            directCounter.increment();
+            return registerNew(new Hashed(key, contentType, info.size()), path, url);
+        } finally {
+            deleteStaged(stagingPath);
+        }
+    }
+
+    /**
+     * Drops a user's reference to their previous avatar. External URLs (OAuth pictures) are
+     * ignored; avatars stored before content addressing are deleted once the caller commits.
+     */
+    public void release(String avatarUrl, String variants) {
+        if (avatarUrl == null) {
+            return;
+        }
+        String path = storageService.extractPathFromUrl(avatarUrl);
+        if (path == null) {
+            return;
+        }
+        Matcher matcher = CONTENT_PATH.matcher(path);
+        if (matcher.matches()) {
+            avatarObjectRepository.release(matcher.group(1));
+            return;
+        }
+        List<String> paths = new ArrayList<>();
+        paths.add(path);
+        paths.addAll(avatarDerivativeService.derivativePaths(path, variants));
+        objectDeletionQueue.deleteAfterCommit(paths);
+    }
+
+    @Scheduled(fixedDelayString = "${avatar.store.sweep-interval-ms:60000}")
+    public void sweep() {
+        int swept;
+        do {
+            swept = sweepBatch();
+        } while (swept == config.getSweepBatchSize());
+    }
+
+    private int sweepBatch() {
+        Integer swept = transactionTemplate.execute(status -> {
+            LocalDateTime cutoff = LocalDateTime.now().minusMinutes(config.getReleaseGraceMinutes());
+            List<AvatarObject> released = avatarObjectRepository.lockReleased(cutoff, config.getSweepBatchSize());
+            if (released.isEmpty()) {
+                return 0;
+            }
+            // Deleted while the rows are locked rather than through ObjectDeletionQueue: the keys
+            // are content hashes, so a concurrent upload of the same bytes must wait for the
+            // delete and then store them afresh, not have its object removed after the fact
+            Map<AvatarObject, List<String>> paths = new LinkedHashMap<>();
+            for (AvatarObject object : released) {
+                List<String> objectPaths = new ArrayList<>();
+                objectPaths.add(object.getPath());
+                objectPaths.addAll(avatarDerivativeService.derivativePaths(object.getPath(), object.getVariants()));
+                paths.put(object, objectPaths);
+            }
+            Map<String, String> failures = storageService.deleteAll(
+                    paths.values().stream().flatMap(List::stream).toList());
+            // Rows whose files couldn't all be removed stay for the next sweep
+            List<AvatarObject> removed = released.stream()
+                    .filter(object -> paths.get(object).stream().noneMatch(failures::containsKey))
+                    .toList();
+            if (removed.size() < released.size()) {
+                log.warn("Could not delete {} avatar files, retrying on the next sweep", failures.size());
+            }
+            avatarObjectRepository.deleteAllInBatch(removed);
+            return removed.size();
+        });
+        int count = swept != null ? swept : 0;
+        if (count > 0) {
+            sweptCounter.increment(count);
+            log.info("Swept {} unreferenced avatar objects", count);
+        }
+        return count;
+    }
+
+    private void deleteStaged(String stagingPath) {
+        // Staging keys are never reused, so it is safe to remove them whenever the queue gets to it
+        objectDeletionQueue.deleteAfterCompletion(List.of(stagingPath));
+    }
+
+    private static String directStagingPath(String ownerKey, String uploadId) {
+        try {
+            // Also keeps the id from addressing anything outside the owner's staging prefix
+            UUID.fromString(uploadId);
+        } catch (IllegalArgumentException e) {
+            throw new FileValidationException("Invalid upload id", "uploadId");
+        }
+        return STAGING_PREFIX + ownerKey + "/" + uploadId;
+    }
+
+    /**
+     * Object key of a completed direct upload. Upload ids are random and known only to their
+     * owner, so the key can't be guessed before it is published.
+     */
+    private static String directKey(String ownerKey, String uploadId) {
+        byte[] key = sha256().digest(("direct\n" + ownerKey + "\n" + uploadId).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(key);
+    }
+
+    @FunctionalInterface
+    private interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    private StoredAvatar storeHashed(Hashed hashed, ContentSource source) throws IOException {
+        StoredAvatar existing = acquireExisting(hashed.hash());
+        if (existing != null) {
+            return existing;
+        }
+        String path = pathFor(hashed.hash(), hashed.contentType());
+        String url;
+        try (InputStream content = source.open()) {
+            url = storageService.upload(path, FileValidationUtil.openAvatarStream(content), hashed.size(),
+                    hashed.contentType(), config.getCacheControl());
+        }
+        return registerNew(hashed, path, url);
+    }
+
+    private StoredAvatar acquireExisting(String hash) {
+        if (avatarObjectRepository.acquire(hash) == 0) {
+            return null;
+        }
+        AvatarObject object = avatarObjectRepository.findById(hash)
+                .orElseThrow(() -> new StorageException("Avatar object vanished while referenced: " + hash));
+        dedupedCounter.increment();
+        return new StoredAvatar(storageService.urlFor(object.getPath()), object.getVariants());
+    }
+
+    private StoredAvatar registerNew(Hashed hashed, String path, String url) {
+        boolean created = avatarObjectRepository.register(hashed.hash(), path, hashed.contentType(), hashed.size());
+        if (!created) {
+            // A concurrent upload of the same bytes registered first; both wrote identical content
+            dedupedCounter.increment();
+            AvatarObject object = avatarObjectRepository.findById(hashed.hash()).orElseThrow();
+            return new StoredAvatar(url, object.getVariants());
+        }
+        storedCounter.increment();
+        avatarDerivativeService.schedule(hashed.hash(), path, url);
+        return new StoredAvatar(url, null);
+    }
+
+    private static String pathFor(String hash, String contentType) {
+        return "avatars/" + hash + "." + extension(contentType);
+    }
+
+    private static String extension(String contentType) {
+        return switch (contentType) {
+            case "image/png" -> "png";
+            case "image/webp" -> "webp";
+            default -> "jpg";
+        };
+    }
+
+    /**
+     * Hashes and validates the content in one read.
+     */
+    private static Hashed hash(InputStream content) throws IOException {
+        MessageDigest digest = sha256();
+        ValidatingImageInputStream validated = FileValidationUtil.openAvatarStream(content);
+        long size;
+        try (DigestInputStream in = new DigestInputStream(validated, digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        }
+        return new Hashed(HexFormat.of().formatHex(digest.digest()), validated.detectedContentType(), size);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.MailQueueConfig;
+import com.reveria.userservice.model.entity.EmailJob;
+import com.reveria.userservice.model.enums.EmailJobStatus;
+import com.reveria.userservice.repository.EmailJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UnsupportedEncodingException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email_jobs queue.
+ *
+ * The scheduler thread claims due jobs in batches through {@link LeasedJobQueue}, so the row
+ * locks are released before any SMTP traffic, and hands each batch to one of
+ * mail.queue.workers sender threads. A sender pushes the whole batch through one pooled SMTP
+ * connection. Sent jobs are deleted; failed ones are rescheduled with exponential backoff and
+ * parked as FAILED after mail.queue.max-attempts.
+ */
+@Service
+@Slf4j
+public class EmailDispatcher {
+
+    private static final String CHARSET = "UTF-8";
+
+    private final EmailJobRepository emailJobRepository;
+    private final JavaMailSender mailSender;
+    private final SmtpTransportPool transportPool;
+    private final MailQueueConfig mailQueueConfig;
+    private final LeasedJobQueue<EmailJob> queue;
+
+    private final ExecutorService senders;
+    private final Semaphore freeSenders;
+
+    private final InternetAddress from;
+
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter deadCounter;
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong failedDepth = new AtomicLong();
+
+    public EmailDispatcher(EmailJobRepository emailJobRepository,
+                           JavaMailSender mailSender,
+                           SmtpTransportPool transportPool,
+                           MailQueueConfig mailQueueConfig,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.mail.from:noreply@reveria.com}") String fromEmail,
+                           @Value("${app.mail.from-name:Reveria}") String fromName) {
+        this.emailJobRepository = emailJobRepository;
+        this.mailSender = mailSender;
+        this.transportPool = transportPool;
+        this.mailQueueConfig = mailQueueConfig;
+        this.queue = new LeasedJobQueue<>(emailJobRepository, emailJobRepository::lockDueBatch,
+                new TransactionTemplate(transactionManager), mailQueueConfig.getBatchSize(),
+                mailQueueConfig.getLeaseMs(), mailQueueConfig.getMaxAttempts(),
+                mailQueueConfig.getInitialBackoffMs(), mailQueueConfig.getMaxBackoffMs());
+        this.from = fromAddress(fromEmail, fromName);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(mailQueueConfig.getWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.freeSenders = new Semaphore(mailQueueConfig.getWorkers());
+
+        this.sendTimer = Timer.builder("mail.send.latency")
+                .description("Time to hand one message to the SMTP server")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.sent")
+                .description("Emails accepted by the SMTP server")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("mail.send.failures")
+                .tag("outcome", "retry")
+                .description("Failed sends")
+                .register(meterRegistry);
+        this.deadCounter = Counter.builder("mail.send.failures")
+                .tag("outcome", "failed")
+                .description("Failed sends")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.depth", queueDepth, AtomicLong::get)
+                .description("Emails waiting to be sent")
+                .register(meterRegistry);
+        Gauge.builder("mail.queue.failed", failedDepth, AtomicLong::get)
+                .description("Emails parked after exhausting their retries")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${mail.queue.poll-interval-ms:1000}")
+    public void dispatch() {
+        List<EmailJob> batch;
+        do {
+            if (!freeSenders.tryAcquire()) {
+                return;
+            }
+            try {
+                batch = queue.claim();
+            } catch (RuntimeException e) {
+                freeSenders.release();
+                log.error("Failed to claim email jobs: {}", e.getMessage());
+                return;
+            }
+            if (batch.isEmpty()) {
+                freeSenders.release();
+                return;
+            }
+
+            List<EmailJob> claimed = batch;
+            senders.execute(() -> {
+                try {
+                    complete(send(claimed));
+                } catch (RuntimeException e) {
+                    // Lease expiry makes the batch claimable again
+                    log.error("Email batch of {} failed: {}", claimed.size(), e.getMessage());
+                } finally {
+                    freeSenders.release();
+                }
+            });
+        } while (batch.size() == mailQueueConfig.getBatchSize());
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void refreshStats() {
+        queueDepth.set(emailJobRepository.countByStatus(EmailJobStatus.PENDING));
+        failedDepth.set(emailJobRepository.countByStatus(EmailJobStatus.FAILED));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        senders.shutdown();
+        senders.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the batch over one pooled connection and returns the error per job (null for jobs
+     * the server accepted). A connection that drops mid-batch is replaced once per message;
+     * if no connection can be opened the rest of the batch is failed without trying.
+     */
+    Map<EmailJob, String> send(List<EmailJob> batch) {
+        Map<EmailJob, String> results = new LinkedHashMap<>();
+        Transport transport = null;
+        String unreachable = null;
+        try {
+            for (EmailJob job : batch) {
+                if (unreachable != null) {
+                    results.put(job, unreachable);
+                    continue;
+                }
+                String error = null;
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    if (transport == null) {
+                        try {
+                            transport = transportPool.borrow();
+                        } catch (MessagingException e) {
+                            unreachable = error = "connect: " + describe(e);
+                            break;
+                        }
+                    }
+                    try {
+                        MimeMessage message = toMessage(job);
+                        Timer.Sample sample = Timer.start();
+                        transport.sendMessage(message, message.getAllRecipients());
+                        sample.stop(sendTimer);
+                        sentCounter.increment();
+                        error = null;
+                        break;
+                    } catch (SendFailedException e) {
+                        // Rejected recipient; the connection is still usable
+                        error = describe(e);
+                        break;
+                    } catch (MessagingException | IllegalStateException e) {
+                        error = describe(e);
+                        transportPool.invalidate(transport);
+                        transport = null;
+                    }
+                }
+                results.put(job, error);
+            }
+        } finally {
+            if (transport != null) {
+                transportPool.release(transport);
+            }
+        }
+        return results;
+    }
+
+    private void complete(Map<EmailJob, String> results) {
+        List<EmailJob> sent = new ArrayList<>();
+        List<EmailJob> failed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        results.forEach((job, error) -> {
+            if (error == null) {
+                sent.add(job);
+                return;
+            }
+            if (queue.fail(job, error, now)) {
+                retryCounter.increment();
+                log.warn("Email {} to {} failed (attempt {}), retrying: {}",
+                        job.getId(), job.getRecipient(), job.getAttempts(), error);
+            } else {
+                job.setStatus(EmailJobStatus.FAILED);
+                deadCounter.increment();
+                log.error("Giving up on email {} to {} after {} attempts: {}",
+                        job.getId(), job.getRecipient(), job.getAttempts(), error);
+            }
+            failed.add(job);
+        });
+
+        queue.finish(sent, failed);
+        if (!sent.isEmpty()) {
+            log.info("Sent {} queued emails", sent.size());
+        }
+    }
+
+    private static String describe(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    /**
+     * Every queued email is a single text/html part with the same sender, so the message is
+     * built directly on that fixed skeleton (From parsed and encoded once at startup) rather
+     * than through MimeMessageHelper's multipart tree.
+     */
+    private MimeMessage toMessage(EmailJob job) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.setFrom(from);
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(job.getRecipient(), true));
+        message.setSubject(job.getSubject(), CHARSET);
+        message.setText(job.getHtmlBody(), CHARSET, "html");
+        message.saveChanges();
+        return message;
+    }
+
+    private static InternetAddress fromAddress(String email, String name) {
+        try {
+            return new InternetAddress(email, name, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            try {
+                return new InternetAddress(email, true);
+            } catch (AddressException invalid) {
+                throw new IllegalStateException("Invalid app.mail.from address: " + email, invalid);
+            }
+        }
+    }
+}
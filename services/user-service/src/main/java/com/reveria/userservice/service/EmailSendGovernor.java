@@ -0,0 +1,215 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.EmailThrottleConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-recipient send limits for the public email endpoints (forgot-password, resend-verification).
+ *
+ * Three sliding-window rules per address: a dedupe window per template, a cap per template and
+ * a cap across templates. Each replica keeps its own sends in memory and rejects from there
+ * first, so repeated requests to one replica never leave the JVM. Allowed sends are then checked
+ * and recorded atomically in Redis, which enforces the limits across replicas. If Redis is
+ * unavailable the local verdict stands.
+ *
+ * Callers check before opening a transaction, so a dropped request costs no database work.
+ */
+@Component
+@Slf4j
+public class EmailSendGovernor {
+
+    private static final String KEY_PREFIX = "mail-throttle:";
+
+    // KEYS: address window, address+template window
+    // ARGV: now, address window ms, template window ms, dedupe ms, max per template,
+    //       max per address, check (1) or record only (0), member
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - tonumber(ARGV[2]))
+            redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', now - tonumber(ARGV[3]))
+            if ARGV[7] == '1' then
+                local last = redis.call('ZREVRANGE', KEYS[2], 0, 0, 'WITHSCORES')
+                if last[2] and now - tonumber(last[2]) < tonumber(ARGV[4]) then return 0 end
+                if redis.call('ZCARD', KEYS[2]) >= tonumber(ARGV[5]) then return 0 end
+                if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[6]) then return 0 end
+            end
+            redis.call('ZADD', KEYS[1], now, ARGV[8])
+            redis.call('ZADD', KEYS[2], now, ARGV[8])
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final EmailThrottleConfig config;
+    private final Map<String, AddressLog> local = new ConcurrentHashMap<>();
+    private volatile long redisRetryAt;
+
+    private final Counter localDrops;
+    private final Counter redisDrops;
+
+    public EmailSendGovernor(StringRedisTemplate redisTemplate,
+                             EmailThrottleConfig config,
+                             MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.config = config;
+        this.localDrops = Counter.builder("mail.throttle.dropped")
+                .tag("layer", "local")
+                .description("Email requests dropped by the per-recipient limits")
+                .register(meterRegistry);
+        this.redisDrops = Counter.builder("mail.throttle.dropped")
+                .tag("layer", "redis")
+                .description("Email requests dropped by the per-recipient limits")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns whether an email with this template may be sent to the address now, and if so
+     * counts it against the limits.
+     */
+    public boolean tryAcquire(String template, String email) {
+        return tryAcquire(template, email, System.currentTimeMillis());
+    }
+
+    /**
+     * Counts a send that was not gated (the verification email at registration), so follow-up
+     * requests are measured from it.
+     */
+    public void record(String template, String email) {
+        if (config.isEnabled()) {
+            acquire(template, normalize(email), System.currentTimeMillis(), false);
+        }
+    }
+
+    boolean tryAcquire(String template, String email, long now) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        return acquire(template, normalize(email), now, true);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        local.values().removeIf(sends -> sends.isIdle(now, longestWindowMs()));
+    }
+
+    private boolean acquire(String template, String address, long now, boolean check) {
+        AddressLog sends = local.get(address);
+        if (sends == null && local.size() < config.getLocalMaxEntries()) {
+            sends = local.computeIfAbsent(address, key -> new AddressLog());
+        }
+        if (sends == null) {
+            return acquireInRedis(template, address, now, check);
+        }
+
+        synchronized (sends) {
+            if (check && !sends.allows(template, now, config)) {
+                localDrops.increment();
+                log.debug("Dropped {} email to {}: recently sent", template, address);
+                return false;
+            }
+            if (!acquireInRedis(template, address, now, check)) {
+                return false;
+            }
+            sends.record(template, now);
+            return true;
+        }
+    }
+
+    private boolean acquireInRedis(String template, String address, long now, boolean check) {
+        if (now < redisRetryAt) {
+            return true;
+        }
+        long addressWindowMs = config.getAddressWindowMinutes() * 60_000L;
+        long templateWindowMs = config.getTemplateWindowMinutes() * 60_000L;
+        try {
+            Long allowed = redisTemplate.execute(ACQUIRE_SCRIPT,
+                    List.of(KEY_PREFIX + "{" + address + "}", KEY_PREFIX + "{" + address + "}:" + template),
+                    Long.toString(now),
+                    Long.toString(addressWindowMs),
+                    Long.toString(templateWindowMs),
+                    Long.toString(config.getDedupeWindowSeconds() * 1000L),
+                    Integer.toString(config.getMaxPerTemplate()),
+                    Integer.toString(config.getMaxPerAddress()),
+                    check ? "1" : "0",
+                    now + ":" + UUID.randomUUID());
+            if (allowed != null && allowed == 0L) {
+                redisDrops.increment();
+                log.debug("Dropped {} email to {}: limit reached across replicas", template, address);
+                return false;
+            }
+            return true;
+        } catch (DataAccessException e) {
+            redisRetryAt = now + config.getRedisBackoffMs();
+            log.warn("Email throttle falling back to local limits for {} ms: {}",
+                    config.getRedisBackoffMs(), e.getMessage());
+            return true;
+        }
+    }
+
+    private long longestWindowMs() {
+        return Math.max(config.getAddressWindowMinutes(), config.getTemplateWindowMinutes()) * 60_000L;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Send times for one address, overall and per template. Guarded by its own monitor.
+     */
+    private static final class AddressLog {
+
+        private final ArrayDeque<Long> sends = new ArrayDeque<>();
+        private final Map<String, ArrayDeque<Long>> byTemplate = new HashMap<>();
+        private long lastSendAt;
+
+        boolean allows(String template, long now, EmailThrottleConfig config) {
+            prune(sends, now - config.getAddressWindowMinutes() * 60_000L);
+            ArrayDeque<Long> templateSends = byTemplate.get(template);
+            if (templateSends == null) {
+                return sends.size() < config.getMaxPerAddress();
+            }
+            prune(templateSends, now - config.getTemplateWindowMinutes() * 60_000L);
+            Long last = templateSends.peekLast();
+            if (last != null && now - last < config.getDedupeWindowSeconds() * 1000L) {
+                return false;
+            }
+            return templateSends.size() < config.getMaxPerTemplate()
+                    && sends.size() < config.getMaxPerAddress();
+        }
+
+        void record(String template, long now) {
+            sends.addLast(now);
+            byTemplate.computeIfAbsent(template, key -> new ArrayDeque<>()).addLast(now);
+            lastSendAt = Math.max(lastSendAt, now);
+        }
+
+        synchronized boolean isIdle(long now, long windowMs) {
+            return lastSendAt < now - windowMs;
+        }
+
+        private static void prune(ArrayDeque<Long> times, long cutoff) {
+            while (!times.isEmpty() && times.peekFirst() <= cutoff) {
+                times.pollFirst();
+            }
+        }
+    }
+}
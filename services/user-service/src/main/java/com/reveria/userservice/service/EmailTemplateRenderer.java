@@ -0,0 +1,175 @@
+package com.reveria.userservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the transactional email templates without going through Thymeleaf per send.
+ *
+ * The templates are static inline-styled markup around a handful of variables. At startup each
+ * one is rendered once with a marker in place of every variable and split at the markers; a
+ * send then only HTML-escapes its values and joins them with the pre-rendered segments. Each
+ * compiled shell is checked against a real Thymeleaf render before it is used, and a template
+ * that doesn't compile cleanly (conditionals on a variable, say) keeps rendering through
+ * Thymeleaf.
+ */
+@Component
+@Slf4j
+public class EmailTemplateRenderer {
+
+    public static final String PASSWORD_RESET = "email/password-reset";
+    public static final String EMAIL_VERIFICATION = "email/email-verification";
+    public static final String WELCOME = "email/welcome";
+
+    private static final Map<String, List<String>> TEMPLATE_VARIABLES = Map.of(
+            PASSWORD_RESET, List.of("username", "resetLink", "expirationHours"),
+            EMAIL_VERIFICATION, List.of("username", "verifyLink", "expirationHours"),
+            WELCOME, List.of("username", "loginLink")
+    );
+
+    private static final String MARKER_PREFIX = "__reveria_var_";
+    private static final String MARKER_SUFFIX = "__";
+    private static final String PROBE_VALUE = "<a href=\"x\">Tom & 'Jerry'</a>";
+
+    private final TemplateEngine templateEngine;
+    private final String appName;
+    private final Map<String, CompiledTemplate> compiled = new HashMap<>();
+
+    public EmailTemplateRenderer(TemplateEngine templateEngine,
+                                 @Value("${app.name:Reveria}") String appName) {
+        this.templateEngine = templateEngine;
+        this.appName = appName;
+    }
+
+    @PostConstruct
+    public void precompile() {
+        TEMPLATE_VARIABLES.forEach((template, variables) -> {
+            try {
+                CompiledTemplate shell = compile(template, variables);
+                if (shell != null) {
+                    compiled.put(template, shell);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not precompile {}, rendering it per send: {}", template, e.getMessage());
+            }
+        });
+        log.info("Precompiled email templates: {}", compiled.keySet());
+    }
+
+    public String render(String template, Map<String, ?> variables) {
+        CompiledTemplate shell = compiled.get(template);
+        if (shell != null) {
+            return shell.render(variables);
+        }
+        return templateEngine.process(template, context(variables));
+    }
+
+    boolean isPrecompiled(String template) {
+        return compiled.containsKey(template);
+    }
+
+    private CompiledTemplate compile(String template, List<String> variables) {
+        Map<String, Object> markers = new LinkedHashMap<>();
+        for (String variable : variables) {
+            markers.put(variable, MARKER_PREFIX + variable + MARKER_SUFFIX);
+        }
+        String rendered = templateEngine.process(template, context(markers));
+
+        List<String> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = rendered.indexOf(MARKER_PREFIX, position)) >= 0) {
+            int end = rendered.indexOf(MARKER_SUFFIX, start + MARKER_PREFIX.length());
+            String variable = end < 0 ? null : rendered.substring(start + MARKER_PREFIX.length(), end);
+            if (variable == null || !markers.containsKey(variable)) {
+                throw new IllegalStateException("Unexpected marker at offset " + start);
+            }
+            segments.add(rendered.substring(position, start));
+            slots.add(variable);
+            position = end + MARKER_SUFFIX.length();
+        }
+        segments.add(rendered.substring(position));
+        CompiledTemplate shell = new CompiledTemplate(segments.toArray(String[]::new), slots.toArray(String[]::new));
+
+        Map<String, Object> probe = new HashMap<>();
+        for (String variable : variables) {
+            probe.put(variable, PROBE_VALUE + variable);
+        }
+        if (!shell.render(probe).equals(templateEngine.process(template, context(probe)))) {
+            log.warn("Precompiled {} does not match the Thymeleaf render, rendering it per send", template);
+            return null;
+        }
+        return shell;
+    }
+
+    private Context context(Map<String, ?> variables) {
+        Context context = new Context();
+        context.setVariable("appName", appName);
+        variables.forEach(context::setVariable);
+        return context;
+    }
+
+    /**
+     * Same escaping Thymeleaf applies to th:text and th:attr values in HTML mode: only the five
+     * markup-significant characters.
+     */
+    static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '&' || c == '<' || c == '>' || c == '"' || c == '\'';
+    }
+
+    private record CompiledTemplate(String[] segments, String[] slots) {
+
+        String render(Map<String, ?> variables) {
+            String[] values = new String[slots.length];
+            int length = 0;
+            for (String segment : segments) {
+                length += segment.length();
+            }
+            for (int i = 0; i < slots.length; i++) {
+                Object value = variables.get(slots[i]);
+                values[i] = value == null ? "" : escape(value.toString());
+                length += values[i].length();
+            }
+
+            StringBuilder html = new StringBuilder(length);
+            for (int i = 0; i < slots.length; i++) {
+                html.append(segments[i]).append(values[i]);
+            }
+            return html.append(segments[slots.length]).toString();
+        }
+    }
+}
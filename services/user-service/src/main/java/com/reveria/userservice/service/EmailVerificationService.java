@@ -1,5 +1,6 @@
 package com.reveria.userservice.service;
 
+import com.reveria.userservice.dto.event.UserEmailVerifiedPayload;
 import com.reveria.userservice.model.entity.EmailVerificationToken;
 import com.reveria.userservice.model.entity.User;
 import com.reveria.userservice.exception.InvalidTokenException;
@@ -17,7 +18,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.Base64;
-import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -29,6 +29,7 @@ public class EmailVerificationService {
     private final UserRepository userRepository;
     private final EmailService emailService;
     private final UserEventPublisher userEventPublisher;
+    private final UserSnapshotPublisher userSnapshotPublisher;
 
     @Value("${security.email-verification-expiration-hours:24}")
     private int tokenExpirationHours;
@@ -79,15 +80,7 @@ public class EmailVerificationService {
             log.info("Resend verification requested for already verified email: {}", email);
             return;
         }
-        //RATE LIMITING (2 MINS BEFORE A NEW REQUEST)
-        Optional<EmailVerificationToken> existingToken = tokenRepository.findByUserIdAndUsedFalse(user.getId());
-        if (existingToken.isPresent()) {
-            LocalDateTime tokenCreatedAt = existingToken.get().getCreatedAt();
-            if (tokenCreatedAt.plusMinutes(2).isAfter(LocalDateTime.now())) {
-                log.info("Rate limit: verification email recently sent for user: {}", user.getUsername());
-                return;
-            }
-        }
+        // Rate limiting happens before this call, in EmailSendGovernor
         sendVerificationEmail(user);
     }
 
@@ -122,7 +115,8 @@ public class EmailVerificationService {
 
         log.info("Email verified for user: {}", user.getUsername());
         userEventPublisher.publish(UserEventType.USER_EMAIL_VERIFIED, user.getUuid(),
-                Map.of("email", user.getEmail()));
+                new UserEmailVerifiedPayload(user.getEmail()));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_EMAIL_VERIFIED);
     }
 
 
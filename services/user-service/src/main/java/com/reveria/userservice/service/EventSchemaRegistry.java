@@ -0,0 +1,75 @@
+package com.reveria.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * File-based stand-in for a schema registry.
+ *
+ * Schemas live under {@code classpath:schemas/<subject>/v<version>.avsc} and are addressed by
+ * id {@code <subject>.v<version>} (e.g. {@code user-event.v1}). The id travels in the Kafka
+ * {@code schema-id} header so a consumer can resolve the writer schema. Published schemas are
+ * never edited; a change means a new version file.
+ */
+@Component
+@Slf4j
+public class EventSchemaRegistry {
+
+    private static final String LOCATION = "classpath*:schemas/*/v*.avsc";
+    private static final Pattern SCHEMA_PATH = Pattern.compile(".*/schemas/([^/]+)/v(\\d+)\\.avsc$");
+
+    private final Map<String, Schema> schemasById = new HashMap<>();
+    private final Map<String, Integer> latestVersionBySubject = new HashMap<>();
+
+    public EventSchemaRegistry() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+            for (Resource resource : resources) {
+                register(resource);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load event schemas", e);
+        }
+        log.info("Loaded event schemas: {}", schemasById.keySet());
+    }
+
+    public Schema getSchema(String schemaId) {
+        Schema schema = schemasById.get(schemaId);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown schema id: " + schemaId);
+        }
+        return schema;
+    }
+
+    public String getLatestSchemaId(String subject) {
+        Integer version = latestVersionBySubject.get(subject);
+        if (version == null) {
+            throw new IllegalArgumentException("No schema registered for subject: " + subject);
+        }
+        return subject + ".v" + version;
+    }
+
+    private void register(Resource resource) throws IOException {
+        Matcher matcher = SCHEMA_PATH.matcher(resource.getURL().toString());
+        if (!matcher.matches()) {
+            return;
+        }
+        String subject = matcher.group(1);
+        int version = Integer.parseInt(matcher.group(2));
+
+        try (InputStream is = resource.getInputStream()) {
+            schemasById.put(subject + ".v" + version, new Schema.Parser().parse(is));
+        }
+        latestVersionBySubject.merge(subject, version, Math::max);
+    }
+}
@@ -0,0 +1,85 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.dto.request.profile.InteractionCheckRequest;
+import com.reveria.userservice.model.enums.InteractionVerdict;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Answers whether users may message or befriend each other, for many pairs per call. Each
+ * distinct user is resolved once through the public profile cache, so a batch costs at most one
+ * query however many pairs it has, and nothing once the users are cached. Friendships aren't
+ * known here: where the recipient only accepts friends, the verdict says so and the caller
+ * decides.
+ */
+@Service
+public class InteractionPolicyService {
+
+    private final PublicProfileService publicProfileService;
+
+    private final DistributionSummary batchSizeSummary;
+
+    public InteractionPolicyService(PublicProfileService publicProfileService, MeterRegistry meterRegistry) {
+        this.publicProfileService = publicProfileService;
+        this.batchSizeSummary = DistributionSummary.builder("user.interaction.batch.size")
+                .description("Pairs per interaction check")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public List<InteractionVerdict> canMessage(List<InteractionCheckRequest.Pair> pairs) {
+        return evaluate(pairs, (from, to) -> {
+            if (!PrivacyFlags.allowDirectMessages(to.privacyFlags())) {
+                return InteractionVerdict.DENIED;
+            }
+            return switch (PrivacyFlags.messagePrivacy(to.privacyFlags())) {
+                case EVERYONE -> InteractionVerdict.ALLOWED;
+                case FRIENDS_ONLY -> InteractionVerdict.FRIENDS_ONLY;
+                case NOBODY -> InteractionVerdict.DENIED;
+            };
+        });
+    }
+
+    public List<InteractionVerdict> canFriend(List<InteractionCheckRequest.Pair> pairs) {
+        return evaluate(pairs, (from, to) -> PrivacyFlags.allowFriendRequests(to.privacyFlags())
+                ? InteractionVerdict.ALLOWED
+                : InteractionVerdict.DENIED);
+    }
+
+    /**
+     * One verdict per pair, in order. Pairs with an unknown or inactive user, or a user and
+     * themselves, are denied before the rule is consulted.
+     */
+    private List<InteractionVerdict> evaluate(
+            List<InteractionCheckRequest.Pair> pairs,
+            BiFunction<PublicProfileCache.CachedProfile, PublicProfileCache.CachedProfile, InteractionVerdict> rule) {
+        batchSizeSummary.record(pairs.size());
+        Set<String> uuids = new HashSet<>();
+        for (InteractionCheckRequest.Pair pair : pairs) {
+            uuids.add(pair.getFrom());
+            uuids.add(pair.getTo());
+        }
+        Map<String, PublicProfileCache.CachedProfile> profiles = publicProfileService.profiles(uuids);
+
+        List<InteractionVerdict> verdicts = new ArrayList<>(pairs.size());
+        for (InteractionCheckRequest.Pair pair : pairs) {
+            PublicProfileCache.CachedProfile from = profiles.get(pair.getFrom());
+            PublicProfileCache.CachedProfile to = profiles.get(pair.getTo());
+            if (from == null || to == null || !from.active() || !to.active() || pair.getFrom().equals(pair.getTo())) {
+                verdicts.add(InteractionVerdict.DENIED);
+            } else {
+                verdicts.add(rule.apply(from, to));
+            }
+        }
+        return verdicts;
+    }
+}
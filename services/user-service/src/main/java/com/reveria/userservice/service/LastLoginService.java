@@ -0,0 +1,154 @@
+package com.reveria.userservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind for lastLoginAt.
+ *
+ * Logins only record the timestamp in memory (latest wins per account). A scheduled flush
+ * writes everything pending in one UPDATE ... FROM (VALUES ...) per table, outside any request
+ * transaction and without touching updatedAt. lastLoginAt can therefore lag by at most
+ * last-login.max-staleness-ms; pending entries are flushed early when last-login.max-pending is
+ * reached and on shutdown. The early flush runs on the task executor, never on the login
+ * thread, which is still inside its authentication transaction.
+ */
+@Service
+@Slf4j
+public class LastLoginService {
+
+    private static final int FLUSH_CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskExecutor flushExecutor;
+    private final int maxPending;
+
+    private final Map<Long, LocalDateTime> pendingUsers = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> pendingModerators = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+
+    public LastLoginService(JdbcTemplate jdbcTemplate,
+                            @Qualifier("applicationTaskExecutor") TaskExecutor flushExecutor,
+                            @Value("${last-login.max-pending:50000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushExecutor = flushExecutor;
+        this.maxPending = maxPending;
+    }
+
+    public void recordUserLogin(Long userId, LocalDateTime loginAt) {
+        record(pendingUsers, userId, loginAt);
+    }
+
+    public void recordModeratorLogin(Long moderatorId, LocalDateTime loginAt) {
+        record(pendingModerators, moderatorId, loginAt);
+    }
+
+    @Scheduled(fixedDelayString = "${last-login.max-staleness-ms:5000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flushTable("users", pendingUsers);
+            flushTable("moderators", pendingModerators);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            flushTable("users", pendingUsers);
+            flushTable("moderators", pendingModerators);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void record(Map<Long, LocalDateTime> pending, Long id, LocalDateTime loginAt) {
+        pending.merge(id, loginAt, LastLoginService::latest);
+        if (pendingUsers.size() + pendingModerators.size() >= maxPending
+                && earlyFlushQueued.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(() -> {
+                    try {
+                        flush();
+                    } finally {
+                        earlyFlushQueued.set(false);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // Executor saturated; the scheduled flush picks the entries up
+                earlyFlushQueued.set(false);
+            }
+        }
+    }
+
+    private void flushTable(String table, Map<Long, LocalDateTime> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, LocalDateTime>> drained = new ArrayList<>(pending.size());
+        for (Long id : pending.keySet()) {
+            LocalDateTime loginAt = pending.remove(id);
+            if (loginAt != null) {
+                drained.add(Map.entry(id, loginAt));
+            }
+        }
+
+        for (int from = 0; from < drained.size(); from += FLUSH_CHUNK_SIZE) {
+            List<Map.Entry<Long, LocalDateTime>> chunk =
+                    drained.subList(from, Math.min(from + FLUSH_CHUNK_SIZE, drained.size()));
+            try {
+                update(table, chunk);
+            } catch (DataAccessException e) {
+                log.warn("Failed to flush {} last-login timestamps to {}, will retry: {}",
+                        chunk.size(), table, e.getMessage());
+                chunk.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), LastLoginService::latest));
+            }
+        }
+        log.debug("Flushed {} last-login timestamps to {}", drained.size(), table);
+    }
+
+    private void update(String table, List<Map.Entry<Long, LocalDateTime>> chunk) {
+        String values = String.join(", ",
+                Collections.nCopies(chunk.size(), "(CAST(? AS BIGINT), CAST(? AS TIMESTAMP))"));
+        String sql = "UPDATE " + table + " AS t SET last_login_at = v.last_login_at " +
+                "FROM (VALUES " + values + ") AS v(id, last_login_at) " +
+                "WHERE t.id = v.id AND (t.last_login_at IS NULL OR t.last_login_at < v.last_login_at)";
+
+        Object[] args = new Object[chunk.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, LocalDateTime> entry : chunk) {
+            args[i++] = entry.getKey();
+            args[i++] = Timestamp.valueOf(entry.getValue());
+        }
+        jdbcTemplate.update(sql, args);
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,107 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.model.entity.LeasedJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+/**
+ * Claim, lease and retry bookkeeping for the queue tables worked off in the background
+ * (email_jobs, pending_object_deletions).
+ *
+ * Due rows are selected FOR UPDATE SKIP LOCKED and leased in a short transaction, so the row
+ * locks are released before any slow work starts; a batch whose worker died is claimed again
+ * once its lease expires. Failed rows are retried with exponential backoff until their attempts
+ * run out, and what happens then is up to the owner.
+ */
+class LeasedJobQueue<J extends LeasedJob> {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final JpaRepository<J, Long> repository;
+    private final BiFunction<LocalDateTime, Integer, List<J>> lockDueBatch;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    LeasedJobQueue(JpaRepository<J, Long> repository,
+                   BiFunction<LocalDateTime, Integer, List<J>> lockDueBatch,
+                   TransactionTemplate transactionTemplate,
+                   int batchSize,
+                   long leaseMs,
+                   int maxAttempts,
+                   long initialBackoffMs,
+                   long maxBackoffMs) {
+        this.repository = repository;
+        this.lockDueBatch = lockDueBatch;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Leases up to one batch of due rows and counts the attempt. Returns once the claim has
+     * committed.
+     */
+    List<J> claim() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<J> jobs = lockDueBatch.apply(now, batchSize);
+            LocalDateTime leaseUntil = now.plusNanos(leaseMs * 1_000_000);
+            for (J job : jobs) {
+                job.setLockedUntil(leaseUntil);
+                job.setAttempts(job.getAttempts() + 1);
+            }
+            return jobs;
+        });
+    }
+
+    /**
+     * Releases the lease and records the error. Returns whether the row is retried, after the
+     * backoff; false once its attempts are used up.
+     */
+    boolean fail(J job, String error, LocalDateTime now) {
+        job.setLockedUntil(null);
+        job.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (job.getAttempts() >= maxAttempts) {
+            return false;
+        }
+        job.setNextAttemptAt(now.plusNanos(backoffMillis(job.getAttempts()) * 1_000_000));
+        return true;
+    }
+
+    /**
+     * Deletes the finished rows and saves the updated ones in one transaction.
+     */
+    void finish(List<J> finished, List<J> updated) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!finished.isEmpty()) {
+                repository.deleteAllInBatch(finished);
+            }
+            if (!updated.isEmpty()) {
+                repository.saveAll(updated);
+            }
+        });
+    }
+
+    long backoffMillis(int attempts) {
+        long base = initialBackoffMs << Math.min(attempts - 1, 20);
+        long capped = Math.min(base, maxBackoffMs);
+        // +/-20% jitter so a burst of failures doesn't retry in lockstep
+        return (long) (capped * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+}
@@ -0,0 +1,447 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.LocalStorageConfig;
+import com.reveria.userservice.exception.FileValidationException;
+import com.reveria.userservice.exception.StorageException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Object store on the local filesystem, for single-node and edge deployments
+ * (storage.type=local). Objects are served by the /media endpoint.
+ *
+ * A key top/rest lives at {root}/top/rest[0:2]/rest[2:4]/{rest with '/' as '~'}. The shard
+ * directories come from the key itself, so listing a directory tree in name order yields keys in
+ * key order one leaf at a time, as the orphan collector needs. For the hex keys avatars use that
+ * is 65536 leaf directories, a few dozen files each at millions of objects. Keys are restricted
+ * to [A-Za-z0-9._-] segments, and the first four characters after the top segment must be
+ * [A-Za-z0-9_-]; anything else is rejected rather than escaped.
+ *
+ * Writes go to a hidden temp file in the target directory and are renamed into place, so readers
+ * never see a partial object. Content-Type and Cache-Control are kept in user extended attributes
+ * where the filesystem has them, otherwise the type is derived from the extension.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@RequiredArgsConstructor
+@Slf4j
+public class LocalFileStorageService implements StorageService {
+
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*(/[A-Za-z0-9_-][A-Za-z0-9._-]*)+");
+    private static final Pattern SHARD = Pattern.compile("[A-Za-z0-9_-]{4}");
+    private static final int MAX_NAME_LENGTH = 200;
+    private static final char SLASH = '~';
+    private static final String TEMP_PREFIX = ".tmp-";
+    private static final String CONTENT_TYPE_ATTR = "reveria.content-type";
+    private static final String CACHE_CONTROL_ATTR = "reveria.cache-control";
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+
+    private static final Map<String, String> TYPES_BY_EXTENSION = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp");
+
+    /**
+     * A stored file as the media endpoint serves it.
+     */
+    public record LocalObject(Path file, long size, Instant lastModified, String contentType, String cacheControl) {
+    }
+
+    private final LocalStorageConfig config;
+
+    private Path root;
+    private byte[] signingKey;
+
+    @PostConstruct
+    public void init() {
+        try {
+            root = Path.of(config.getRootDir()).toAbsolutePath().normalize();
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new StorageException("Failed to initialize local storage at " + config.getRootDir(), e);
+        }
+        if (config.getSigningKey() == null || config.getSigningKey().isBlank()) {
+            signingKey = new byte[32];
+            new SecureRandom().nextBytes(signingKey);
+            log.warn("storage.local.signing-key is not set; presigned upload URLs won't survive a restart");
+        } else {
+            signingKey = config.getSigningKey().getBytes(StandardCharsets.UTF_8);
+        }
+        log.info("Local object storage at {}", root);
+    }
+
+    @Override
+    public String upload(String path, InputStream inputStream, long size, String contentType) {
+        return upload(path, inputStream, size, contentType, null);
+    }
+
+    @Override
+    public String upload(String path, InputStream inputStream, long size, String contentType, String cacheControl) {
+        Path target = fileFor(path);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = target.resolveSibling(TEMP_PREFIX + UUID.randomUUID());
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 ReadableByteChannel in = Channels.newChannel(inputStream)) {
+                long written = 0;
+                while (written < size) {
+                    long transferred = out.transferFrom(in, written, size - written);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    written += transferred;
+                }
+                if (written != size) {
+                    throw new StorageException("Stream ended after " + written + " of " + size + " bytes: " + path);
+                }
+                out.force(false);
+            }
+            writeMetadata(temp, contentType, cacheControl);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+            return urlFor(path);
+        } catch (FileValidationException | StorageException e) {
+            // FileValidationException is raised by a validating stream part-way through the upload
+            throw e;
+        } catch (IOException e) {
+            throw new StorageException("Failed to upload file: " + path, e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    @Override
+    public String copy(String sourcePath, String targetPath, String contentType, String cacheControl) {
+        Path source = fileFor(sourcePath);
+        Path target = fileFor(targetPath);
+        Path temp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            temp = target.resolveSibling(TEMP_PREFIX + UUID.randomUUID());
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                // File to file: the kernel copies (copy_file_range/sendfile) without a user-space buffer
+                long size = in.size();
+                long copied = 0;
+                while (copied < size) {
+                    long transferred = in.transferTo(copied, size - copied, out);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    copied += transferred;
+                }
+                out.force(false);
+            }
+            writeMetadata(temp, contentType, cacheControl);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+            return urlFor(targetPath);
+        } catch (IOException e) {
+            throw new StorageException("Failed to copy file: " + sourcePath + " -> " + targetPath, e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    @Override
+    public InputStream download(String path) {
+        try {
+            return Files.newInputStream(fileFor(path));
+        } catch (IOException e) {
+            throw new StorageException("Failed to download file: " + path, e);
+        }
+    }
+
+    @Override
+    public byte[] readRange(String path, long offset, int length) {
+        try (FileChannel channel = FileChannel.open(fileFor(path), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - offset)));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                // read until full or end of file
+            }
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip().get(bytes);
+            return bytes;
+        } catch (IOException e) {
+            throw new StorageException("Failed to read file: " + path, e);
+        }
+    }
+
+    @Override
+    public ObjectInfo stat(String path) {
+        LocalObject object = locate(path);
+        return object != null ? new ObjectInfo(object.size(), object.contentType(), object.lastModified()) : null;
+    }
+
+    /**
+     * The file behind a key with its metadata, or null if there is none (or the key is invalid).
+     */
+    public LocalObject locate(String path) {
+        if (!isValidKey(path)) {
+            return null;
+        }
+        Path file = fileFor(path);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            String contentType = readAttribute(file, CONTENT_TYPE_ATTR);
+            return new LocalObject(file, attributes.size(), attributes.lastModifiedTime().toInstant(),
+                    contentType != null ? contentType : typeFromExtension(path),
+                    readAttribute(file, CACHE_CONTROL_ATTR));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new StorageException("Failed to stat file: " + path, e);
+        }
+    }
+
+    @Override
+    public Stream<ListedObject> list(String prefix) {
+        // Lazy walk: one directory's names in memory at a time, pruned to the prefix
+        return sortedNames(root, Comparator.comparing(top -> top + "/")).stream()
+                .filter(top -> prefix.startsWith(top + "/") || (top + "/").startsWith(prefix))
+                .flatMap(top -> {
+                    String rest = prefix.startsWith(top + "/") ? prefix.substring(top.length() + 1) : "";
+                    Path topDir = root.resolve(top);
+                    return sortedNames(topDir, Comparator.naturalOrder()).stream()
+                            .filter(shard -> shardMatches(shard, rest, 0))
+                            .flatMap(outer -> sortedNames(topDir.resolve(outer), Comparator.naturalOrder()).stream()
+                                    .filter(shard -> shardMatches(shard, rest, 2))
+                                    .flatMap(inner -> listLeaf(top, topDir.resolve(outer).resolve(inner), prefix).stream()));
+                });
+    }
+
+    /**
+     * A signed PUT URL. The size limit and type prefix travel in the query and are covered by
+     * the signature; the media endpoint enforces them.
+     */
+    @Override
+    public PresignedUpload presignUpload(String path, int expirySeconds, long maxSize, String contentTypePrefix) {
+        fileFor(path);
+        long expires = Instant.now().getEpochSecond() + expirySeconds;
+        String url = urlFor(path) + "?expires=" + expires
+                + "&max=" + maxSize
+                + "&type=" + URLEncoder.encode(contentTypePrefix, StandardCharsets.UTF_8)
+                + "&signature=" + sign(path, expires, maxSize, contentTypePrefix);
+        return new PresignedUpload(url, "PUT", Map.of());
+    }
+
+    /**
+     * Whether a PUT to the key carries a valid, unexpired signature from {@link #presignUpload}
+     * for these limits.
+     */
+    public boolean verifyUpload(String path, long expires, long maxSize, String contentTypePrefix, String signature) {
+        if (signature == null || contentTypePrefix == null || expires < Instant.now().getEpochSecond()
+                || !isValidKey(path)) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(path, expires, maxSize, contentTypePrefix).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void delete(String path) {
+        try {
+            Files.deleteIfExists(fileFor(path));
+        } catch (IOException e) {
+            throw new StorageException("Failed to delete file: " + path, e);
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteAll(Collection<String> paths) {
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (String path : paths) {
+            try {
+                Files.deleteIfExists(fileFor(path));
+            } catch (IOException | StorageException e) {
+                failed.put(path, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public String urlFor(String path) {
+        return config.getPublicBaseUrl() + "/" + path;
+    }
+
+    @Override
+    public String extractPathFromUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        String prefix = config.getPublicBaseUrl() + "/";
+        if (url.startsWith(prefix)) {
+            return url.substring(prefix.length());
+        }
+        return null;
+    }
+
+    Path fileFor(String path) {
+        if (!isValidKey(path)) {
+            throw new StorageException("Unsupported storage key: " + path);
+        }
+        int slash = path.indexOf('/');
+        String rest = path.substring(slash + 1);
+        return root.resolve(path.substring(0, slash))
+                .resolve(rest.substring(0, 2))
+                .resolve(rest.substring(2, 4))
+                .resolve(rest.replace('/', SLASH));
+    }
+
+    private static boolean isValidKey(String path) {
+        if (path == null || !KEY.matcher(path).matches()) {
+            return false;
+        }
+        String rest = path.substring(path.indexOf('/') + 1);
+        return rest.length() <= MAX_NAME_LENGTH && rest.length() >= 4 && SHARD.matcher(rest.substring(0, 4)).matches();
+    }
+
+    /**
+     * Whether a two-character shard directory at offset can hold keys starting with the prefix.
+     */
+    private static boolean shardMatches(String shard, String restPrefix, int offset) {
+        if (restPrefix.length() <= offset) {
+            return true;
+        }
+        return shard.startsWith(restPrefix.substring(offset, Math.min(restPrefix.length(), offset + 2)));
+    }
+
+    private List<ListedObject> listLeaf(String top, Path leaf, String prefix) {
+        List<ListedObject> objects = new ArrayList<>();
+        for (String name : sortedNames(leaf, Comparator.naturalOrder())) {
+            if (name.startsWith(".")) {
+                continue;
+            }
+            String path = top + "/" + name.replace(SLASH, '/');
+            if (!path.startsWith(prefix)) {
+                continue;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(leaf.resolve(name), BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    objects.add(new ListedObject(path, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                }
+            } catch (NoSuchFileException e) {
+                // deleted while listing
+            } catch (IOException e) {
+                throw new StorageException("Failed to list files under: " + prefix, e);
+            }
+        }
+        // '~' sorts after every key character, so order by the decoded key
+        objects.sort(Comparator.comparing(ListedObject::path));
+        return objects;
+    }
+
+    private static List<String> sortedNames(Path dir, Comparator<String> order) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(dir)) {
+            return children.map(child -> child.getFileName().toString()).sorted(order).toList();
+        } catch (IOException e) {
+            throw new StorageException("Failed to list directory: " + dir, e);
+        }
+    }
+
+    private String sign(String path, long expires, long maxSize, String contentTypePrefix) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(new SecretKeySpec(signingKey, SIGNATURE_ALGORITHM));
+            String canonical = "PUT\n" + path + "\n" + expires + "\n" + maxSize + "\n" + contentTypePrefix;
+            byte[] signature = mac.doFinal(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(signature);
+        } catch (Exception e) {
+            throw new StorageException("Failed to sign upload URL: " + path, e);
+        }
+    }
+
+    private static void writeMetadata(Path file, String contentType, String cacheControl) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            if (contentType != null) {
+                view.write(CONTENT_TYPE_ATTR, StandardCharsets.UTF_8.encode(contentType));
+            }
+            if (cacheControl != null) {
+                view.write(CACHE_CONTROL_ATTR, StandardCharsets.UTF_8.encode(cacheControl));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("No extended attributes on {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String readAttribute(Path file, String name) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+            view.read(name, buffer);
+            return StandardCharsets.UTF_8.decode(buffer.flip()).toString();
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static String typeFromExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        String extension = dot > path.lastIndexOf('/') ? path.substring(dot + 1) : "";
+        return Objects.requireNonNullElse(TYPES_BY_EXTENSION.get(extension), "application/octet-stream");
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to remove temp file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.model.enums.UserEventType;
+
+import java.util.Set;
+
+/**
+ * An in-process cache holding per-user data. Implementations are picked up by
+ * {@link UserCacheInvalidationListener} and evicted when another replica (or this one) changes
+ * the user.
+ */
+public interface LocalUserCache {
+
+    String name();
+
+    Set<UserEventType> invalidatedBy();
+
+    void evict(String userUuid);
+}
@@ -0,0 +1,71 @@
+package com.reveria.userservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for long maintenance jobs (search index rebuild, avatar orphan collection).
+ *
+ * The shared scheduler pool (spring.task.scheduling.pool.size) also drives the outbox relay,
+ * the presence flush and the search refresh every second or so; a job holding one of its
+ * threads for minutes starves them. Those jobs keep their @Scheduled trigger but hand the work
+ * over here. A job that is still running is not started a second time.
+ */
+@Component
+@Slf4j
+public class MaintenanceExecutor {
+
+    // One per long job, so they don't wait for each other either
+    private static final int THREADS = 2;
+
+    private final ExecutorService executor;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public MaintenanceExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "maintenance-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the job unless it is still running. Returns whether it was started.
+     */
+    public boolean submit(String job, Runnable task) {
+        if (!running.add(job)) {
+            log.debug("Maintenance job {} still running, skipping this trigger", job);
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    running.remove(job);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            running.remove(job);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
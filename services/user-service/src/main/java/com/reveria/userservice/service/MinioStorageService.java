@@ -1,21 +1,40 @@
 package com.reveria.userservice.service;
 
 import com.reveria.userservice.config.StorageConfig;
+import com.reveria.userservice.exception.FileValidationException;
 import com.reveria.userservice.exception.StorageException;
 import io.minio.*;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.Directive;
+import io.minio.messages.Item;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "minio", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class MinioStorageService implements StorageService {
 
+    // Most keys one DeleteObjects request may carry
+    private static final int MAX_DELETE_BATCH = 1000;
+
     private final MinioClient minioClient;
     private final StorageConfig storageConfig;
 
@@ -33,14 +52,19 @@ public class MinioStorageService implements StorageService {
                                 .bucket(storageConfig.getBucket())
                                 .build()
                 );
-                setPublicReadPolicy();
                 log.info("Created MinIO bucket: {}", storageConfig.getBucket());
             }
+            // Applied on every start, so buckets created with the older bucket-wide policy are narrowed too
+            setPublicReadPolicy();
         } catch (Exception e) {
             throw new StorageException("Failed to initialize MinIO bucket", e);
         }
     }
 
+    /**
+     * Anonymous reads for avatars/ only. Direct and streamed uploads are staged under
+     * staging/ before they are validated, and must not be served from there.
+     */
     private void setPublicReadPolicy() throws Exception {
         String policy = """
                 {
@@ -50,7 +74,7 @@ public class MinioStorageService implements StorageService {
                       "Effect": "Allow",
                       "Principal": {"AWS": ["*"]},
                       "Action": ["s3:GetObject"],
-                      "Resource": ["arn:aws:s3:::%s/*"]
+                      "Resource": ["arn:aws:s3:::%s/avatars/*"]
                     }
                   ]
                 }
@@ -66,6 +90,11 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public String upload(String path, InputStream inputStream, long size, String contentType) {
+        return upload(path, inputStream, size, contentType, null);
+    }
+
+    @Override
+    public String upload(String path, InputStream inputStream, long size, String contentType, String cacheControl) {
         try {
             minioClient.putObject(
                     PutObjectArgs.builder()
@@ -73,15 +102,134 @@ public class MinioStorageService implements StorageService {
                             .object(path)
                             .stream(inputStream, size, -1)
                             .contentType(contentType)
+                            .headers(cacheControl != null ? Map.of("Cache-Control", cacheControl) : Map.of())
                             .build()
             );
 
-            return storageConfig.getEndpoint() + "/" + storageConfig.getBucket() + "/" + path;
+            return urlFor(path);
+        } catch (FileValidationException e) {
+            // Raised by a validating stream part-way through the upload
+            throw e;
         } catch (Exception e) {
             throw new StorageException("Failed to upload file: " + path, e);
         }
     }
 
+    @Override
+    public String copy(String sourcePath, String targetPath, String contentType, String cacheControl) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", contentType);
+        if (cacheControl != null) {
+            headers.put("Cache-Control", cacheControl);
+        }
+        try {
+            minioClient.copyObject(
+                    CopyObjectArgs.builder()
+                            .bucket(storageConfig.getBucket())
+                            .object(targetPath)
+                            .source(CopySource.builder()
+                                    .bucket(storageConfig.getBucket())
+                                    .object(sourcePath)
+                                    .build())
+                            .headers(headers)
+                            .metadataDirective(Directive.REPLACE)
+                            .build()
+            );
+            return urlFor(targetPath);
+        } catch (Exception e) {
+            throw new StorageException("Failed to copy file: " + sourcePath + " -> " + targetPath, e);
+        }
+    }
+
+    @Override
+    public InputStream download(String path) {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(storageConfig.getBucket())
+                            .object(path)
+                            .build()
+            );
+        } catch (Exception e) {
+            throw new StorageException("Failed to download file: " + path, e);
+        }
+    }
+
+    @Override
+    public byte[] readRange(String path, long offset, int length) {
+        try (InputStream in = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(storageConfig.getBucket())
+                        .object(path)
+                        .offset(offset)
+                        .length((long) length)
+                        .build())) {
+            return in.readNBytes(length);
+        } catch (Exception e) {
+            throw new StorageException("Failed to read file: " + path, e);
+        }
+    }
+
+    @Override
+    public ObjectInfo stat(String path) {
+        try {
+            StatObjectResponse response = minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(storageConfig.getBucket())
+                            .object(path)
+                            .build()
+            );
+            return new ObjectInfo(response.size(), response.contentType(), response.lastModified().toInstant());
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            throw new StorageException("Failed to stat file: " + path, e);
+        } catch (Exception e) {
+            throw new StorageException("Failed to stat file: " + path, e);
+        }
+    }
+
+    @Override
+    public Stream<ListedObject> list(String prefix) {
+        // The client pages through ListObjectsV2 lazily while the iterator is consumed
+        Iterable<Result<Item>> results = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(storageConfig.getBucket())
+                        .prefix(prefix)
+                        .recursive(true)
+                        .build()
+        );
+        return StreamSupport.stream(results.spliterator(), false)
+                .map(result -> {
+                    try {
+                        Item item = result.get();
+                        return new ListedObject(item.objectName(), item.size(), item.lastModified().toInstant());
+                    } catch (Exception e) {
+                        throw new StorageException("Failed to list files under: " + prefix, e);
+                    }
+                });
+    }
+
+    /**
+     * A presigned POST rather than PUT: only a POST policy can bound the body size and the
+     * Content-Type, and MinIO rejects the upload itself if either is off.
+     */
+    @Override
+    public PresignedUpload presignUpload(String path, int expirySeconds, long maxSize, String contentTypePrefix) {
+        PostPolicy policy = new PostPolicy(storageConfig.getBucket(), ZonedDateTime.now().plusSeconds(expirySeconds));
+        policy.addEqualsCondition("key", path);
+        policy.addStartsWithCondition("Content-Type", contentTypePrefix);
+        policy.addContentLengthRangeCondition(1, maxSize);
+        try {
+            Map<String, String> fields = new LinkedHashMap<>(minioClient.getPresignedPostFormData(policy));
+            fields.put("key", path);
+            return new PresignedUpload(storageConfig.getEndpoint() + "/" + storageConfig.getBucket(), "POST", fields);
+        } catch (Exception e) {
+            throw new StorageException("Failed to presign upload: " + path, e);
+        }
+    }
+
     @Override
     public void delete(String path) {
         try {
@@ -96,6 +244,38 @@ public class MinioStorageService implements StorageService {
         }
     }
 
+    @Override
+    public Map<String, String> deleteAll(Collection<String> paths) {
+        Map<String, String> failed = new LinkedHashMap<>();
+        List<String> all = new ArrayList<>(paths);
+        for (int from = 0; from < all.size(); from += MAX_DELETE_BATCH) {
+            List<String> chunk = all.subList(from, Math.min(from + MAX_DELETE_BATCH, all.size()));
+            List<DeleteObject> objects = chunk.stream().map(DeleteObject::new).toList();
+            try {
+                // Lazy: the request is only sent while the results are iterated
+                Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                        RemoveObjectsArgs.builder()
+                                .bucket(storageConfig.getBucket())
+                                .objects(objects)
+                                .build()
+                );
+                for (Result<DeleteError> result : results) {
+                    DeleteError error = result.get();
+                    failed.put(error.objectName(), error.code() + ": " + error.message());
+                }
+            } catch (Exception e) {
+                String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                chunk.forEach(path -> failed.putIfAbsent(path, reason));
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public String urlFor(String path) {
+        return storageConfig.getEndpoint() + "/" + storageConfig.getBucket() + "/" + path;
+    }
+
     @Override
     public String extractPathFromUrl(String url) {
         if (url == null) {
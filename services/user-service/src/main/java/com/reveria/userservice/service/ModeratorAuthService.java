@@ -35,6 +35,7 @@ public class ModeratorAuthService {
     private final ModeratorAuthMapper moderatorAuthMapper;
     private final SessionMapper sessionMapper;
     private final LoginAttemptService loginAttemptService;
+    private final LastLoginService lastLoginService;
 
     // LOGIN
 
@@ -73,8 +74,7 @@ public class ModeratorAuthService {
                 username, sessionInfo.ipAddress(), sessionInfo.userAgent(), AccountType.MODERATOR
         );
 
-        moderator.setLastLoginAt(LocalDateTime.now());
-        moderatorRepository.save(moderator);
+        lastLoginService.recordModeratorLogin(moderator.getId(), LocalDateTime.now());
 
         log.info("Moderator logged in: {}", moderator.getUsername());
         return generateAuthResponse(moderator, sessionInfo);
@@ -0,0 +1,332 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarMirrorConfig;
+import com.reveria.userservice.dto.event.UserAvatarUpdatedPayload;
+import com.reveria.userservice.exception.FileValidationException;
+import com.reveria.userservice.model.entity.AuthProvider;
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.AuthProviderRepository;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps a copy of each OAuth provider's profile picture in the avatar store, so clients never
+ * hot-link provider CDNs.
+ *
+ * Logins only note the picture URL the provider reported on the auth_providers row. A new URL
+ * makes the row due at once; after a fetch it is due again after avatar.mirror.recheck-hours,
+ * and the recheck is a conditional GET (If-None-Match / If-Modified-Since), normally answered
+ * with 304 and no body. A fetched image goes through {@link AvatarStore}, whose content hashing
+ * also catches providers that ignore the validators: the same bytes give the same URL.
+ *
+ * The user row is written only when the stored image differs, and only while the user's avatar
+ * is still the provider's (unset, the hot-linked provider URL, or the previous mirror); an avatar
+ * the user uploaded is left alone. Rows are claimed FOR UPDATE SKIP LOCKED with a lease, and no
+ * database connection is held during a fetch or while the image is uploaded to the store; the
+ * reference the store takes is given back if the transaction recording it fails.
+ */
+@Service
+@Slf4j
+public class OAuthAvatarMirror {
+
+    private record Claim(Long id, Long userId, String pictureUrl, String etag, String lastModified) {
+    }
+
+    // body is null for 304 Not Modified
+    private record Fetch(byte[] body, String etag, String lastModified) {
+    }
+
+    private final AuthProviderRepository authProviderRepository;
+    private final UserRepository userRepository;
+    private final AvatarStore avatarStore;
+    private final UserEventPublisher userEventPublisher;
+    private final UserSnapshotPublisher userSnapshotPublisher;
+    private final AvatarMirrorConfig config;
+    private final TransactionTemplate transactionTemplate;
+    private final RestTemplate restTemplate;
+
+    private final Counter changedCounter;
+    private final Counter unchangedCounter;
+    private final Counter notModifiedCounter;
+    private final Counter skippedCounter;
+    private final Counter failedCounter;
+
+    @Autowired
+    public OAuthAvatarMirror(AuthProviderRepository authProviderRepository,
+                             UserRepository userRepository,
+                             AvatarStore avatarStore,
+                             UserEventPublisher userEventPublisher,
+                             UserSnapshotPublisher userSnapshotPublisher,
+                             AvatarMirrorConfig config,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this(authProviderRepository, userRepository, avatarStore, userEventPublisher, userSnapshotPublisher, config,
+                transactionManager, meterRegistry, restTemplate(config));
+    }
+
+    OAuthAvatarMirror(AuthProviderRepository authProviderRepository,
+                      UserRepository userRepository,
+                      AvatarStore avatarStore,
+                      UserEventPublisher userEventPublisher,
+                      UserSnapshotPublisher userSnapshotPublisher,
+                      AvatarMirrorConfig config,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      RestTemplate restTemplate) {
+        this.authProviderRepository = authProviderRepository;
+        this.userRepository = userRepository;
+        this.avatarStore = avatarStore;
+        this.userEventPublisher = userEventPublisher;
+        this.userSnapshotPublisher = userSnapshotPublisher;
+        this.config = config;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.restTemplate = restTemplate;
+
+        this.changedCounter = fetchCounter(meterRegistry, "changed");
+        this.unchangedCounter = fetchCounter(meterRegistry, "unchanged");
+        this.notModifiedCounter = fetchCounter(meterRegistry, "not_modified");
+        this.skippedCounter = fetchCounter(meterRegistry, "skipped");
+        this.failedCounter = fetchCounter(meterRegistry, "failed");
+    }
+
+    private static Counter fetchCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("avatar.mirror.fetches")
+                .tag("outcome", outcome)
+                .description("Provider picture fetches by the OAuth avatar mirror")
+                .register(meterRegistry);
+    }
+
+    private static RestTemplate restTemplate(AvatarMirrorConfig config) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(config.getConnectTimeoutMs());
+        requestFactory.setReadTimeout(config.getReadTimeoutMs());
+        return new RestTemplate(requestFactory);
+    }
+
+    /**
+     * Records the picture URL a provider reported at login. Returns whether the row changed;
+     * an unchanged URL costs no write at all.
+     */
+    public static boolean notePicture(AuthProvider provider, String pictureUrl) {
+        if (pictureUrl == null || pictureUrl.equals(provider.getPictureUrl())) {
+            return false;
+        }
+        provider.setPictureUrl(pictureUrl);
+        provider.setPictureEtag(null);
+        provider.setPictureLastModified(null);
+        provider.setPictureCheckAt(LocalDateTime.now());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${avatar.mirror.poll-interval-ms:30000}")
+    public void poll() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        List<Claim> batch;
+        do {
+            batch = claimBatch();
+            batch.forEach(this::mirror);
+        } while (batch.size() == config.getBatchSize());
+    }
+
+    private List<Claim> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<AuthProvider> rows = authProviderRepository.lockDuePictures(now, config.getBatchSize());
+            LocalDateTime leaseUntil = now.plusMinutes(config.getLeaseMinutes());
+            return rows.stream()
+                    .map(row -> {
+                        row.setPictureCheckAt(leaseUntil);
+                        return new Claim(row.getId(), row.getUser().getId(), row.getPictureUrl(),
+                                row.getPictureEtag(), row.getPictureLastModified());
+                    })
+                    .toList();
+        });
+    }
+
+    private void mirror(Claim claim) {
+        Fetch fetch;
+        try {
+            fetch = fetch(claim);
+        } catch (HttpClientErrorException | FileValidationException e) {
+            // Gone, forbidden or oversized; a new login brings a new URL if the picture moved
+            failedCounter.increment();
+            log.info("Picture for auth provider {} unavailable: {}", claim.id(), e.getMessage());
+            reschedule(claim, nextRecheck());
+            return;
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.warn("Fetching picture for auth provider {} failed: {}", claim.id(), e.getMessage());
+            reschedule(claim, LocalDateTime.now().plusMinutes(config.getRetryMinutes()));
+            return;
+        }
+
+        if (fetch.body() == null) {
+            notModifiedCounter.increment();
+            transactionTemplate.executeWithoutResult(status -> current(claim).ifPresent(provider -> {
+                // A 304 may carry refreshed validators
+                if (fetch.etag() != null) {
+                    provider.setPictureEtag(fetch.etag());
+                }
+                if (fetch.lastModified() != null) {
+                    provider.setPictureLastModified(fetch.lastModified());
+                }
+                provider.setPictureCheckAt(nextRecheck());
+            }));
+            return;
+        }
+
+        // Stored before the transaction, so no connection or row lock is held during the upload
+        AvatarStore.StoredAvatar stored;
+        try {
+            stored = avatarStore.store(fetch.body());
+        } catch (FileValidationException e) {
+            // Not an image we accept; look again on the slow schedule rather than hourly
+            failedCounter.increment();
+            log.info("Picture for auth provider {} rejected: {}", claim.id(), e.getMessage());
+            reschedule(claim, nextRecheck());
+            return;
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            log.warn("Storing picture for auth provider {} failed: {}", claim.id(), e.getMessage());
+            reschedule(claim, LocalDateTime.now().plusMinutes(config.getRetryMinutes()));
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(claim, fetch, stored));
+        } catch (RuntimeException e) {
+            // Rolled back, so nothing took over the reference the store gave us
+            releaseQuietly(stored);
+            failedCounter.increment();
+            log.warn("Mirroring picture for auth provider {} failed: {}", claim.id(), e.getMessage());
+            reschedule(claim, LocalDateTime.now().plusMinutes(config.getRetryMinutes()));
+        }
+    }
+
+    private void releaseQuietly(AvatarStore.StoredAvatar stored) {
+        try {
+            avatarStore.release(stored.url(), stored.variants());
+        } catch (RuntimeException e) {
+            // The object keeps a reference nobody holds; the orphan collector reports it
+            log.warn("Failed to release mirrored picture {}: {}", stored.url(), e.getMessage());
+        }
+    }
+
+    private Fetch fetch(Claim claim) {
+        return restTemplate.execute(URI.create(claim.pictureUrl()), HttpMethod.GET, request -> {
+            HttpHeaders headers = request.getHeaders();
+            headers.setAccept(List.of(MediaType.parseMediaType("image/*")));
+            if (claim.etag() != null) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, claim.etag());
+            }
+            if (claim.lastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, claim.lastModified());
+            }
+        }, response -> {
+            String etag = response.getHeaders().getETag();
+            String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                return new Fetch(null, etag, lastModified);
+            }
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new RestClientException("Unexpected status " + response.getStatusCode().value());
+            }
+            byte[] body = response.getBody().readNBytes(config.getMaxBytes() + 1);
+            if (body.length > config.getMaxBytes()) {
+                throw new FileValidationException("Picture larger than " + config.getMaxBytes() + " bytes", "file");
+            }
+            return new Fetch(body, etag, lastModified);
+        });
+    }
+
+    private void apply(Claim claim, Fetch fetch, AvatarStore.StoredAvatar stored) {
+        AuthProvider provider = current(claim).orElse(null);
+        if (provider == null) {
+            // Unlinked, or the picture URL changed again meanwhile; that change is due already
+            avatarStore.release(stored.url(), stored.variants());
+            skippedCounter.increment();
+            return;
+        }
+        provider.setPictureEtag(fetch.etag());
+        provider.setPictureLastModified(fetch.lastModified());
+        provider.setPictureCheckAt(nextRecheck());
+
+        String previousMirror = provider.getPictureMirrorUrl();
+        if (stored.url().equals(previousMirror)) {
+            // Same bytes (validators missing or ignored): give back the reference the store took
+            avatarStore.release(stored.url(), stored.variants());
+            unchangedCounter.increment();
+            return;
+        }
+
+        User user = userRepository.lockById(claim.userId()).orElse(null);
+        String currentAvatar = user != null ? user.getAvatarUrl() : null;
+        boolean providerAvatar = user != null && (currentAvatar == null
+                || currentAvatar.equals(provider.getPictureUrl())
+                || currentAvatar.equals(previousMirror));
+        if (!providerAvatar) {
+            // The user chose another avatar; don't keep a copy nobody shows
+            avatarStore.release(stored.url(), stored.variants());
+            provider.setPictureMirrorUrl(null);
+            skippedCounter.increment();
+            return;
+        }
+
+        // Hot-linked provider URLs aren't ours and are ignored by release
+        avatarStore.release(currentAvatar, user.getAvatarVariants());
+        user.setAvatarUrl(stored.url());
+        user.setAvatarVariants(stored.variants());
+        provider.setPictureMirrorUrl(stored.url());
+        user = userRepository.save(user);
+        userEventPublisher.publish(UserEventType.USER_AVATAR_UPDATED, user.getUuid(),
+                new UserAvatarUpdatedPayload(user.getAvatarUrl()));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_AVATAR_UPDATED);
+        changedCounter.increment();
+        log.debug("Mirrored provider picture for user {}", user.getUsername());
+    }
+
+    private void reschedule(Claim claim, LocalDateTime at) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    current(claim).ifPresent(provider -> provider.setPictureCheckAt(at)));
+        } catch (RuntimeException e) {
+            // The lease expires and the row is claimed again
+            log.warn("Failed to reschedule auth provider {}: {}", claim.id(), e.getMessage());
+        }
+    }
+
+    /**
+     * The claimed row, if it still exists and still points at the picture that was fetched.
+     */
+    private Optional<AuthProvider> current(Claim claim) {
+        return authProviderRepository.findById(claim.id())
+                .filter(provider -> claim.pictureUrl().equals(provider.getPictureUrl()));
+    }
+
+    private LocalDateTime nextRecheck() {
+        return LocalDateTime.now().plusHours(config.getRecheckHours());
+    }
+}
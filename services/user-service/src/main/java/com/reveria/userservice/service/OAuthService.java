@@ -1,5 +1,8 @@
 package com.reveria.userservice.service;
 
+import com.reveria.userservice.dto.event.UserLoggedInPayload;
+import com.reveria.userservice.dto.event.UserOAuthProviderPayload;
+import com.reveria.userservice.dto.event.UserRegisteredPayload;
 import com.reveria.userservice.dto.OAuthUserInfo;
 import com.reveria.userservice.dto.SessionInfo;
 import com.reveria.userservice.dto.response.AuthResponse;
@@ -19,6 +22,7 @@ import com.reveria.userservice.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.*;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
@@ -27,7 +31,10 @@ import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
@@ -51,6 +58,11 @@ public class OAuthService {
     private final ClientRegistrationRepository clientRegistrationRepository;
     private final RestTemplate restTemplate;
     private final UserEventPublisher userEventPublisher;
+    private final UserSnapshotPublisher userSnapshotPublisher;
+    private final PlatformTransactionManager transactionManager;
+    private final LastLoginService lastLoginService;
+
+    private static final int MAX_USERNAME_ATTEMPTS = 5;
 
     private final DefaultOAuth2UserService oAuth2UserService = new DefaultOAuth2UserService();
 
@@ -59,7 +71,7 @@ public class OAuthService {
         OAuthUserInfo userInfo = getUserInfo(provider, code, redirectUri);
         User user = findOrCreateUser(userInfo);
         userEventPublisher.publish(UserEventType.USER_LOGGED_IN, user.getUuid(),
-                Map.of("ipAddress", sessionInfo.ipAddress(), "provider", provider.name()));
+                new UserLoggedInPayload(sessionInfo.ipAddress(), provider.name()));
         return generateAuthResponse(user, sessionInfo);
     }
 
@@ -215,14 +227,17 @@ public class OAuthService {
                 .findByProviderAndProviderId(userInfo.getProvider(), userInfo.getProviderId());
 
         if (existingProvider.isPresent()) {
-            User user = existingProvider.get().getUser();
-            user.setLastLoginAt(LocalDateTime.now());
-
-            if (userInfo.getPictureUrl() != null) {
-                user.setAvatarUrl(userInfo.getPictureUrl());
+            AuthProvider provider = existingProvider.get();
+            User user = provider.getUser();
+            lastLoginService.recordUserLogin(user.getId(), LocalDateTime.now());
+
+            // Only a new picture URL is noted; OAuthAvatarMirror fetches it in the background and
+            // writes the user row if the image itself changed
+            if (OAuthAvatarMirror.notePicture(provider, userInfo.getPictureUrl())) {
+                authProviderRepository.save(provider);
             }
 
-            return userRepository.save(user);
+            return user;
         }
 
         Optional<User> existingUser = userRepository.findByEmail(userInfo.getEmail());
@@ -230,16 +245,37 @@ public class OAuthService {
         if (existingUser.isPresent()) {
             User user = existingUser.get();
             linkProvider(user, userInfo);
-            user.setLastLoginAt(LocalDateTime.now());
-            return userRepository.save(user);
+            lastLoginService.recordUserLogin(user.getId(), LocalDateTime.now());
+            return user;
         }
 
         return createNewUser(userInfo);
     }
 
     private User createNewUser(OAuthUserInfo userInfo) {
-        String username = generateUniqueUsername(userInfo.getName(), userInfo.getEmail());
+        String baseUsername = generateBaseUsername(userInfo.getName(), userInfo.getEmail());
+
+        // The insert runs in its own transaction so a unique violation on username
+        // doesn't poison the surrounding one; on conflict we re-read the suffix and retry.
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        for (int attempt = 1; ; attempt++) {
+            String username = nextAvailableUsername(baseUsername);
+            try {
+                User user = transactionTemplate.execute(status -> insertNewUser(userInfo, username));
+                log.info("New OAuth user created: {} via {}", user.getUsername(), userInfo.getProvider());
+                return user;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= MAX_USERNAME_ATTEMPTS || !userRepository.existsByUsername(username)) {
+                    throw e;
+                }
+                log.info("Username {} was taken concurrently, retrying (attempt {})", username, attempt);
+            }
+        }
+    }
 
+    private User insertNewUser(OAuthUserInfo userInfo, String username) {
         User user = User.builder()
                 .email(userInfo.getEmail().toLowerCase())
                 .username(username)
@@ -250,13 +286,13 @@ public class OAuthService {
                 .lastLoginAt(LocalDateTime.now())
                 .build();
 
-        user = userRepository.save(user);
+        user = userRepository.saveAndFlush(user);
         linkProvider(user, userInfo);
 
-        log.info("New OAuth user created: {} via {}", user.getUsername(), userInfo.getProvider());
+        // Written to the outbox inside the insert transaction so the event commits with the row
         userEventPublisher.publish(UserEventType.USER_REGISTERED, user.getUuid(),
-                Map.of("email", user.getEmail(), "username", user.getUsername(),
-                        "provider", userInfo.getProvider().name()));
+                new UserRegisteredPayload(user.getEmail(), user.getUsername(), userInfo.getProvider().name()));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_REGISTERED);
         return user;
     }
 
@@ -267,12 +303,13 @@ public class OAuthService {
                 .providerId(userInfo.getProviderId())
                 .linkedAt(LocalDateTime.now())
                 .build();
+        OAuthAvatarMirror.notePicture(provider, userInfo.getPictureUrl());
 
         authProviderRepository.save(provider);
         log.info("Linked {} provider to user: {}", userInfo.getProvider(), user.getUsername());
     }
 
-    private String generateUniqueUsername(String name, String email) {
+    private String generateBaseUsername(String name, String email) {
         String baseUsername;
         if (name != null && !name.isBlank()) {
             String cleanedName = name.toLowerCase()
@@ -289,15 +326,25 @@ public class OAuthService {
             baseUsername = "user";
         }
 
-        String username = baseUsername;
-        int counter = 1;
+        return baseUsername;
+    }
+
+    private String nextAvailableUsername(String baseUsername) {
+        UserRepository.UsernameSuffixStats stats = userRepository.findUsernameSuffixStats(
+                baseUsername, escapeLikePattern(baseUsername) + "%");
 
-        while (userRepository.existsByUsername(username)) {
-            username = baseUsername + counter;
-            counter++;
+        if (stats == null || !Boolean.TRUE.equals(stats.getBaseTaken())) {
+            return baseUsername;
         }
 
-        return username;
+        long maxSuffix = stats.getMaxSuffix() != null ? stats.getMaxSuffix() : 0;
+        return baseUsername + (maxSuffix + 1);
+    }
+
+    private static String escapeLikePattern(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
     private AuthResponse generateAuthResponse(User user, SessionInfo sessionInfo) {
@@ -340,7 +387,7 @@ public class OAuthService {
 
         linkProvider(user, userInfo);
         userEventPublisher.publish(UserEventType.USER_OAUTH_LINKED, user.getUuid(),
-                Map.of("provider", provider.name()));
+                new UserOAuthProviderPayload(provider.name()));
     }
 
     @Transactional
@@ -360,6 +407,6 @@ public class OAuthService {
 
         log.info("Unlinked {} provider from user: {}", provider, user.getUsername());
         userEventPublisher.publish(UserEventType.USER_OAUTH_UNLINKED, user.getUuid(),
-                Map.of("provider", provider.name()));
+                new UserOAuthProviderPayload(provider.name()));
     }
 }
\ No newline at end of file
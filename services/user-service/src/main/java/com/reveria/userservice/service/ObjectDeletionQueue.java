@@ -0,0 +1,230 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.StorageDeletionConfig;
+import com.reveria.userservice.model.entity.PendingObjectDeletion;
+import com.reveria.userservice.repository.PendingObjectDeletionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Removes storage objects outside request transactions.
+ *
+ * Callers record paths in pending_object_deletions inside their own transaction, so nothing is
+ * deleted unless the change that orphaned the objects commits, and no storage call holds a
+ * database connection. After commit the worker thread is woken; it claims due rows in batches
+ * through {@link LeasedJobQueue}, removes them with one bulk delete per batch and drops the
+ * rows. Failures are retried with backoff and given up after storage.deletion.max-attempts,
+ * leaving the object to the orphan sweep.
+ */
+@Service
+@Slf4j
+public class ObjectDeletionQueue {
+
+    private final PendingObjectDeletionRepository repository;
+    private final StorageService storageService;
+    private final LeasedJobQueue<PendingObjectDeletion> queue;
+    private final TransactionTemplate newTransactionTemplate;
+
+    private final ExecutorService worker;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    private final Timer batchTimer;
+    private final Counter deletedCounter;
+    private final Counter retryCounter;
+    private final Counter abandonedCounter;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    public ObjectDeletionQueue(PendingObjectDeletionRepository repository,
+                               StorageService storageService,
+                               StorageDeletionConfig config,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.storageService = storageService;
+        this.queue = new LeasedJobQueue<>(repository, repository::lockDueBatch,
+                new TransactionTemplate(transactionManager), config.getBatchSize(), config.getLeaseMs(),
+                config.getMaxAttempts(), config.getInitialBackoffMs(), config.getMaxBackoffMs());
+        // Also used from afterCompletion callbacks, where the finished transaction is still bound
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "object-deleter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.batchTimer = Timer.builder("storage.deletion.batch.latency")
+                .description("Time for one bulk delete request to the object store")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("storage.deletion.deleted")
+                .description("Objects removed by the deletion queue")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("storage.deletion.failures")
+                .tag("outcome", "retry")
+                .description("Failed object deletions")
+                .register(meterRegistry);
+        this.abandonedCounter = Counter.builder("storage.deletion.failures")
+                .tag("outcome", "abandoned")
+                .description("Failed object deletions")
+                .register(meterRegistry);
+        Gauge.builder("storage.deletion.queue.depth", queueDepth, AtomicLong::get)
+                .description("Objects waiting to be deleted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Schedules the objects for deletion once the current transaction commits; nothing happens
+     * if it rolls back.
+     */
+    public void deleteAfterCommit(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteNow(paths);
+            return;
+        }
+        repository.saveAll(toRows(paths));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    /**
+     * Schedules objects that must go whatever the current transaction's outcome (staged uploads,
+     * for instance). They are recorded once it has completed.
+     */
+    public void deleteAfterCompletion(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteNow(paths);
+            return;
+        }
+        List<String> copy = List.copyOf(paths);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    deleteNow(copy);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to queue {} objects for deletion: {}", copy.size(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${storage.deletion.poll-interval-ms:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void refreshStats() {
+        queueDepth.set(repository.count());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        worker.shutdown();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void deleteNow(Collection<String> paths) {
+        newTransactionTemplate.executeWithoutResult(status -> repository.saveAll(toRows(paths)));
+        wakeUp();
+    }
+
+    private void wakeUp() {
+        // Coalesces bursts of commits into one pass of the worker
+        if (wakeupPending.compareAndSet(false, true)) {
+            worker.execute(() -> {
+                wakeupPending.set(false);
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    // Lease expiry makes a claimed batch claimable again
+                    log.error("Object deletion pass failed: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    void drain() {
+        List<PendingObjectDeletion> batch;
+        do {
+            batch = queue.claim();
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<String> paths = batch.stream().map(PendingObjectDeletion::getPath).distinct().toList();
+            Timer.Sample sample = Timer.start();
+            Map<String, String> failures = storageService.deleteAll(paths);
+            sample.stop(batchTimer);
+            complete(batch, failures);
+        } while (batch.size() == queue.batchSize());
+    }
+
+    private void complete(List<PendingObjectDeletion> batch, Map<String, String> failures) {
+        List<PendingObjectDeletion> done = new ArrayList<>();
+        List<PendingObjectDeletion> retry = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = 0;
+
+        for (PendingObjectDeletion row : batch) {
+            String error = failures.get(row.getPath());
+            if (error == null) {
+                done.add(row);
+                deleted++;
+            } else if (queue.fail(row, error, now)) {
+                retry.add(row);
+                retryCounter.increment();
+                log.warn("Deleting {} failed (attempt {}), retrying: {}", row.getPath(), row.getAttempts(), error);
+            } else {
+                done.add(row);
+                abandonedCounter.increment();
+                log.error("Giving up on deleting {} after {} attempts: {}", row.getPath(), row.getAttempts(), error);
+            }
+        }
+
+        queue.finish(done, retry);
+        if (deleted > 0) {
+            deletedCounter.increment(deleted);
+            log.debug("Deleted {} stored objects", deleted);
+        }
+    }
+
+    private static List<PendingObjectDeletion> toRows(Collection<String> paths) {
+        LocalDateTime now = LocalDateTime.now();
+        return paths.stream()
+                .map(path -> PendingObjectDeletion.builder().path(path).nextAttemptAt(now).build())
+                .toList();
+    }
+}
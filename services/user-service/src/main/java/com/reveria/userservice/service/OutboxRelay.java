@@ -0,0 +1,203 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox table to Kafka.
+ *
+ * Rows are spread over outbox.partitions partitions by user key; a row belongs to partition
+ * {@code partition_no % partitions}, so rows written under another partition count are still
+ * drained. Claiming works like {@link EmailDispatcher}: under a transaction-scoped advisory lock
+ * on the partition, a batch is selected FOR UPDATE SKIP LOCKED and leased, and the transaction
+ * commits before anything is sent. The batch is deleted once Kafka acknowledged it. A partition
+ * with a live lease is not claimed again, so only one batch per partition is in flight and
+ * events for the same user keep their order. A failed send releases the lease and the batch is
+ * retried on the next poll (at-least-once; consumers dedupe on eventId).
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    // Advisory lock namespace for outbox partitions
+    private static final int LOCK_NAMESPACE = 0x0B0C;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final KafkaConfig kafkaConfig;
+    private final OutboxConfig outboxConfig;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter relayedCounter;
+    private final Counter failureCounter;
+    private final Timer batchTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaTemplate<String, byte[]> kafkaTemplate,
+                       KafkaConfig kafkaConfig,
+                       OutboxConfig outboxConfig,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.kafkaConfig = kafkaConfig;
+        this.outboxConfig = outboxConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.relayedCounter = Counter.builder("outbox.relayed")
+                .description("Outbox events delivered to Kafka")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("outbox.relay.failures")
+                .description("Outbox batches that could not be claimed, sent or deleted")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("outbox.relay.batch")
+                .description("Time to send and delete one outbox batch")
+                .register(meterRegistry);
+        Gauge.builder("outbox.pending", pending, AtomicLong::get)
+                .description("Events waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag.seconds", lagMillis, v -> v.get() / 1000.0)
+                .description("Age of the oldest undelivered outbox event")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:500}")
+    public void relay() {
+        for (int partition = 0; partition < outboxConfig.getPartitions(); partition++) {
+            int sent;
+            do {
+                sent = relayPartition(partition);
+            } while (sent == outboxConfig.getBatchSize());
+        }
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void refreshStats() {
+        OutboxEventRepository.OutboxStats stats = outboxEventRepository.getStats();
+        pending.set(stats.getPending() != null ? stats.getPending() : 0);
+        LocalDateTime oldest = stats.getOldestCreatedAt();
+        lagMillis.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0);
+    }
+
+    private int relayPartition(int partition) {
+        Timer.Sample sample = Timer.start();
+        List<OutboxEvent> batch;
+        try {
+            batch = claimBatch(partition);
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.error("Failed to claim outbox partition {}: {}", partition, e.getMessage());
+            return 0;
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+        try {
+            send(batch);
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.error("Failed to relay outbox partition {}: {}", partition, e.getMessage());
+            releaseQuietly(ids);
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.deleteAllByIdInBatch(ids));
+        } catch (RuntimeException e) {
+            // Sent already; lease expiry sends the batch again and consumers dedupe it
+            failureCounter.increment();
+            log.error("Failed to delete relayed outbox batch of partition {}: {}", partition, e.getMessage());
+            return 0;
+        }
+
+        relayedCounter.increment(batch.size());
+        sample.stop(batchTimer);
+        log.debug("Relayed {} outbox events from partition {}", batch.size(), partition);
+        return batch.size();
+    }
+
+    private List<OutboxEvent> claimBatch(int partition) {
+        return transactionTemplate.execute(status -> {
+            if (!outboxEventRepository.tryLockPartition(LOCK_NAMESPACE, partition)) {
+                return List.of();
+            }
+            LocalDateTime now = LocalDateTime.now();
+            int partitions = outboxConfig.getPartitions();
+            if (outboxEventRepository.hasLeasedRows(partition, partitions, now)) {
+                // Another replica is still sending this partition's previous batch
+                return List.of();
+            }
+            List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(
+                    partition, partitions, now, outboxConfig.getBatchSize());
+            LocalDateTime leaseUntil = now.plusNanos(outboxConfig.getLeaseMs() * 1_000_000);
+            for (OutboxEvent event : batch) {
+                event.setLockedUntil(leaseUntil);
+            }
+            return batch;
+        });
+    }
+
+    private void releaseQuietly(List<Long> ids) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.releaseLease(ids));
+        } catch (RuntimeException e) {
+            // The lease runs out on its own
+            log.warn("Failed to release outbox lease: {}", e.getMessage());
+        }
+    }
+
+    private void send(List<OutboxEvent> batch) {
+        List<CompletableFuture<?>> futures = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            futures.add(kafkaTemplate.send(toRecord(event)));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(outboxConfig.getSendTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending outbox batch", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Kafka send failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ProducerRecord<String, byte[]> toRecord(OutboxEvent event) {
+        String topic = event.getTopic() != null ? event.getTopic() : kafkaConfig.getUserEventsTopic();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, event.getAggregateKey(), event.getPayload());
+        Headers headers = record.headers();
+        headers.add(UserEventCodec.CONTENT_TYPE_HEADER, event.getContentType().getBytes(StandardCharsets.UTF_8));
+        headers.add(UserEventCodec.EVENT_TYPE_HEADER, event.getEventType().name().getBytes(StandardCharsets.UTF_8));
+        if (event.getSchemaId() != null) {
+            headers.add(UserEventCodec.SCHEMA_ID_HEADER, event.getSchemaId().getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+}
@@ -0,0 +1,406 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.PresenceConfig;
+import com.reveria.userservice.dto.event.PresenceEvent;
+import com.reveria.userservice.dto.response.PresenceResponse;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online presence, kept entirely out of Postgres.
+ *
+ * Heartbeats land in a local table split into shards by uuid hash, and are coalesced there: a
+ * user beating many times between flushes costs one Redis write. Every flush stores the latest
+ * beat of each user in two sorted sets shared by all replicas (score = last seen), through a
+ * script that also reports who wasn't online before, so each online transition is announced
+ * exactly once cluster-wide. The online set only holds users within the TTL: one replica at a
+ * time sweeps expired users from it and announces them offline. The last-seen set keeps everyone
+ * seen within the retention period, so last-seen outlives going offline. Queries answer from the
+ * local table and ask Redis only for users it doesn't know to be online.
+ *
+ * Users with showOnlineStatus off are reported offline to everyone but themselves, and no
+ * transitions are announced for them.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private static final String ONLINE_KEY = "presence:online";
+    private static final String LAST_SEEN_KEY = "presence:last-seen";
+    private static final String SWEEP_LOCK_KEY = "presence:sweep-lock";
+
+    // KEYS: online set, last-seen set. ARGV: expiry cutoff, then member/score pairs.
+    // Returns the members that weren't online before this write.
+    private static final RedisScript<List> RECORD_SCRIPT = new DefaultRedisScript<>("""
+            local cutoff = tonumber(ARGV[1])
+            local online = {}
+            for i = 2, #ARGV, 2 do
+                local previous = redis.call('ZSCORE', KEYS[1], ARGV[i])
+                if not previous or tonumber(previous) < cutoff then
+                    online[#online + 1] = ARGV[i]
+                end
+                redis.call('ZADD', KEYS[1], 'GT', ARGV[i + 1], ARGV[i])
+                redis.call('ZADD', KEYS[2], 'GT', ARGV[i + 1], ARGV[i])
+            end
+            return online
+            """, List.class);
+
+    // KEYS: online set. ARGV: expiry cutoff, batch size. Removes and returns expired members.
+    private static final RedisScript<List> SWEEP_SCRIPT = new DefaultRedisScript<>("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+            if #expired > 0 then
+                redis.call('ZREM', KEYS[1], unpack(expired))
+            end
+            return expired
+            """, List.class);
+
+    private record Shard(Map<String, Long> lastSeen, Map<String, Long> pending) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final PublicProfileService publicProfileService;
+    private final PresenceConfig config;
+    private final String topic;
+
+    private final Shard[] shards;
+    private volatile long redisRetryAt;
+
+    private final Counter heartbeatCounter;
+    private final Counter onlineCounter;
+    private final Counter offlineCounter;
+
+    public PresenceService(StringRedisTemplate redisTemplate,
+                           KafkaTemplate<String, byte[]> kafkaTemplate,
+                           ObjectMapper objectMapper,
+                           PublicProfileService publicProfileService,
+                           PresenceConfig config,
+                           KafkaConfig kafkaConfig,
+                           MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.publicProfileService = publicProfileService;
+        this.config = config;
+        this.topic = kafkaConfig.getUserPresenceTopic();
+        this.shards = new Shard[Math.max(1, config.getShards())];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+
+        this.heartbeatCounter = Counter.builder("presence.heartbeats")
+                .description("Heartbeats received")
+                .register(meterRegistry);
+        this.onlineCounter = Counter.builder("presence.transitions")
+                .tag("state", "online")
+                .description("Presence transitions announced")
+                .register(meterRegistry);
+        this.offlineCounter = Counter.builder("presence.transitions")
+                .tag("state", "offline")
+                .description("Presence transitions announced")
+                .register(meterRegistry);
+        Gauge.builder("presence.local.size", shards,
+                        all -> Arrays.stream(all).mapToInt(shard -> shard.lastSeen().size()).sum())
+                .description("Users in this replica's presence table")
+                .register(meterRegistry);
+    }
+
+    public void heartbeat(String uuid) {
+        heartbeat(uuid, System.currentTimeMillis());
+    }
+
+    void heartbeat(String uuid, long now) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Shard shard = shardOf(uuid);
+        shard.lastSeen().merge(uuid, now, Math::max);
+        shard.pending().merge(uuid, now, Math::max);
+        heartbeatCounter.increment();
+    }
+
+    /**
+     * Presence of known users, in request order, as the viewer may see it.
+     */
+    public List<PresenceResponse> presence(Collection<String> uuids, String viewerUuid) {
+        return presence(uuids, viewerUuid, System.currentTimeMillis());
+    }
+
+    List<PresenceResponse> presence(Collection<String> uuids, String viewerUuid, long now) {
+        Map<String, PublicProfileCache.CachedProfile> profiles = publicProfileService.profiles(uuids);
+        long cutoff = now - config.getTtlMs();
+
+        Map<String, Long> lastSeen = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String uuid : new LinkedHashSet<>(uuids)) {
+            PublicProfileCache.CachedProfile profile = profiles.get(uuid);
+            if (profile == null || !visible(profile, viewerUuid)) {
+                continue;
+            }
+            Long seen = shardOf(uuid).lastSeen().get(uuid);
+            if (seen != null && seen >= cutoff) {
+                lastSeen.put(uuid, seen);
+            } else {
+                unknown.add(uuid);
+            }
+        }
+        if (!unknown.isEmpty() && config.isEnabled()) {
+            lastSeen.putAll(fetchRemote(unknown));
+        }
+
+        List<PresenceResponse> responses = new ArrayList<>();
+        for (String uuid : new LinkedHashSet<>(uuids)) {
+            PublicProfileCache.CachedProfile profile = profiles.get(uuid);
+            if (profile == null) {
+                continue;
+            }
+            Long seen = lastSeen.get(uuid);
+            responses.add(PresenceResponse.builder()
+                    .uuid(uuid)
+                    .online(seen != null && seen >= cutoff)
+                    .lastSeenAt(seen != null ? Instant.ofEpochMilli(seen) : null)
+                    .build());
+        }
+        return responses;
+    }
+
+    /**
+     * Announces the change when a user hides or reveals their online status while online. Call
+     * it only when the setting actually changed; inside a transaction, nothing is announced
+     * until it commits.
+     */
+    public void onVisibilityChanged(String uuid, boolean showOnlineStatus) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            announceVisibility(uuid, showOnlineStatus);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                announceVisibility(uuid, showOnlineStatus);
+            }
+        });
+    }
+
+    private void announceVisibility(String uuid, boolean showOnlineStatus) {
+        if (!showOnlineStatus) {
+            announce(uuid, false, System.currentTimeMillis());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long seen = shardOf(uuid).lastSeen().get(uuid);
+        if (seen == null || seen < now - config.getTtlMs()) {
+            seen = fetchRemote(List.of(uuid)).get(uuid);
+        }
+        if (seen != null && seen >= now - config.getTtlMs()) {
+            announce(uuid, true, now);
+        }
+    }
+
+    /**
+     * Writes the beats coalesced since the last flush to Redis and announces who came online.
+     */
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:1000}")
+    public void flush() {
+        flush(System.currentTimeMillis());
+    }
+
+    void flush(long now) {
+        if (!config.isEnabled() || now < redisRetryAt) {
+            return;
+        }
+        for (Shard shard : shards) {
+            Map<String, Long> batch = new HashMap<>();
+            for (Map.Entry<String, Long> entry : shard.pending().entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                // A beat that arrived meanwhile stays pending for the next flush
+                shard.pending().remove(entry.getKey(), entry.getValue());
+                if (batch.size() >= config.getRedisBatchSize()) {
+                    if (!record(shard, batch, now)) {
+                        return;
+                    }
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty() && !record(shard, batch, now)) {
+                return;
+            }
+        }
+    }
+
+    private boolean record(Shard shard, Map<String, Long> batch, long now) {
+        List<String> args = new ArrayList<>(batch.size() * 2 + 1);
+        args.add(Long.toString(now - config.getTtlMs()));
+        batch.forEach((uuid, seen) -> {
+            args.add(uuid);
+            args.add(Long.toString(seen));
+        });
+        List<?> cameOnline;
+        try {
+            cameOnline = redisTemplate.execute(RECORD_SCRIPT, List.of(ONLINE_KEY, LAST_SEEN_KEY), args.toArray());
+        } catch (DataAccessException e) {
+            // Keep the beats for the next attempt; newer ones for the same user win
+            batch.forEach((uuid, seen) -> shard.pending().merge(uuid, seen, Math::max));
+            backOff(now, e);
+            return false;
+        }
+        if (cameOnline != null && !cameOnline.isEmpty()) {
+            List<String> uuids = cameOnline.stream().map(Object::toString).toList();
+            Map<String, PublicProfileCache.CachedProfile> profiles = publicProfileService.profiles(uuids);
+            for (String uuid : uuids) {
+                PublicProfileCache.CachedProfile profile = profiles.get(uuid);
+                if (profile != null && PrivacyFlags.showOnlineStatus(profile.privacyFlags())) {
+                    announce(uuid, true, batch.get(uuid));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops expired users from the local table, and on one replica at a time removes them from
+     * the online set and announces them offline. Their last-seen stays until it is older than the
+     * retention period.
+     */
+    @Scheduled(fixedDelayString = "${presence.sweep-interval-ms:5000}")
+    public void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    void sweep(long now) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long cutoff = now - config.getTtlMs();
+        for (Shard shard : shards) {
+            shard.lastSeen().values().removeIf(seen -> seen < cutoff);
+        }
+        if (now < redisRetryAt) {
+            return;
+        }
+
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean locked = redisTemplate.opsForValue()
+                    .setIfAbsent(SWEEP_LOCK_KEY, token, Duration.ofMillis(config.getSweepIntervalMs()));
+            if (!Boolean.TRUE.equals(locked)) {
+                return;
+            }
+            List<?> expired;
+            do {
+                expired = redisTemplate.execute(SWEEP_SCRIPT, List.of(ONLINE_KEY),
+                        Long.toString(cutoff), Integer.toString(config.getRedisBatchSize()));
+                if (expired == null || expired.isEmpty()) {
+                    break;
+                }
+                List<String> uuids = expired.stream().map(Object::toString).toList();
+                Map<String, PublicProfileCache.CachedProfile> profiles = publicProfileService.profiles(uuids);
+                for (String uuid : uuids) {
+                    PublicProfileCache.CachedProfile profile = profiles.get(uuid);
+                    if (profile != null && PrivacyFlags.showOnlineStatus(profile.privacyFlags())) {
+                        announce(uuid, false, now);
+                    }
+                }
+            } while (expired.size() >= config.getRedisBatchSize());
+            redisTemplate.opsForZSet().removeRangeByScore(LAST_SEEN_KEY, Double.NEGATIVE_INFINITY,
+                    now - Duration.ofDays(config.getLastSeenRetentionDays()).toMillis() - 1);
+        } catch (DataAccessException e) {
+            backOff(now, e);
+        } finally {
+            if (token.equals(safeGet(SWEEP_LOCK_KEY))) {
+                redisTemplate.delete(SWEEP_LOCK_KEY);
+            }
+        }
+    }
+
+    private Map<String, Long> fetchRemote(List<String> uuids) {
+        Map<String, Long> seen = new HashMap<>();
+        long now = System.currentTimeMillis();
+        if (now < redisRetryAt) {
+            return seen;
+        }
+        try {
+            List<Double> scores = redisTemplate.opsForZSet().score(LAST_SEEN_KEY, uuids.toArray());
+            for (int i = 0; scores != null && i < uuids.size(); i++) {
+                Double score = scores.get(i);
+                if (score != null) {
+                    String uuid = uuids.get(i);
+                    seen.put(uuid, score.longValue());
+                    // Remember it, so the next query for this user stays local while it's fresh
+                    shardOf(uuid).lastSeen().merge(uuid, score.longValue(), Math::max);
+                }
+            }
+        } catch (DataAccessException e) {
+            backOff(now, e);
+        }
+        return seen;
+    }
+
+    private void announce(String uuid, boolean online, long at) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(new PresenceEvent(uuid, online, Instant.ofEpochMilli(at)));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to encode presence event for {}: {}", uuid, e.getMessage());
+            return;
+        }
+        (online ? onlineCounter : offlineCounter).increment();
+        kafkaTemplate.send(topic, uuid, body).whenComplete((result, failure) -> {
+            if (failure != null) {
+                log.debug("Failed to publish presence of {}: {}", uuid, failure.getMessage());
+            }
+        });
+    }
+
+    private static boolean visible(PublicProfileCache.CachedProfile profile, String viewerUuid) {
+        return profile.uuid().equals(viewerUuid) || PrivacyFlags.showOnlineStatus(profile.privacyFlags());
+    }
+
+    private String safeGet(String key) {
+        try {
+            return redisTemplate.opsForValue().get(key);
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+
+    private void backOff(long now, DataAccessException e) {
+        redisRetryAt = now + config.getRedisBackoffMs();
+        log.warn("Presence falling back to local state for {} ms: {}", config.getRedisBackoffMs(), e.getMessage());
+    }
+
+    private Shard shardOf(String uuid) {
+        return shards[Math.floorMod(uuid.hashCode(), shards.length)];
+    }
+}
@@ -1,16 +1,18 @@
 package com.reveria.userservice.service;
 
+import com.reveria.userservice.dto.event.UserAvatarUpdatedPayload;
+import com.reveria.userservice.dto.event.UserPrivacyUpdatedPayload;
+import com.reveria.userservice.dto.event.UserProfileUpdatedPayload;
+import com.reveria.userservice.dto.request.profile.CreateAvatarUploadRequest;
 import com.reveria.userservice.dto.request.profile.DeactivateAccountRequest;
 import com.reveria.userservice.dto.request.profile.UpdatePrivacyRequest;
 import com.reveria.userservice.dto.request.profile.UpdateProfileRequest;
+import com.reveria.userservice.dto.response.AvatarUploadResponse;
 import com.reveria.userservice.dto.response.LinkedProviderResponse;
 import com.reveria.userservice.dto.response.PrivacySettingsResponse;
 import com.reveria.userservice.dto.response.UserProfileResponse;
-import com.reveria.userservice.exception.StorageException;
 import com.reveria.userservice.model.entity.User;
 import com.reveria.userservice.model.entity.UserPrivacySettings;
-import com.reveria.userservice.model.enums.MessagePrivacy;
-import com.reveria.userservice.model.enums.ProfileVisibility;
 import com.reveria.userservice.model.enums.UserEventType;
 import com.reveria.userservice.model.enums.UserStatus;
 import com.reveria.userservice.exception.PasswordMismatchException;
@@ -18,14 +20,16 @@ import com.reveria.userservice.exception.UsernameAlreadyExistsException;
 import com.reveria.userservice.mapper.UserProfileMapper;
 import com.reveria.userservice.repository.UserPrivacySettingsRepository;
 import com.reveria.userservice.repository.UserRepository;
+import com.reveria.userservice.util.FileValidationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @Service
@@ -38,10 +42,52 @@ public class ProfileService {
     private final RefreshTokenService refreshTokenService;
     private final UserProfileMapper profileMapper;
     private final PasswordEncoder passwordEncoder;
-    private final StorageService storageService;
     private final UserEventPublisher userEventPublisher;
+    private final UserSnapshotPublisher userSnapshotPublisher;
+    private final AvatarStore avatarStore;
+    private final PresenceService presenceService;
+    private final TransactionTemplate transactionTemplate;
 
 
+    /**
+     * Strong ETag of the own profile, read with an index-only probe instead of loading the user.
+     * The profile lists linked providers, so their count and id sum are part of the tag.
+     * Null if the user doesn't exist.
+     */
+    @Transactional(readOnly = true)
+    public String profileETag(Long userId) {
+        UserRepository.ProfileVersion version = userRepository.findProfileVersion(userId);
+        if (version == null) {
+            return null;
+        }
+        return "\"p" + userId + "-" + version.getVersion() + "-"
+                + version.getProviderCount() + "-" + version.getProviderIdSum() + "\"";
+    }
+
+    /**
+     * Strong ETag of the privacy settings, or null while the row hasn't been created yet.
+     */
+    @Transactional(readOnly = true)
+    public String privacyETag(Long userId) {
+        return privacySettingsRepository.findVersionByUserId(userId)
+                .map(version -> "\"s" + userId + "-" + version + "\"")
+                .orElse(null);
+    }
+
+    /**
+     * Strong ETag of the linked-provider list. Whether a provider can be unlinked depends on the
+     * user row (password set), so the user version is part of it.
+     */
+    @Transactional(readOnly = true)
+    public String providersETag(Long userId) {
+        UserRepository.ProfileVersion version = userRepository.findProfileVersion(userId);
+        if (version == null) {
+            return null;
+        }
+        return "\"l" + userId + "-" + version.getVersion() + "-"
+                + version.getProviderCount() + "-" + version.getProviderIdSum() + "\"";
+    }
+
     @Transactional(readOnly = true)
     public UserProfileResponse getProfile(Long userId) {
         User user = findUserById(userId);
@@ -78,32 +124,100 @@ public class ProfileService {
         user = userRepository.save(user);
         log.info("Profile updated for user: {}", user.getUsername());
         userEventPublisher.publish(UserEventType.USER_PROFILE_UPDATED, user.getUuid(),
-                Map.of("changedFields", changedFields));
+                new UserProfileUpdatedPayload(changedFields));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_PROFILE_UPDATED);
 
         return profileMapper.toProfileResponse(user);
     }
 
 
-    @Transactional
+    /**
+     * The image is stored before any transaction starts, so no database connection is held while
+     * it is validated, resized and uploaded.
+     */
     public UserProfileResponse updateAvatar(Long userId, MultipartFile file) {
+        return applyAvatar(userId, avatarStore.store(file));
+    }
+
+    /**
+     * Streams the avatar to storage in one pass; magic bytes and size are checked while it is
+     * read (see {@link FileValidationUtil#openAvatarStream}). The previous avatar is only released
+     * once the new one is stored, and no transaction is open while the body streams.
+     */
+    public UserProfileResponse updateAvatar(Long userId, InputStream content, long size) {
+        return applyAvatar(userId, avatarStore.store(content, size));
+    }
+
+    /**
+     * First step of a direct upload: the client sends the image to the returned URL itself,
+     * as a multipart POST with the given fields or as a PUT with the given headers, depending
+     * on the storage backend.
+     */
+    @Transactional(readOnly = true)
+    public AvatarUploadResponse createAvatarUpload(Long userId, CreateAvatarUploadRequest request) {
+        FileValidationUtil.validateAvatarMetadata(request.getSize(), request.getContentType());
         User user = findUserById(userId);
+        AvatarStore.DirectUpload upload = avatarStore.prepareDirectUpload(user.getUuid());
+        AvatarUploadResponse.AvatarUploadResponseBuilder response = AvatarUploadResponse.builder()
+                .uploadId(upload.uploadId())
+                .uploadUrl(upload.url())
+                .method(upload.method())
+                .expiresAt(upload.expiresAt().toString());
+        if ("POST".equals(upload.method())) {
+            Map<String, String> fields = new LinkedHashMap<>(upload.fields());
+            fields.put("Content-Type", request.getContentType());
+            response.fields(fields);
+        } else {
+            response.headers(Map.of("Content-Type", request.getContentType()));
+        }
+        return response.build();
+    }
 
-        deleteStoredAvatar(user.getAvatarUrl());
+    public UserProfileResponse completeAvatarUpload(Long userId, String uploadId) {
+        String userUuid = findUserById(userId).getUuid();
+        return applyAvatar(userId, avatarStore.completeDirectUpload(userUuid, uploadId));
+    }
 
-        String extension = getExtension(file.getContentType());
-        String path = "avatars/" + user.getUuid() + "/" + UUID.randomUUID() + "." + extension;
+    /**
+     * Records an avatar that is already stored in a short transaction of its own. If that
+     * transaction fails, nothing took over the reference the store gave us, so it is released.
+     */
+    private UserProfileResponse applyAvatar(Long userId, AvatarStore.StoredAvatar stored) {
+        try {
+            return transactionTemplate.execute(status -> applyAvatar(findUserById(userId), stored));
+        } catch (RuntimeException e) {
+            releaseQuietly(stored);
+            throw e;
+        }
+    }
 
+    private void releaseQuietly(AvatarStore.StoredAvatar stored) {
         try {
-            String url = storageService.upload(path, file.getInputStream(), file.getSize(), file.getContentType());
-            user.setAvatarUrl(url);
-        } catch (IOException e) {
-            throw new StorageException("Failed to read uploaded file", e);
+            avatarStore.release(stored.url(), stored.variants());
+        } catch (RuntimeException e) {
+            // The object keeps a reference nobody holds; the orphan collector reports it
+            log.warn("Failed to release avatar {}: {}", stored.url(), e.getMessage());
+        }
+    }
+
+    private UserProfileResponse applyAvatar(User user, AvatarStore.StoredAvatar stored) {
+        String previousAvatarUrl = user.getAvatarUrl();
+        String previousVariants = user.getAvatarVariants();
+
+        user.setAvatarUrl(stored.url());
+        user.setAvatarVariants(stored.variants());
+        if (!stored.url().equals(previousAvatarUrl)) {
+            avatarStore.release(previousAvatarUrl, previousVariants);
+        } else {
+            // Same image uploaded again: the store took a second reference, give it back
+            avatarStore.release(stored.url(), stored.variants());
         }
 
         user = userRepository.save(user);
         log.info("Avatar updated for user: {}", user.getUsername());
         userEventPublisher.publish(UserEventType.USER_AVATAR_UPDATED, user.getUuid(),
-                Map.of("avatarUrl", user.getAvatarUrl()));
+                new UserAvatarUpdatedPayload(user.getAvatarUrl()));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_AVATAR_UPDATED);
         return profileMapper.toProfileResponse(user);
     }
 
@@ -111,74 +225,72 @@ public class ProfileService {
     public UserProfileResponse deleteAvatar(Long userId) {
         User user = findUserById(userId);
 
-        deleteStoredAvatar(user.getAvatarUrl());
+        avatarStore.release(user.getAvatarUrl(), user.getAvatarVariants());
 
         user.setAvatarUrl(null);
+        user.setAvatarVariants(null);
         user = userRepository.save(user);
         log.info("Avatar deleted for user: {}", user.getUsername());
         userEventPublisher.publish(UserEventType.USER_AVATAR_DELETED, user.getUuid(), null);
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_AVATAR_DELETED);
         return profileMapper.toProfileResponse(user);
     }
 
-    private void deleteStoredAvatar(String avatarUrl) {
-        if (avatarUrl == null) {
-            return;
-        }
-        String path = storageService.extractPathFromUrl(avatarUrl);
-        if (path != null) {
-            storageService.delete(path);
-        }
-    }
 
-    private static String getExtension(String contentType) {
-        return switch (contentType) {
-            case "image/png" -> "png";
-            case "image/webp" -> "webp";
-            default -> "jpg";
-        };
-    }
-
-
-    @Transactional
+    /**
+     * Users who never changed their settings have no row; they get the defaults without one
+     * being inserted, so reads stay read-only. The row is created on the first update.
+     */
+    @Transactional(readOnly = true)
     public PrivacySettingsResponse getPrivacySettings(Long userId) {
-        UserPrivacySettings settings = getOrCreatePrivacySettings(userId);
+        UserPrivacySettings settings = privacySettingsRepository.findByUserId(userId)
+                .orElseGet(() -> {
+                    findUserById(userId);
+                    return UserPrivacySettings.builder().build();
+                });
         return profileMapper.toPrivacyResponse(settings);
     }
 
     @Transactional
     public PrivacySettingsResponse updatePrivacySettings(Long userId, UpdatePrivacyRequest request) {
         UserPrivacySettings settings = getOrCreatePrivacySettings(userId);
-        Map<String, Object> changedSettings = new HashMap<>();
+        boolean wasShowingOnlineStatus = !Boolean.FALSE.equals(settings.getShowOnlineStatus());
 
         if (request.getProfileVisibility() != null) {
             settings.setProfileVisibility(request.getProfileVisibility());
-            changedSettings.put("profileVisibility", request.getProfileVisibility().name());
         }
 
         if (request.getShowOnlineStatus() != null) {
             settings.setShowOnlineStatus(request.getShowOnlineStatus());
-            changedSettings.put("showOnlineStatus", request.getShowOnlineStatus());
         }
 
         if (request.getAllowDirectMessages() != null) {
             settings.setAllowDirectMessages(request.getAllowDirectMessages());
-            changedSettings.put("allowDirectMessages", request.getAllowDirectMessages());
         }
 
         if (request.getAllowFriendRequests() != null) {
             settings.setAllowFriendRequests(request.getAllowFriendRequests());
-            changedSettings.put("allowFriendRequests", request.getAllowFriendRequests());
         }
 
         if (request.getMessagePrivacy() != null) {
             settings.setMessagePrivacy(request.getMessagePrivacy());
-            changedSettings.put("messagePrivacy", request.getMessagePrivacy().name());
         }
 
         settings = privacySettingsRepository.save(settings);
         log.info("Privacy settings updated for user: {}", userId);
         User user = findUserById(userId);
-        userEventPublisher.publish(UserEventType.USER_PRIVACY_UPDATED, user.getUuid(), changedSettings);
+        userEventPublisher.publish(UserEventType.USER_PRIVACY_UPDATED, user.getUuid(),
+                new UserPrivacyUpdatedPayload(
+                        request.getProfileVisibility() != null ? request.getProfileVisibility().name() : null,
+                        request.getShowOnlineStatus(),
+                        request.getAllowDirectMessages(),
+                        request.getAllowFriendRequests(),
+                        request.getMessagePrivacy() != null ? request.getMessagePrivacy().name() : null
+                ));
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_PRIVACY_UPDATED);
+        if (request.getShowOnlineStatus() != null && request.getShowOnlineStatus() != wasShowingOnlineStatus) {
+            presenceService.onVisibilityChanged(user.getUuid(), request.getShowOnlineStatus());
+        }
 
         return profileMapper.toPrivacyResponse(settings);
     }
@@ -189,11 +301,6 @@ public class ProfileService {
                     User user = findUserById(userId);
                     UserPrivacySettings settings = UserPrivacySettings.builder()
                             .user(user)
-                            .profileVisibility(ProfileVisibility.PUBLIC)
-                            .showOnlineStatus(true)
-                            .allowDirectMessages(true)
-                            .allowFriendRequests(true)
-                            .messagePrivacy(MessagePrivacy.EVERYONE)
                             .build();
                     return privacySettingsRepository.save(settings);
                 });
@@ -234,6 +341,7 @@ public class ProfileService {
 
         log.info("Account deactivated for user: {}. Reason: {}", user.getUsername(), request.getReason());
         userEventPublisher.publish(UserEventType.USER_DEACTIVATED, user.getUuid(), null);
+        userSnapshotPublisher.markChanged(user, UserEventType.USER_DEACTIVATED);
     }
 
     private User findUserById(Long userId) {
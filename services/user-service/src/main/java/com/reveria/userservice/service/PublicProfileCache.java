@@ -0,0 +1,119 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.UserLookupConfig;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache behind the batch profile lookup and the interaction checks, keyed by uuid.
+ * Entries hold everything those may need, including status and all privacy settings packed into
+ * one int, so every caller is served from the same entry. Evicted by the invalidation bus on any
+ * change to those fields; user.lookup.cache-ttl-ms is the backstop, and bounds how long new
+ * avatar derivatives take to appear.
+ */
+@Component
+public class PublicProfileCache implements LocalUserCache {
+
+    private static final Set<UserEventType> INVALIDATED_BY = EnumSet.of(
+            UserEventType.USER_PROFILE_UPDATED,
+            UserEventType.USER_AVATAR_UPDATED,
+            UserEventType.USER_AVATAR_DELETED,
+            UserEventType.USER_PRIVACY_UPDATED,
+            UserEventType.USER_EMAIL_VERIFIED,
+            UserEventType.USER_DEACTIVATED
+    );
+
+    public record CachedProfile(String uuid,
+                                String username,
+                                String displayName,
+                                String avatarUrl,
+                                String avatarVariants,
+                                UserStatus status,
+                                int privacyFlags) {
+
+        public ProfileVisibility visibility() {
+            return PrivacyFlags.visibility(privacyFlags);
+        }
+
+        public boolean active() {
+            return status == UserStatus.ACTIVE;
+        }
+    }
+
+    private record Entry(CachedProfile profile, long expiresAtMillis) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Bumped on every eviction; a load that raced with one is served but not cached
+    private final AtomicLong evictions = new AtomicLong();
+    private final UserLookupConfig config;
+
+    public PublicProfileCache(UserLookupConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        Gauge.builder("user_cache.size", entries, Map::size)
+                .tag("cache", name())
+                .description("Entries in a local user cache")
+                .register(meterRegistry);
+    }
+
+    public CachedProfile get(String uuid) {
+        Entry entry = entries.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() < System.currentTimeMillis()) {
+            entries.remove(uuid, entry);
+            return null;
+        }
+        return entry.profile();
+    }
+
+    /**
+     * Read before querying the database, then pass to {@link #put}.
+     */
+    public long generation() {
+        return evictions.get();
+    }
+
+    public void put(CachedProfile profile, long generation) {
+        if (entries.size() >= config.getCacheMaxEntries()) {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.expiresAtMillis() < now);
+            if (entries.size() >= config.getCacheMaxEntries()) {
+                entries.clear();
+            }
+        }
+        Entry entry = new Entry(profile, System.currentTimeMillis() + config.getCacheTtlMs());
+        entries.put(profile.uuid(), entry);
+        if (evictions.get() != generation) {
+            entries.remove(profile.uuid(), entry);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "public-profiles";
+    }
+
+    @Override
+    public Set<UserEventType> invalidatedBy() {
+        return INVALIDATED_BY;
+    }
+
+    @Override
+    public void evict(String userUuid) {
+        evictions.incrementAndGet();
+        entries.remove(userUuid);
+    }
+}
@@ -0,0 +1,185 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.dto.response.PublicProfileResponse;
+import com.reveria.userservice.model.enums.MessagePrivacy;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.repository.UserRepository;
+import com.reveria.userservice.util.AvatarVariants;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Resolves many users' public profiles at once, for services rendering lists of users. Cache
+ * misses are loaded with a single query, whatever the batch size. Results follow the order of
+ * the request, with duplicates collapsed and unknown uuids left out.
+ */
+@Service
+public class PublicProfileService {
+
+    private final UserRepository userRepository;
+    private final PublicProfileCache cache;
+    private final UserSearchIndex searchIndex;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Counter cacheHitCounter;
+    private final Counter cacheMissCounter;
+
+    public PublicProfileService(UserRepository userRepository,
+                                PublicProfileCache cache,
+                                UserSearchIndex searchIndex,
+                                MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cache = cache;
+        this.searchIndex = searchIndex;
+        this.batchSizeSummary = DistributionSummary.builder("user.lookup.batch.size")
+                .description("Distinct uuids per batch profile lookup")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.cacheHitCounter = Counter.builder("user.lookup.profiles")
+                .tag("source", "cache")
+                .description("Uuids looked up in batches, by where they were answered")
+                .register(meterRegistry);
+        this.cacheMissCounter = Counter.builder("user.lookup.profiles")
+                .tag("source", "database")
+                .description("Uuids looked up in batches, by where they were answered")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Profiles as the viewer may see them. Only active users are returned. Users whose profile
+     * isn't public show their username alone; friendships live in another service, so
+     * FRIENDS_ONLY is treated like PRIVATE here. Viewers always see their own profile in full.
+     */
+    public List<PublicProfileResponse> lookup(Collection<String> uuids, String viewerUuid) {
+        List<PublicProfileResponse> profiles = new ArrayList<>();
+        for (PublicProfileCache.CachedProfile profile : resolve(uuids)) {
+            boolean self = profile.uuid().equals(viewerUuid);
+            if (profile.status() != UserStatus.ACTIVE && !self) {
+                continue;
+            }
+            if (profile.visibility() == ProfileVisibility.PUBLIC || self) {
+                profiles.add(toResponse(profile).build());
+            } else {
+                profiles.add(PublicProfileResponse.builder()
+                        .uuid(profile.uuid())
+                        .username(profile.username())
+                        .build());
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Every known profile in full, with its visibility and status for the caller to apply.
+     */
+    public List<PublicProfileResponse> lookupInternal(Collection<String> uuids) {
+        return resolve(uuids).stream()
+                .map(profile -> toResponse(profile)
+                        .profileVisibility(profile.visibility())
+                        .status(profile.status())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Username and display-name prefix search, best-ranked first. The index only holds
+     * searchable users, but it may trail a change by a refresh interval, so the hits are checked
+     * again against their current profiles.
+     */
+    public List<PublicProfileResponse> search(String query, int limit) {
+        return resolve(searchIndex.search(query, limit)).stream()
+                .filter(profile -> profile.status() == UserStatus.ACTIVE
+                        && profile.visibility() == ProfileVisibility.PUBLIC)
+                .map(profile -> toResponse(profile).build())
+                .toList();
+    }
+
+    /**
+     * Cached profiles by uuid, loading the missing ones in one query. Unknown uuids are absent.
+     */
+    public Map<String, PublicProfileCache.CachedProfile> profiles(Collection<String> uuids) {
+        Map<String, PublicProfileCache.CachedProfile> profiles = new HashMap<>();
+        for (PublicProfileCache.CachedProfile profile : resolve(uuids)) {
+            profiles.put(profile.uuid(), profile);
+        }
+        return profiles;
+    }
+
+    private List<PublicProfileCache.CachedProfile> resolve(Collection<String> uuids) {
+        Set<String> distinct = new LinkedHashSet<>(uuids);
+        batchSizeSummary.record(distinct.size());
+
+        Map<String, PublicProfileCache.CachedProfile> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String uuid : distinct) {
+            PublicProfileCache.CachedProfile cached = cache.get(uuid);
+            if (cached != null) {
+                found.put(uuid, cached);
+            } else {
+                missing.add(uuid);
+            }
+        }
+        cacheHitCounter.increment(found.size());
+
+        if (!missing.isEmpty()) {
+            long generation = cache.generation();
+            for (UserRepository.PublicProfileRow row : userRepository.findPublicProfiles(missing.toArray(String[]::new))) {
+                PublicProfileCache.CachedProfile profile = new PublicProfileCache.CachedProfile(
+                        row.getUuid(),
+                        row.getUsername(),
+                        row.getDisplayName(),
+                        row.getAvatarUrl(),
+                        row.getAvatarVariants(),
+                        UserStatus.valueOf(row.getStatus()),
+                        // No settings row yet means the defaults
+                        PrivacyFlags.pack(
+                                row.getProfileVisibility() != null ? ProfileVisibility.valueOf(row.getProfileVisibility()) : null,
+                                row.getShowOnlineStatus(),
+                                row.getAllowDirectMessages(),
+                                row.getAllowFriendRequests(),
+                                row.getMessagePrivacy() != null ? MessagePrivacy.valueOf(row.getMessagePrivacy()) : null));
+                cache.put(profile, generation);
+                found.put(profile.uuid(), profile);
+            }
+            cacheMissCounter.increment(missing.size());
+        }
+
+        return distinct.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static PublicProfileResponse.PublicProfileResponseBuilder toResponse(PublicProfileCache.CachedProfile profile) {
+        return PublicProfileResponse.builder()
+                .uuid(profile.uuid())
+                .username(profile.username())
+                .displayName(profile.displayName())
+                .avatarUrl(profile.avatarUrl())
+                .thumbnailUrl(thumbnailOf(profile));
+    }
+
+    private static String thumbnailOf(PublicProfileCache.CachedProfile profile) {
+        if (profile.avatarUrl() == null) {
+            return null;
+        }
+        return AvatarVariants.parse(profile.avatarVariants()).stream()
+                .min(Comparator.comparingInt(AvatarVariants.Variant::size))
+                .map(variant -> AvatarVariants.locate(profile.avatarUrl(), variant))
+                .orElse(profile.avatarUrl());
+    }
+}
@@ -0,0 +1,105 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.MailQueueConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps authenticated SMTP connections open between batches, so the TLS handshake and AUTH
+ * are paid once per connection instead of once per message.
+ */
+@Component
+@Slf4j
+public class SmtpTransportPool {
+
+    private record PooledTransport(Transport transport, long returnedAtMillis) {
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final MailQueueConfig mailQueueConfig;
+    private final ConcurrentLinkedDeque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+    private final Counter connectCounter;
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender,
+                             MailQueueConfig mailQueueConfig,
+                             MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.mailQueueConfig = mailQueueConfig;
+        this.connectCounter = Counter.builder("mail.smtp.connects")
+                .description("SMTP connections opened")
+                .register(meterRegistry);
+    }
+
+    public Transport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.transport().isConnected()) {
+                return pooled.transport();
+            }
+            close(pooled.transport());
+        }
+        return connect();
+    }
+
+    public void release(Transport transport) {
+        if (transport.isConnected()) {
+            idle.offerFirst(new PooledTransport(transport, System.currentTimeMillis()));
+        } else {
+            close(transport);
+        }
+    }
+
+    /**
+     * Drops a connection that failed mid-conversation.
+     */
+    public void invalidate(Transport transport) {
+        close(transport);
+    }
+
+    @Scheduled(fixedDelayString = "${mail.queue.connection-idle-ms:60000}")
+    public void closeIdle() {
+        long cutoff = System.currentTimeMillis() - mailQueueConfig.getConnectionIdleMs();
+        Iterator<PooledTransport> it = idle.descendingIterator();
+        while (it.hasNext()) {
+            PooledTransport pooled = it.next();
+            if (pooled.returnedAtMillis() < cutoff && idle.remove(pooled)) {
+                close(pooled.transport());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled.transport());
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        Transport transport = mailSender.getSession().getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword());
+        connectCounter.increment();
+        return transport;
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+}
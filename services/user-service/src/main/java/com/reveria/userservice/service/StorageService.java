@@ -1,12 +1,80 @@
 package com.reveria.userservice.service;
 
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface StorageService {
 
+    /**
+     * Size, type and last write of a stored object, as recorded by the store.
+     */
+    record ObjectInfo(long size, String contentType, Instant lastModified) {
+    }
+
+    /**
+     * One entry of a listing.
+     */
+    record ListedObject(String path, long size, Instant lastModified) {
+    }
+
+    /**
+     * A grant to upload one object straight to the store: send it to url with method, passing
+     * fields as form fields (POST) or headers (PUT).
+     */
+    record PresignedUpload(String url, String method, Map<String, String> fields) {
+    }
+
     String upload(String path, InputStream inputStream, long size, String contentType);
 
+    /**
+     * Upload with a Cache-Control header stored on the object and served with it.
+     */
+    String upload(String path, InputStream inputStream, long size, String contentType, String cacheControl);
+
+    /**
+     * Server-side copy; the bytes don't pass through this service.
+     */
+    String copy(String sourcePath, String targetPath, String contentType, String cacheControl);
+
+    InputStream download(String path);
+
+    /**
+     * Reads up to length bytes starting at offset, without fetching the rest of the object.
+     */
+    byte[] readRange(String path, long offset, int length);
+
+    /**
+     * Object metadata, or null if there is no such object.
+     */
+    ObjectInfo stat(String path);
+
+    /**
+     * Every object under the prefix in key order, fetched page by page as the stream is
+     * consumed. Close the stream when done.
+     */
+    Stream<ListedObject> list(String prefix);
+
+    /**
+     * Time-limited grant to upload the object directly to the store. The store itself refuses
+     * bodies larger than maxSize, and a Content-Type not starting with contentTypePrefix.
+     */
+    PresignedUpload presignUpload(String path, int expirySeconds, long maxSize, String contentTypePrefix);
+
     void delete(String path);
 
+    /**
+     * Deletes the objects in as few requests as possible. Returns the paths that could not be
+     * deleted, with the reason; objects that don't exist count as deleted.
+     */
+    Map<String, String> deleteAll(Collection<String> paths);
+
+    /**
+     * Public URL of a stored object, the same one upload returns.
+     */
+    String urlFor(String path);
+
     String extractPathFromUrl(String url);
 }
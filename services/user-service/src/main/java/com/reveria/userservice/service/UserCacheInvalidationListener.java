@@ -0,0 +1,136 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.dto.event.UserChangedEvent;
+import com.reveria.userservice.dto.event.UserEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster-wide cache invalidation.
+ *
+ * Every replica assigns itself all user-events partitions, without a consumer group, and reads
+ * from the latest offset, so each instance sees every change and evicts the affected user from
+ * the {@link LocalUserCache}s that care about that event type. Nothing is committed and no group
+ * is left behind on the broker when a replica goes away. The originating replica already
+ * evicted on commit through {@link UserChangedEvent}; the Kafka path covers everyone else.
+ */
+@Component
+@Slf4j
+public class UserCacheInvalidationListener {
+
+    private final Map<UserEventType, List<LocalUserCache>> cachesByEventType = new EnumMap<>(UserEventType.class);
+    private final UserEventCodec userEventCodec;
+
+    private final Timer propagationTimer;
+    private final Counter evictionCounter;
+
+    public UserCacheInvalidationListener(List<LocalUserCache> caches,
+                                         UserEventCodec userEventCodec,
+                                         MeterRegistry meterRegistry) {
+        this.userEventCodec = userEventCodec;
+        for (UserEventType type : UserEventType.values()) {
+            List<LocalUserCache> interested = caches.stream()
+                    .filter(cache -> cache.invalidatedBy().contains(type))
+                    .toList();
+            if (!interested.isEmpty()) {
+                cachesByEventType.put(type, interested);
+            }
+        }
+
+        this.propagationTimer = Timer.builder("user_cache.invalidation.propagation")
+                .description("Time from a user change to its eviction on a remote replica")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("user_cache.invalidations")
+                .description("User cache evictions triggered by user events")
+                .register(meterRegistry);
+        log.info("Cache invalidation covers {} event types", cachesByEventType.keySet());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLocalChange(UserChangedEvent event) {
+        evict(event.eventType(), event.userId());
+    }
+
+    @KafkaListener(
+            id = "user-cache-invalidation",
+            idIsGroup = false,
+            topicPartitions = @TopicPartition(topic = "${kafka.topic.user-events:user-events}",
+                    partitions = "#{@kafkaConfig.userEventsPartitionRange()}"),
+            autoStartup = "${cache.invalidation.enabled:true}",
+            properties = {"auto.offset.reset=latest"}
+    )
+    public void onRemoteChange(ConsumerRecord<String, byte[]> record) {
+        UserEventType eventType = eventType(record);
+        if (eventType == null || record.key() == null || !cachesByEventType.containsKey(eventType)) {
+            return;
+        }
+        evict(eventType, record.key());
+
+        Instant changedAt = changedAt(record);
+        propagationTimer.record(Duration.between(changedAt, Instant.now()));
+    }
+
+    private void evict(UserEventType eventType, String userUuid) {
+        List<LocalUserCache> caches = cachesByEventType.get(eventType);
+        if (caches == null) {
+            return;
+        }
+        for (LocalUserCache cache : caches) {
+            cache.evict(userUuid);
+        }
+        evictionCounter.increment(caches.size());
+    }
+
+    private static UserEventType eventType(ConsumerRecord<String, byte[]> record) {
+        Header header = record.headers().lastHeader(UserEventCodec.EVENT_TYPE_HEADER);
+        if (header == null) {
+            return null;
+        }
+        try {
+            return UserEventType.valueOf(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * When the change happened: the event's own timestamp, or the record timestamp if the
+     * body can't be decoded.
+     */
+    private Instant changedAt(ConsumerRecord<String, byte[]> record) {
+        try {
+            UserEvent event = userEventCodec.decode(record.value(),
+                    header(record, UserEventCodec.CONTENT_TYPE_HEADER),
+                    header(record, UserEventCodec.SCHEMA_ID_HEADER));
+            if (event.getTimestamp() != null) {
+                return event.getTimestamp();
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("Undecodable user event at offset {}: {}", record.offset(), e.getMessage());
+        }
+        return Instant.ofEpochMilli(record.timestamp());
+    }
+
+    private static String header(ConsumerRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,164 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.dto.event.UserEvent;
+import com.reveria.userservice.dto.event.UserLoggedInPayload;
+import com.reveria.userservice.dto.event.UserProfileUpdatedPayload;
+import com.reveria.userservice.model.enums.UserEventType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per (user, event type) debounce buffer used by {@link UserEventPublisher}.
+ *
+ * The first event for a pair opens a window; events arriving inside it are folded into one:
+ * profile updates union their changed fields, logins are counted per provider and per IP.
+ * All mutation for a user happens inside {@link ConcurrentHashMap#compute}, so a drain never
+ * sees a half-merged entry.
+ */
+class UserEventCoalescer {
+
+    private final Duration window;
+    private final Map<String, Map<UserEventType, Pending>> pendingByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    UserEventCoalescer(Duration window) {
+        this.window = window;
+    }
+
+    /**
+     * Buffers the event. Returns true if it was folded into an already open window.
+     */
+    boolean offer(UserEvent event, Instant now) {
+        boolean[] merged = new boolean[1];
+        pendingByUser.compute(event.getUserId(), (userId, byType) -> {
+            if (byType == null) {
+                byType = new EnumMap<>(UserEventType.class);
+            }
+            Pending pending = byType.get(event.getEventType());
+            if (pending == null) {
+                byType.put(event.getEventType(), new Pending(event, now));
+                pendingCount.incrementAndGet();
+            } else {
+                pending.merge(event);
+                merged[0] = true;
+            }
+            return byType;
+        });
+        return merged[0];
+    }
+
+    List<UserEvent> drainExpired(Instant now) {
+        Instant cutoff = now.minus(window);
+        List<UserEvent> drained = new ArrayList<>();
+        for (String userId : pendingByUser.keySet()) {
+            pendingByUser.computeIfPresent(userId, (id, byType) -> {
+                Iterator<Pending> it = byType.values().iterator();
+                while (it.hasNext()) {
+                    Pending pending = it.next();
+                    if (!pending.openedAt.isAfter(cutoff)) {
+                        drained.add(pending.toEvent());
+                        it.remove();
+                        pendingCount.decrementAndGet();
+                    }
+                }
+                return byType.isEmpty() ? null : byType;
+            });
+        }
+        return drained;
+    }
+
+    /**
+     * Removes everything buffered for one user, in the order the windows were opened.
+     */
+    List<UserEvent> drainUser(String userId) {
+        List<UserEvent> drained = new ArrayList<>();
+        pendingByUser.computeIfPresent(userId, (id, byType) -> {
+            byType.values().stream()
+                    .sorted((a, b) -> a.openedAt.compareTo(b.openedAt))
+                    .forEach(pending -> drained.add(pending.toEvent()));
+            pendingCount.addAndGet(-byType.size());
+            return null;
+        });
+        return drained;
+    }
+
+    List<UserEvent> drainAll() {
+        List<UserEvent> drained = new ArrayList<>();
+        for (String userId : pendingByUser.keySet()) {
+            drained.addAll(drainUser(userId));
+        }
+        return drained;
+    }
+
+    int pendingCount() {
+        return pendingCount.get();
+    }
+
+    private static final class Pending {
+
+        private final Instant openedAt;
+        private UserEvent latest;
+        private int count = 1;
+
+        private final Set<String> changedFields = new LinkedHashSet<>();
+        private final Map<String, Integer> loginsByProvider = new LinkedHashMap<>();
+        private final Map<String, Integer> loginsByIp = new LinkedHashMap<>();
+
+        Pending(UserEvent event, Instant openedAt) {
+            this.openedAt = openedAt;
+            this.latest = event;
+            collect(event);
+        }
+
+        void merge(UserEvent event) {
+            latest = event;
+            count++;
+            collect(event);
+        }
+
+        private void collect(UserEvent event) {
+            if (event.getPayload() instanceof UserProfileUpdatedPayload p && p.changedFields() != null) {
+                changedFields.addAll(p.changedFields());
+            } else if (event.getPayload() instanceof UserLoggedInPayload p) {
+                if (p.provider() != null) {
+                    loginsByProvider.merge(p.provider(), 1, Integer::sum);
+                }
+                if (p.ipAddress() != null) {
+                    loginsByIp.merge(p.ipAddress(), 1, Integer::sum);
+                }
+            }
+        }
+
+        UserEvent toEvent() {
+            if (count == 1) {
+                return latest;
+            }
+            UserEvent.UserEventBuilder merged = UserEvent.builder()
+                    .eventId(latest.getEventId())
+                    .eventType(latest.getEventType())
+                    .userId(latest.getUserId())
+                    .timestamp(latest.getTimestamp())
+                    .payload(latest.getPayload());
+
+            if (latest.getPayload() instanceof UserProfileUpdatedPayload) {
+                merged.payload(new UserProfileUpdatedPayload(List.copyOf(changedFields)));
+            } else if (latest.getPayload() instanceof UserLoggedInPayload p) {
+                merged.payload(new UserLoggedInPayload(p.ipAddress(), p.provider(), count,
+                        loginsByProvider.isEmpty() ? null : loginsByProvider,
+                        loginsByIp.isEmpty() ? null : loginsByIp));
+            }
+            return merged.build();
+        }
+    }
+}
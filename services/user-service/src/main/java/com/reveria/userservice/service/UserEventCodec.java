@@ -0,0 +1,308 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.dto.event.*;
+import com.reveria.userservice.model.enums.UserEventType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.*;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes user events for the user-events topic.
+ *
+ * Two wire formats are supported and announced through the {@code content-type} header:
+ * the original JSON document and a compact Avro binary form described by the
+ * {@code user-event} schema in {@link EventSchemaRegistry}. Which one the producer writes is
+ * controlled by {@code kafka.encoding.user-events}, so consumers can start honouring the
+ * header before the producer switches to Avro.
+ */
+@Component
+public class UserEventCodec {
+
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String SCHEMA_ID_HEADER = "schema-id";
+    public static final String EVENT_TYPE_HEADER = "event-type";
+
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    public static final String CONTENT_TYPE_AVRO = "application/avro";
+
+    private static final String SUBJECT = "user-event";
+
+    public record EncodedEvent(byte[] body, String contentType, String schemaId) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final EventSchemaRegistry schemaRegistry;
+    private final boolean writeAvro;
+
+    private final String writerSchemaId;
+    private final Schema writerSchema;
+    private final Schema uuidSchema;
+    private final Schema eventTypeSchema;
+    private final Map<String, Schema> payloadSchemas = new HashMap<>();
+    private final GenericDatumWriter<GenericRecord> datumWriter;
+    private final Map<String, GenericDatumReader<GenericRecord>> datumReaders = new ConcurrentHashMap<>();
+
+    private final Timer serializeTimer;
+    private final DistributionSummary sizeSummary;
+
+    public UserEventCodec(ObjectMapper objectMapper,
+                          EventSchemaRegistry schemaRegistry,
+                          KafkaConfig kafkaConfig,
+                          MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.schemaRegistry = schemaRegistry;
+        this.writeAvro = "avro".equalsIgnoreCase(kafkaConfig.getUserEventsEncoding());
+
+        this.writerSchemaId = schemaRegistry.getLatestSchemaId(SUBJECT);
+        this.writerSchema = schemaRegistry.getSchema(writerSchemaId);
+        this.uuidSchema = writerSchema.getField("eventId").schema();
+        this.eventTypeSchema = writerSchema.getField("eventType").schema();
+        for (Schema type : writerSchema.getField("payload").schema().getTypes()) {
+            if (type.getType() == Schema.Type.RECORD) {
+                payloadSchemas.put(type.getName(), type);
+            }
+        }
+        this.datumWriter = new GenericDatumWriter<>(writerSchema);
+
+        String encoding = writeAvro ? "avro" : "json";
+        this.serializeTimer = Timer.builder("user_events.serialize")
+                .description("Time to encode one user event")
+                .tag("encoding", encoding)
+                .register(meterRegistry);
+        this.sizeSummary = DistributionSummary.builder("user_events.size")
+                .description("Encoded user event size")
+                .baseUnit("bytes")
+                .tag("encoding", encoding)
+                .register(meterRegistry);
+    }
+
+    public EncodedEvent encode(UserEvent event) {
+        long start = System.nanoTime();
+        EncodedEvent encoded = writeAvro
+                ? new EncodedEvent(toAvro(event), CONTENT_TYPE_AVRO, writerSchemaId)
+                : new EncodedEvent(toJson(event), CONTENT_TYPE_JSON, null);
+        serializeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        sizeSummary.record(encoded.body().length);
+        return encoded;
+    }
+
+    public UserEvent decode(byte[] body, String contentType, String schemaId) {
+        if (CONTENT_TYPE_AVRO.equals(contentType)) {
+            return fromAvro(body, schemaId != null ? schemaId : writerSchemaId);
+        }
+        return fromJson(body);
+    }
+
+    // JSON
+
+    byte[] toJson(UserEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize " + event.getEventType() + " event", e);
+        }
+    }
+
+    private UserEvent fromJson(byte[] body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            UserEventType eventType = UserEventType.valueOf(node.get("eventType").asText());
+            JsonNode payloadNode = node.get("payload");
+            Class<? extends UserEventPayload> payloadType = payloadTypeFor(eventType);
+
+            return UserEvent.builder()
+                    .eventId(node.path("eventId").asText(null))
+                    .eventType(eventType)
+                    .userId(node.path("userId").asText(null))
+                    .timestamp(objectMapper.treeToValue(node.get("timestamp"), Instant.class))
+                    .payload(payloadNode == null || payloadNode.isNull() || payloadType == null
+                            ? null
+                            : objectMapper.treeToValue(payloadNode, payloadType))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON user event", e);
+        }
+    }
+
+    // AVRO
+
+    byte[] toAvro(UserEvent event) {
+        GenericRecord record = new GenericData.Record(writerSchema);
+        record.put("eventId", uuid(event.getEventId()));
+        record.put("eventType", new GenericData.EnumSymbol(eventTypeSchema, event.getEventType().name()));
+        record.put("userId", uuid(event.getUserId()));
+        record.put("timestamp", event.getTimestamp().toEpochMilli());
+        record.put("payload", toAvroPayload(event.getPayload()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+        try {
+            datumWriter.write(record, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize " + event.getEventType() + " event", e);
+        }
+        return out.toByteArray();
+    }
+
+    private UserEvent fromAvro(byte[] body, String schemaId) {
+        GenericDatumReader<GenericRecord> reader = datumReaders.computeIfAbsent(schemaId,
+                id -> new GenericDatumReader<>(schemaRegistry.getSchema(id), writerSchema));
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(body, null);
+        try {
+            GenericRecord record = reader.read(null, decoder);
+            return UserEvent.builder()
+                    .eventId(uuid((GenericFixed) record.get("eventId")))
+                    .eventType(UserEventType.valueOf(record.get("eventType").toString()))
+                    .userId(uuid((GenericFixed) record.get("userId")))
+                    .timestamp(Instant.ofEpochMilli((Long) record.get("timestamp")))
+                    .payload(fromAvroPayload((GenericRecord) record.get("payload")))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed Avro user event", e);
+        }
+    }
+
+    private GenericRecord toAvroPayload(UserEventPayload payload) {
+        if (payload == null) {
+            return null;
+        }
+        GenericRecord record;
+        if (payload instanceof UserRegisteredPayload p) {
+            record = payloadRecord("UserRegistered");
+            record.put("email", p.email());
+            record.put("username", p.username());
+            record.put("provider", p.provider());
+        } else if (payload instanceof UserLoggedInPayload p) {
+            record = payloadRecord("UserLoggedIn");
+            record.put("ipAddress", p.ipAddress());
+            record.put("provider", p.provider());
+            record.put("loginCount", p.loginCount());
+            record.put("loginsByProvider", p.loginsByProvider());
+            record.put("loginsByIp", p.loginsByIp());
+        } else if (payload instanceof UserEmailVerifiedPayload p) {
+            record = payloadRecord("UserEmailVerified");
+            record.put("email", p.email());
+        } else if (payload instanceof UserProfileUpdatedPayload p) {
+            record = payloadRecord("UserProfileUpdated");
+            record.put("changedFields", p.changedFields() != null ? p.changedFields() : List.of());
+        } else if (payload instanceof UserAvatarUpdatedPayload p) {
+            record = payloadRecord("UserAvatarUpdated");
+            record.put("avatarUrl", p.avatarUrl());
+        } else if (payload instanceof UserPrivacyUpdatedPayload p) {
+            record = payloadRecord("UserPrivacyUpdated");
+            record.put("profileVisibility", p.profileVisibility());
+            record.put("showOnlineStatus", p.showOnlineStatus());
+            record.put("allowDirectMessages", p.allowDirectMessages());
+            record.put("allowFriendRequests", p.allowFriendRequests());
+            record.put("messagePrivacy", p.messagePrivacy());
+        } else if (payload instanceof UserOAuthProviderPayload p) {
+            record = payloadRecord("UserOAuthProvider");
+            record.put("provider", p.provider());
+        } else {
+            throw new IllegalArgumentException("Unsupported payload: " + payload.getClass().getSimpleName());
+        }
+        return record;
+    }
+
+    private UserEventPayload fromAvroPayload(GenericRecord record) {
+        if (record == null) {
+            return null;
+        }
+        return switch (record.getSchema().getName()) {
+            case "UserRegistered" -> new UserRegisteredPayload(
+                    str(record, "email"), str(record, "username"), str(record, "provider"));
+            case "UserLoggedIn" -> new UserLoggedInPayload(
+                    str(record, "ipAddress"),
+                    str(record, "provider"),
+                    (Integer) record.get("loginCount"),
+                    counts(record.get("loginsByProvider")),
+                    counts(record.get("loginsByIp")));
+            case "UserEmailVerified" -> new UserEmailVerifiedPayload(str(record, "email"));
+            case "UserProfileUpdated" -> {
+                List<String> fields = new ArrayList<>();
+                for (Object field : (List<?>) record.get("changedFields")) {
+                    fields.add(field.toString());
+                }
+                yield new UserProfileUpdatedPayload(fields);
+            }
+            case "UserAvatarUpdated" -> new UserAvatarUpdatedPayload(str(record, "avatarUrl"));
+            case "UserPrivacyUpdated" -> new UserPrivacyUpdatedPayload(
+                    str(record, "profileVisibility"),
+                    (Boolean) record.get("showOnlineStatus"),
+                    (Boolean) record.get("allowDirectMessages"),
+                    (Boolean) record.get("allowFriendRequests"),
+                    str(record, "messagePrivacy"));
+            case "UserOAuthProvider" -> new UserOAuthProviderPayload(str(record, "provider"));
+            default -> null;
+        };
+    }
+
+    static Class<? extends UserEventPayload> payloadTypeFor(UserEventType eventType) {
+        return switch (eventType) {
+            case USER_REGISTERED -> UserRegisteredPayload.class;
+            case USER_LOGGED_IN -> UserLoggedInPayload.class;
+            case USER_EMAIL_VERIFIED -> UserEmailVerifiedPayload.class;
+            case USER_PROFILE_UPDATED -> UserProfileUpdatedPayload.class;
+            case USER_AVATAR_UPDATED -> UserAvatarUpdatedPayload.class;
+            case USER_PRIVACY_UPDATED -> UserPrivacyUpdatedPayload.class;
+            case USER_OAUTH_LINKED, USER_OAUTH_UNLINKED -> UserOAuthProviderPayload.class;
+            default -> null;
+        };
+    }
+
+    private GenericRecord payloadRecord(String name) {
+        return new GenericData.Record(payloadSchemas.get(name));
+    }
+
+    private GenericData.Fixed uuid(String value) {
+        UUID uuid = UUID.fromString(value);
+        byte[] bytes = ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+        return new GenericData.Fixed(uuidSchema, bytes);
+    }
+
+    private static String uuid(GenericFixed fixed) {
+        ByteBuffer buffer = ByteBuffer.wrap(fixed.bytes());
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+
+    private static Map<String, Integer> counts(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        ((Map<?, ?>) value).forEach((key, count) -> counts.put(key.toString(), (Integer) count));
+        return counts;
+    }
+
+    private static String str(GenericRecord record, String field) {
+        Object value = record.get(field);
+        return value != null ? value.toString() : null;
+    }
+}
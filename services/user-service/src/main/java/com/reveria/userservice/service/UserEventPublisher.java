@@ -1,29 +1,90 @@
 package com.reveria.userservice.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.EventCoalescingConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.dto.event.UserChangedEvent;
 import com.reveria.userservice.dto.event.UserEvent;
+import com.reveria.userservice.dto.event.UserEventPayload;
+import com.reveria.userservice.model.entity.OutboxEvent;
 import com.reveria.userservice.model.enums.UserEventType;
-import lombok.RequiredArgsConstructor;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+/**
+ * Records user events in the outbox table as part of the caller's transaction.
+ * Nothing reaches Kafka until the business change commits; {@link OutboxRelay} ships them.
+ *
+ * With {@code events.coalescing.enabled}, high-frequency types (logins, profile edits) are
+ * instead buffered after the caller commits and written as one merged event per user and type
+ * once the window closes. Every other type still goes straight to the outbox, after any
+ * buffered events for the same user, so per-user ordering is kept for security events.
+ * Flushes the outbox refuses go to the local spool; until those are replayed, later events
+ * for the same users are spooled behind them, so requests never wait for a replay.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UserEventPublisher {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-    private final KafkaConfig kafkaConfig;
+    private final OutboxEventRepository outboxEventRepository;
+    private final UserEventCodec userEventCodec;
+    private final OutboxConfig outboxConfig;
+    private final EventCoalescingConfig coalescingConfig;
+    private final UserEventSpool spool;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final TransactionTemplate flushTransaction;
 
-    public void publish(UserEventType eventType, String userId, Map<String, Object> payload) {
+    private final UserEventCoalescer coalescer;
+    private final Counter coalescedCounter;
+
+    public UserEventPublisher(OutboxEventRepository outboxEventRepository,
+                              UserEventCodec userEventCodec,
+                              OutboxConfig outboxConfig,
+                              EventCoalescingConfig coalescingConfig,
+                              UserEventSpool spool,
+                              ApplicationEventPublisher applicationEventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.userEventCodec = userEventCodec;
+        this.outboxConfig = outboxConfig;
+        this.coalescingConfig = coalescingConfig;
+        this.spool = spool;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.coalescer = new UserEventCoalescer(Duration.ofMillis(coalescingConfig.getWindowMs()));
+        this.coalescedCounter = Counter.builder("user_events.coalesced")
+                .description("User events folded into an already buffered event")
+                .register(meterRegistry);
+        Gauge.builder("user_events.coalescing.pending", coalescer, UserEventCoalescer::pendingCount)
+                .description("Buffered (user, event type) windows not yet written to the outbox")
+                .register(meterRegistry);
+    }
+
+    @Transactional
+    public void publish(UserEventType eventType, String userId, UserEventPayload payload) {
         UserEvent event = UserEvent.builder()
                 .eventId(UUID.randomUUID().toString())
                 .eventType(eventType)
@@ -32,20 +93,115 @@ public class UserEventPublisher {
                 .payload(payload)
                 .build();
 
+        // Local caches are evicted on commit; other replicas hear about it through Kafka
+        applicationEventPublisher.publishEvent(new UserChangedEvent(eventType, userId));
+
+        if (coalescingConfig.isCoalesced(eventType)) {
+            afterCommit(() -> buffer(event));
+            return;
+        }
+        if (coalescingConfig.isEnabled()) {
+            writeInNewTransaction(coalescer.drainUser(userId));
+        }
+        write(event);
+    }
+
+    @Scheduled(fixedDelayString = "${events.coalescing.flush-interval-ms:1000}")
+    public void flushCoalesced() {
+        if (!coalescingConfig.isEnabled()) {
+            return;
+        }
+        writeInNewTransaction(coalescer.drainExpired(Instant.now()));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (coalescingConfig.isEnabled()) {
+            writeInNewTransaction(coalescer.drainAll());
+        }
+    }
+
+    private void buffer(UserEvent event) {
+        if (coalescer.offer(event, Instant.now())) {
+            coalescedCounter.increment();
+        }
+        if (coalescer.pendingCount() > coalescingConfig.getMaxPending()) {
+            log.warn("Coalescing buffer above {} entries, flushing early", coalescingConfig.getMaxPending());
+            writeInNewTransaction(coalescer.drainAll());
+        }
+    }
+
+    /**
+     * Writes buffered events outside any caller transaction. There is no request left to fail
+     * if the outbox is unavailable, so the rows go to the local spool and are replayed later.
+     * Rows of users who already have events spooled are appended behind those.
+     */
+    private void writeInNewTransaction(List<UserEvent> events) {
+        Map<Boolean, List<OutboxEvent>> bySpooled = events.stream()
+                .map(this::toOutboxEvent)
+                .filter(Objects::nonNull)
+                .collect(Collectors.partitioningBy(row -> spool.hasPending(row.getAggregateKey())));
+        bySpooled.get(true).forEach(spool::append);
+        List<OutboxEvent> rows = bySpooled.get(false);
+        if (rows.isEmpty()) {
+            return;
+        }
         try {
-            String json = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(kafkaConfig.getUserEventsTopic(), userId, json)
-                    .whenComplete((result, ex) -> {
-                        if (ex != null) {
-                            log.error("Failed to publish {} event for user {}: {}",
-                                    eventType, userId, ex.getMessage());
-                        } else {
-                            log.debug("Published {} event for user {}", eventType, userId);
-                        }
-                    });
-        } catch (JsonProcessingException e) {
+            flushTransaction.executeWithoutResult(status -> outboxEventRepository.saveAll(rows));
+        } catch (RuntimeException e) {
+            log.warn("Outbox unavailable, spooling {} events: {}", rows.size(), e.getMessage());
+            rows.forEach(spool::append);
+        }
+    }
+
+    /**
+     * Replayed rows get new outbox ids and the relay ships by id, so while the user still has
+     * events spooled this one is spooled behind them once the caller commits, instead of
+     * overtaking them in the outbox.
+     */
+    private void write(UserEvent event) {
+        OutboxEvent row = toOutboxEvent(event);
+        if (row == null) {
+            return;
+        }
+        if (spool.hasPending(event.getUserId())) {
+            afterCommit(() -> spool.append(row));
+            log.debug("Spooled {} event for user {} behind earlier ones", event.getEventType(), event.getUserId());
+            return;
+        }
+        outboxEventRepository.save(row);
+        log.debug("Queued {} event for user {}", event.getEventType(), event.getUserId());
+    }
+
+    private OutboxEvent toOutboxEvent(UserEvent event) {
+        try {
+            UserEventCodec.EncodedEvent encoded = userEventCodec.encode(event);
+            return OutboxEvent.builder()
+                    .eventId(event.getEventId())
+                    .aggregateKey(event.getUserId())
+                    .eventType(event.getEventType())
+                    .partitionNo(Math.floorMod(event.getUserId().hashCode(), outboxConfig.getPartitions()))
+                    .payload(encoded.body())
+                    .contentType(encoded.contentType())
+                    .schemaId(encoded.schemaId())
+                    .build();
+        } catch (IllegalStateException | IllegalArgumentException e) {
             log.error("Failed to serialize {} event for user {}: {}",
-                    eventType, userId, e.getMessage());
+                    event.getEventType(), event.getUserId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
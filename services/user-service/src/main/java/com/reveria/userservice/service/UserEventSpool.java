@@ -0,0 +1,440 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.SpoolConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped spool for outbox rows that could not be written to Postgres.
+ *
+ * The log is split into fixed-size segment files ({@code segment-<n>.log}). Each record is
+ * {@code [length][crc32][body]}; a zero length or a CRC mismatch marks the end of valid data,
+ * so a torn write after a crash is simply ignored. The replay cursor is stored in a separate
+ * {@code cursor} file and fully replayed segments are deleted. Delivery is at-least-once.
+ *
+ * Only the coalesced flush writes here, so the spool is opened on the first append, or at
+ * startup when a previous run left its directory behind. It also remembers which users still
+ * have events spooled, so newer events for them can be held back until those are replayed.
+ * Segments are unmapped as soon as they are sealed or deleted instead of whenever the buffers
+ * happen to be collected.
+ */
+@Component
+@Slf4j
+public class UserEventSpool {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final MethodHandle UNMAPPER = unmapper();
+
+    public record Position(long segment, int offset) {
+    }
+
+    public record Batch(List<OutboxEvent> events, Position next, long bytes) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private final Map<Long, Integer> sealedSegmentEnds = new HashMap<>();
+    private final Map<Long, MappedByteBuffer> mapped = new HashMap<>();
+    // End of the last spooled record of each user not yet replayed
+    private final Map<String, Position> pendingUsers = new ConcurrentHashMap<>();
+
+    private boolean opened;
+    private long writeSegment = -1;
+    private int writeOffset;
+    private Position cursor = new Position(0, 0);
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    private final Counter appendedCounter;
+    private final Counter droppedCounter;
+
+    public UserEventSpool(SpoolConfig config, MeterRegistry meterRegistry) {
+        this.directory = Path.of(config.getDirectory());
+        this.segmentSize = config.getSegmentSizeBytes();
+        this.maxSegments = config.getMaxSegments();
+        if (Files.isDirectory(directory)) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open event spool at " + directory, e);
+            }
+        }
+
+        this.appendedCounter = Counter.builder("user_events.spool.appended")
+                .description("Events written to the local spool")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("user_events.spool.dropped")
+                .description("Events rejected because the spool was full")
+                .register(meterRegistry);
+        Gauge.builder("user_events.spool.bytes", pendingBytes, AtomicLong::get)
+                .description("Spooled bytes not yet replayed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("user_events.spool.segments", this, UserEventSpool::segmentCount)
+                .description("Spool segment files on disk")
+                .register(meterRegistry);
+    }
+
+    public synchronized boolean append(OutboxEvent event) {
+        byte[] body = serialize(event);
+        int recordSize = RECORD_HEADER_BYTES + body.length;
+        if (recordSize > segmentSize) {
+            log.error("Event {} is larger than a spool segment, dropping it", event.getEventId());
+            droppedCounter.increment();
+            return false;
+        }
+        if (!opened) {
+            try {
+                open();
+            } catch (IOException e) {
+                log.error("Failed to open event spool at {}, dropping event {}: {}",
+                        directory, event.getEventId(), e.getMessage());
+                droppedCounter.increment();
+                return false;
+            }
+        }
+        try {
+            if (writeSegment < 0 || writeOffset + recordSize > segmentSize) {
+                if (!roll()) {
+                    log.error("Event spool is full ({} segments), dropping event {}", maxSegments, event.getEventId());
+                    droppedCounter.increment();
+                    return false;
+                }
+            }
+        } catch (IllegalStateException e) {
+            log.error("Failed to open a new spool segment: {}", e.getMessage());
+            droppedCounter.increment();
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        MappedByteBuffer buffer = mapped(writeSegment);
+        ByteBuffer view = buffer.duplicate();
+        view.position(writeOffset);
+        view.putInt(body.length).putInt((int) crc.getValue()).put(body);
+        buffer.force(writeOffset, recordSize);
+
+        writeOffset += recordSize;
+        pendingUsers.put(event.getAggregateKey(), new Position(writeSegment, writeOffset));
+        pendingBytes.addAndGet(recordSize);
+        appendedCounter.increment();
+        return true;
+    }
+
+    public synchronized Batch readBatch(int maxEvents) {
+        List<OutboxEvent> events = new ArrayList<>();
+        long segment = cursor.segment();
+        int offset = cursor.offset();
+        long bytes = 0;
+
+        while (events.size() < maxEvents) {
+            if (!segments.contains(segment) || offset >= endOf(segment)) {
+                Long next = segments.higher(segment);
+                if (next == null) {
+                    break;
+                }
+                segment = next;
+                offset = 0;
+                continue;
+            }
+            ByteBuffer view = mapped(segment).duplicate();
+            view.position(offset);
+            int length = view.getInt();
+            view.getInt();
+            byte[] body = new byte[length];
+            view.get(body);
+            events.add(deserialize(body));
+
+            int recordSize = RECORD_HEADER_BYTES + length;
+            offset += recordSize;
+            bytes += recordSize;
+        }
+        return new Batch(events, new Position(segment, offset), bytes);
+    }
+
+    public synchronized void commit(Batch batch) {
+        try {
+            writeCursor(batch.next());
+        } catch (IOException e) {
+            // The batch is already in the outbox; a stale cursor only means it is replayed again
+            log.warn("Failed to persist spool cursor: {}", e.getMessage());
+        }
+        cursor = batch.next();
+        pendingBytes.addAndGet(-batch.bytes());
+        pendingUsers.values().removeIf(end -> !isAfterCursor(end));
+
+        for (Long segment : new ArrayList<>(segments.headSet(cursor.segment()))) {
+            deleteSegment(segment);
+        }
+    }
+
+    public long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    // Checked on every publish, so it doesn't wait for an append or a replay holding the lock
+    public boolean hasPending(String userId) {
+        return pendingUsers.containsKey(userId);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        mapped.values().forEach(UserEventSpool::unmap);
+        mapped.clear();
+    }
+
+    private synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    private int endOf(long segment) {
+        return segment == writeSegment ? writeOffset : sealedSegmentEnds.getOrDefault(segment, 0);
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .forEach(segments::add);
+        }
+        cursor = readCursor();
+
+        for (Long segment : new ArrayList<>(segments.headSet(cursor.segment()))) {
+            deleteSegment(segment);
+        }
+        for (Long segment : segments) {
+            int end = scanEnd(segment, mapped(segment));
+            unmap(mapped.remove(segment));
+            sealedSegmentEnds.put(segment, end);
+            pendingBytes.addAndGet(end - (segment == cursor.segment() ? cursor.offset() : 0));
+        }
+        if (!segments.isEmpty()) {
+            writeSegment = segments.last();
+            writeOffset = sealedSegmentEnds.remove(writeSegment);
+        }
+        opened = true;
+        if (pendingBytes.get() > 0) {
+            log.info("Event spool has {} bytes left to replay in {} segments", pendingBytes.get(), segments.size());
+        }
+    }
+
+    private boolean roll() {
+        if (segments.size() >= maxSegments) {
+            return false;
+        }
+        long next;
+        if (writeSegment >= 0) {
+            sealedSegmentEnds.put(writeSegment, writeOffset);
+            if (writeSegment != cursor.segment()) {
+                unmap(mapped.remove(writeSegment));
+            }
+            next = writeSegment + 1;
+        } else {
+            next = cursor.offset() > 0 ? cursor.segment() + 1 : cursor.segment();
+        }
+        segments.add(next);
+        mapped(next);
+        writeSegment = next;
+        writeOffset = 0;
+        return true;
+    }
+
+    private boolean isAfterCursor(Position position) {
+        return position.segment() > cursor.segment()
+                || position.segment() == cursor.segment() && position.offset() > cursor.offset();
+    }
+
+    private int scanEnd(long segment, MappedByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        int offset = 0;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_BYTES <= segmentSize) {
+            view.position(offset);
+            int length = view.getInt();
+            int checksum = view.getInt();
+            if (length <= 0 || offset + RECORD_HEADER_BYTES + length > segmentSize) {
+                break;
+            }
+            byte[] body = new byte[length];
+            view.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Ignoring torn spool record at offset {}", offset);
+                break;
+            }
+            offset += RECORD_HEADER_BYTES + length;
+            Position end = new Position(segment, offset);
+            if (isAfterCursor(end)) {
+                pendingUsers.put(aggregateKey(body), end);
+            }
+        }
+        return offset;
+    }
+
+    private MappedByteBuffer mapped(long segment) {
+        return mapped.computeIfAbsent(segment, id -> {
+            try (FileChannel channel = FileChannel.open(segmentPath(id),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map spool segment " + id, e);
+            }
+        });
+    }
+
+    private void deleteSegment(long segment) {
+        segments.remove(segment);
+        sealedSegmentEnds.remove(segment);
+        unmap(mapped.remove(segment));
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            log.warn("Failed to delete spool segment {}: {}", segment, e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the mapping right away; without the JDK's cleaner hook it is left to the collector.
+     * The buffer must not be touched afterwards, which holds because views never leave this class.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null || UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warn("Failed to unmap spool segment: {}", e.getMessage());
+        }
+    }
+
+    private static MethodHandle unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Spool segments can't be unmapped eagerly here: {}", e.toString());
+            return null;
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private Position readCursor() throws IOException {
+        Path path = directory.resolve(CURSOR_FILE);
+        if (!Files.exists(path)) {
+            return new Position(segments.isEmpty() ? 0 : segments.first(), 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        return new Position(buffer.getLong(), buffer.getInt());
+    }
+
+    private void writeCursor(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12).putLong(position.segment()).putInt(position.offset()).flip();
+        try (FileChannel channel = FileChannel.open(directory.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer);
+            channel.force(false);
+        }
+    }
+
+    private static byte[] serialize(OutboxEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + event.getPayload().length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(event.getEventId());
+            out.writeUTF(event.getAggregateKey());
+            out.writeUTF(event.getEventType().name());
+            out.writeInt(event.getPartitionNo());
+            out.writeUTF(event.getContentType());
+            out.writeBoolean(event.getSchemaId() != null);
+            if (event.getSchemaId() != null) {
+                out.writeUTF(event.getSchemaId());
+            }
+            out.writeInt(event.getPayload().length);
+            out.write(event.getPayload());
+            if (event.getTopic() != null) {
+                out.writeUTF(event.getTopic());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize spool record", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String aggregateKey(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            in.readUTF();
+            return in.readUTF();
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt spool record", e);
+        }
+    }
+
+    private static OutboxEvent deserialize(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            OutboxEvent.OutboxEventBuilder event = OutboxEvent.builder()
+                    .eventId(in.readUTF())
+                    .aggregateKey(in.readUTF())
+                    .eventType(UserEventType.valueOf(in.readUTF()))
+                    .partitionNo(in.readInt())
+                    .contentType(in.readUTF());
+            if (in.readBoolean()) {
+                event.schemaId(in.readUTF());
+            }
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            if (in.available() > 0) {
+                event.topic(in.readUTF());
+            }
+            return event.payload(payload).build();
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt spool record", e);
+        }
+    }
+}
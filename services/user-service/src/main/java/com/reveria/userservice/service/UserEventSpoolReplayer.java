@@ -0,0 +1,66 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.SpoolConfig;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves spooled events back into the outbox, oldest first, once Postgres accepts writes again.
+ * From there {@link OutboxRelay} ships them as usual.
+ *
+ * Replayed rows get new outbox ids, so {@link UserEventPublisher} spools a user's later events
+ * behind the ones still here rather than writing them to the outbox: the relay ships by id.
+ * Only this scheduled job replays; request threads never drain the spool.
+ */
+@Service
+@Slf4j
+public class UserEventSpoolReplayer {
+
+    private final UserEventSpool spool;
+    private final OutboxEventRepository outboxEventRepository;
+    private final SpoolConfig spoolConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter replayedCounter;
+
+    public UserEventSpoolReplayer(UserEventSpool spool,
+                                  OutboxEventRepository outboxEventRepository,
+                                  SpoolConfig spoolConfig,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry) {
+        this.spool = spool;
+        this.outboxEventRepository = outboxEventRepository;
+        this.spoolConfig = spoolConfig;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Never join the publisher's transaction: the spool is committed as soon as this returns
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.replayedCounter = Counter.builder("user_events.spool.replayed")
+                .description("Spooled events moved back into the outbox")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spool.replay-interval-ms:2000}")
+    public void replay() {
+        while (spool.pendingBytes() > 0) {
+            UserEventSpool.Batch batch = spool.readBatch(spoolConfig.getReplayBatchSize());
+            if (batch.events().isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> outboxEventRepository.saveAll(batch.events()));
+            } catch (RuntimeException e) {
+                log.warn("Spool replay paused, outbox still unavailable: {}", e.getMessage());
+                return;
+            }
+            spool.commit(batch);
+            replayedCounter.increment(batch.events().size());
+            log.info("Replayed {} spooled events into the outbox", batch.events().size());
+        }
+    }
+}
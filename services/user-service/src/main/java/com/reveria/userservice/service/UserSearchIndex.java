@@ -0,0 +1,528 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.UserSearchConfig;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory prefix index over usernames and display names, for mention autocomplete.
+ *
+ * Only active users with a public profile are indexed. The bulk of the index is an immutable
+ * snapshot: every search key (the username, the full display name and each later word of it)
+ * in one sorted array, so the keys with a given prefix are one contiguous range found by binary
+ * search. Each block of 256 keys, and each run of 64 blocks, stores its best users by rank, so
+ * the top k of a range costs at most a few hundred precomputed entries plus the partial blocks
+ * at its ends, however common the prefix. Rank is the last login.
+ *
+ * The snapshot is built from keyset pages at startup and rebuilt on an interval. Between
+ * rebuilds, users changed on any replica arrive through the invalidation bus, are re-read in
+ * batches, and override their snapshot entries. The overrides are kept as a small sorted overlay,
+ * rebuilt after every refresh and searched by the same binary search; blocks holding an overridden
+ * user fall back to scanning their keys, since their precomputed best may be stale. Until the
+ * first build completes, only the overlay is searchable.
+ */
+@Service
+@Slf4j
+public class UserSearchIndex implements LocalUserCache {
+
+    static final int BLOCK = 256;
+    static final int SUPER_BLOCK = BLOCK * 64;
+
+    private static final Set<UserEventType> INVALIDATED_BY = EnumSet.of(
+            UserEventType.USER_REGISTERED,
+            UserEventType.USER_EMAIL_VERIFIED,
+            UserEventType.USER_PROFILE_UPDATED,
+            UserEventType.USER_PRIVACY_UPDATED,
+            UserEventType.USER_DEACTIVATED
+    );
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingLong(Hit::rank).reversed()
+            .thenComparing(Hit::uuid);
+
+    record Hit(String uuid, long rank) {
+    }
+
+    // A user as last read from the database; hides the snapshot entry until the next rebuild
+    private record Change(String uuid, String username, String displayName, long rank,
+                          boolean searchable, long sequence) {
+    }
+
+    private final UserRepository userRepository;
+    private final UserSearchConfig config;
+    private final MaintenanceExecutor maintenanceExecutor;
+
+    private volatile Snapshot snapshot = Snapshot.build(List.of(), List.of(), List.of(), new long[0], 1);
+    private final Map<String, Change> changes = new ConcurrentHashMap<>();
+    // What queries read: the snapshot and the changes overriding it, replaced together
+    private volatile Overlay overlay = Overlay.build(snapshot, List.of());
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // Orders re-reads against rebuilds, so a rebuild only drops changes it has seen
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Timer searchTimer;
+    private final Timer rebuildTimer;
+
+    public UserSearchIndex(UserRepository userRepository,
+                           UserSearchConfig config,
+                           MaintenanceExecutor maintenanceExecutor,
+                           MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.config = config;
+        this.maintenanceExecutor = maintenanceExecutor;
+        this.searchTimer = Timer.builder("user.search.latency")
+                .description("Time to answer a username prefix query from the index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("user.search.rebuild")
+                .description("Time to rebuild the username search index from the database")
+                .register(meterRegistry);
+        Gauge.builder("user.search.index.size", this, index -> index.snapshot.uuids.length)
+                .description("Users in the username search snapshot")
+                .register(meterRegistry);
+        Gauge.builder("user.search.index.changes", changes, Map::size)
+                .description("Changed users overriding the snapshot until the next rebuild")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Uuids of the best-ranked users with a username or display-name word starting with the query.
+     */
+    public List<String> search(String query, int limit) {
+        String prefix = normalize(query);
+        if (!config.isEnabled() || prefix.length() < config.getMinPrefixLength()) {
+            return List.of();
+        }
+        int k = Math.max(1, Math.min(limit, config.getMaxResults()));
+        return searchTimer.record(() -> collect(prefix, k));
+    }
+
+    private List<String> collect(String prefix, int k) {
+        Overlay current = overlay;
+        Snapshot base = current.base;
+        TopK top = new TopK(k);
+
+        int position = base.lowerBound(prefix);
+        int end = base.lowerBound(prefix + Character.MAX_VALUE);
+        while (position < end) {
+            int[] best = null;
+            int step = 1;
+            if (position % SUPER_BLOCK == 0 && position + SUPER_BLOCK <= end
+                    && !current.dirtySuperBlocks.get(position / SUPER_BLOCK)) {
+                best = base.superBlockBest[position / SUPER_BLOCK];
+                step = SUPER_BLOCK;
+            } else if (position % BLOCK == 0 && position + BLOCK <= end
+                    && !current.dirtyBlocks.get(position / BLOCK)) {
+                best = base.blockBest[position / BLOCK];
+                step = BLOCK;
+            }
+            if (best != null) {
+                for (int user : best) {
+                    top.offer(new Hit(base.uuids[user], base.ranks[user]));
+                }
+            } else {
+                int user = base.owners[position];
+                if (!current.overridden.contains(base.uuids[user])) {
+                    top.offer(new Hit(base.uuids[user], base.ranks[user]));
+                }
+            }
+            position += step;
+        }
+
+        int to = current.lowerBound(prefix + Character.MAX_VALUE);
+        for (int i = current.lowerBound(prefix); i < to; i++) {
+            Change change = current.owners[i];
+            top.offer(new Hit(change.uuid(), change.rank()));
+        }
+        return top.uuids();
+    }
+
+    // The rebuild reads every user, so it runs on the maintenance threads, not the scheduler's
+    @Scheduled(initialDelayString = "${user.search.initial-delay-ms:0}",
+            fixedDelayString = "${user.search.rebuild-interval-ms:3600000}")
+    public void scheduleRebuild() {
+        if (config.isEnabled()) {
+            maintenanceExecutor.submit("user-search-rebuild", this::rebuild);
+        }
+    }
+
+    public void rebuild() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            long startedAt = sequence.incrementAndGet();
+            Snapshot built = rebuildTimer.record(this::load);
+            snapshot = built;
+            changes.values().removeIf(change -> change.sequence() < startedAt);
+            publish();
+            log.info("Username search index rebuilt with {} users and {} keys", built.uuids.length, built.keys.length);
+        } catch (RuntimeException e) {
+            log.error("Username search index rebuild failed: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot load() {
+        List<String> uuids = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        List<String> displayNames = new ArrayList<>();
+        long[] ranks = new long[1024];
+        long afterId = 0;
+        while (true) {
+            List<UserRepository.SearchRow> page = userRepository.findSearchPage(afterId, config.getBuildPageSize());
+            for (UserRepository.SearchRow row : page) {
+                if (uuids.size() == ranks.length) {
+                    ranks = Arrays.copyOf(ranks, ranks.length * 2);
+                }
+                ranks[uuids.size()] = row.getRank() != null ? row.getRank() : 0;
+                uuids.add(row.getUuid());
+                usernames.add(row.getUsername());
+                displayNames.add(row.getDisplayName());
+                afterId = row.getId();
+            }
+            if (page.size() < config.getBuildPageSize()) {
+                break;
+            }
+        }
+        return Snapshot.build(uuids, usernames, displayNames, ranks, config.getMaxResults());
+    }
+
+    /**
+     * Re-reads users changed since the last refresh and lets them override the snapshot.
+     */
+    @Scheduled(fixedDelayString = "${user.search.refresh-interval-ms:1000}")
+    public void refresh() {
+        if (!config.isEnabled() || dirty.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>();
+        Iterator<String> pending = dirty.iterator();
+        while (pending.hasNext() && batch.size() < config.getRefreshBatchSize()) {
+            batch.add(pending.next());
+            pending.remove();
+        }
+        long readAt = sequence.incrementAndGet();
+        try {
+            Set<String> missing = new HashSet<>(batch);
+            for (UserRepository.SearchRow row : userRepository.findSearchRows(batch.toArray(String[]::new))) {
+                missing.remove(row.getUuid());
+                boolean searchable = UserStatus.ACTIVE.name().equals(row.getStatus())
+                        && (row.getProfileVisibility() == null
+                        || ProfileVisibility.PUBLIC.name().equals(row.getProfileVisibility()));
+                changes.put(row.getUuid(), new Change(row.getUuid(), row.getUsername(), row.getDisplayName(),
+                        row.getRank() != null ? row.getRank() : 0, searchable, readAt));
+            }
+            for (String uuid : missing) {
+                changes.put(uuid, new Change(uuid, null, null, 0, false, readAt));
+            }
+            publish();
+        } catch (RuntimeException e) {
+            dirty.addAll(batch);
+            log.warn("Failed to refresh {} users in the search index: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    // Refreshes and rebuilds may run on different scheduler threads
+    private synchronized void publish() {
+        overlay = Overlay.build(snapshot, changes.values());
+    }
+
+    @Override
+    public String name() {
+        return "user-search";
+    }
+
+    @Override
+    public Set<UserEventType> invalidatedBy() {
+        return INVALIDATED_BY;
+    }
+
+    @Override
+    public void evict(String userUuid) {
+        if (config.isEnabled()) {
+            dirty.add(userUuid);
+        }
+    }
+
+    /**
+     * Case- and accent-insensitive form of names and queries.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFKD);
+        return SPACES.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The username, the whole display name, and each display-name word after the first (the
+     * first is already a prefix of the whole name).
+     */
+    static Set<String> keysOf(String username, String displayName) {
+        Set<String> keys = new LinkedHashSet<>();
+        String user = normalize(username);
+        if (!user.isEmpty()) {
+            keys.add(user);
+        }
+        String display = normalize(displayName);
+        if (!display.isEmpty()) {
+            keys.add(display);
+            String[] words = display.split(" ");
+            for (int i = 1; i < words.length; i++) {
+                keys.add(words[i]);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Index of the first key not less than the given one.
+     */
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorted search keys and the precomputed best users of each block. Immutable once built.
+     */
+    static final class Snapshot {
+
+        final String[] uuids;
+        final long[] ranks;
+        final String[] keys;
+        final int[] owners;
+        final int[][] blockBest;
+        final int[][] superBlockBest;
+        // Users ordered by uuid, and the key positions of each user (user i at keyPositions[keyStarts[i]..])
+        private final int[] byUuid;
+        private final int[] keyStarts;
+        private final int[] keyPositions;
+
+        private Snapshot(String[] uuids, long[] ranks, String[] keys, int[] owners, int perBlock) {
+            this.uuids = uuids;
+            this.ranks = ranks;
+            this.keys = keys;
+            this.owners = owners;
+            this.byUuid = IntStream.range(0, uuids.length).boxed()
+                    .sorted(Comparator.comparing(user -> uuids[user]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            this.keyStarts = new int[uuids.length + 1];
+            for (int owner : owners) {
+                keyStarts[owner + 1]++;
+            }
+            Arrays.parallelPrefix(keyStarts, Integer::sum);
+            this.keyPositions = new int[keys.length];
+            int[] filled = Arrays.copyOf(keyStarts, uuids.length);
+            for (int i = 0; i < owners.length; i++) {
+                keyPositions[filled[owners[i]]++] = i;
+            }
+            Comparator<Integer> bestFirst = Comparator.<Integer>comparingLong(user -> ranks[user]).reversed()
+                    .thenComparing(user -> uuids[user]);
+
+            this.blockBest = new int[(keys.length + BLOCK - 1) / BLOCK][];
+            for (int block = 0; block < blockBest.length; block++) {
+                int from = block * BLOCK;
+                int to = Math.min(keys.length, from + BLOCK);
+                Set<Integer> users = new HashSet<>();
+                for (int i = from; i < to; i++) {
+                    users.add(owners[i]);
+                }
+                blockBest[block] = best(users, bestFirst, perBlock);
+            }
+            int blocksPerSuper = SUPER_BLOCK / BLOCK;
+            this.superBlockBest = new int[(keys.length + SUPER_BLOCK - 1) / SUPER_BLOCK][];
+            for (int sup = 0; sup < superBlockBest.length; sup++) {
+                Set<Integer> users = new HashSet<>();
+                int to = Math.min(blockBest.length, (sup + 1) * blocksPerSuper);
+                for (int block = sup * blocksPerSuper; block < to; block++) {
+                    for (int user : blockBest[block]) {
+                        users.add(user);
+                    }
+                }
+                superBlockBest[sup] = best(users, bestFirst, perBlock);
+            }
+        }
+
+        static Snapshot build(List<String> uuids, List<String> usernames, List<String> displayNames,
+                              long[] ranks, int perBlock) {
+            record Key(String key, int owner) {
+            }
+            List<Key> entries = new ArrayList<>();
+            for (int user = 0; user < uuids.size(); user++) {
+                for (String key : keysOf(usernames.get(user), displayNames.get(user))) {
+                    entries.add(new Key(key, user));
+                }
+            }
+            entries.sort(Comparator.comparing(Key::key));
+            String[] keys = new String[entries.size()];
+            int[] owners = new int[entries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = entries.get(i).key();
+                owners[i] = entries.get(i).owner();
+            }
+            return new Snapshot(uuids.toArray(String[]::new), Arrays.copyOf(ranks, uuids.size()),
+                    keys, owners, perBlock);
+        }
+
+        int lowerBound(String key) {
+            return UserSearchIndex.lowerBound(keys, key);
+        }
+
+        /**
+         * Positions of the user's keys, or none when the user isn't in the snapshot.
+         */
+        int[] keyPositionsOf(String uuid) {
+            int low = 0;
+            int high = byUuid.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int user = byUuid[mid];
+                int order = uuids[user].compareTo(uuid);
+                if (order == 0) {
+                    return Arrays.copyOfRange(keyPositions, keyStarts[user], keyStarts[user + 1]);
+                } else if (order < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return new int[0];
+        }
+
+        private static int[] best(Set<Integer> users, Comparator<Integer> bestFirst, int limit) {
+            return users.stream()
+                    .sorted(bestFirst)
+                    .limit(limit)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    /**
+     * The search keys of the changed users, sorted like the snapshot's, plus the snapshot blocks
+     * whose precomputed best can't be trusted because one of their users changed.
+     */
+    static final class Overlay {
+
+        final Snapshot base;
+        final String[] keys;
+        final Change[] owners;
+        final Set<String> overridden;
+        final BitSet dirtyBlocks = new BitSet();
+        final BitSet dirtySuperBlocks = new BitSet();
+
+        private Overlay(Snapshot base, String[] keys, Change[] owners, Set<String> overridden) {
+            this.base = base;
+            this.keys = keys;
+            this.owners = owners;
+            this.overridden = overridden;
+            for (String uuid : overridden) {
+                for (int position : base.keyPositionsOf(uuid)) {
+                    dirtyBlocks.set(position / BLOCK);
+                    dirtySuperBlocks.set(position / SUPER_BLOCK);
+                }
+            }
+        }
+
+        static Overlay build(Snapshot base, Collection<Change> changes) {
+            record Key(String key, Change owner) {
+            }
+            List<Key> entries = new ArrayList<>();
+            Set<String> overridden = new HashSet<>();
+            for (Change change : changes) {
+                overridden.add(change.uuid());
+                if (change.searchable()) {
+                    for (String key : keysOf(change.username(), change.displayName())) {
+                        entries.add(new Key(key, change));
+                    }
+                }
+            }
+            entries.sort(Comparator.comparing(Key::key));
+            return new Overlay(base,
+                    entries.stream().map(Key::key).toArray(String[]::new),
+                    entries.stream().map(Key::owner).toArray(Change[]::new),
+                    overridden);
+        }
+
+        int lowerBound(String key) {
+            return UserSearchIndex.lowerBound(keys, key);
+        }
+    }
+
+    /**
+     * The k best distinct users offered so far.
+     */
+    private static final class TopK {
+
+        private final int k;
+        private final PriorityQueue<Hit> worstFirst = new PriorityQueue<>(BEST_FIRST.reversed());
+        private final Set<String> held = new HashSet<>();
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        void offer(Hit hit) {
+            if (held.contains(hit.uuid())) {
+                return;
+            }
+            if (worstFirst.size() < k) {
+                worstFirst.add(hit);
+                held.add(hit.uuid());
+            } else if (BEST_FIRST.compare(hit, worstFirst.peek()) < 0) {
+                held.remove(worstFirst.poll().uuid());
+                worstFirst.add(hit);
+                held.add(hit.uuid());
+            }
+        }
+
+        List<String> uuids() {
+            return worstFirst.stream()
+                    .sorted(BEST_FIRST)
+                    .map(Hit::uuid)
+                    .toList();
+        }
+    }
+}
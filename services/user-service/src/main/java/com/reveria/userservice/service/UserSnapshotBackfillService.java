@@ -0,0 +1,101 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.exception.BackfillAlreadyRunningException;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One-shot job that seeds user-snapshots with every existing user.
+ *
+ * Walks users by id with a keyset cursor (no OFFSET), one transaction per page, and writes the
+ * snapshots through the outbox like the live write paths do. Safe to run again; compaction
+ * keeps only the newest record per user.
+ */
+@Service
+@Slf4j
+public class UserSnapshotBackfillService {
+
+    private final UserRepository userRepository;
+    private final UserSnapshotPublisher snapshotPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor taskExecutor;
+    private final int pageSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Progress of the current (or last) run, reported when another start is refused
+    private final AtomicLong written = new AtomicLong();
+    private volatile long lastUserId;
+    private final Counter backfilledCounter;
+
+    public UserSnapshotBackfillService(UserRepository userRepository,
+                                       UserSnapshotPublisher snapshotPublisher,
+                                       PlatformTransactionManager transactionManager,
+                                       @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                       @Value("${kafka.snapshots.backfill-page-size:500}") int pageSize,
+                                       MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.snapshotPublisher = snapshotPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.pageSize = pageSize;
+        this.backfilledCounter = Counter.builder("user_snapshots.backfilled")
+                .description("User snapshots written by the backfill job")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new BackfillAlreadyRunningException(written.get(), lastUserId);
+        }
+        written.set(0);
+        lastUserId = 0;
+        taskExecutor.execute(() -> {
+            try {
+                run();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    long run() {
+        long afterId = 0;
+        long total = 0;
+        log.info("Snapshot backfill started");
+        try {
+            while (true) {
+                long cursor = afterId;
+                List<UserRepository.SnapshotRow> page = transactionTemplate.execute(status -> {
+                    List<UserRepository.SnapshotRow> rows = userRepository.lockSnapshotPage(cursor, pageSize);
+                    rows.forEach(snapshotPublisher::writeBackfill);
+                    return rows;
+                });
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+                total += page.size();
+                written.set(total);
+                lastUserId = afterId;
+                backfilledCounter.increment(page.size());
+                log.debug("Snapshot backfill at user id {} ({} users)", afterId, total);
+            }
+            log.info("Snapshot backfill finished: {} users", total);
+        } catch (RuntimeException e) {
+            log.error("Snapshot backfill stopped after user id {} ({} users): {}", afterId, total, e.getMessage());
+        }
+        return total;
+    }
+}
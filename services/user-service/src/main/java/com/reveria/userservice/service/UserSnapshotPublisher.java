@@ -0,0 +1,141 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.dto.event.UserSnapshot;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.entity.UserPrivacySettings;
+import com.reveria.userservice.model.enums.MessagePrivacy;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import com.reveria.userservice.repository.UserPrivacySettingsRepository;
+import com.reveria.userservice.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Maintains the compacted user-snapshots topic.
+ *
+ * Write paths call {@link #markChanged} next to their {@link UserEventPublisher} call. The
+ * snapshot is built once per user just before the transaction commits, so it reflects the
+ * final state however many changes the transaction made, and goes through the outbox in the
+ * user's partition, after the events that caused it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserSnapshotPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final UserPrivacySettingsRepository privacySettingsRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final KafkaConfig kafkaConfig;
+    private final OutboxConfig outboxConfig;
+
+    public void markChanged(User user, UserEventType cause) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(user, cause);
+            return;
+        }
+        PendingSnapshots pending = (PendingSnapshots) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingSnapshots();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.users.put(user.getUuid(), user);
+        pending.causes.put(user.getUuid(), cause);
+    }
+
+    /**
+     * Writes backfill snapshots straight to the outbox; the caller holds the user rows locked.
+     */
+    void writeBackfill(UserRepository.SnapshotRow row) {
+        save(row.getUuid(), UserEventType.USER_SNAPSHOT_BACKFILLED, new UserSnapshot(
+                row.getUuid(),
+                row.getUsername(),
+                row.getDisplayName(),
+                row.getAvatarUrl(),
+                row.getBio(),
+                row.getStatus(),
+                row.getProfileVisibility() != null ? row.getProfileVisibility() : ProfileVisibility.PUBLIC.name(),
+                row.getShowOnlineStatus() != null ? row.getShowOnlineStatus() : true,
+                row.getAllowDirectMessages() != null ? row.getAllowDirectMessages() : true,
+                row.getAllowFriendRequests() != null ? row.getAllowFriendRequests() : true,
+                row.getMessagePrivacy() != null ? row.getMessagePrivacy() : MessagePrivacy.EVERYONE.name(),
+                Instant.now()));
+    }
+
+    private void write(User user, UserEventType cause) {
+        UserPrivacySettings privacy = privacySettingsRepository.findByUserId(user.getId()).orElse(null);
+        save(user.getUuid(), cause, new UserSnapshot(
+                user.getUuid(),
+                user.getUsername(),
+                user.getDisplayName(),
+                user.getAvatarUrl(),
+                user.getBio(),
+                user.getStatus() != null ? user.getStatus().name() : null,
+                privacy != null ? privacy.getProfileVisibility().name() : ProfileVisibility.PUBLIC.name(),
+                privacy != null ? privacy.getShowOnlineStatus() : true,
+                privacy != null ? privacy.getAllowDirectMessages() : true,
+                privacy != null ? privacy.getAllowFriendRequests() : true,
+                privacy != null ? privacy.getMessagePrivacy().name() : MessagePrivacy.EVERYONE.name(),
+                Instant.now()));
+    }
+
+    private void save(String uuid, UserEventType cause, UserSnapshot snapshot) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(snapshot);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize snapshot for user {}: {}", uuid, e.getMessage());
+            return;
+        }
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .aggregateKey(uuid)
+                .eventType(cause)
+                .partitionNo(Math.floorMod(uuid.hashCode(), outboxConfig.getPartitions()))
+                .payload(payload)
+                .contentType(UserEventCodec.CONTENT_TYPE_JSON)
+                .topic(kafkaConfig.getUserSnapshotsTopic())
+                .build());
+    }
+
+    private final class PendingSnapshots implements TransactionSynchronization {
+
+        private final Map<String, User> users = new LinkedHashMap<>();
+        private final Map<String, UserEventType> causes = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            users.forEach((uuid, user) -> {
+                // Serialises against a running backfill page, which holds the row FOR SHARE
+                if (entityManager.contains(user)) {
+                    entityManager.lock(user, LockModeType.PESSIMISTIC_WRITE);
+                }
+                write(user, causes.get(uuid));
+            });
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UserSnapshotPublisher.this);
+        }
+    }
+}
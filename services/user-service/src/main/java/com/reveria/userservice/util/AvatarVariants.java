@@ -0,0 +1,69 @@
+package com.reveria.userservice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Naming for resized avatar derivatives. A variant lives next to the original with the size in
+ * its name ({@code avatars/u/abc.png} -> {@code avatars/u/abc_128.jpg}), so its path and URL
+ * follow from the original's. The set that exists is stored on the user as a short spec,
+ * e.g. {@code "512.jpg,256.jpg"}.
+ */
+public final class AvatarVariants {
+
+    public record Variant(int size, String extension) {
+
+        public String contentType() {
+            return switch (extension) {
+                case "webp" -> "image/webp";
+                case "png" -> "image/png";
+                default -> "image/jpeg";
+            };
+        }
+    }
+
+    private AvatarVariants() {
+    }
+
+    /**
+     * Path or URL of a variant, derived from the original's path or URL.
+     */
+    public static String locate(String original, Variant variant) {
+        int slash = original.lastIndexOf('/');
+        int dot = original.lastIndexOf('.');
+        String base = dot > slash ? original.substring(0, dot) : original;
+        return base + "_" + variant.size() + "." + variant.extension();
+    }
+
+    public static List<Variant> parse(String spec) {
+        List<Variant> variants = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return variants;
+        }
+        for (String entry : spec.split(",")) {
+            int dot = entry.indexOf('.');
+            if (dot > 0) {
+                try {
+                    variants.add(new Variant(Integer.parseInt(entry.substring(0, dot)), entry.substring(dot + 1)));
+                } catch (NumberFormatException ignored) {
+                    // Unknown entry; skip it rather than fail the whole profile
+                }
+            }
+        }
+        return variants;
+    }
+
+    public static String format(List<Variant> variants) {
+        if (variants.isEmpty()) {
+            return null;
+        }
+        StringBuilder spec = new StringBuilder();
+        for (Variant variant : variants) {
+            if (!spec.isEmpty()) {
+                spec.append(',');
+            }
+            spec.append(variant.size()).append('.').append(variant.extension());
+        }
+        return spec.toString();
+    }
+}
@@ -9,7 +9,10 @@ import java.util.Set;
 
 public final class FileValidationUtil {
 
-    private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5 MB
+    public static final long MAX_AVATAR_SIZE = 5 * 1024 * 1024; // 5 MB
+
+    // Bytes needed to recognise every allowed image type
+    public static final int AVATAR_HEADER_LENGTH = ValidatingImageInputStream.HEADER_LENGTH;
 
     private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of(
             "image/jpeg",
@@ -17,79 +20,67 @@ public final class FileValidationUtil {
             "image/webp"
     );
 
-    // JPEG: FF D8 FF
-    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
-    // PNG: 89 50 4E 47
-    private static final byte[] PNG_MAGIC = {(byte) 0x89, 0x50, 0x4E, 0x47};
-    // WebP: RIFF....WEBP (bytes 0-3 = RIFF, bytes 8-11 = WEBP)
-    private static final byte[] RIFF_MAGIC = {0x52, 0x49, 0x46, 0x46};
-    private static final byte[] WEBP_MAGIC = {0x57, 0x45, 0x42, 0x50};
-
     private FileValidationUtil() {
     }
 
+    /**
+     * Full check, including reading the magic bytes. Uploads that stream the content to storage
+     * use {@link #validateAvatarMetadata} and {@link #openAvatarStream} instead, so the file is
+     * read once.
+     */
     public static void validateAvatar(MultipartFile file) {
+        validateAvatarMetadata(file);
+        validateMagicBytes(file);
+    }
+
+    /**
+     * Checks everything that doesn't need the file content: presence, declared size and type.
+     */
+    public static void validateAvatarMetadata(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new FileValidationException("File is required", "file");
         }
+        validateAvatarMetadata(file.getSize(), file.getContentType());
+    }
 
-        if (file.getSize() > MAX_FILE_SIZE) {
+    public static void validateAvatarMetadata(long size, String contentType) {
+        if (size > MAX_AVATAR_SIZE) {
             throw new FileValidationException("File size must not exceed 5 MB", "file");
         }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType)) {
+        if (!isAllowedAvatarType(contentType)) {
             throw new FileValidationException("Only JPEG, PNG, and WebP images are allowed", "file");
         }
-
-        validateMagicBytes(file);
     }
 
-    private static void validateMagicBytes(MultipartFile file) {
-        try (InputStream is = file.getInputStream()) {
-            byte[] header = new byte[12];
-            int bytesRead = is.read(header);
-            if (bytesRead < 4) {
-                throw new FileValidationException("File is too small to be a valid image", "file");
-            }
-
-            if (startsWith(header, JPEG_MAGIC)) {
-                return;
-            }
-            if (startsWith(header, PNG_MAGIC)) {
-                return;
-            }
-            if (bytesRead >= 12 && startsWith(header, RIFF_MAGIC) && regionMatches(header, 8, WEBP_MAGIC)) {
-                return;
-            }
+    /**
+     * Whether the type is one avatars may be stored and served as.
+     */
+    public static boolean isAllowedAvatarType(String contentType) {
+        return contentType != null && ALLOWED_CONTENT_TYPES.contains(contentType);
+    }
 
-            throw new FileValidationException("File content does not match a valid JPEG, PNG, or WebP image", "file");
-        } catch (IOException e) {
-            throw new FileValidationException("Unable to read file", "file");
-        }
+    /**
+     * Wraps avatar content so the magic bytes and size limit are checked as it is read.
+     */
+    public static ValidatingImageInputStream openAvatarStream(InputStream content) {
+        return new ValidatingImageInputStream(content, MAX_AVATAR_SIZE);
     }
 
-    private static boolean startsWith(byte[] data, byte[] prefix) {
-        if (data.length < prefix.length) {
-            return false;
-        }
-        for (int i = 0; i < prefix.length; i++) {
-            if (data[i] != prefix[i]) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Checks the leading bytes of an avatar and returns the image type they identify.
+     */
+    public static String detectAvatarType(byte[] header) {
+        return ValidatingImageInputStream.checkMagic(header, header.length);
     }
 
-    private static boolean regionMatches(byte[] data, int offset, byte[] expected) {
-        if (data.length < offset + expected.length) {
-            return false;
-        }
-        for (int i = 0; i < expected.length; i++) {
-            if (data[offset + i] != expected[i]) {
-                return false;
-            }
+    private static void validateMagicBytes(MultipartFile file) {
+        try (InputStream is = file.getInputStream()) {
+            byte[] header = new byte[ValidatingImageInputStream.HEADER_LENGTH];
+            int bytesRead = is.readNBytes(header, 0, header.length);
+            ValidatingImageInputStream.checkMagic(header, bytesRead);
+        } catch (IOException e) {
+            throw new FileValidationException("Unable to read file", "file");
         }
-        return true;
     }
 }
@@ -0,0 +1,64 @@
+package com.reveria.userservice.util;
+
+import com.reveria.userservice.model.enums.MessagePrivacy;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+
+/**
+ * A user's privacy settings packed into one int, for caches that hold them for many users.
+ * Bits 0-1 hold the profile visibility, 2-4 the three switches, 5-6 the message privacy.
+ * Missing values take the defaults a new settings row gets.
+ */
+public final class PrivacyFlags {
+
+    private static final int VISIBILITY_MASK = 0b11;
+    private static final int SHOW_ONLINE_STATUS = 1 << 2;
+    private static final int ALLOW_DIRECT_MESSAGES = 1 << 3;
+    private static final int ALLOW_FRIEND_REQUESTS = 1 << 4;
+    private static final int MESSAGE_PRIVACY_SHIFT = 5;
+
+    private static final ProfileVisibility[] VISIBILITIES = ProfileVisibility.values();
+    private static final MessagePrivacy[] MESSAGE_PRIVACIES = MessagePrivacy.values();
+
+    public static final int DEFAULT = pack(null, null, null, null, null);
+
+    private PrivacyFlags() {
+    }
+
+    public static int pack(ProfileVisibility visibility,
+                           Boolean showOnlineStatus,
+                           Boolean allowDirectMessages,
+                           Boolean allowFriendRequests,
+                           MessagePrivacy messagePrivacy) {
+        int flags = (visibility != null ? visibility : ProfileVisibility.PUBLIC).ordinal();
+        if (!Boolean.FALSE.equals(showOnlineStatus)) {
+            flags |= SHOW_ONLINE_STATUS;
+        }
+        if (!Boolean.FALSE.equals(allowDirectMessages)) {
+            flags |= ALLOW_DIRECT_MESSAGES;
+        }
+        if (!Boolean.FALSE.equals(allowFriendRequests)) {
+            flags |= ALLOW_FRIEND_REQUESTS;
+        }
+        return flags | (messagePrivacy != null ? messagePrivacy : MessagePrivacy.EVERYONE).ordinal() << MESSAGE_PRIVACY_SHIFT;
+    }
+
+    public static ProfileVisibility visibility(int flags) {
+        return VISIBILITIES[flags & VISIBILITY_MASK];
+    }
+
+    public static boolean showOnlineStatus(int flags) {
+        return (flags & SHOW_ONLINE_STATUS) != 0;
+    }
+
+    public static boolean allowDirectMessages(int flags) {
+        return (flags & ALLOW_DIRECT_MESSAGES) != 0;
+    }
+
+    public static boolean allowFriendRequests(int flags) {
+        return (flags & ALLOW_FRIEND_REQUESTS) != 0;
+    }
+
+    public static MessagePrivacy messagePrivacy(int flags) {
+        return MESSAGE_PRIVACIES[flags >>> MESSAGE_PRIVACY_SHIFT & 0b11];
+    }
+}
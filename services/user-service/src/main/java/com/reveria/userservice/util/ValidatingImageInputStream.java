@@ -0,0 +1,157 @@
+package com.reveria.userservice.util;
+
+import com.reveria.userservice.exception.FileValidationException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Validates an image upload while it is being read, so the bytes can go straight to storage.
+ *
+ * The first read pulls in the 12-byte header and checks it against the JPEG, PNG and WebP magic
+ * numbers before handing anything downstream; the header is then replayed and the rest passes
+ * through untouched. Reading past maxBytes fails the upload. Both failures surface as
+ * {@link FileValidationException}.
+ */
+public class ValidatingImageInputStream extends FilterInputStream {
+
+    static final int HEADER_LENGTH = 12;
+
+    // JPEG: FF D8 FF
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    // PNG: 89 50 4E 47
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 0x50, 0x4E, 0x47};
+    // WebP: RIFF....WEBP (bytes 0-3 = RIFF, bytes 8-11 = WEBP)
+    private static final byte[] RIFF_MAGIC = {0x52, 0x49, 0x46, 0x46};
+    private static final byte[] WEBP_MAGIC = {0x57, 0x45, 0x42, 0x50};
+
+    private final long maxBytes;
+    private final byte[] header = new byte[HEADER_LENGTH];
+    private int headerLength = -1;
+    private String detectedContentType;
+    private int headerPosition;
+    private long bytesRead;
+
+    public ValidatingImageInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (headerLength < 0) {
+            sniffHeader();
+        }
+        if (headerPosition < headerLength) {
+            int n = Math.min(len, headerLength - headerPosition);
+            System.arraycopy(header, headerPosition, b, off, n);
+            headerPosition += n;
+            return n;
+        }
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Every byte has to be counted, so skipping goes through read
+        byte[] discard = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(discard, 0, (int) Math.min(discard.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void sniffHeader() throws IOException {
+        int length = 0;
+        while (length < HEADER_LENGTH) {
+            int n = in.read(header, length, HEADER_LENGTH - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        headerLength = length;
+        count(length);
+        detectedContentType = checkMagic(header, length);
+    }
+
+    /**
+     * Content type implied by the magic bytes, or null before the first read.
+     */
+    public String detectedContentType() {
+        return detectedContentType;
+    }
+
+    private void count(int n) {
+        bytesRead += n;
+        if (bytesRead > maxBytes) {
+            throw new FileValidationException("File size must not exceed " + (maxBytes / (1024 * 1024)) + " MB", "file");
+        }
+    }
+
+    static String checkMagic(byte[] header, int length) {
+        if (length < 4) {
+            throw new FileValidationException("File is too small to be a valid image", "file");
+        }
+        if (startsWith(header, JPEG_MAGIC)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, PNG_MAGIC)) {
+            return "image/png";
+        }
+        if (length >= HEADER_LENGTH && startsWith(header, RIFF_MAGIC) && regionMatches(header, 8, WEBP_MAGIC)) {
+            return "image/webp";
+        }
+        throw new FileValidationException("File content does not match a valid JPEG, PNG, or WebP image", "file");
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        return regionMatches(data, 0, prefix);
+    }
+
+    private static boolean regionMatches(byte[] data, int offset, byte[] expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
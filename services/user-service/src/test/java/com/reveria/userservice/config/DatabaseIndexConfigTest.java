@@ -0,0 +1,45 @@
+package com.reveria.userservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseIndexConfigTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks private DatabaseIndexConfig config;
+
+    @Test
+    void createIndexes_indexMissingAfterFailure_failsStartup() {
+        doThrow(new DataAccessResourceFailureException("lock timeout"))
+                .when(jdbcTemplate).execute(contains("idx_users_username_pattern"));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("idx_users_username_pattern")))
+                .thenReturn(false);
+
+        assertThatThrownBy(config::afterSingletonsInstantiated)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("idx_users_username_pattern");
+    }
+
+    @Test
+    void createIndexes_createdMeanwhileByAnotherReplica_carriesOn() {
+        doThrow(new DataAccessResourceFailureException("duplicate key"))
+                .when(jdbcTemplate).execute(contains("idx_users_username_pattern"));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), eq("idx_users_username_pattern")))
+                .thenReturn(true);
+
+        config.afterSingletonsInstantiated();
+
+        verify(jdbcTemplate, times(6)).execute(anyString());
+    }
+}
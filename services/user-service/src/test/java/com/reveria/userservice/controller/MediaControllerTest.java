@@ -0,0 +1,109 @@
+package com.reveria.userservice.controller;
+
+import com.reveria.userservice.config.LocalStorageConfig;
+import com.reveria.userservice.service.LocalFileStorageService;
+import com.reveria.userservice.service.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MediaControllerTest {
+
+    private static final byte[] HTML = "<script>alert(1)</script>".getBytes(StandardCharsets.US_ASCII);
+    private static final String STAGING_KEY = "staging/avatars/user-1/6f1c1d0e-8a57-4a9e-9c55-0e6f2f0f7a11";
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageService storage;
+    private MediaController controller;
+
+    @BeforeEach
+    void setUp() {
+        LocalStorageConfig config = new LocalStorageConfig();
+        config.setRootDir(root.toString());
+        config.setPublicBaseUrl("http://localhost:8080/media");
+        config.setSigningKey("test-signing-key");
+        storage = new LocalFileStorageService(config);
+        storage.init();
+        controller = new MediaController(storage);
+    }
+
+    @Test
+    void put_rejectsTypesOutsideTheAvatarAllowList() throws Exception {
+        assertThat(put("text/html", HTML)).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+        assertThat(put("image/svg+xml", HTML)).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+        assertThat(storage.stat(STAGING_KEY)).isNull();
+
+        assertThat(put("image/png", new byte[16])).isEqualTo(HttpStatus.OK.value());
+        assertThat(storage.stat(STAGING_KEY)).isNotNull();
+    }
+
+    @Test
+    void put_overTheAvatarLimit_rejected() throws Exception {
+        StorageService.PresignedUpload upload = storage.presignUpload(STAGING_KEY, 300, 64L * 1024 * 1024, "image/");
+        MockHttpServletRequest request = putRequest(upload, "image/png", new byte[6 * 1024 * 1024]);
+
+        assertThat(invokePut(request, upload)).isEqualTo(HttpStatus.CONTENT_TOO_LARGE.value());
+    }
+
+    @Test
+    void get_neverServesStagedUploads() throws Exception {
+        storage.upload(STAGING_KEY, new ByteArrayInputStream(new byte[16]), 16, "image/png");
+
+        MockHttpServletResponse response = get(STAGING_KEY);
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getHeader("Content-Security-Policy")).isEqualTo("sandbox");
+    }
+
+    @Test
+    void get_nonImageType_sentAsAttachment() throws Exception {
+        String key = "avatars/" + "ab".repeat(32) + ".jpg";
+        storage.upload(key, new ByteArrayInputStream(HTML), HTML.length, "text/html");
+
+        MockHttpServletResponse response = get(key);
+
+        assertThat(response.getContentType()).isEqualTo("application/octet-stream");
+        assertThat(response.getHeader("Content-Disposition")).isEqualTo("attachment");
+        assertThat(response.getHeader("Content-Security-Policy")).isEqualTo("sandbox");
+        assertThat(response.getHeader("X-Content-Type-Options")).isEqualTo("nosniff");
+    }
+
+    private int put(String contentType, byte[] body) throws Exception {
+        StorageService.PresignedUpload upload = storage.presignUpload(STAGING_KEY, 300, 5L * 1024 * 1024, "image/");
+        return invokePut(putRequest(upload, contentType, body), upload);
+    }
+
+    private int invokePut(MockHttpServletRequest request, StorageService.PresignedUpload upload) throws Exception {
+        String[] params = URI.create(upload.url()).getQuery().split("&");
+        return controller.put(request,
+                Long.parseLong(params[0].substring("expires=".length())),
+                Long.parseLong(params[1].substring("max=".length())),
+                params[2].substring("type=".length()),
+                params[3].substring("signature=".length())).getStatusCode().value();
+    }
+
+    private static MockHttpServletRequest putRequest(StorageService.PresignedUpload upload, String contentType, byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", URI.create(upload.url()).getPath());
+        request.setContentType(contentType);
+        request.setContent(body);
+        return request;
+    }
+
+    private MockHttpServletResponse get(String key) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.get(new MockHttpServletRequest("GET", "/media/" + key), response);
+        return response;
+    }
+}
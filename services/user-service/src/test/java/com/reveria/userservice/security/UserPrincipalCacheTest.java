@@ -0,0 +1,44 @@
+package com.reveria.userservice.security;
+
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.enums.UserStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserPrincipalCacheTest {
+
+    private final UserPrincipalCache cache = new UserPrincipalCache(60_000, 100, new SimpleMeterRegistry());
+
+    @Test
+    void evict_removesEntry() {
+        cache.put(user(), cache.generation());
+        assertThat(cache.get("user-uuid-123")).isNotNull();
+
+        cache.evict("user-uuid-123");
+
+        assertThat(cache.get("user-uuid-123")).isNull();
+    }
+
+    @Test
+    void put_skipsCachingWhenEvictionRacedWithLoad() {
+        long generation = cache.generation();
+        cache.evict("user-uuid-123");
+
+        UserPrincipal principal = cache.put(user(), generation);
+
+        assertThat(principal.getUser().getUsername()).isEqualTo("testuser");
+        assertThat(cache.get("user-uuid-123")).isNull();
+    }
+
+    private static User user() {
+        return User.builder()
+                .id(1L)
+                .uuid("user-uuid-123")
+                .email("test@example.com")
+                .username("testuser")
+                .status(UserStatus.ACTIVE)
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.StorageIoConfig;
+import com.reveria.userservice.exception.StorageException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncStorageServiceTest {
+
+    @Mock private StorageService storageService;
+
+    private final StorageIoConfig config = new StorageIoConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AsyncStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        config.setThreads(2);
+        config.setTimeoutMs(200);
+        storage = new AsyncStorageService(storageService, config, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        storage.shutdown();
+    }
+
+    @Test
+    void uploadAll_reportsFailuresPerPath() {
+        when(storageService.upload(eq("avatars/a.jpg"), any(InputStream.class), eq(3L), eq("image/jpeg")))
+                .thenReturn("http://minio/avatars/a.jpg");
+        when(storageService.upload(eq("avatars/b.jpg"), any(InputStream.class), eq(3L), eq("image/jpeg")))
+                .thenThrow(new StorageException("SlowDown"));
+
+        Map<String, String> failed = storage.uploadAll(List.of(
+                new AsyncStorageService.Upload("avatars/a.jpg", new byte[3], "image/jpeg", null),
+                new AsyncStorageService.Upload("avatars/b.jpg", new byte[3], "image/jpeg", null))).join();
+
+        assertThat(failed).containsOnlyKeys("avatars/b.jpg").containsEntry("avatars/b.jpg", "SlowDown");
+    }
+
+    @Test
+    void stalledCall_timesOutAndIsInterrupted() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(storageService.stat("avatars/slow.jpg")).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        CompletableFuture<StorageService.ObjectInfo> stat = storage.stat("avatars/slow.jpg");
+
+        assertThatThrownBy(stat::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(TimeoutException.class);
+        // The timer is recorded before the call is cancelled
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("storage.operation.latency")
+                .tags("operation", "stat", "outcome", "timeout").timer().count()).isEqualTo(1);
+    }
+}
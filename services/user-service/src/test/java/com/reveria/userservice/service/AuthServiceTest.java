@@ -28,7 +28,10 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -48,8 +51,11 @@ class AuthServiceTest {
     @Mock private AuthMapper authMapper;
     @Mock private SessionMapper sessionMapper;
     @Mock private EmailVerificationService emailVerificationService;
+    @Mock private EmailSendGovernor emailSendGovernor;
     @Mock private LoginAttemptService loginAttemptService;
     @Mock private UserEventPublisher userEventPublisher;
+    @Mock private UserSnapshotPublisher userSnapshotPublisher;
+    @Mock private LastLoginService lastLoginService;
 
     @InjectMocks private AuthService authService;
 
@@ -64,8 +70,38 @@ class AuthServiceTest {
     void register_success() {
         RegisterRequest request = buildRegisterRequest();
         User mappedUser = new User();
-        User savedUser = buildUser();
+        User savedUser = stubRegistration(request, mappedUser);
+
+        AuthResponse response = authService.register(request, sessionInfo);
+
+        assertThat(response).isNotNull();
+        assertThat(response.getAccessToken()).isEqualTo("access-token");
+        verify(userRepository).save(mappedUser);
+        verify(passwordEncoder).encode("password123");
+        verify(emailVerificationService).sendVerificationEmail(savedUser);
+        verify(emailSendGovernor).record(EmailTemplateRenderer.EMAIL_VERIFICATION, savedUser.getEmail());
+    }
+
+    @Test
+    void register_insideTransaction_recordsVerificationEmailOnlyAfterCommit() {
+        RegisterRequest request = buildRegisterRequest();
+        User savedUser = stubRegistration(request, new User());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            authService.register(request, sessionInfo);
 
+            verify(emailSendGovernor, never()).record(anyString(), anyString());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(emailSendGovernor).record(EmailTemplateRenderer.EMAIL_VERIFICATION, savedUser.getEmail());
+    }
+
+    private User stubRegistration(RegisterRequest request, User mappedUser) {
+        User savedUser = buildUser();
         when(userRepository.existsByEmail("test@example.com")).thenReturn(false);
         when(userRepository.existsByUsername("testuser")).thenReturn(false);
         when(userMapper.toEntity(request)).thenReturn(mappedUser);
@@ -78,14 +114,7 @@ class AuthServiceTest {
         when(jwtService.getAccessTokenExpirationInSeconds()).thenReturn(3600L);
         when(authMapper.toAuthResponse(eq(savedUser), eq("access-token"), eq("refresh-token-value"), eq(3600L)))
                 .thenReturn(buildAuthResponse());
-
-        AuthResponse response = authService.register(request, sessionInfo);
-
-        assertThat(response).isNotNull();
-        assertThat(response.getAccessToken()).isEqualTo("access-token");
-        verify(userRepository).save(mappedUser);
-        verify(passwordEncoder).encode("password123");
-        verify(emailVerificationService).sendVerificationEmail(savedUser);
+        return savedUser;
     }
 
     @Test
@@ -120,7 +149,6 @@ class AuthServiceTest {
 
         when(auth.getPrincipal()).thenReturn(principal);
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(auth);
-        when(userRepository.save(user)).thenReturn(user);
         when(refreshTokenService.createSession(eq(user), eq(sessionInfo), eq(false)))
                 .thenReturn(buildRefreshToken(user));
         when(jwtService.generateAccessToken(any(UserPrincipal.class), eq("uuid-123"), eq(AccountType.USER), eq("family-1")))
@@ -134,7 +162,8 @@ class AuthServiceTest {
         assertThat(response).isNotNull();
         verify(loginAttemptService).checkLoginAllowed("testuser", "127.0.0.1");
         verify(loginAttemptService).recordSuccessfulLogin("testuser", "127.0.0.1", "TestBrowser/1.0", AccountType.USER);
-        verify(userRepository).save(user);
+        verify(lastLoginService).recordUserLogin(eq(1L), any(LocalDateTime.class));
+        verify(userRepository, never()).save(any());
     }
 
     @Test
@@ -0,0 +1,147 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarDerivativeConfig;
+import com.reveria.userservice.config.StorageIoConfig;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvatarDerivativeServiceTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final String ORIGINAL = "avatars/" + HASH + ".png";
+    private static final String URL = "http://localhost:9000/reveria-avatars/" + ORIGINAL;
+
+    @Mock private StorageService storageService;
+    @Mock private UserRepository userRepository;
+    @Mock private AvatarObjectRepository avatarObjectRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final AvatarDerivativeConfig config = new AvatarDerivativeConfig();
+    private AvatarDerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        // One I/O thread keeps the uploads in submission order
+        StorageIoConfig ioConfig = new StorageIoConfig();
+        ioConfig.setThreads(1);
+        AsyncStorageService asyncStorageService = new AsyncStorageService(storageService, ioConfig, new SimpleMeterRegistry());
+        service = new AvatarDerivativeService(storageService, asyncStorageService, userRepository, avatarObjectRepository,
+                config, transactionManager, new SimpleMeterRegistry());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void process_writesEverySizeUpToTheSourceAndRecordsThem() throws Exception {
+        when(storageService.download(ORIGINAL)).thenReturn(new ByteArrayInputStream(png(600, 400)));
+        when(avatarObjectRepository.updateVariants(eq(HASH), anyString())).thenReturn(1);
+
+        service.process(HASH, ORIGINAL, URL);
+
+        ArgumentCaptor<String> paths = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> types = ArgumentCaptor.forClass(String.class);
+        verify(storageService, times(6)).upload(paths.capture(), any(InputStream.class), anyLong(), types.capture());
+        assertThat(paths.getAllValues()).containsExactly(
+                "avatars/" + HASH + "_256.webp",
+                "avatars/" + HASH + "_256.jpg",
+                "avatars/" + HASH + "_128.webp",
+                "avatars/" + HASH + "_128.jpg",
+                "avatars/" + HASH + "_64.webp",
+                "avatars/" + HASH + "_64.jpg");
+        assertThat(types.getAllValues()).containsOnly("image/webp", "image/jpeg");
+        String spec = "256.webp,256.jpg,128.webp,128.jpg,64.webp,64.jpg";
+        verify(avatarObjectRepository).updateVariants(HASH, spec);
+        verify(userRepository).updateAvatarVariants(URL, spec);
+        verify(storageService, never()).deleteAll(anyCollection());
+    }
+
+    @Test
+    void webp_roundTripsThroughTheEncoderAndDecoder() throws Exception {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(150, 100, 0xff0000);
+
+        byte[] webp = service.encode(image, "webp");
+        assertThat(new String(webp, 0, 4, StandardCharsets.US_ASCII)).isEqualTo("RIFF");
+        assertThat(new String(webp, 8, 4, StandardCharsets.US_ASCII)).isEqualTo("WEBP");
+
+        BufferedImage square = service.decodeSquare(webp);
+        assertThat(square.getWidth()).isEqualTo(200);
+        assertThat(square.getHeight()).isEqualTo(200);
+    }
+
+    @Test
+    void process_webpOriginal_decodedAndResized() throws Exception {
+        String original = "avatars/" + HASH + ".webp";
+        byte[] webp = service.encode(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "webp");
+        when(storageService.download(original)).thenReturn(new ByteArrayInputStream(webp));
+        when(avatarObjectRepository.updateVariants(eq(HASH), anyString())).thenReturn(1);
+
+        service.process(HASH, original, URL);
+
+        verify(avatarObjectRepository).updateVariants(HASH, "64.webp,64.jpg");
+    }
+
+    @Test
+    void process_objectSweptMeanwhile_removesWrittenDerivatives() throws Exception {
+        when(storageService.download(ORIGINAL)).thenReturn(new ByteArrayInputStream(png(100, 100)));
+        when(avatarObjectRepository.updateVariants(anyString(), anyString())).thenReturn(0);
+
+        service.process(HASH, ORIGINAL, URL);
+
+        verify(storageService).deleteAll(List.of("avatars/" + HASH + "_64.webp", "avatars/" + HASH + "_64.jpg"));
+        verify(userRepository, never()).updateAvatarVariants(anyString(), anyString());
+    }
+
+    @Test
+    void decodeSquare_oversizedHeader_rejectedBeforeDecoding() throws Exception {
+        config.setMaxPixels(10_000);
+
+        assertThatThrownBy(() -> service.decodeSquare(png(200, 100)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceed the decode limits");
+    }
+
+    @Test
+    void decodeSquare_subsamplesLargeSources() throws Exception {
+        BufferedImage square = service.decodeSquare(png(3000, 2400));
+
+        assertThat(square.getWidth()).isEqualTo(square.getHeight());
+        assertThat(square.getWidth()).isLessThanOrEqualTo(2 * 1024);
+    }
+
+    @Test
+    void scale_producesExactSquare() {
+        BufferedImage scaled = AvatarDerivativeService.scale(
+                new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), 64);
+
+        assertThat(scaled.getWidth()).isEqualTo(64);
+        assertThat(scaled.getHeight()).isEqualTo(64);
+    }
+}
@@ -0,0 +1,123 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarGcConfig;
+import com.reveria.userservice.model.entity.AvatarObject;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvatarOrphanCollectorTest {
+
+    private static final String URL_PREFIX = "http://minio/reveria-avatars/";
+    private static final String HASH_A = "a".repeat(64);
+    private static final String HASH_B = "b".repeat(64);
+    private static final String LEGACY = "avatars/11111111-1111-1111-1111-111111111111/22222222-2222-2222-2222-222222222222";
+    private static final Instant NOW = Instant.parse("2026-01-10T00:00:00Z");
+    private static final Instant OLD = NOW.minus(Duration.ofDays(3));
+
+    @Mock private StorageService storageService;
+    @Mock private AvatarObjectRepository avatarObjectRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private StringRedisTemplate redisTemplate;
+
+    private final AvatarGcConfig config = new AvatarGcConfig();
+    private AvatarOrphanCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        collector = new AvatarOrphanCollector(storageService, avatarObjectRepository, userRepository,
+                redisTemplate, config, new MaintenanceExecutor(), new SimpleMeterRegistry());
+        lenient().when(storageService.urlFor("")).thenReturn(URL_PREFIX);
+        lenient().when(storageService.list(AvatarStore.STAGING_PREFIX)).thenAnswer(invocation -> Stream.empty());
+    }
+
+    private static StorageService.ListedObject object(String path, long size, Instant lastModified) {
+        return new StorageService.ListedObject(path, size, lastModified);
+    }
+
+    @Test
+    void run_deletesOnlyUnreferencedObjectsPastGrace() {
+        // Listing in key order: HASH_A is registered, LEGACY belongs to a user, HASH_B is an orphan
+        when(storageService.list("avatars/")).thenReturn(Stream.of(
+                object(LEGACY + ".jpg", 100, OLD),
+                object(LEGACY + "_64.jpg", 10, OLD),
+                object("avatars/" + HASH_A + ".png", 200, OLD),
+                object("avatars/" + HASH_A + "_128.jpg", 20, OLD),
+                object("avatars/" + HASH_B + ".png", 300, OLD),
+                object("avatars/" + HASH_B + "_64.jpg", 30, OLD),
+                object("avatars/staging/user/abandoned", 50, OLD)));
+        when(storageService.list(AvatarStore.STAGING_PREFIX)).thenReturn(Stream.of(
+                object("staging/avatars/user/abandoned", 60, OLD),
+                object("staging/avatars/user/fresh", 40, NOW)));
+        when(avatarObjectRepository.findHashesAfter("", config.getPageSize())).thenReturn(List.of(HASH_A));
+        when(userRepository.findAvatarUrlsAfter(URL_PREFIX, config.getPageSize()))
+                .thenReturn(List.of(URL_PREFIX + LEGACY + ".jpg", "https://lh3.googleusercontent.com/a/x"));
+        when(avatarObjectRepository.findAllById(Set.of(HASH_B))).thenReturn(List.of());
+        when(storageService.stat(startsWith("avatars/" + HASH_B)))
+                .thenAnswer(invocation -> new StorageService.ObjectInfo(0, "image/png", OLD));
+        when(storageService.deleteAll(anyList())).thenReturn(Map.of());
+
+        AvatarOrphanCollector.Result result = collector.run(NOW);
+
+        verify(storageService).deleteAll(List.of(
+                "avatars/" + HASH_B + ".png",
+                "avatars/" + HASH_B + "_64.jpg",
+                "avatars/staging/user/abandoned",
+                "staging/avatars/user/abandoned"));
+        assertThat(result.scanned()).isEqualTo(9);
+        assertThat(result.orphans()).isEqualTo(4);
+        assertThat(result.reclaimedBytes()).isEqualTo(440);
+    }
+
+    @Test
+    void run_candidateRegisteredMeanwhile_isKept() {
+        when(storageService.list("avatars/")).thenReturn(Stream.of(object("avatars/" + HASH_B + ".png", 300, OLD)));
+        when(avatarObjectRepository.findHashesAfter(anyString(), anyInt())).thenReturn(List.of());
+        when(userRepository.findAvatarUrlsAfter(anyString(), anyInt())).thenReturn(List.of());
+        when(avatarObjectRepository.findAllById(Set.of(HASH_B)))
+                .thenReturn(List.of(AvatarObject.builder().hash(HASH_B).build()));
+
+        AvatarOrphanCollector.Result result = collector.run(NOW);
+
+        verify(storageService, never()).deleteAll(anyCollection());
+        assertThat(result.orphans()).isZero();
+    }
+
+    @Test
+    void run_listingOutOfOrder_abortsWithoutDeleting() {
+        when(storageService.list("avatars/")).thenReturn(Stream.of(
+                object("avatars/" + HASH_B + ".png", 300, OLD),
+                object("avatars/" + HASH_A + ".png", 200, OLD)));
+        when(avatarObjectRepository.findHashesAfter(anyString(), anyInt())).thenReturn(List.of(HASH_B));
+
+        assertThatThrownBy(() -> collector.run(NOW)).isInstanceOf(IllegalStateException.class);
+
+        verify(storageService, never()).deleteAll(anyCollection());
+    }
+
+    @Test
+    void stemOf_mapsDerivativesToTheirOriginal() {
+        assertThat(AvatarOrphanCollector.stemOf("avatars/" + HASH_A + "_256.webp")).isEqualTo("avatars/" + HASH_A);
+        assertThat(AvatarOrphanCollector.stemOf(LEGACY + ".png")).isEqualTo(LEGACY);
+        assertThat(AvatarOrphanCollector.stemOf("avatars/readme.txt")).isNull();
+    }
+}
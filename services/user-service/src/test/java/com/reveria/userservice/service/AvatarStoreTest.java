@@ -0,0 +1,246 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarStoreConfig;
+import com.reveria.userservice.exception.FileValidationException;
+import com.reveria.userservice.model.entity.AvatarObject;
+import com.reveria.userservice.repository.AvatarObjectRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvatarStoreTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10};
+
+    @Mock private StorageService storageService;
+    @Mock private AvatarObjectRepository avatarObjectRepository;
+    @Mock private AvatarDerivativeService avatarDerivativeService;
+    @Mock private ObjectDeletionQueue objectDeletionQueue;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final AvatarStoreConfig config = new AvatarStoreConfig();
+    private AvatarStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new AvatarStore(storageService, avatarObjectRepository, avatarDerivativeService, objectDeletionQueue, config,
+                transactionManager, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void store_newContent_uploadsUnderItsHashWithImmutableCaching() {
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", JPEG);
+        when(avatarObjectRepository.acquire(anyString())).thenReturn(0);
+        when(storageService.upload(anyString(), any(InputStream.class), eq((long) JPEG.length), eq("image/jpeg"),
+                eq(config.getCacheControl()))).thenAnswer(invocation -> "http://minio/" + invocation.getArgument(0));
+        when(avatarObjectRepository.register(anyString(), anyString(), eq("image/jpeg"), eq((long) JPEG.length)))
+                .thenReturn(true);
+
+        AvatarStore.StoredAvatar stored = store.store(file);
+
+        ArgumentCaptor<String> path = ArgumentCaptor.forClass(String.class);
+        verify(storageService).upload(path.capture(), any(InputStream.class), anyLong(), anyString(), anyString());
+        assertThat(path.getValue()).matches("avatars/[0-9a-f]{64}\\.jpg");
+        assertThat(stored.url()).isEqualTo("http://minio/" + path.getValue());
+        assertThat(stored.variants()).isNull();
+        verify(avatarDerivativeService).schedule(anyString(), eq(path.getValue()), eq(stored.url()));
+    }
+
+    @Test
+    void store_knownContent_takesReferenceWithoutUploading() {
+        when(avatarObjectRepository.acquire(anyString())).thenReturn(1);
+        when(avatarObjectRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(AvatarObject.builder()
+                .hash(invocation.getArgument(0))
+                .path("avatars/" + invocation.getArgument(0) + ".jpg")
+                .variants("128.jpg")
+                .build()));
+        when(storageService.urlFor(anyString())).thenAnswer(invocation -> "http://minio/" + invocation.getArgument(0));
+
+        AvatarStore.StoredAvatar stored = store.store(JPEG);
+
+        assertThat(stored.url()).matches("http://minio/avatars/[0-9a-f]{64}\\.jpg");
+        assertThat(stored.variants()).isEqualTo("128.jpg");
+        verify(storageService, never()).upload(anyString(), any(), anyLong(), anyString(), any());
+        verify(avatarObjectRepository, never()).register(anyString(), anyString(), anyString(), anyLong());
+        verifyNoInteractions(avatarDerivativeService);
+    }
+
+    @Test
+    void store_stream_knownContent_dropsStagedCopy() {
+        when(storageService.upload(startsWith("staging/avatars/"), any(InputStream.class), anyLong(), anyString()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(1, InputStream.class).readAllBytes();
+                    return "http://minio/" + invocation.getArgument(0);
+                });
+        when(avatarObjectRepository.acquire(anyString())).thenReturn(1);
+        when(avatarObjectRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(AvatarObject.builder()
+                .path("avatars/" + invocation.getArgument(0) + ".jpg")
+                .build()));
+
+        store.store(new ByteArrayInputStream(JPEG), JPEG.length);
+
+        verify(storageService, never()).copy(anyString(), anyString(), anyString(), anyString());
+        verify(objectDeletionQueue).deleteAfterCompletion(argThat(paths ->
+                paths.size() == 1 && paths.iterator().next().startsWith("staging/avatars/")));
+    }
+
+    @Test
+    void store_notAnImage_rejectedBeforeAnyReference() {
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", new byte[]{0, 1, 2, 3, 4});
+
+        assertThatThrownBy(() -> store.store(file)).isInstanceOf(FileValidationException.class);
+
+        verifyNoInteractions(avatarObjectRepository, storageService);
+    }
+
+    @Test
+    void prepareDirectUpload_limitsSizeAndTypeAtTheStore() {
+        when(storageService.presignUpload(startsWith("staging/avatars/user-uuid-123/"),
+                eq(config.getDirectUploadExpirySeconds()), eq(5L * 1024 * 1024), eq("image/")))
+                .thenReturn(new StorageService.PresignedUpload("http://minio/bucket", "POST", Map.of("policy", "p")));
+
+        AvatarStore.DirectUpload upload = store.prepareDirectUpload("user-uuid-123");
+
+        assertThat(upload.method()).isEqualTo("POST");
+        assertThat(upload.fields()).containsEntry("policy", "p");
+    }
+
+    @Test
+    void completeDirectUpload_validatesInPlaceAndCopiesUnderKeyOfTheUpload() {
+        String uploadId = "6f1c1d0e-8a57-4a9e-9c55-0e6f2f0f7a11";
+        String staging = "staging/avatars/user-uuid-123/" + uploadId;
+        when(storageService.stat(staging)).thenReturn(new StorageService.ObjectInfo(JPEG.length, "image/jpeg", Instant.now()));
+        when(storageService.readRange(staging, 0, 12)).thenReturn(JPEG);
+        when(storageService.copy(eq(staging), anyString(), eq("image/jpeg"), eq(config.getCacheControl())))
+                .thenAnswer(invocation -> "http://minio/" + invocation.getArgument(1));
+        when(avatarObjectRepository.register(anyString(), anyString(), eq("image/jpeg"), eq((long) JPEG.length)))
+                .thenReturn(true);
+
+        AvatarStore.StoredAvatar stored = store.completeDirectUpload("user-uuid-123", uploadId);
+
+        assertThat(stored.url()).matches("http://minio/avatars/[0-9a-f]{64}\\.jpg");
+        verify(storageService, never()).download(anyString());
+        verify(objectDeletionQueue).deleteAfterCompletion(List.of(staging));
+    }
+
+    @Test
+    void completeDirectUpload_twice_landsOnTheSameObject() {
+        String uploadId = "6f1c1d0e-8a57-4a9e-9c55-0e6f2f0f7a11";
+        String staging = "staging/avatars/user-uuid-123/" + uploadId;
+        when(storageService.stat(staging))
+                .thenReturn(new StorageService.ObjectInfo(JPEG.length, "image/jpeg", Instant.now()))
+                .thenReturn(null);
+        when(storageService.readRange(staging, 0, 12)).thenReturn(JPEG);
+        when(storageService.copy(eq(staging), anyString(), eq("image/jpeg"), eq(config.getCacheControl())))
+                .thenAnswer(invocation -> "http://minio/" + invocation.getArgument(1));
+        when(avatarObjectRepository.register(anyString(), anyString(), eq("image/jpeg"), eq((long) JPEG.length)))
+                .thenReturn(true);
+        when(avatarObjectRepository.acquire(anyString())).thenReturn(1);
+        when(avatarObjectRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(AvatarObject.builder()
+                .hash(invocation.getArgument(0))
+                .path("avatars/" + invocation.getArgument(0) + ".jpg")
+                .build()));
+        when(storageService.urlFor(anyString())).thenAnswer(invocation -> "http://minio/" + invocation.getArgument(0));
+
+        AvatarStore.StoredAvatar first = store.completeDirectUpload("user-uuid-123", uploadId);
+        AvatarStore.StoredAvatar retried = store.completeDirectUpload("user-uuid-123", uploadId);
+
+        assertThat(retried.url()).isEqualTo(first.url());
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(avatarObjectRepository).register(key.capture(), anyString(), anyString(), anyLong());
+        verify(avatarObjectRepository).acquire(key.getValue());
+        verify(storageService, times(1)).copy(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void completeDirectUpload_oversized_rejectedAndStagingRemoved() {
+        String uploadId = "6f1c1d0e-8a57-4a9e-9c55-0e6f2f0f7a11";
+        String staging = "staging/avatars/user-uuid-123/" + uploadId;
+        when(storageService.stat(staging)).thenReturn(new StorageService.ObjectInfo(50L * 1024 * 1024, "image/jpeg", Instant.now()));
+
+        assertThatThrownBy(() -> store.completeDirectUpload("user-uuid-123", uploadId))
+                .isInstanceOf(FileValidationException.class);
+
+        verify(storageService, never()).copy(anyString(), anyString(), anyString(), anyString());
+        verify(objectDeletionQueue).deleteAfterCompletion(List.of(staging));
+        verifyNoInteractions(avatarObjectRepository);
+    }
+
+    @Test
+    void completeDirectUpload_uploadIdOutsideStaging_rejected() {
+        assertThatThrownBy(() -> store.completeDirectUpload("user-uuid-123", "../other-user/abc"))
+                .isInstanceOf(FileValidationException.class);
+
+        verifyNoInteractions(storageService);
+    }
+
+    @Test
+    void sweep_deletesInOneRequestAndKeepsRowsWhoseFilesSurvived() {
+        AvatarObject gone = AvatarObject.builder().hash("a".repeat(64)).path("avatars/" + "a".repeat(64) + ".jpg").build();
+        AvatarObject stuck = AvatarObject.builder().hash("b".repeat(64)).path("avatars/" + "b".repeat(64) + ".jpg").build();
+        when(avatarObjectRepository.lockReleased(any(), eq(config.getSweepBatchSize()))).thenReturn(List.of(gone, stuck));
+        when(avatarDerivativeService.derivativePaths(anyString(), any())).thenReturn(List.of());
+        when(storageService.deleteAll(List.of(gone.getPath(), stuck.getPath())))
+                .thenReturn(Map.of(stuck.getPath(), "InternalError"));
+
+        store.sweep();
+
+        verify(avatarObjectRepository).deleteAllInBatch(List.of(gone));
+        verify(storageService, never()).delete(anyString());
+    }
+
+    @Test
+    void release_contentAddressed_dropsReferenceOnly() {
+        String path = "avatars/" + "ab".repeat(32) + ".jpg";
+        when(storageService.extractPathFromUrl("http://minio/" + path)).thenReturn(path);
+
+        store.release("http://minio/" + path, "64.jpg");
+
+        verify(avatarObjectRepository).release("ab".repeat(32));
+        verifyNoInteractions(objectDeletionQueue);
+    }
+
+    @Test
+    void release_legacyPath_queuesOriginalAndDerivativesForDeletion() {
+        String path = "avatars/user-uuid-123/avatar.jpg";
+        when(storageService.extractPathFromUrl("http://minio/" + path)).thenReturn(path);
+        when(avatarDerivativeService.derivativePaths(path, "64.jpg"))
+                .thenReturn(List.of("avatars/user-uuid-123/avatar_64.jpg"));
+
+        store.release("http://minio/" + path, "64.jpg");
+
+        verify(objectDeletionQueue).deleteAfterCommit(List.of(path, "avatars/user-uuid-123/avatar_64.jpg"));
+        verify(storageService, never()).delete(anyString());
+        verifyNoInteractions(avatarObjectRepository);
+    }
+
+    @Test
+    void release_externalUrl_leftAlone() {
+        String oauthUrl = "https://lh3.googleusercontent.com/a/avatar123";
+        when(storageService.extractPathFromUrl(oauthUrl)).thenReturn(null);
+
+        store.release(oauthUrl, null);
+
+        verifyNoInteractions(objectDeletionQueue);
+        verifyNoInteractions(avatarObjectRepository);
+    }
+}
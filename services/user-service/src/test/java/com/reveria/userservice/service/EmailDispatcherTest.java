@@ -0,0 +1,97 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.MailQueueConfig;
+import com.reveria.userservice.model.entity.EmailJob;
+import com.reveria.userservice.repository.EmailJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailDispatcherTest {
+
+    @Mock private EmailJobRepository emailJobRepository;
+    @Mock private JavaMailSender mailSender;
+    @Mock private SmtpTransportPool transportPool;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private Transport transport;
+    @Mock private Transport replacement;
+
+    private final MailQueueConfig mailQueueConfig = new MailQueueConfig();
+    private EmailDispatcher emailDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        emailDispatcher = new EmailDispatcher(emailJobRepository, mailSender, transportPool,
+                mailQueueConfig, transactionManager, new SimpleMeterRegistry(),
+                "noreply@reveria.com", "Reveria");
+        lenient().when(mailSender.createMimeMessage())
+                .thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+    }
+
+    @Test
+    void send_wholeBatchGoesOverOneConnection() throws Exception {
+        when(transportPool.borrow()).thenReturn(transport);
+        List<EmailJob> batch = List.of(job(1L), job(2L), job(3L));
+
+        Map<EmailJob, String> results = emailDispatcher.send(batch);
+
+        assertThat(results).hasSize(3).containsValues(null, null, null);
+        verify(transportPool, times(1)).borrow();
+        verify(transport, times(3)).sendMessage(any(), any());
+        verify(transportPool).release(transport);
+    }
+
+    @Test
+    void send_droppedConnection_isReplacedAndMessageRetried() throws Exception {
+        when(transportPool.borrow()).thenReturn(transport, replacement);
+        doThrow(new MessagingException("connection reset")).when(transport).sendMessage(any(), any());
+        EmailJob job = job(1L);
+
+        Map<EmailJob, String> results = emailDispatcher.send(List.of(job));
+
+        assertThat(results.get(job)).isNull();
+        verify(transportPool).invalidate(transport);
+        verify(replacement).sendMessage(any(), any());
+        verify(transportPool).release(replacement);
+    }
+
+    @Test
+    void send_serverUnreachable_failsRestOfBatchWithoutRetrying() throws Exception {
+        when(transportPool.borrow()).thenThrow(new MessagingException("Connection refused"));
+        List<EmailJob> batch = List.of(job(1L), job(2L));
+
+        Map<EmailJob, String> results = emailDispatcher.send(batch);
+
+        assertThat(results.values()).containsOnly("connect: Connection refused");
+        verify(transportPool, times(1)).borrow();
+        verify(transportPool, never()).release(any());
+    }
+
+    private static EmailJob job(Long id) {
+        EmailJob job = EmailJob.builder()
+                .recipient("user" + id + "@example.com")
+                .subject("Subject")
+                .htmlBody("<p>Hello</p>")
+                .build();
+        job.setId(id);
+        return job;
+    }
+}
@@ -0,0 +1,61 @@
+package com.reveria.userservice.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders per second for the verification email: Thymeleaf per send (template cache on, as in
+ * production) against the precompiled shell.
+ *
+ * Not part of the test run. After {@code mvn test-compile}, run {@link #main} from the IDE or
+ * with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailRenderBenchmark {
+
+    private TemplateEngine templateEngine;
+    private EmailTemplateRenderer renderer;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        templateEngine = EmailTemplateRendererTest.templateEngine();
+        renderer = new EmailTemplateRenderer(templateEngine, "Reveria");
+        renderer.precompile();
+        variables = Map.of(
+                "username", "alice",
+                "verifyLink", "http://localhost:3000/verify-email?token=3f9c2a7e-1b4d-4e8a-9c6f-0d2e5b7a8c91",
+                "expirationHours", 24);
+    }
+
+    @Benchmark
+    public String thymeleaf() {
+        Context context = new Context();
+        context.setVariable("appName", "Reveria");
+        variables.forEach(context::setVariable);
+        return templateEngine.process(EmailTemplateRenderer.EMAIL_VERIFICATION, context);
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return renderer.render(EmailTemplateRenderer.EMAIL_VERIFICATION, variables);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailRenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
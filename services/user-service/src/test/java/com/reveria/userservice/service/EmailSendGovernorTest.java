@@ -0,0 +1,108 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.EmailThrottleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailSendGovernorTest {
+
+    private static final String RESET = EmailTemplateRenderer.PASSWORD_RESET;
+    private static final String VERIFY = EmailTemplateRenderer.EMAIL_VERIFICATION;
+
+    @Mock private StringRedisTemplate redisTemplate;
+
+    private final EmailThrottleConfig config = new EmailThrottleConfig();
+    private EmailSendGovernor governor;
+
+    @BeforeEach
+    void setUp() {
+        governor = new EmailSendGovernor(redisTemplate, config, new SimpleMeterRegistry());
+    }
+
+    private void redisAllows() {
+        when(redisTemplate.execute(anyScript(), anyList(), any(Object[].class))).thenReturn(1L);
+    }
+
+    private static RedisScript<Long> anyScript() {
+        return any();
+    }
+
+    @Test
+    void tryAcquire_duplicateInsideDedupeWindow_droppedWithoutCallingRedis() {
+        redisAllows();
+        long now = 1_000_000L;
+
+        assertThat(governor.tryAcquire(RESET, "Alice@Example.com", now)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "alice@example.com", now + 30_000)).isFalse();
+
+        verify(redisTemplate, times(1)).execute(anyScript(), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void tryAcquire_capsPerTemplateAndPerAddress() {
+        redisAllows();
+        long now = 1_000_000L;
+        long step = config.getDedupeWindowSeconds() * 1000L;
+
+        assertThat(governor.tryAcquire(RESET, "bob@example.com", now)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "bob@example.com", now + step)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "bob@example.com", now + 2 * step)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "bob@example.com", now + 3 * step)).isFalse();
+
+        assertThat(governor.tryAcquire(VERIFY, "bob@example.com", now + 3 * step)).isTrue();
+        assertThat(governor.tryAcquire(VERIFY, "bob@example.com", now + 4 * step)).isTrue();
+        assertThat(governor.tryAcquire(VERIFY, "bob@example.com", now + 5 * step)).isFalse();
+    }
+
+    @Test
+    void tryAcquire_windowSlides() {
+        redisAllows();
+        long now = 1_000_000L;
+
+        assertThat(governor.tryAcquire(RESET, "carol@example.com", now)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "carol@example.com",
+                now + config.getDedupeWindowSeconds() * 1000L + 1)).isTrue();
+    }
+
+    @Test
+    void tryAcquire_limitReachedOnAnotherReplica_dropped() {
+        when(redisTemplate.execute(anyScript(), anyList(), any(Object[].class))).thenReturn(0L);
+
+        assertThat(governor.tryAcquire(RESET, "dave@example.com", 1_000_000L)).isFalse();
+    }
+
+    @Test
+    void tryAcquire_redisDown_fallsBackToLocalLimitsAndBacksOff() {
+        when(redisTemplate.execute(anyScript(), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        long now = 1_000_000L;
+
+        assertThat(governor.tryAcquire(RESET, "erin@example.com", now)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "erin@example.com", now + 1000)).isFalse();
+        assertThat(governor.tryAcquire(VERIFY, "erin@example.com", now + 1000)).isTrue();
+
+        verify(redisTemplate, times(1)).execute(anyScript(), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void tryAcquire_disabled_alwaysAllows() {
+        config.setEnabled(false);
+
+        assertThat(governor.tryAcquire(RESET, "frank@example.com", 1L)).isTrue();
+        assertThat(governor.tryAcquire(RESET, "frank@example.com", 2L)).isTrue();
+        verifyNoInteractions(redisTemplate);
+    }
+}
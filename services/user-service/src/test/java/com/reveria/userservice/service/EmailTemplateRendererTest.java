@@ -0,0 +1,74 @@
+package com.reveria.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailTemplateRendererTest {
+
+    private TemplateEngine templateEngine;
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        templateEngine = templateEngine();
+        renderer = new EmailTemplateRenderer(templateEngine, "Reveria");
+        renderer.precompile();
+    }
+
+    @Test
+    void precompile_compilesAllEmailTemplates() {
+        assertThat(renderer.isPrecompiled(EmailTemplateRenderer.PASSWORD_RESET)).isTrue();
+        assertThat(renderer.isPrecompiled(EmailTemplateRenderer.EMAIL_VERIFICATION)).isTrue();
+        assertThat(renderer.isPrecompiled(EmailTemplateRenderer.WELCOME)).isTrue();
+    }
+
+    @Test
+    void render_matchesThymeleafOutputIncludingEscaping() {
+        Map<String, Object> variables = Map.of(
+                "username", "<script>alert('x')</script> & \"friends\"",
+                "verifyLink", "http://localhost:3000/verify-email?token=a&b=\"c\"",
+                "expirationHours", 24);
+
+        String html = renderer.render(EmailTemplateRenderer.EMAIL_VERIFICATION, variables);
+
+        Context context = new Context();
+        context.setVariable("appName", "Reveria");
+        variables.forEach(context::setVariable);
+        assertThat(html)
+                .isEqualTo(templateEngine.process(EmailTemplateRenderer.EMAIL_VERIFICATION, context))
+                .doesNotContain("<script>")
+                .contains("&lt;script&gt;alert(&#39;x&#39;)&lt;/script&gt; &amp; &quot;friends&quot;");
+    }
+
+    @Test
+    void render_unknownTemplate_fallsBackToThymeleaf() {
+        EmailTemplateRenderer uncompiled = new EmailTemplateRenderer(templateEngine, "Reveria");
+
+        String html = uncompiled.render(EmailTemplateRenderer.WELCOME,
+                Map.of("username", "alice", "loginLink", "http://localhost:3000/login"));
+
+        assertThat(uncompiled.isPrecompiled(EmailTemplateRenderer.WELCOME)).isFalse();
+        assertThat(html).contains("alice").contains("http://localhost:3000/login");
+    }
+
+    static TemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        // Spring's engine evaluates expressions with SpEL, as in production; the plain one needs OGNL
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+}
@@ -0,0 +1,88 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.dto.request.profile.InteractionCheckRequest;
+import com.reveria.userservice.model.enums.InteractionVerdict;
+import com.reveria.userservice.model.enums.MessagePrivacy;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InteractionPolicyServiceTest {
+
+    @Mock private PublicProfileService publicProfileService;
+
+    private InteractionPolicyService interactionPolicyService;
+
+    @BeforeEach
+    void setUp() {
+        interactionPolicyService = new InteractionPolicyService(publicProfileService, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void canMessage_appliesRecipientSettingsAndResolvesEachUserOnce() {
+        when(publicProfileService.profiles(Set.of("a", "open", "friends", "closed", "banned", "ghost")))
+                .thenReturn(Map.of(
+                        "a", profile("a", UserStatus.ACTIVE, PrivacyFlags.DEFAULT),
+                        "open", profile("open", UserStatus.ACTIVE, PrivacyFlags.DEFAULT),
+                        "friends", profile("friends", UserStatus.ACTIVE,
+                                PrivacyFlags.pack(null, null, true, null, MessagePrivacy.FRIENDS_ONLY)),
+                        "closed", profile("closed", UserStatus.ACTIVE,
+                                PrivacyFlags.pack(null, null, false, null, MessagePrivacy.EVERYONE)),
+                        "banned", profile("banned", UserStatus.BANNED, PrivacyFlags.DEFAULT)));
+
+        List<InteractionVerdict> verdicts = interactionPolicyService.canMessage(List.of(
+                pair("a", "open"),
+                pair("a", "friends"),
+                pair("a", "closed"),
+                pair("a", "banned"),
+                pair("a", "ghost"),
+                pair("open", "a"),
+                pair("a", "a")));
+
+        assertThat(verdicts).containsExactly(
+                InteractionVerdict.ALLOWED,
+                InteractionVerdict.FRIENDS_ONLY,
+                InteractionVerdict.DENIED,
+                InteractionVerdict.DENIED,
+                InteractionVerdict.DENIED,
+                InteractionVerdict.ALLOWED,
+                InteractionVerdict.DENIED);
+        verify(publicProfileService, times(1)).profiles(anyCollection());
+    }
+
+    @Test
+    void canFriend_followsAllowFriendRequests() {
+        when(publicProfileService.profiles(Set.of("a", "b", "c"))).thenReturn(Map.of(
+                "a", profile("a", UserStatus.ACTIVE, PrivacyFlags.DEFAULT),
+                "b", profile("b", UserStatus.ACTIVE, PrivacyFlags.pack(null, null, null, false, null)),
+                "c", profile("c", UserStatus.ACTIVE, PrivacyFlags.DEFAULT)));
+
+        List<InteractionVerdict> verdicts = interactionPolicyService.canFriend(List.of(pair("a", "b"), pair("b", "c")));
+
+        assertThat(verdicts).containsExactly(InteractionVerdict.DENIED, InteractionVerdict.ALLOWED);
+    }
+
+    private static PublicProfileCache.CachedProfile profile(String uuid, UserStatus status, int flags) {
+        return new PublicProfileCache.CachedProfile(uuid, uuid, null, null, null, status, flags);
+    }
+
+    private static InteractionCheckRequest.Pair pair(String from, String to) {
+        InteractionCheckRequest.Pair pair = new InteractionCheckRequest.Pair();
+        pair.setFrom(from);
+        pair.setTo(to);
+        return pair;
+    }
+}
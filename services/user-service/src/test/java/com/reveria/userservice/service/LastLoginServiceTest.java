@@ -0,0 +1,100 @@
+package com.reveria.userservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LastLoginServiceTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private LastLoginService lastLoginService;
+
+    @BeforeEach
+    void setUp() {
+        lastLoginService = new LastLoginService(jdbcTemplate, Runnable::run, 50000);
+    }
+
+    @Test
+    void flush_coalescesRepeatedLoginsIntoOneBatchedUpdate() {
+        LocalDateTime first = LocalDateTime.now().minusSeconds(3);
+        LocalDateTime latest = LocalDateTime.now();
+
+        lastLoginService.recordUserLogin(1L, first);
+        lastLoginService.recordUserLogin(1L, latest);
+        lastLoginService.recordUserLogin(2L, first);
+
+        lastLoginService.flush();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+
+        assertThat(sql.getValue()).startsWith("UPDATE users AS t").contains("FROM (VALUES");
+        assertThat(args.getValue()).hasSize(4);
+        assertThat(args.getValue())
+                .contains(Timestamp.valueOf(latest))
+                .containsOnlyOnce(1L, 2L);
+    }
+
+    @Test
+    void flush_nothingPending_doesNotTouchDatabase() {
+        lastLoginService.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void flush_failure_requeuesForNextFlush() {
+        lastLoginService.recordModeratorLogin(7L, LocalDateTime.now());
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        lastLoginService.flush();
+        lastLoginService.flush();
+
+        verify(jdbcTemplate, times(2)).update(startsWith("UPDATE moderators AS t"), any(Object[].class));
+    }
+
+    @Test
+    void record_maxPendingReached_flushesOnTheExecutorNotInline() {
+        List<Runnable> tasks = new ArrayList<>();
+        lastLoginService = new LastLoginService(jdbcTemplate, tasks::add, 2);
+
+        lastLoginService.recordUserLogin(1L, LocalDateTime.now());
+        lastLoginService.recordUserLogin(2L, LocalDateTime.now());
+        lastLoginService.recordUserLogin(3L, LocalDateTime.now());
+
+        verifyNoInteractions(jdbcTemplate);
+        assertThat(tasks).hasSize(1);
+
+        tasks.get(0).run();
+
+        verify(jdbcTemplate).update(startsWith("UPDATE users AS t"), any(Object[].class));
+    }
+
+    @Test
+    void flushOnShutdown_writesPendingLogins() {
+        lastLoginService.recordUserLogin(1L, LocalDateTime.now());
+
+        lastLoginService.flushOnShutdown();
+
+        verify(jdbcTemplate).update(startsWith("UPDATE users AS t"), any(Object[].class));
+    }
+}
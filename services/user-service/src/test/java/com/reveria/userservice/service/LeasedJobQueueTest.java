@@ -0,0 +1,77 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.model.entity.PendingObjectDeletion;
+import com.reveria.userservice.repository.PendingObjectDeletionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeasedJobQueueTest {
+
+    @Mock private PendingObjectDeletionRepository repository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private LeasedJobQueue<PendingObjectDeletion> queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new LeasedJobQueue<>(repository, repository::lockDueBatch, new TransactionTemplate(transactionManager),
+                50, 300_000, 3, 30_000, 3_600_000);
+    }
+
+    @Test
+    void claim_leasesRowsAndCountsTheAttempt() {
+        PendingObjectDeletion row = row(0);
+        when(repository.lockDueBatch(any(), eq(50))).thenReturn(List.of(row));
+
+        assertThat(queue.claim()).containsExactly(row);
+
+        assertThat(row.getAttempts()).isEqualTo(1);
+        assertThat(row.getLockedUntil()).isAfter(LocalDateTime.now().plusMinutes(4));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void fail_retriesWithBackoffUntilAttemptsRunOut() {
+        LocalDateTime now = LocalDateTime.now();
+        PendingObjectDeletion row = row(1);
+        row.setLockedUntil(now.plusMinutes(5));
+
+        assertThat(queue.fail(row, "x".repeat(300), now)).isTrue();
+        assertThat(row.getLockedUntil()).isNull();
+        assertThat(row.getLastError()).hasSize(255);
+        assertThat(row.getNextAttemptAt()).isAfter(now.plusSeconds(23));
+
+        row.setAttempts(3);
+        assertThat(queue.fail(row, "AccessDenied", now)).isFalse();
+    }
+
+    @Test
+    void backoffMillis_growsExponentiallyUpToCap() {
+        assertThat(queue.backoffMillis(1)).isBetween(24_000L, 36_000L);
+        assertThat(queue.backoffMillis(3)).isBetween(96_000L, 144_000L);
+        assertThat(queue.backoffMillis(30)).isBetween(2_880_000L, 4_320_000L);
+    }
+
+    private static PendingObjectDeletion row(int attempts) {
+        return PendingObjectDeletion.builder()
+                .id(1L)
+                .path("avatars/a.jpg")
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.LocalStorageConfig;
+import com.reveria.userservice.exception.StorageException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalFileStorageServiceTest {
+
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageService storage;
+
+    @BeforeEach
+    void setUp() {
+        LocalStorageConfig config = new LocalStorageConfig();
+        config.setRootDir(root.toString());
+        config.setPublicBaseUrl("http://localhost:8080/media");
+        config.setSigningKey("test-signing-key");
+        storage = new LocalFileStorageService(config);
+        storage.init();
+    }
+
+    @Test
+    void upload_writesIntoShardedLayoutAndReadsBack() throws Exception {
+        String key = "avatars/" + "ab".repeat(32) + ".jpg";
+
+        String url = storage.upload(key, new ByteArrayInputStream(CONTENT), CONTENT.length, "image/jpeg");
+
+        assertThat(url).isEqualTo("http://localhost:8080/media/" + key);
+        assertThat(storage.fileFor(key)).isEqualTo(root.resolve("avatars/ab/ab/" + "ab".repeat(32) + ".jpg"));
+        try (InputStream in = storage.download(key)) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+        assertThat(storage.readRange(key, 10, 12)).isEqualTo("abcdef".getBytes(StandardCharsets.US_ASCII));
+        StorageService.ObjectInfo info = storage.stat(key);
+        assertThat(info.size()).isEqualTo(CONTENT.length);
+        assertThat(info.contentType()).isEqualTo("image/jpeg");
+        assertThat(storage.extractPathFromUrl(url)).isEqualTo(key);
+    }
+
+    @Test
+    void upload_shortStream_leavesNothingBehind() {
+        String key = "avatars/staging/user-1/upload";
+
+        assertThatThrownBy(() -> storage.upload(key, new ByteArrayInputStream(CONTENT), 100, "image/png"))
+                .isInstanceOf(StorageException.class);
+
+        assertThat(storage.stat(key)).isNull();
+        try (Stream<StorageService.ListedObject> listed = storage.list("avatars/")) {
+            assertThat(listed).isEmpty();
+        }
+    }
+
+    @Test
+    void list_returnsKeysInKeyOrderAcrossShards() {
+        List<String> keys = List.of(
+                "avatars/" + "f0".repeat(32) + ".png",
+                "avatars/11111111-2222-3333-4444-555555555555/66666666-7777-8888-9999-000000000000.jpg",
+                "avatars/staging/user-1/abc",
+                "avatars/" + "0a".repeat(32) + ".png",
+                "avatars/" + "0a".repeat(32) + "_128.png",
+                "other/skipped-by-prefix");
+        keys.forEach(key -> storage.upload(key, new ByteArrayInputStream(CONTENT), CONTENT.length, "image/png"));
+
+        List<String> listed;
+        try (Stream<StorageService.ListedObject> stream = storage.list("avatars/")) {
+            listed = stream.map(StorageService.ListedObject::path).toList();
+        }
+        try (Stream<StorageService.ListedObject> stream = storage.list("avatars/staging/")) {
+            assertThat(stream.map(StorageService.ListedObject::path)).containsExactly("avatars/staging/user-1/abc");
+        }
+
+        assertThat(listed).isSortedAccordingTo(String::compareTo).hasSize(5).doesNotContain("other/skipped-by-prefix");
+    }
+
+    @Test
+    void copyAndDeleteAll() {
+        String source = "avatars/staging/user-1/upload";
+        String target = "avatars/" + "cd".repeat(32) + ".png";
+        storage.upload(source, new ByteArrayInputStream(CONTENT), CONTENT.length, "image/png");
+
+        storage.copy(source, target, "image/png", "public, max-age=60");
+
+        assertThat(storage.stat(target).size()).isEqualTo(CONTENT.length);
+        assertThat(storage.deleteAll(List.of(source, target, "avatars/" + "ee".repeat(32) + ".png"))).isEmpty();
+        assertThat(storage.stat(source)).isNull();
+        assertThat(storage.stat(target)).isNull();
+    }
+
+    @Test
+    void unsafeKeys_rejected() {
+        assertThatThrownBy(() -> storage.upload("avatars/../../etc/passwd", new ByteArrayInputStream(CONTENT),
+                CONTENT.length, "image/png")).isInstanceOf(StorageException.class);
+        assertThat(storage.locate("avatars/./abcd")).isNull();
+        assertThat(storage.locate("avatars/a~b/cdef")).isNull();
+    }
+
+    @Test
+    void presignUpload_signatureBoundToKeyExpiryAndLimits() {
+        String key = "staging/avatars/user-1/upload";
+        StorageService.PresignedUpload upload = storage.presignUpload(key, 300, 1024, "image/");
+        String[] params = URI.create(upload.url()).getQuery().split("&");
+        long expires = Long.parseLong(params[0].substring("expires=".length()));
+        String signature = params[3].substring("signature=".length());
+
+        assertThat(upload.method()).isEqualTo("PUT");
+        assertThat(params[1]).isEqualTo("max=1024");
+        assertThat(params[2]).isEqualTo("type=image/");
+        assertThat(storage.verifyUpload(key, expires, 1024, "image/", signature)).isTrue();
+        assertThat(storage.verifyUpload("staging/avatars/user-2/upload", expires, 1024, "image/", signature)).isFalse();
+        assertThat(storage.verifyUpload(key, expires + 1, 1024, "image/", signature)).isFalse();
+        assertThat(storage.verifyUpload(key, expires, 1 << 30, "image/", signature)).isFalse();
+        assertThat(storage.verifyUpload(key, expires, 1024, "text/", signature)).isFalse();
+    }
+}
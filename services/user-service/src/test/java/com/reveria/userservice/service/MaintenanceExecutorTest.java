@@ -0,0 +1,54 @@
+package com.reveria.userservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MaintenanceExecutorTest {
+
+    private final MaintenanceExecutor executor = new MaintenanceExecutor();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    void submit_jobStillRunning_isNotStartedAgain() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        assertThat(executor.submit("rebuild", () -> {
+            started.countDown();
+            await(release);
+            finished.countDown();
+        })).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(executor.submit("rebuild", () -> { })).isFalse();
+        CountDownLatch other = new CountDownLatch(1);
+        assertThat(executor.submit("collect", other::countDown)).isTrue();
+        assertThat(other.await(5, TimeUnit.SECONDS)).isTrue();
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        CountDownLatch again = new CountDownLatch(1);
+        while (!executor.submit("rebuild", again::countDown)) {
+            Thread.onSpinWait();
+        }
+        assertThat(again.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.AvatarMirrorConfig;
+import com.reveria.userservice.model.entity.AuthProvider;
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.enums.ProviderType;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.AuthProviderRepository;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class OAuthAvatarMirrorTest {
+
+    private static final String PICTURE_URL = "https://lh3.googleusercontent.com/a/avatar123";
+    private static final String MIRROR_URL = "http://minio/avatars/" + "ab".repeat(32) + ".jpg";
+    private static final String NEW_MIRROR_URL = "http://minio/avatars/" + "cd".repeat(32) + ".jpg";
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10};
+
+    @Mock private AuthProviderRepository authProviderRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private AvatarStore avatarStore;
+    @Mock private UserEventPublisher userEventPublisher;
+    @Mock private UserSnapshotPublisher userSnapshotPublisher;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private MockRestServiceServer server;
+    private OAuthAvatarMirror mirror;
+    private User user;
+    private AuthProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        mirror = new OAuthAvatarMirror(authProviderRepository, userRepository, avatarStore, userEventPublisher,
+                userSnapshotPublisher, new AvatarMirrorConfig(), transactionManager, new SimpleMeterRegistry(),
+                restTemplate);
+
+        user = User.builder().id(1L).uuid("user-uuid-123").username("testuser").avatarUrl(MIRROR_URL).build();
+        provider = AuthProvider.builder()
+                .id(7L)
+                .user(user)
+                .provider(ProviderType.GOOGLE)
+                .providerId("google-1")
+                .pictureUrl(PICTURE_URL)
+                .pictureMirrorUrl(MIRROR_URL)
+                .pictureEtag("\"v1\"")
+                .pictureCheckAt(LocalDateTime.now())
+                .build();
+        lenient().when(authProviderRepository.lockDuePictures(any(), anyInt())).thenReturn(List.of(provider));
+        lenient().when(authProviderRepository.findById(7L)).thenReturn(Optional.of(provider));
+    }
+
+    @Test
+    void recheck_notModified_touchesNeitherStoreNorUser() {
+        server.expect(requestTo(PICTURE_URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+
+        mirror.poll();
+
+        server.verify();
+        verifyNoInteractions(avatarStore, userRepository, userEventPublisher);
+        assertThat(provider.getPictureCheckAt()).isAfter(LocalDateTime.now().plusDays(6));
+    }
+
+    @Test
+    void changedPicture_replacesMirroredAvatarAndReleasesOldCopy() {
+        server.expect(requestTo(PICTURE_URL))
+                .andRespond(withSuccess(JPEG, MediaType.IMAGE_JPEG).headers(etag("\"v2\"")));
+        when(avatarStore.store(JPEG)).thenReturn(new AvatarStore.StoredAvatar(NEW_MIRROR_URL, null));
+        when(userRepository.lockById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        mirror.poll();
+
+        assertThat(user.getAvatarUrl()).isEqualTo(NEW_MIRROR_URL);
+        assertThat(provider.getPictureMirrorUrl()).isEqualTo(NEW_MIRROR_URL);
+        assertThat(provider.getPictureEtag()).isEqualTo("\"v2\"");
+        verify(avatarStore).release(MIRROR_URL, null);
+        verify(userSnapshotPublisher).markChanged(user, UserEventType.USER_AVATAR_UPDATED);
+    }
+
+    @Test
+    void sameBytesWithoutValidators_noUserWrite() {
+        server.expect(requestTo(PICTURE_URL)).andRespond(withSuccess(JPEG, MediaType.IMAGE_JPEG));
+        when(avatarStore.store(JPEG)).thenReturn(new AvatarStore.StoredAvatar(MIRROR_URL, "128.jpg"));
+
+        mirror.poll();
+
+        verify(avatarStore).release(MIRROR_URL, "128.jpg");
+        verifyNoInteractions(userRepository, userEventPublisher, userSnapshotPublisher);
+    }
+
+    @Test
+    void userChoseOwnAvatar_leftAloneAndCopyReleased() {
+        user.setAvatarUrl("http://minio/avatars/" + "ef".repeat(32) + ".png");
+        server.expect(requestTo(PICTURE_URL)).andRespond(withSuccess(JPEG, MediaType.IMAGE_JPEG));
+        when(avatarStore.store(JPEG)).thenReturn(new AvatarStore.StoredAvatar(NEW_MIRROR_URL, null));
+        when(userRepository.lockById(1L)).thenReturn(Optional.of(user));
+
+        mirror.poll();
+
+        assertThat(user.getAvatarUrl()).isEqualTo("http://minio/avatars/" + "ef".repeat(32) + ".png");
+        assertThat(provider.getPictureMirrorUrl()).isNull();
+        verify(avatarStore).release(NEW_MIRROR_URL, null);
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void storesBeforeTheTransaction_andReleasesTheCopyIfItFails() {
+        server.expect(requestTo(PICTURE_URL)).andRespond(withSuccess(JPEG, MediaType.IMAGE_JPEG));
+        when(avatarStore.store(JPEG)).thenReturn(new AvatarStore.StoredAvatar(NEW_MIRROR_URL, null));
+        when(userRepository.lockById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenThrow(new IllegalStateException("db down"));
+
+        mirror.poll();
+
+        // One transaction claims the batch; the next one only opens after the upload
+        InOrder inOrder = inOrder(transactionManager, avatarStore);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(avatarStore).store(JPEG);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(transactionManager).rollback(any());
+        inOrder.verify(avatarStore).release(NEW_MIRROR_URL, null);
+    }
+
+    @Test
+    void providerGoneMeanwhile_storedCopyReleased() {
+        server.expect(requestTo(PICTURE_URL)).andRespond(withSuccess(JPEG, MediaType.IMAGE_JPEG));
+        when(avatarStore.store(JPEG)).thenReturn(new AvatarStore.StoredAvatar(NEW_MIRROR_URL, null));
+        when(authProviderRepository.findById(7L)).thenReturn(Optional.empty());
+
+        mirror.poll();
+
+        verify(avatarStore).release(NEW_MIRROR_URL, null);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void notePicture_unchangedUrl_isNoWrite() {
+        assertThat(OAuthAvatarMirror.notePicture(provider, PICTURE_URL)).isFalse();
+        assertThat(OAuthAvatarMirror.notePicture(provider, "https://lh3.googleusercontent.com/a/new")).isTrue();
+        assertThat(provider.getPictureEtag()).isNull();
+    }
+
+    private static HttpHeaders etag(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(value);
+        return headers;
+    }
+}
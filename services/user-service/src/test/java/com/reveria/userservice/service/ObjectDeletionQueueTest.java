@@ -0,0 +1,81 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.StorageDeletionConfig;
+import com.reveria.userservice.model.entity.PendingObjectDeletion;
+import com.reveria.userservice.repository.PendingObjectDeletionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ObjectDeletionQueueTest {
+
+    @Mock private PendingObjectDeletionRepository repository;
+    @Mock private StorageService storageService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final StorageDeletionConfig config = new StorageDeletionConfig();
+    private ObjectDeletionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ObjectDeletionQueue(repository, storageService, config, transactionManager,
+                new SimpleMeterRegistry());
+    }
+
+    private static PendingObjectDeletion row(long id, String path, int attempts) {
+        return PendingObjectDeletion.builder()
+                .id(id)
+                .path(path)
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drain_removesBatchInOneRequestAndReschedulesFailures() {
+        PendingObjectDeletion a = row(1L, "avatars/a.jpg", 0);
+        PendingObjectDeletion b = row(2L, "avatars/b.jpg", 0);
+        when(repository.lockDueBatch(any(), eq(config.getBatchSize()))).thenReturn(List.of(a, b));
+        when(storageService.deleteAll(List.of("avatars/a.jpg", "avatars/b.jpg")))
+                .thenReturn(Map.of("avatars/b.jpg", "InternalError: try again"));
+
+        queue.drain();
+
+        verify(storageService, times(1)).deleteAll(anyCollection());
+        verify(repository).deleteAllInBatch(List.of(a));
+        ArgumentCaptor<List<PendingObjectDeletion>> retried = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(retried.capture());
+        assertThat(retried.getValue()).containsExactly(b);
+        assertThat(b.getAttempts()).isEqualTo(1);
+        assertThat(b.getLockedUntil()).isNull();
+        assertThat(b.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(b.getLastError()).contains("InternalError");
+    }
+
+    @Test
+    void drain_lastAttemptFails_dropsRow() {
+        PendingObjectDeletion row = row(1L, "avatars/a.jpg", config.getMaxAttempts() - 1);
+        when(repository.lockDueBatch(any(), anyInt())).thenReturn(List.of(row));
+        when(storageService.deleteAll(anyCollection())).thenReturn(Map.of("avatars/a.jpg", "AccessDenied"));
+
+        queue.drain();
+
+        verify(repository).deleteAllInBatch(List.of(row));
+        verify(repository, never()).saveAll(any());
+    }
+}
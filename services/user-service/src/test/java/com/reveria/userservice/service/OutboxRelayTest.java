@@ -0,0 +1,98 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private KafkaTemplate<String, byte[]> kafkaTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        ReflectionTestUtils.setField(kafkaConfig, "userEventsTopic", "user-events");
+        OutboxConfig outboxConfig = new OutboxConfig();
+        outboxConfig.setPartitions(1);
+        relay = new OutboxRelay(outboxEventRepository, kafkaTemplate, kafkaConfig, outboxConfig,
+                transactionManager, new SimpleMeterRegistry());
+        when(outboxEventRepository.tryLockPartition(anyInt(), eq(0))).thenReturn(true);
+    }
+
+    @Test
+    void relay_leasesAndCommitsTheClaimBeforeSending_thenDeletes() {
+        OutboxEvent event = event(7L);
+        when(outboxEventRepository.lockNextBatch(eq(0), eq(1), any(), anyInt())).thenReturn(List.of(event));
+        when(kafkaTemplate.send(ArgumentMatchers.<ProducerRecord<String, byte[]>>any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        assertThat(event.getLockedUntil()).isNotNull();
+        InOrder inOrder = inOrder(outboxEventRepository, transactionManager, kafkaTemplate);
+        inOrder.verify(outboxEventRepository).lockNextBatch(eq(0), eq(1), any(), anyInt());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(kafkaTemplate).send(ArgumentMatchers.<ProducerRecord<String, byte[]>>any());
+        inOrder.verify(outboxEventRepository).deleteAllByIdInBatch(List.of(7L));
+    }
+
+    @Test
+    void relay_sendFails_releasesTheLeaseAndKeepsTheRows() {
+        when(outboxEventRepository.lockNextBatch(eq(0), eq(1), any(), anyInt())).thenReturn(List.of(event(7L)));
+        when(kafkaTemplate.send(ArgumentMatchers.<ProducerRecord<String, byte[]>>any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        relay.relay();
+
+        verify(outboxEventRepository).releaseLease(List.of(7L));
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void relay_partitionWithBatchInFlight_isNotClaimedAgain() {
+        when(outboxEventRepository.hasLeasedRows(eq(0), eq(1), any())).thenReturn(true);
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).lockNextBatch(anyInt(), anyInt(), any(), anyInt());
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    private static OutboxEvent event(Long id) {
+        return OutboxEvent.builder()
+                .id(id)
+                .eventId("event-" + id)
+                .aggregateKey("user-" + id)
+                .eventType(UserEventType.USER_LOGGED_IN)
+                .partitionNo(5)
+                .payload(new byte[]{1})
+                .contentType(UserEventCodec.CONTENT_TYPE_JSON)
+                .build();
+    }
+}
@@ -0,0 +1,159 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.PresenceConfig;
+import com.reveria.userservice.dto.response.PresenceResponse;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.util.PrivacyFlags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceTest {
+
+    private static final long NOW = 1_000_000_000L;
+    private static final int HIDDEN = PrivacyFlags.pack(null, false, null, null, null);
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private KafkaTemplate<String, byte[]> kafkaTemplate;
+    @Mock private PublicProfileService publicProfileService;
+    @Mock private KafkaConfig kafkaConfig;
+    @Mock private ValueOperations<String, String> valueOperations;
+    @Mock private ZSetOperations<String, String> zSetOperations;
+
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        when(kafkaConfig.getUserPresenceTopic()).thenReturn("user-presence");
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        PresenceConfig config = new PresenceConfig();
+        config.setShards(4);
+        presenceService = new PresenceService(redisTemplate, kafkaTemplate, objectMapper, publicProfileService,
+                config, kafkaConfig, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void flush_coalescesBeatsIntoOneWrite_andAnnouncesVisibleUsersComingOnline() {
+        presenceService.heartbeat("a", NOW - 3000);
+        presenceService.heartbeat("a", NOW - 1000);
+        presenceService.heartbeat("a", NOW - 2000);
+        presenceService.heartbeat("hidden", NOW - 1000);
+        List<Object> written = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            // ARGV is the cutoff followed by member/score pairs; report every member as new
+            Object[] argv = (Object[]) invocation.getRawArguments()[2];
+            List<Object> members = new ArrayList<>();
+            for (int i = 1; i < argv.length; i += 2) {
+                members.add(argv[i]);
+                written.add(argv[i]);
+                written.add(argv[i + 1]);
+            }
+            return members;
+        });
+        when(publicProfileService.profiles(anyCollection())).thenReturn(Map.of(
+                "a", profile("a", PrivacyFlags.DEFAULT),
+                "hidden", profile("hidden", HIDDEN)));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+
+        presenceService.flush(NOW);
+
+        assertThat(written).containsSubsequence("a", Long.toString(NOW - 1000));
+        assertThat(written).filteredOn("a"::equals).hasSize(1);
+        verify(kafkaTemplate, times(1)).send(eq("user-presence"), eq("a"), any());
+
+        reset(redisTemplate);
+        presenceService.flush(NOW + 1000);
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void presence_answersFreshUsersLocally_andHidesThoseWhoOptedOut() {
+        presenceService.heartbeat("a", NOW - 1000);
+        presenceService.heartbeat("hidden", NOW - 1000);
+        when(publicProfileService.profiles(anyCollection())).thenReturn(Map.of(
+                "a", profile("a", PrivacyFlags.DEFAULT),
+                "hidden", profile("hidden", HIDDEN)));
+
+        List<PresenceResponse> presence = presenceService.presence(List.of("hidden", "a", "ghost"), "viewer", NOW);
+
+        assertThat(presence).extracting(PresenceResponse::getUuid).containsExactly("hidden", "a");
+        assertThat(presence.get(0).isOnline()).isFalse();
+        assertThat(presence.get(0).getLastSeenAt()).isNull();
+        assertThat(presence.get(1).isOnline()).isTrue();
+        verifyNoInteractions(redisTemplate);
+
+        List<PresenceResponse> own = presenceService.presence(List.of("hidden"), "hidden", NOW);
+        assertThat(own).singleElement().satisfies(response -> assertThat(response.isOnline()).isTrue());
+    }
+
+    @Test
+    void sweep_expiresOnlineOnly_andLastSeenOutlivesIt() {
+        long later = NOW + 120_000;
+        presenceService.heartbeat("a", NOW - 1000);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("presence:sweep-lock"), anyString(), any(Duration.class))).thenReturn(true);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("presence:online")), any(Object[].class)))
+                .thenReturn(List.of("a"));
+        when(publicProfileService.profiles(anyCollection())).thenReturn(Map.of("a", profile("a", PrivacyFlags.DEFAULT)));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+
+        presenceService.sweep(later);
+
+        verify(kafkaTemplate).send(eq("user-presence"), eq("a"), any());
+        verify(zSetOperations).removeRangeByScore(eq("presence:last-seen"), eq(Double.NEGATIVE_INFINITY),
+                eq((double) (later - Duration.ofDays(30).toMillis() - 1)));
+
+        when(zSetOperations.score("presence:last-seen", new Object[]{"a"})).thenReturn(List.of((double) (NOW - 1000)));
+        List<PresenceResponse> presence = presenceService.presence(List.of("a"), "viewer", later);
+        assertThat(presence).singleElement().satisfies(response -> {
+            assertThat(response.isOnline()).isFalse();
+            assertThat(response.getLastSeenAt()).isEqualTo(Instant.ofEpochMilli(NOW - 1000));
+        });
+    }
+
+    @Test
+    void onVisibilityChanged_announcesOnlyOnceCommitted() {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(new CompletableFuture<>());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            presenceService.onVisibilityChanged("a", false);
+            verifyNoInteractions(kafkaTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(kafkaTemplate).send(eq("user-presence"), eq("a"), any());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static PublicProfileCache.CachedProfile profile(String uuid, int flags) {
+        return new PublicProfileCache.CachedProfile(uuid, uuid, null, null, null, UserStatus.ACTIVE, flags);
+    }
+}
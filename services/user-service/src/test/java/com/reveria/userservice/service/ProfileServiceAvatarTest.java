@@ -1,6 +1,7 @@
 package com.reveria.userservice.service;
 
 import com.reveria.userservice.dto.response.UserProfileResponse;
+import com.reveria.userservice.exception.FileValidationException;
 import com.reveria.userservice.mapper.UserProfileMapper;
 import com.reveria.userservice.model.entity.User;
 import com.reveria.userservice.model.enums.UserStatus;
@@ -9,17 +10,21 @@ import com.reveria.userservice.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -31,11 +36,16 @@ class ProfileServiceAvatarTest {
     @Mock private RefreshTokenService refreshTokenService;
     @Mock private UserProfileMapper profileMapper;
     @Mock private PasswordEncoder passwordEncoder;
-    @Mock private StorageService storageService;
     @Mock private UserEventPublisher userEventPublisher;
+    @Mock private UserSnapshotPublisher userSnapshotPublisher;
+    @Mock private AvatarStore avatarStore;
+    @Mock private TransactionTemplate transactionTemplate;
 
     @InjectMocks private ProfileService profileService;
 
+    private static final String STORED_URL =
+            "http://localhost:9000/reveria-avatars/avatars/" + "ab".repeat(32) + ".jpg";
+
     private User user;
 
     @BeforeEach
@@ -49,102 +59,107 @@ class ProfileServiceAvatarTest {
                 .status(UserStatus.ACTIVE)
                 .emailVerified(true)
                 .build();
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
-    void updateAvatar_uploadsSavesUrl() {
-        byte[] jpegBytes = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00};
-        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", jpegBytes);
+    void updateAvatar_savesStoredUrlAndVariants() {
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", new byte[]{1});
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(storageService.upload(anyString(), any(InputStream.class), eq((long) jpegBytes.length), eq("image/jpeg")))
-                .thenReturn("http://localhost:9000/reveria-avatars/avatars/user-uuid-123/random.jpg");
+        when(avatarStore.store(file)).thenReturn(new AvatarStore.StoredAvatar(STORED_URL, "128.jpg,64.jpg"));
         when(userRepository.save(user)).thenReturn(user);
         when(profileMapper.toProfileResponse(user)).thenReturn(UserProfileResponse.builder().build());
 
         profileService.updateAvatar(1L, file);
 
-        ArgumentCaptor<String> pathCaptor = ArgumentCaptor.forClass(String.class);
-        verify(storageService).upload(pathCaptor.capture(), any(InputStream.class), eq((long) jpegBytes.length), eq("image/jpeg"));
-
-        String uploadedPath = pathCaptor.getValue();
-        assertThat(uploadedPath).startsWith("avatars/user-uuid-123/");
-        assertThat(uploadedPath).endsWith(".jpg");
-        assertThat(user.getAvatarUrl()).isEqualTo("http://localhost:9000/reveria-avatars/avatars/user-uuid-123/random.jpg");
+        assertThat(user.getAvatarUrl()).isEqualTo(STORED_URL);
+        assertThat(user.getAvatarVariants()).isEqualTo("128.jpg,64.jpg");
         verify(userRepository).save(user);
     }
 
     @Test
-    void updateAvatar_deletesOldStoredAvatar() {
+    void updateAvatar_releasesPreviousAvatar() {
         String oldUrl = "http://localhost:9000/reveria-avatars/avatars/user-uuid-123/old.jpg";
-        String oldPath = "avatars/user-uuid-123/old.jpg";
         user.setAvatarUrl(oldUrl);
-
-        byte[] jpegBytes = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00};
-        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", jpegBytes);
+        user.setAvatarVariants("64.jpg");
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(storageService.extractPathFromUrl(oldUrl)).thenReturn(oldPath);
-        when(storageService.upload(anyString(), any(InputStream.class), anyLong(), anyString()))
-                .thenReturn("http://localhost:9000/reveria-avatars/avatars/user-uuid-123/new.jpg");
+        when(avatarStore.store(any(InputStream.class), eq(5L))).thenReturn(new AvatarStore.StoredAvatar(STORED_URL, null));
         when(userRepository.save(user)).thenReturn(user);
         when(profileMapper.toProfileResponse(user)).thenReturn(UserProfileResponse.builder().build());
 
-        profileService.updateAvatar(1L, file);
+        profileService.updateAvatar(1L, new ByteArrayInputStream(new byte[5]), 5L);
 
-        verify(storageService).delete(oldPath);
+        verify(avatarStore).release(oldUrl, "64.jpg");
+        assertThat(user.getAvatarVariants()).isNull();
     }
 
     @Test
-    void updateAvatar_doesNotDeleteOAuthAvatar() {
-        String oauthUrl = "https://lh3.googleusercontent.com/a/avatar123";
-        user.setAvatarUrl(oauthUrl);
-
-        byte[] jpegBytes = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00};
-        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", jpegBytes);
+    void updateAvatar_sameImageAgain_returnsTheExtraReference() {
+        user.setAvatarUrl(STORED_URL);
+        user.setAvatarVariants("64.jpg");
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", new byte[]{1});
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(storageService.extractPathFromUrl(oauthUrl)).thenReturn(null);
-        when(storageService.upload(anyString(), any(InputStream.class), anyLong(), anyString()))
-                .thenReturn("http://localhost:9000/reveria-avatars/avatars/user-uuid-123/new.jpg");
+        when(avatarStore.store(file)).thenReturn(new AvatarStore.StoredAvatar(STORED_URL, "64.jpg"));
         when(userRepository.save(user)).thenReturn(user);
         when(profileMapper.toProfileResponse(user)).thenReturn(UserProfileResponse.builder().build());
 
         profileService.updateAvatar(1L, file);
 
-        verify(storageService, never()).delete(anyString());
+        verify(avatarStore, times(1)).release(STORED_URL, "64.jpg");
+        assertThat(user.getAvatarUrl()).isEqualTo(STORED_URL);
     }
 
     @Test
-    void deleteAvatar_removesStoredFile() {
-        String storedUrl = "http://localhost:9000/reveria-avatars/avatars/user-uuid-123/avatar.jpg";
-        String storedPath = "avatars/user-uuid-123/avatar.jpg";
-        user.setAvatarUrl(storedUrl);
+    void updateAvatar_uploadRejected_keepsOldAvatar() {
+        String oldUrl = "http://localhost:9000/reveria-avatars/avatars/user-uuid-123/old.jpg";
+        user.setAvatarUrl(oldUrl);
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", new byte[]{0, 1, 2, 3, 4});
+
+        when(avatarStore.store(file)).thenThrow(new FileValidationException("bad", "file"));
+
+        assertThatThrownBy(() -> profileService.updateAvatar(1L, file))
+                .isInstanceOf(FileValidationException.class);
 
+        verify(avatarStore, never()).release(anyString(), any());
+        verify(userRepository, never()).save(any());
+        verifyNoInteractions(transactionTemplate);
+        assertThat(user.getAvatarUrl()).isEqualTo(oldUrl);
+    }
+
+    @Test
+    void updateAvatar_storesBeforeTheTransaction_andReleasesWhenItFails() {
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.jpg", "image/jpeg", new byte[]{1});
+
+        when(avatarStore.store(file)).thenReturn(new AvatarStore.StoredAvatar(STORED_URL, "64.jpg"));
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(storageService.extractPathFromUrl(storedUrl)).thenReturn(storedPath);
-        when(userRepository.save(user)).thenReturn(user);
-        when(profileMapper.toProfileResponse(user)).thenReturn(UserProfileResponse.builder().build());
+        when(userRepository.save(user)).thenThrow(new IllegalStateException("db down"));
 
-        profileService.deleteAvatar(1L);
+        assertThatThrownBy(() -> profileService.updateAvatar(1L, file))
+                .isInstanceOf(IllegalStateException.class);
 
-        verify(storageService).delete(storedPath);
-        assertThat(user.getAvatarUrl()).isNull();
+        InOrder inOrder = inOrder(avatarStore, transactionTemplate);
+        inOrder.verify(avatarStore).store(file);
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(avatarStore).release(STORED_URL, "64.jpg");
     }
 
     @Test
-    void deleteAvatar_oauthUrl_doesNotDeleteFromStorage() {
-        String oauthUrl = "https://lh3.googleusercontent.com/a/avatar123";
-        user.setAvatarUrl(oauthUrl);
+    void deleteAvatar_releasesStoredAvatar() {
+        user.setAvatarUrl(STORED_URL);
+        user.setAvatarVariants("128.jpg,64.jpg");
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(storageService.extractPathFromUrl(oauthUrl)).thenReturn(null);
         when(userRepository.save(user)).thenReturn(user);
         when(profileMapper.toProfileResponse(user)).thenReturn(UserProfileResponse.builder().build());
 
         profileService.deleteAvatar(1L);
 
-        verify(storageService, never()).delete(anyString());
+        verify(avatarStore).release(STORED_URL, "128.jpg,64.jpg");
         assertThat(user.getAvatarUrl()).isNull();
+        assertThat(user.getAvatarVariants()).isNull();
     }
 }
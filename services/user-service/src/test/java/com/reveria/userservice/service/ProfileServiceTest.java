@@ -0,0 +1,90 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.mapper.UserProfileMapper;
+import com.reveria.userservice.repository.UserPrivacySettingsRepository;
+import com.reveria.userservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProfileServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private UserPrivacySettingsRepository privacySettingsRepository;
+    @Mock private RefreshTokenService refreshTokenService;
+    @Mock private UserProfileMapper profileMapper;
+    @Mock private PasswordEncoder passwordEncoder;
+    @Mock private UserEventPublisher userEventPublisher;
+    @Mock private UserSnapshotPublisher userSnapshotPublisher;
+    @Mock private AvatarStore avatarStore;
+    @Mock private PresenceService presenceService;
+
+    @InjectMocks private ProfileService profileService;
+
+    @Test
+    void profileETag_isStrongAndBuiltFromVersionAndProviders() {
+        when(userRepository.findProfileVersion(1L)).thenReturn(version(3, 2, 17));
+
+        assertThat(profileService.profileETag(1L)).isEqualTo("\"p1-3-2-17\"");
+        assertThat(profileService.providersETag(1L)).isEqualTo("\"l1-3-2-17\"");
+    }
+
+    @Test
+    void etags_unknownUser_areNull() {
+        when(userRepository.findProfileVersion(9L)).thenReturn(null);
+
+        assertThat(profileService.profileETag(9L)).isNull();
+        assertThat(profileService.providersETag(9L)).isNull();
+    }
+
+    @Test
+    void privacyETag_followsTheSettingsVersion_andIsNullWithoutARow() {
+        when(privacySettingsRepository.findVersionByUserId(1L)).thenReturn(Optional.of(4L));
+        when(privacySettingsRepository.findVersionByUserId(2L)).thenReturn(Optional.empty());
+
+        assertThat(profileService.privacyETag(1L)).isEqualTo("\"s1-4\"");
+        assertThat(profileService.privacyETag(2L)).isNull();
+    }
+
+    @Test
+    void linkingOrUnlinkingAProvider_changesTheTags_evenWithTheUserRowUntouched() {
+        // Linking and unlinking only touch the provider rows, so the user version stays at 3
+        when(userRepository.findProfileVersion(1L)).thenReturn(
+                version(3, 1, 10),
+                version(3, 2, 21),
+                version(3, 1, 11),
+                version(3, 1, 10),
+                version(3, 2, 21),
+                version(3, 1, 11));
+
+        String linkedOne = profileService.profileETag(1L);
+        String linkedTwo = profileService.profileETag(1L);
+        // Unlinking the first provider leaves as many providers as before, but other ones
+        String swapped = profileService.profileETag(1L);
+        assertThat(linkedTwo).isNotEqualTo(linkedOne);
+        assertThat(swapped).isNotEqualTo(linkedOne).isNotEqualTo(linkedTwo);
+
+        String providersOne = profileService.providersETag(1L);
+        String providersTwo = profileService.providersETag(1L);
+        String providersSwapped = profileService.providersETag(1L);
+        assertThat(providersTwo).isNotEqualTo(providersOne);
+        assertThat(providersSwapped).isNotEqualTo(providersOne).isNotEqualTo(providersTwo);
+    }
+
+    private static UserRepository.ProfileVersion version(long version, long providerCount, long providerIdSum) {
+        return new UserRepository.ProfileVersion() {
+            @Override public Long getVersion() { return version; }
+            @Override public Long getProviderCount() { return providerCount; }
+            @Override public Long getProviderIdSum() { return providerIdSum; }
+        };
+    }
+}
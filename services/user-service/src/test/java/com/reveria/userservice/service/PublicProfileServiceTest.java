@@ -0,0 +1,91 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.UserLookupConfig;
+import com.reveria.userservice.dto.response.PublicProfileResponse;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PublicProfileServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private UserSearchIndex searchIndex;
+
+    private PublicProfileCache cache;
+    private PublicProfileService publicProfileService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cache = new PublicProfileCache(new UserLookupConfig(), meterRegistry);
+        publicProfileService = new PublicProfileService(userRepository, cache, searchIndex, meterRegistry);
+    }
+
+    @Test
+    void lookup_keepsRequestOrderAndHidesNonPublicProfiles() {
+        when(userRepository.findPublicProfiles(any())).thenReturn(List.of(
+                row("b", "bob", "ACTIVE", "PRIVATE"),
+                row("a", "alice", "ACTIVE", null),
+                row("c", "carol", "BANNED", "PUBLIC")));
+
+        List<PublicProfileResponse> profiles = publicProfileService.lookup(List.of("a", "b", "a", "c", "x"), "viewer");
+
+        assertThat(profiles).extracting(PublicProfileResponse::getUuid).containsExactly("a", "b");
+        assertThat(profiles.get(0).getDisplayName()).isEqualTo("Alice");
+        assertThat(profiles.get(0).getThumbnailUrl()).isEqualTo("http://cdn/avatars/a_128.jpg");
+        assertThat(profiles.get(1).getUsername()).isEqualTo("bob");
+        assertThat(profiles.get(1).getDisplayName()).isNull();
+        assertThat(profiles.get(1).getAvatarUrl()).isNull();
+    }
+
+    @Test
+    void lookup_ownPrivateProfile_isShownInFull() {
+        when(userRepository.findPublicProfiles(any())).thenReturn(List.of(row("b", "bob", "ACTIVE", "PRIVATE")));
+
+        List<PublicProfileResponse> profiles = publicProfileService.lookup(List.of("b"), "b");
+
+        assertThat(profiles).singleElement()
+                .satisfies(profile -> assertThat(profile.getDisplayName()).isEqualTo("Bob"));
+    }
+
+    @Test
+    void lookup_servesRepeatsFromCacheUntilEvicted() {
+        when(userRepository.findPublicProfiles(any())).thenReturn(List.of(row("a", "alice", "ACTIVE", "PUBLIC")));
+
+        publicProfileService.lookup(List.of("a"), "viewer");
+        publicProfileService.lookupInternal(List.of("a"));
+        verify(userRepository, times(1)).findPublicProfiles(any());
+
+        cache.evict("a");
+        publicProfileService.lookup(List.of("a"), "viewer");
+        verify(userRepository, times(2)).findPublicProfiles(any());
+    }
+
+    private static UserRepository.PublicProfileRow row(String uuid, String username, String status, String visibility) {
+        String name = Character.toUpperCase(username.charAt(0)) + username.substring(1);
+        return new UserRepository.PublicProfileRow() {
+            @Override public String getUuid() { return uuid; }
+            @Override public String getUsername() { return username; }
+            @Override public String getDisplayName() { return name; }
+            @Override public String getAvatarUrl() { return "http://cdn/avatars/" + uuid + ".png"; }
+            @Override public String getAvatarVariants() { return "512.jpg,128.jpg"; }
+            @Override public String getStatus() { return status; }
+            @Override public String getProfileVisibility() { return visibility; }
+            @Override public Boolean getShowOnlineStatus() { return null; }
+            @Override public Boolean getAllowDirectMessages() { return null; }
+            @Override public Boolean getAllowFriendRequests() { return null; }
+            @Override public String getMessagePrivacy() { return null; }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.LocalStorageConfig;
+import com.reveria.userservice.config.StorageConfig;
+import io.minio.MinioClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload and download throughput of the local filesystem backend against MinIO, for avatar-sized
+ * objects and one larger size.
+ *
+ * Not part of the test run. The minio backend needs a server; it reads MINIO_ENDPOINT,
+ * MINIO_ACCESS_KEY and MINIO_SECRET_KEY (defaults match docker-compose). After
+ * {@code mvn test-compile}, run {@link #main} from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageThroughputBenchmark {
+
+    private static final String KEY = "avatars/" + "ab".repeat(32) + ".jpg";
+
+    @Param({"local", "minio"})
+    public String backend;
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    private StorageService storage;
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        if ("local".equals(backend)) {
+            LocalStorageConfig config = new LocalStorageConfig();
+            config.setRootDir(Files.createTempDirectory("storage-bench").toString());
+            config.setSigningKey("bench");
+            LocalFileStorageService local = new LocalFileStorageService(config);
+            local.init();
+            storage = local;
+        } else {
+            StorageConfig config = new StorageConfig();
+            config.setEndpoint(env("MINIO_ENDPOINT", "http://localhost:9000"));
+            config.setAccessKey(env("MINIO_ACCESS_KEY", "minioadmin"));
+            config.setSecretKey(env("MINIO_SECRET_KEY", "minioadmin"));
+            config.setBucket("storage-bench");
+            MinioStorageService minio = new MinioStorageService(MinioClient.builder()
+                    .endpoint(config.getEndpoint())
+                    .credentials(config.getAccessKey(), config.getSecretKey())
+                    .build(), config);
+            minio.init();
+            storage = minio;
+        }
+        storage.upload(KEY, new ByteArrayInputStream(content), content.length, "image/jpeg");
+    }
+
+    @Benchmark
+    public String upload() {
+        return storage.upload(KEY, new ByteArrayInputStream(content), content.length, "image/jpeg");
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        try (InputStream in = storage.download(KEY)) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value != null ? value : fallback;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StorageThroughputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,95 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.dto.event.UserEvent;
+import com.reveria.userservice.dto.event.UserEventPayload;
+import com.reveria.userservice.dto.event.UserLoggedInPayload;
+import com.reveria.userservice.dto.event.UserPrivacyUpdatedPayload;
+import com.reveria.userservice.dto.event.UserProfileUpdatedPayload;
+import com.reveria.userservice.model.enums.UserEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserEventCodecTest {
+
+    private UserEventCodec jsonCodec;
+    private UserEventCodec avroCodec;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        EventSchemaRegistry registry = new EventSchemaRegistry();
+        jsonCodec = new UserEventCodec(objectMapper, registry, kafkaConfig("json"), new SimpleMeterRegistry());
+        avroCodec = new UserEventCodec(objectMapper, registry, kafkaConfig("avro"), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void avro_roundTripsEveryPayloadShape() {
+        for (UserEvent event : List.of(
+                event(UserEventType.USER_LOGGED_IN, new UserLoggedInPayload("10.0.0.1", "GOOGLE")),
+                event(UserEventType.USER_LOGGED_IN, new UserLoggedInPayload("10.0.0.2", "LOCAL", 3,
+                        Map.of("LOCAL", 2, "GOOGLE", 1), Map.of("10.0.0.2", 3))),
+                event(UserEventType.USER_PROFILE_UPDATED, new UserProfileUpdatedPayload(List.of("bio", "displayName"))),
+                event(UserEventType.USER_PRIVACY_UPDATED, new UserPrivacyUpdatedPayload("PRIVATE", null, false, null, null)),
+                event(UserEventType.USER_DEACTIVATED, null))) {
+
+            UserEventCodec.EncodedEvent encoded = avroCodec.encode(event);
+            assertThat(encoded.contentType()).isEqualTo(UserEventCodec.CONTENT_TYPE_AVRO);
+            assertThat(encoded.schemaId()).isEqualTo("user-event.v2");
+
+            assertThat(avroCodec.decode(encoded.body(), encoded.contentType(), encoded.schemaId()))
+                    .isEqualTo(event);
+        }
+    }
+
+    @Test
+    void json_roundTripsAndKeepsLegacyShape() {
+        UserEvent event = event(UserEventType.USER_LOGGED_IN, new UserLoggedInPayload("10.0.0.1", "LOCAL"));
+
+        UserEventCodec.EncodedEvent encoded = jsonCodec.encode(event);
+
+        assertThat(encoded.contentType()).isEqualTo(UserEventCodec.CONTENT_TYPE_JSON);
+        assertThat(new String(encoded.body()))
+                .contains("\"payload\":{\"ipAddress\":\"10.0.0.1\",\"provider\":\"LOCAL\"}");
+        assertThat(jsonCodec.decode(encoded.body(), encoded.contentType(), null)).isEqualTo(event);
+    }
+
+    @Test
+    void avro_isSubstantiallySmallerThanJson() {
+        UserEvent event = event(UserEventType.USER_LOGGED_IN, new UserLoggedInPayload("192.168.100.200", "GITHUB"));
+
+        int jsonBytes = jsonCodec.encode(event).body().length;
+        int avroBytes = avroCodec.encode(event).body().length;
+
+        // ids as 16-byte fixed, enum ordinals and no field names: well under half the JSON size
+        assertThat(avroBytes).isLessThan(jsonBytes / 2);
+    }
+
+    private static UserEvent event(UserEventType type, UserEventPayload payload) {
+        return UserEvent.builder()
+                .eventId(UUID.randomUUID().toString())
+                .eventType(type)
+                .userId(UUID.randomUUID().toString())
+                .timestamp(Instant.ofEpochMilli(System.currentTimeMillis()))
+                .payload(payload)
+                .build();
+    }
+
+    private static KafkaConfig kafkaConfig(String encoding) {
+        KafkaConfig config = new KafkaConfig();
+        ReflectionTestUtils.setField(config, "userEventsEncoding", encoding);
+        return config;
+    }
+}
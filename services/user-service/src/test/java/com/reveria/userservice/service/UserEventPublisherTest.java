@@ -0,0 +1,169 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reveria.userservice.config.EventCoalescingConfig;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.dto.event.UserLoggedInPayload;
+import com.reveria.userservice.dto.event.UserProfileUpdatedPayload;
+import com.reveria.userservice.dto.event.UserRegisteredPayload;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserEventPublisherTest {
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private UserEventSpool spool;
+    @Mock private ApplicationEventPublisher applicationEventPublisher;
+
+    private UserEventCodec codec;
+    private OutboxConfig outboxConfig;
+    private UserEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        ReflectionTestUtils.setField(kafkaConfig, "userEventsEncoding", "json");
+        codec = new UserEventCodec(objectMapper, new EventSchemaRegistry(), kafkaConfig, new SimpleMeterRegistry());
+        outboxConfig = new OutboxConfig();
+        outboxConfig.setPartitions(4);
+        publisher = new UserEventPublisher(outboxEventRepository, codec, outboxConfig,
+                new EventCoalescingConfig(), spool, applicationEventPublisher, transactionManager, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void publish_writesOutboxRowInsteadOfSending() {
+        publisher.publish(UserEventType.USER_REGISTERED, "user-uuid-123",
+                new UserRegisteredPayload("test@example.com", "testuser", null));
+
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(captor.capture());
+
+        OutboxEvent saved = captor.getValue();
+        assertThat(saved.getAggregateKey()).isEqualTo("user-uuid-123");
+        assertThat(saved.getEventType()).isEqualTo(UserEventType.USER_REGISTERED);
+        assertThat(saved.getEventId()).isNotBlank();
+        assertThat(saved.getContentType()).isEqualTo(UserEventCodec.CONTENT_TYPE_JSON);
+        assertThat(new String(saved.getPayload(), StandardCharsets.UTF_8))
+                .contains("\"eventType\":\"USER_REGISTERED\"", "\"username\":\"testuser\"")
+                .doesNotContain("provider");
+    }
+
+    @Test
+    void publish_sameUserAlwaysMapsToSamePartition() {
+        publisher.publish(UserEventType.USER_LOGGED_IN, "user-uuid-123", null);
+        publisher.publish(UserEventType.USER_PROFILE_UPDATED, "user-uuid-123", null);
+
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository, times(2)).save(captor.capture());
+
+        Integer first = captor.getAllValues().get(0).getPartitionNo();
+        assertThat(first).isBetween(0, 3);
+        assertThat(captor.getAllValues().get(1).getPartitionNo()).isEqualTo(first);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescing_mergesBurstAndFlushesItBeforeSecurityEvent() {
+        EventCoalescingConfig coalescingConfig = new EventCoalescingConfig();
+        coalescingConfig.setEnabled(true);
+        coalescingConfig.setWindowMs(60_000);
+        publisher = new UserEventPublisher(outboxEventRepository, codec, outboxConfig,
+                coalescingConfig, spool, applicationEventPublisher, transactionManager, new SimpleMeterRegistry());
+
+        publisher.publish(UserEventType.USER_LOGGED_IN, "user-uuid-123", new UserLoggedInPayload("10.0.0.1", "LOCAL"));
+        publisher.publish(UserEventType.USER_LOGGED_IN, "user-uuid-123", new UserLoggedInPayload("10.0.0.2", "LOCAL"));
+        publisher.publish(UserEventType.USER_LOGGED_IN, "user-uuid-123", new UserLoggedInPayload("10.0.0.2", "GOOGLE"));
+        publisher.publish(UserEventType.USER_PROFILE_UPDATED, "user-uuid-123", new UserProfileUpdatedPayload(List.of("bio")));
+        publisher.publish(UserEventType.USER_PROFILE_UPDATED, "user-uuid-123",
+                new UserProfileUpdatedPayload(List.of("bio", "displayName")));
+        verifyNoInteractions(outboxEventRepository);
+
+        publisher.publish(UserEventType.USER_PASSWORD_CHANGED, "user-uuid-123", null);
+
+        InOrder inOrder = inOrder(outboxEventRepository);
+        ArgumentCaptor<List<OutboxEvent>> flushed = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<OutboxEvent> direct = ArgumentCaptor.forClass(OutboxEvent.class);
+        inOrder.verify(outboxEventRepository).saveAll(flushed.capture());
+        inOrder.verify(outboxEventRepository).save(direct.capture());
+
+        List<String> payloads = Stream.concat(flushed.getValue().stream(), Stream.of(direct.getValue()))
+                .map(row -> new String(row.getPayload(), StandardCharsets.UTF_8))
+                .toList();
+
+        assertThat(payloads.get(0)).contains("\"eventType\":\"USER_LOGGED_IN\"", "\"loginCount\":3",
+                "\"loginsByProvider\":{\"LOCAL\":2,\"GOOGLE\":1}", "\"loginsByIp\":{\"10.0.0.1\":1,\"10.0.0.2\":2}");
+        assertThat(payloads.get(1)).contains("\"changedFields\":[\"bio\",\"displayName\"]");
+        assertThat(payloads.get(2)).contains("\"eventType\":\"USER_PASSWORD_CHANGED\"");
+    }
+
+    @Test
+    void coalescing_spoolsFlushWhenOutboxIsUnavailable() {
+        EventCoalescingConfig coalescingConfig = new EventCoalescingConfig();
+        coalescingConfig.setEnabled(true);
+        coalescingConfig.setWindowMs(0);
+        publisher = new UserEventPublisher(outboxEventRepository, codec, outboxConfig,
+                coalescingConfig, spool, applicationEventPublisher, transactionManager, new SimpleMeterRegistry());
+        when(outboxEventRepository.saveAll(anyList())).thenThrow(new CannotCreateTransactionException("db down"));
+
+        publisher.publish(UserEventType.USER_LOGGED_IN, "user-uuid-123", new UserLoggedInPayload("10.0.0.1", "LOCAL"));
+        publisher.flushCoalesced();
+
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(spool).append(captor.capture());
+        assertThat(captor.getValue().getEventType()).isEqualTo(UserEventType.USER_LOGGED_IN);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescing_spoolsBehindEventsOfUsersStillSpooled_includingDirectWrites() {
+        EventCoalescingConfig coalescingConfig = new EventCoalescingConfig();
+        coalescingConfig.setEnabled(true);
+        coalescingConfig.setWindowMs(0);
+        publisher = new UserEventPublisher(outboxEventRepository, codec, outboxConfig,
+                coalescingConfig, spool, applicationEventPublisher, transactionManager, new SimpleMeterRegistry());
+        when(spool.hasPending("spooled")).thenReturn(true);
+
+        publisher.publish(UserEventType.USER_LOGGED_IN, "spooled", new UserLoggedInPayload("10.0.0.1", "LOCAL"));
+        publisher.publish(UserEventType.USER_LOGGED_IN, "fresh", new UserLoggedInPayload("10.0.0.1", "LOCAL"));
+        publisher.flushCoalesced();
+
+        ArgumentCaptor<OutboxEvent> spooled = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(spool).append(spooled.capture());
+        assertThat(spooled.getValue().getAggregateKey()).isEqualTo("spooled");
+        ArgumentCaptor<List<OutboxEvent>> flushed = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).saveAll(flushed.capture());
+        assertThat(flushed.getValue()).extracting(OutboxEvent::getAggregateKey).containsExactly("fresh");
+
+        publisher.publish(UserEventType.USER_PASSWORD_CHANGED, "spooled", null);
+
+        verify(spool, times(2)).append(spooled.capture());
+        assertThat(spooled.getValue().getEventType()).isEqualTo(UserEventType.USER_PASSWORD_CHANGED);
+        verify(outboxEventRepository, never()).save(any(OutboxEvent.class));
+    }
+}
@@ -0,0 +1,85 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.SpoolConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserEventSpoolReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private UserEventSpool spool;
+    private UserEventSpoolReplayer replayer;
+
+    @BeforeEach
+    void setUp() {
+        SpoolConfig config = new SpoolConfig();
+        config.setDirectory(directory.toString());
+        config.setReplayBatchSize(1);
+        spool = new UserEventSpool(config, new SimpleMeterRegistry());
+        replayer = new UserEventSpoolReplayer(spool, outboxEventRepository, config, transactionManager,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void replay_movesSpooledEventsIntoTheOutboxOldestFirst() {
+        spool.append(event("event-0", "a"));
+        spool.append(event("event-1", "b"));
+        List<String> saved = new ArrayList<>();
+        when(outboxEventRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<OutboxEvent> rows = invocation.getArgument(0);
+            rows.forEach(row -> saved.add(row.getEventId()));
+            return rows;
+        });
+
+        replayer.replay();
+
+        assertThat(saved).containsExactly("event-0", "event-1");
+        assertThat(spool.hasPending("a")).isFalse();
+        assertThat(spool.pendingBytes()).isZero();
+    }
+
+    @Test
+    void replay_outboxStillDown_keepsEventsSpooled() {
+        spool.append(event("event-0", "a"));
+        when(outboxEventRepository.saveAll(anyList())).thenThrow(new CannotCreateTransactionException("db down"));
+
+        replayer.replay();
+
+        assertThat(spool.hasPending("a")).isTrue();
+        verify(outboxEventRepository, times(1)).saveAll(anyList());
+    }
+
+    private static OutboxEvent event(String eventId, String userId) {
+        return OutboxEvent.builder()
+                .eventId(eventId)
+                .aggregateKey(userId)
+                .eventType(UserEventType.USER_LOGGED_IN)
+                .partitionNo(0)
+                .payload(new byte[]{1})
+                .contentType(UserEventCodec.CONTENT_TYPE_JSON)
+                .build();
+    }
+}
@@ -0,0 +1,108 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.SpoolConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.enums.UserEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserEventSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysInOrderAcrossSegmentsAndRestarts() throws Exception {
+        SpoolConfig config = new SpoolConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(256);
+
+        UserEventSpool spool = new UserEventSpool(config, new SimpleMeterRegistry());
+        for (int i = 0; i < 10; i++) {
+            assertThat(spool.append(event("event-" + i))).isTrue();
+        }
+
+        UserEventSpool.Batch first = spool.readBatch(4);
+        assertThat(first.events()).extracting(OutboxEvent::getEventId)
+                .containsExactly("event-0", "event-1", "event-2", "event-3");
+        spool.commit(first);
+
+        // Reopen: committed events are gone, the rest survive in order
+        UserEventSpool reopened = new UserEventSpool(config, new SimpleMeterRegistry());
+        UserEventSpool.Batch rest = reopened.readBatch(100);
+        assertThat(rest.events()).extracting(OutboxEvent::getEventId)
+                .containsExactly("event-4", "event-5", "event-6", "event-7", "event-8", "event-9");
+        assertThat(rest.events().get(0).getPayload()).isEqualTo(new byte[]{1, 2, 3});
+
+        reopened.commit(rest);
+        assertThat(reopened.pendingBytes()).isZero();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(path -> path.getFileName().toString().startsWith("segment-"))).hasSize(1);
+        }
+    }
+
+    @Test
+    void opensOnFirstAppend_andTracksUsersUntilTheirEventsAreReplayed() {
+        SpoolConfig config = new SpoolConfig();
+        config.setDirectory(directory.resolve("spool").toString());
+        config.setSegmentSizeBytes(256);
+
+        UserEventSpool spool = new UserEventSpool(config, new SimpleMeterRegistry());
+        assertThat(directory.resolve("spool")).doesNotExist();
+
+        spool.append(event("event-0", "a"));
+        spool.append(event("event-1", "b"));
+        spool.append(event("event-2", "a"));
+        assertThat(directory.resolve("spool")).isDirectory();
+
+        spool.commit(spool.readBatch(2));
+        assertThat(spool.hasPending("a")).isTrue();
+        assertThat(spool.hasPending("b")).isFalse();
+
+        // The pending users are rebuilt from the segments on restart
+        spool.close();
+        UserEventSpool reopened = new UserEventSpool(config, new SimpleMeterRegistry());
+        assertThat(reopened.hasPending("a")).isTrue();
+        assertThat(reopened.hasPending("b")).isFalse();
+
+        reopened.commit(reopened.readBatch(100));
+        assertThat(reopened.hasPending("a")).isFalse();
+        reopened.close();
+    }
+
+    @Test
+    void rejectsAppendsWhenFull() {
+        SpoolConfig config = new SpoolConfig();
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(128);
+        config.setMaxSegments(1);
+
+        UserEventSpool spool = new UserEventSpool(config, new SimpleMeterRegistry());
+
+        assertThat(spool.append(event("event-0"))).isTrue();
+        assertThat(spool.append(event("event-1"))).isFalse();
+    }
+
+    private static OutboxEvent event(String eventId) {
+        return event(eventId, "user-uuid-123");
+    }
+
+    private static OutboxEvent event(String eventId, String userId) {
+        return OutboxEvent.builder()
+                .eventId(eventId)
+                .aggregateKey(userId)
+                .eventType(UserEventType.USER_LOGGED_IN)
+                .partitionNo(3)
+                .payload(new byte[]{1, 2, 3})
+                .contentType(UserEventCodec.CONTENT_TYPE_AVRO)
+                .schemaId("user-event.v2")
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.config.UserSearchConfig;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserSearchIndexTest {
+
+    @Mock private UserRepository userRepository;
+
+    private final List<UserRepository.SearchRow> users = new ArrayList<>();
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserSearchIndex(userRepository, new UserSearchConfig(), new MaintenanceExecutor(),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void search_matchesUsernamesAndDisplayNameWords_mostRecentFirst() {
+        users.add(row(1, "john_doe", "John Doe", 100));
+        users.add(row(2, "jdoe", "Jöhanna Smith", 300));
+        users.add(row(3, "smithy", null, 200));
+        users.add(row(4, "alice", "Alice Jones", 400));
+        rebuild();
+
+        assertThat(index.search("Jo", 10)).containsExactly("u4", "u2", "u1");
+        assertThat(index.search("smi", 10)).containsExactly("u2", "u3");
+        assertThat(index.search("johanna s", 10)).containsExactly("u2");
+        assertThat(index.search("jo", 2)).containsExactly("u4", "u2");
+        assertThat(index.search("x", 10)).isEmpty();
+    }
+
+    @Test
+    void search_largeIndex_returnsSameTopKAsFullScan() {
+        Random random = new Random(7);
+        for (int i = 1; i <= 40_000; i++) {
+            users.add(row(i, "user" + random.nextInt(100_000), "Name " + random.nextInt(1000), random.nextInt(1_000_000)));
+        }
+        rebuild();
+
+        for (String prefix : List.of("u", "user", "user1", "user42", "n", "name 9", "9", "12")) {
+            List<String> expected = users.stream()
+                    .filter(user -> UserSearchIndex.keysOf(user.getUsername(), user.getDisplayName()).stream()
+                            .anyMatch(key -> key.startsWith(prefix)))
+                    .sorted(Comparator.comparingLong(UserRepository.SearchRow::getRank).reversed()
+                            .thenComparing(UserRepository.SearchRow::getUuid))
+                    .limit(20)
+                    .map(UserRepository.SearchRow::getUuid)
+                    .toList();
+            assertThat(index.search(prefix, 20)).as(prefix).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void refresh_overriddenBlockMembers_fallBackToTheirKeys() {
+        Random random = new Random(11);
+        for (int i = 1; i <= 40_000; i++) {
+            users.add(row(i, "user" + random.nextInt(100_000), "Name " + random.nextInt(1000), random.nextInt(1_000_000)));
+        }
+        rebuild();
+        // Hide the 30 best users and rename one more, so every precomputed best list loses members
+        List<UserRepository.SearchRow> best = users.stream()
+                .sorted(Comparator.comparingLong(UserRepository.SearchRow::getRank).reversed())
+                .limit(31)
+                .toList();
+        List<UserRepository.SearchRow> changed = new ArrayList<>();
+        for (UserRepository.SearchRow user : best.subList(0, 30)) {
+            changed.add(row(user.getId(), user.getUsername(), user.getDisplayName(), user.getRank(), "BANNED", null));
+        }
+        UserRepository.SearchRow renamed = best.get(30);
+        changed.add(row(renamed.getId(), "zed", null, renamed.getRank()));
+        when(userRepository.findSearchRows(any())).thenReturn(changed);
+        changed.forEach(user -> index.evict(user.getUuid()));
+        index.refresh();
+
+        users.removeAll(best);
+        users.add(changed.get(30));
+        for (String prefix : List.of("u", "user", "user1", "n", "name 9", "z")) {
+            List<String> expected = users.stream()
+                    .filter(user -> UserSearchIndex.keysOf(user.getUsername(), user.getDisplayName()).stream()
+                            .anyMatch(key -> key.startsWith(prefix)))
+                    .sorted(Comparator.comparingLong(UserRepository.SearchRow::getRank).reversed()
+                            .thenComparing(UserRepository.SearchRow::getUuid))
+                    .limit(20)
+                    .map(UserRepository.SearchRow::getUuid)
+                    .toList();
+            assertThat(index.search(prefix, 20)).as(prefix).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void refresh_changedUsersOverrideSnapshotUntilRebuild() {
+        users.add(row(1, "john", null, 100));
+        users.add(row(2, "joan", null, 200));
+        rebuild();
+        when(userRepository.findSearchRows(any())).thenReturn(List.of(
+                row(1, "jonathan", null, 100, "ACTIVE", "PUBLIC"),
+                row(2, "joan", null, 200, "ACTIVE", "PRIVATE")));
+
+        index.evict("u1");
+        index.evict("u2");
+        index.evict("u9");
+        index.refresh();
+
+        assertThat(index.search("jo", 10)).containsExactly("u1");
+        assertThat(index.search("jonat", 10)).containsExactly("u1");
+        assertThat(index.search("john", 10)).isEmpty();
+    }
+
+    private void rebuild() {
+        when(userRepository.findSearchPage(anyLong(), anyInt())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return users.stream().filter(user -> user.getId() > afterId).limit(limit).toList();
+        });
+        index.rebuild();
+    }
+
+    private static UserRepository.SearchRow row(long id, String username, String displayName, long rank) {
+        return row(id, username, displayName, rank, "ACTIVE", null);
+    }
+
+    private static UserRepository.SearchRow row(long id, String username, String displayName, long rank,
+                                                String status, String visibility) {
+        return new UserRepository.SearchRow() {
+            @Override public Long getId() { return id; }
+            @Override public String getUuid() { return "u" + id; }
+            @Override public String getUsername() { return username; }
+            @Override public String getDisplayName() { return displayName; }
+            @Override public String getStatus() { return status; }
+            @Override public String getProfileVisibility() { return visibility; }
+            @Override public Long getRank() { return rank; }
+        };
+    }
+}
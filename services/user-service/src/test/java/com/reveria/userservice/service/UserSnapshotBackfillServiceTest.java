@@ -0,0 +1,68 @@
+package com.reveria.userservice.service;
+
+import com.reveria.userservice.exception.BackfillAlreadyRunningException;
+import com.reveria.userservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserSnapshotBackfillServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private UserSnapshotPublisher snapshotPublisher;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private UserSnapshotBackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        backfillService = new UserSnapshotBackfillService(userRepository, snapshotPublisher, transactionManager,
+                tasks::add, 2, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void start_whileRunning_refusedWithTheRunsProgress() {
+        UserRepository.SnapshotRow first = mock(UserRepository.SnapshotRow.class);
+        UserRepository.SnapshotRow second = mock(UserRepository.SnapshotRow.class);
+        // The cursor moves to the last id of each page
+        when(second.getId()).thenReturn(2L);
+        doAnswer(invocation -> {
+            // A second start while the first page is written
+            assertThatThrownBy(backfillService::start)
+                    .isInstanceOfSatisfying(BackfillAlreadyRunningException.class,
+                            e -> assertThat(e.getUsersWritten()).isZero());
+            return List.of(first, second);
+        }).when(userRepository).lockSnapshotPage(eq(0L), anyInt());
+        doAnswer(invocation -> {
+            assertThatThrownBy(backfillService::start)
+                    .isInstanceOfSatisfying(BackfillAlreadyRunningException.class, e -> {
+                        assertThat(e.getUsersWritten()).isEqualTo(2);
+                        assertThat(e.getLastUserId()).isEqualTo(2);
+                    });
+            return List.of();
+        }).when(userRepository).lockSnapshotPage(eq(2L), anyInt());
+
+        backfillService.start();
+        tasks.remove(0).run();
+
+        verify(snapshotPublisher).writeBackfill(first);
+        verify(snapshotPublisher).writeBackfill(second);
+        backfillService.start();
+        assertThat(tasks).hasSize(1);
+    }
+}
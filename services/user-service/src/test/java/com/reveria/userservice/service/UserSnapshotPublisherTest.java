@@ -0,0 +1,75 @@
+package com.reveria.userservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reveria.userservice.config.KafkaConfig;
+import com.reveria.userservice.config.OutboxConfig;
+import com.reveria.userservice.model.entity.OutboxEvent;
+import com.reveria.userservice.model.entity.User;
+import com.reveria.userservice.model.entity.UserPrivacySettings;
+import com.reveria.userservice.model.enums.ProfileVisibility;
+import com.reveria.userservice.model.enums.UserEventType;
+import com.reveria.userservice.model.enums.UserStatus;
+import com.reveria.userservice.repository.OutboxEventRepository;
+import com.reveria.userservice.repository.UserPrivacySettingsRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserSnapshotPublisherTest {
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+    @Mock private UserPrivacySettingsRepository privacySettingsRepository;
+    @Mock private EntityManager entityManager;
+
+    private UserSnapshotPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        KafkaConfig kafkaConfig = new KafkaConfig();
+        ReflectionTestUtils.setField(kafkaConfig, "userSnapshotsTopic", "user-snapshots");
+        publisher = new UserSnapshotPublisher(outboxEventRepository, privacySettingsRepository,
+                entityManager, objectMapper, kafkaConfig, new OutboxConfig());
+    }
+
+    @Test
+    void markChanged_writesPublicProjectionToSnapshotTopic() {
+        User user = User.builder()
+                .id(1L)
+                .uuid("user-uuid-123")
+                .email("test@example.com")
+                .passwordHash("hash")
+                .username("testuser")
+                .displayName("Test User")
+                .status(UserStatus.ACTIVE)
+                .build();
+        when(privacySettingsRepository.findByUserId(1L)).thenReturn(Optional.of(UserPrivacySettings.builder()
+                .profileVisibility(ProfileVisibility.PRIVATE)
+                .build()));
+
+        publisher.markChanged(user, UserEventType.USER_PROFILE_UPDATED);
+
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(captor.capture());
+        OutboxEvent row = captor.getValue();
+        assertThat(row.getTopic()).isEqualTo("user-snapshots");
+        assertThat(row.getAggregateKey()).isEqualTo("user-uuid-123");
+        assertThat(new String(row.getPayload(), StandardCharsets.UTF_8))
+                .contains("\"username\":\"testuser\"", "\"profileVisibility\":\"PRIVATE\"", "\"status\":\"ACTIVE\"")
+                .doesNotContain("test@example.com", "hash");
+    }
+}
@@ -0,0 +1,74 @@
+package com.reveria.userservice.util;
+
+import com.reveria.userservice.exception.FileValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ValidatingImageInputStreamTest {
+
+    private static byte[] jpeg(int length) {
+        byte[] content = new byte[length];
+        Arrays.fill(content, (byte) 0x42);
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+        return content;
+    }
+
+    @Test
+    void read_validImage_passesContentThroughUnchanged() throws Exception {
+        byte[] content = jpeg(10_000);
+
+        try (InputStream in = new ValidatingImageInputStream(new ByteArrayInputStream(content), 1024 * 1024)) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void read_singleBytes_replaysHeader() throws Exception {
+        byte[] content = jpeg(20);
+
+        try (InputStream in = new ValidatingImageInputStream(new ByteArrayInputStream(content), 1024)) {
+            for (byte expected : content) {
+                assertThat(in.read()).isEqualTo(expected & 0xFF);
+            }
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void read_wrongMagicBytes_failsOnFirstRead() {
+        InputStream in = new ValidatingImageInputStream(
+                new ByteArrayInputStream(new byte[]{0x00, 0x01, 0x02, 0x03, 0x04}), 1024);
+
+        assertThatThrownBy(() -> in.read(new byte[8192]))
+                .isInstanceOf(FileValidationException.class)
+                .hasMessageContaining("File content does not match");
+    }
+
+    @Test
+    void read_tooSmall_fails() {
+        InputStream in = new ValidatingImageInputStream(
+                new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xD8}), 1024);
+
+        assertThatThrownBy(in::read)
+                .isInstanceOf(FileValidationException.class)
+                .hasMessageContaining("too small");
+    }
+
+    @Test
+    void read_pastSizeLimit_fails() {
+        InputStream in = new ValidatingImageInputStream(
+                new ByteArrayInputStream(jpeg(3 * 1024 * 1024)), 2 * 1024 * 1024);
+
+        assertThatThrownBy(in::readAllBytes)
+                .isInstanceOf(FileValidationException.class)
+                .hasMessageContaining("must not exceed 2 MB");
+    }
+}